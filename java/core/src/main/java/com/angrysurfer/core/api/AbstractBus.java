@@ -5,114 +5,247 @@ import com.angrysurfer.core.service.LogManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.*;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractBus {
 
     public static String WILDCARD = "*";
     static Logger logger = LoggerFactory.getLogger(Player.class.getCanonicalName());
-    private final Map<String, List<IBusListener>> listenerMap = new ConcurrentHashMap<>();
+    private static final ListenerRow[] NO_ROWS = new ListenerRow[0];
+    private static final int WILDCARD_ID = CommandRegistry.idOf(WILDCARD);
+
+    // The dispatch table is indexed by CommandRegistry id and is copy-on-write:
+    // registration swaps in new rows, so publishing threads read it without
+    // locks or copies.
+    private final Object registrationLock = new Object();
+    private volatile ListenerRow[] dispatchTable = NO_ROWS;
+    private volatile ListenerRow wildcardListeners = ListenerRow.EMPTY;
+    private final DispatchStats dispatchStats = new DispatchStats();
 
-    private final List<IBusListener> listeners = new CopyOnWriteArrayList<>();
     private final LogManager logManager = LogManager.getInstance();
 
-    // Thread pool for asynchronous command processing
-    private final ExecutorService commandExecutor;
+    // One single-threaded queue per lane, created on first use
     private final boolean asyncProcessing;
+    private final ExecutorService[] lanes = new ExecutorService[DispatchLane.values().length];
 
     protected AbstractBus() {
-        this(true, Runtime.getRuntime().availableProcessors());
+        this(true);
         // DON'T call register(this) here - it's unsafe during initialization
         // If subclasses need to register with themselves, they should do it explicitly
         // after their fields are initialized
     }
 
-    public AbstractBus(boolean asyncProcessing, int threadPoolSize) {
+    public AbstractBus(boolean asyncProcessing) {
         this.asyncProcessing = asyncProcessing;
+        logManager.info("AbstractBus", asyncProcessing
+                ? "Created async command bus with engine and UI lanes"
+                : "Created synchronous command bus");
+    }
+
+    /**
+     * Immutable listeners for one command, with the lane each one's queued
+     * commands are delivered on.
+     */
+    private static final class ListenerRow {
+        static final ListenerRow EMPTY = new ListenerRow(new IBusListener[0], new DispatchLane[0]);
 
-        // Create named thread factory for better debugging
-        ThreadFactory threadFactory = new ThreadFactory() {
-            private final AtomicInteger threadNumber = new AtomicInteger(1);
+        final IBusListener[] listeners;
+        final DispatchLane[] lanes;
 
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread t = new Thread(r, getClass().getSimpleName() + "-" + threadNumber.getAndIncrement());
-                t.setDaemon(true); // Don't prevent JVM from exiting
-                return t;
-            }
-        };
+        private ListenerRow(IBusListener[] listeners, DispatchLane[] lanes) {
+            this.listeners = listeners;
+            this.lanes = lanes;
+        }
+
+        int indexOf(IBusListener listener) {
+            return AbstractBus.indexOf(listeners, listener);
+        }
+
+        boolean hasLane(DispatchLane lane) {
+            return AbstractBus.indexOf(lanes, lane) >= 0;
+        }
 
-        // Create thread pool if using async processing
-        if (asyncProcessing) {
-            commandExecutor = Executors.newFixedThreadPool(threadPoolSize, threadFactory);
-            logManager.info("AbstractBus", "Created async command bus with " + threadPoolSize + " threads");
-        } else {
-            commandExecutor = null;
-            logManager.info("AbstractBus", "Created synchronous command bus");
+        ListenerRow with(IBusListener listener, DispatchLane lane) {
+            return new ListenerRow(append(listeners, listener), append(lanes, lane));
         }
 
-        // Register self to handle logging commands
-        // register(this);
+        ListenerRow without(int index) {
+            IBusListener[] newListeners = Arrays.copyOf(listeners, listeners.length - 1);
+            DispatchLane[] newLanes = Arrays.copyOf(lanes, lanes.length - 1);
+            System.arraycopy(listeners, index + 1, newListeners, index, listeners.length - index - 1);
+            System.arraycopy(lanes, index + 1, newLanes, index, lanes.length - index - 1);
+            return new ListenerRow(newListeners, newLanes);
+        }
     }
 
     public void register(IBusListener listener, String[] commands) {
-        for (String action : commands) {
-            listenerMap
-                    .computeIfAbsent(action, k -> new ArrayList<>())
-                    .add(listener);
+        if (listener != null) {
+            register(listener, commands, DispatchLane.of(listener));
+        }
+    }
+
+    /**
+     * Register for the given commands, delivering queued commands on an
+     * explicit lane. Registering the same listener for a command twice is a
+     * no-op.
+     */
+    public void register(IBusListener listener, String[] commands, DispatchLane lane) {
+        if (listener == null || commands == null) {
+            return;
+        }
+
+        int[] ids = new int[commands.length];
+        for (int i = 0; i < commands.length; i++) {
+            ids[i] = commands[i] != null ? CommandRegistry.idOf(commands[i]) : CommandRegistry.UNKNOWN;
+        }
+        register(listener, ids, lane);
+    }
+
+    /**
+     * Register for commands by {@link CommandRegistry} id.
+     */
+    public void register(IBusListener listener, int[] ids) {
+        if (listener != null) {
+            register(listener, ids, DispatchLane.of(listener));
+        }
+    }
+
+    public void register(IBusListener listener, int[] ids, DispatchLane lane) {
+        if (listener == null || ids == null) {
+            return;
+        }
+
+        synchronized (registrationLock) {
+            for (int id : ids) {
+                if (id < 0) {
+                    continue;
+                }
+                if (id == WILDCARD_ID) {
+                    if (wildcardListeners.indexOf(listener) < 0) {
+                        wildcardListeners = wildcardListeners.with(listener, lane);
+                    }
+                    continue;
+                }
+
+                ListenerRow[] table = dispatchTable;
+                if (id >= table.length) {
+                    table = Arrays.copyOf(table, Math.max(id + 1, CommandRegistry.size()));
+                    Arrays.fill(table, dispatchTable.length, table.length, ListenerRow.EMPTY);
+                } else if (table[id].indexOf(listener) < 0) {
+                    table = table.clone();
+                } else {
+                    continue;
+                }
+                table[id] = table[id].with(listener, lane);
+                dispatchTable = table;
+            }
         }
     }
 
     public void unregister(IBusListener listener) {
-        Iterator<Map.Entry<String, List<IBusListener>>> iterator = listenerMap.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<String, List<IBusListener>> entry = iterator.next();
-            entry.getValue().remove(listener);
-            if (entry.getValue().isEmpty()) {
-                iterator.remove();
+        if (listener == null) {
+            return;
+        }
+
+        synchronized (registrationLock) {
+            ListenerRow[] table = null;
+            for (int id = 0; id < dispatchTable.length; id++) {
+                ListenerRow row = dispatchTable[id];
+                int index = row.indexOf(listener);
+                if (index >= 0) {
+                    if (table == null) {
+                        table = dispatchTable.clone();
+                    }
+                    table[id] = row.without(index);
+                }
+            }
+            if (table != null) {
+                dispatchTable = table;
+            }
+
+            int index = wildcardListeners.indexOf(listener);
+            if (index >= 0) {
+                wildcardListeners = wildcardListeners.without(index);
             }
         }
     }
 
+    /**
+     * Number of listeners that would receive this command, wildcards included.
+     */
+    public int getListenerCount(String command) {
+        return rowFor(CommandRegistry.find(command)).listeners.length + wildcardListeners.listeners.length;
+    }
+
+    /**
+     * Time spent in listeners per command on this bus, for finding slow
+     * handlers.
+     */
+    public List<DispatchStats.Entry> getDispatchStats() {
+        return dispatchStats.snapshot();
+    }
+
+    public void resetDispatchStats() {
+        dispatchStats.reset();
+    }
+
+    /**
+     * Log the most expensive commands dispatched on this bus.
+     */
+    public void logDispatchStats(int limit) {
+        List<DispatchStats.Entry> entries = dispatchStats.snapshot();
+        for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+            logManager.info(getClass().getSimpleName(), entries.get(i).toString());
+        }
+    }
+
     public void publish(String command) {
-        publish(new Command(command, this, this));
+        if (hasListeners(command)) {
+            publish(new Command(command, this, this));
+        }
     }
 
     public void publish(String command, Object sender) {
-        Command cmd = new Command(command, sender, null);
-        publish(cmd);
+        if (hasListeners(command)) {
+            publish(new Command(command, sender, null));
+        }
     }
 
+    /**
+     * Deliver a command synchronously on the calling thread. Nothing is
+     * allocated unless at least one listener is registered for it.
+     */
     public void publish(String command, Object sender, Object data) {
-        // System.out.println("AbstractBus: Publishing command " + command + " to " +
-        // listeners.size() + " listeners");
-        Command cmd = new Command(command, sender, data);
-
-        List<IBusListener> listeners = listenerMap.get(command);
-        if (listeners != null) {
-            for (IBusListener listener : listeners) {
-                // logger.info("Notifying: " + listener.getClass().getSimpleName());
-                if (!listener.equals(sender))
-                    listener.onAction(cmd);
-            }
-        }
+        publish(CommandRegistry.find(command), command, sender, data);
+    }
 
-        listeners = listenerMap.get("*");
-        if (listeners != null) {
-            for (IBusListener listener : listeners) {
-                // logger.info("Notifying: " + listener.getClass().getSimpleName());
-                if (!listener.equals(sender))
-                    listener.onAction(cmd);
-            }
+    /**
+     * As {@link #publish(String, Object, Object)}, skipping the name lookup.
+     *
+     * @param id a {@link CommandRegistry} id
+     */
+    public void publish(int id, Object sender, Object data) {
+        publish(id, CommandRegistry.nameOf(id), sender, data);
+    }
+
+    private void publish(int id, String command, Object sender, Object data) {
+        ListenerRow row = rowFor(id);
+        ListenerRow wildcards = wildcardListeners;
+        if (row.listeners.length == 0 && wildcards.listeners.length == 0) {
+            return;
         }
+        dispatch(id, row, wildcards, new Command(id, command, sender, data));
     }
 
     /**
      * Publishes a command to be processed by all registered listeners.
      * Depending on the bus configuration, processing will happen either
-     * synchronously in the current thread or asynchronously in the thread pool.
+     * synchronously in the current thread or asynchronously on the listeners'
+     * lanes, in publish order within each lane.
      *
      * @param action The command to publish
      */
@@ -122,18 +255,18 @@ public abstract class AbstractBus {
             return;
         }
 
-        // String sender = action.getSender() != null ? action.getSender().getClass().getSimpleName() : "unknown";
-        // String dataType = action.getData() != null ? action.getData().getClass().getSimpleName() : "null";
-
-        // logManager.debug("CommandBus",
-        //         String.format("Publishing command: %s from: %s data: %s",
-        //                 action.getCommand(), sender, dataType));
-
-        // Use executor service if running async, otherwise process in current thread
-        if (asyncProcessing && commandExecutor != null) {
-            commandExecutor.submit(() -> processCommand(action));
-        } else {
+        if (!asyncProcessing) {
             processCommand(action);
+            return;
+        }
+
+        int id = action.getCommandId();
+        ListenerRow row = rowFor(id);
+        ListenerRow wildcards = wildcardListeners;
+        for (DispatchLane lane : DispatchLane.values()) {
+            if (row.hasLane(lane) || wildcards.hasLane(lane)) {
+                lane(lane).execute(() -> dispatch(id, rowFor(id), wildcardListeners, action, lane));
+            }
         }
     }
 
@@ -161,75 +294,161 @@ public abstract class AbstractBus {
             return;
         }
 
-        // Get listeners for this specific command
-        List<IBusListener> listeners = new ArrayList<>();
+        int id = action.getCommandId();
+        dispatch(id, rowFor(id), wildcardListeners, action);
+    }
+
+    /**
+     * Notify command listeners, then wildcard listeners not already notified.
+     */
+    private void dispatch(int id, ListenerRow row, ListenerRow wildcards, Command action) {
+        long start = startDispatch(id);
+        Object sender = action.getSender();
+        IBusListener[] listeners = row.listeners;
+        for (int i = 0; i < listeners.length; i++) {
+            notify(listeners[i], sender, action);
+        }
+        listeners = wildcards.listeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (row.indexOf(listeners[i]) < 0) {
+                notify(listeners[i], sender, action);
+            }
+        }
+        recordDispatch(id, start);
+    }
+
+    /**
+     * As {@link #dispatch(int, ListenerRow, ListenerRow, Command)}, limited to
+     * the listeners on one lane.
+     */
+    private void dispatch(int id, ListenerRow row, ListenerRow wildcards, Command action, DispatchLane lane) {
+        long start = startDispatch(id);
+        Object sender = action.getSender();
+        for (int i = 0; i < row.listeners.length; i++) {
+            if (row.lanes[i] == lane) {
+                notify(row.listeners[i], sender, action);
+            }
+        }
+        for (int i = 0; i < wildcards.listeners.length; i++) {
+            if (wildcards.lanes[i] == lane && row.indexOf(wildcards.listeners[i]) < 0) {
+                notify(wildcards.listeners[i], sender, action);
+            }
+        }
+        recordDispatch(id, start);
+    }
+
+    // Counts the dispatch; returns a start time only when this one is sampled
+    private long startDispatch(int id) {
+        if (id < 0) {
+            return 0;
+        }
+        dispatchStats.count(id);
+        return dispatchStats.shouldSample() ? System.nanoTime() : 0;
+    }
+
+    private void recordDispatch(int id, long start) {
+        if (start != 0) {
+            dispatchStats.sample(id, System.nanoTime() - start);
+        }
+    }
+
+    private void notify(IBusListener listener, Object sender, Command action) {
+        if (listener == sender) {
+            return;
+        }
+        try {
+            listener.onAction(action);
+        } catch (Exception e) {
+            listenerFailed(listener, action, e);
+        }
+    }
+
+    // Kept out of notify() so the dispatch loop stays small enough to inline
+    private void listenerFailed(IBusListener listener, Command action, Exception e) {
+        logManager.error("CommandBus",
+                String.format("Error in listener %s handling command %s: %s",
+                        listener.getClass().getSimpleName(),
+                        action.getCommand(),
+                        e.getMessage()));
+        e.printStackTrace();
+    }
 
-        List<IBusListener> commandListeners = listenerMap.get(action.getCommand());
-        if (Objects.nonNull(commandListeners))
-            listeners.addAll(commandListeners);
+    private boolean hasListeners(String command) {
+        return rowFor(CommandRegistry.find(command)).listeners.length > 0
+                || wildcardListeners.listeners.length > 0;
+    }
 
-        // Get listeners registered for all commands (wildcard)
-        List<IBusListener> wildcardListeners = listenerMap.get(WILDCARD);
-        if (Objects.nonNull(wildcardListeners))
-            listeners.addAll(wildcardListeners);
+    private ListenerRow rowFor(int id) {
+        ListenerRow[] table = dispatchTable;
+        return id >= 0 && id < table.length ? table[id] : ListenerRow.EMPTY;
+    }
 
-        // Process specific command listeners
-        if (commandListeners != null) {
-            for (IBusListener listener : listeners) {
-                try {
-                    if (listener != action.getSender()) {
-                        listener.onAction(action);
-                    }
-                } catch (Exception e) {
-                    logManager.error("CommandBus",
-                            String.format("Error in listener %s handling command %s: %s",
-                                    listener.getClass().getSimpleName(),
-                                    action.getCommand(),
-                                    e.getMessage()));
-                    e.printStackTrace();
+    private ExecutorService lane(DispatchLane lane) {
+        ExecutorService executor = lanes[lane.ordinal()];
+        if (executor == null) {
+            synchronized (lanes) {
+                executor = lanes[lane.ordinal()];
+                if (executor == null) {
+                    String name = getClass().getSimpleName() + "-" + lane.name().toLowerCase();
+                    executor = Executors.newSingleThreadExecutor(r -> {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true); // Don't prevent JVM from exiting
+                        return t;
+                    });
+                    lanes[lane.ordinal()] = executor;
                 }
             }
         }
+        return executor;
+    }
 
-        // Process wildcard listeners
-        if (wildcardListeners != null) {
-            for (IBusListener listener : wildcardListeners) {
-                try {
-                    if (listener != action.getSender()) {
-                        listener.onAction(action);
-                    }
-                } catch (Exception e) {
-                    logManager.error("CommandBus",
-                            String.format("Error in wildcard listener %s handling command %s: %s",
-                                    listener.getClass().getSimpleName(),
-                                    action.getCommand(),
-                                    e.getMessage()));
-                    e.printStackTrace();
-                }
+    protected static <T> int indexOf(T[] array, T item) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == item) {
+                return i;
             }
         }
+        return -1;
+    }
+
+    protected static <T> T[] append(T[] array, T item) {
+        T[] copy = Arrays.copyOf(array, array.length + 1);
+        copy[array.length] = item;
+        return copy;
+    }
 
-        // Remove debug log that was causing console spam
-        // System.out.println("CommandBus: processing " + action.toString() + ", listeners: " + listeners.size());
+    protected static <T> T[] remove(T[] array, T item) {
+        int index = indexOf(array, item);
+        if (index < 0) {
+            return array;
+        }
+        T[] copy = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, copy, index, array.length - index - 1);
+        return copy;
     }
 
     /**
-     * Shutdown the command executor gracefully
+     * Shutdown the lane executors gracefully
      */
     public void shutdown() {
-        if (commandExecutor != null && !commandExecutor.isShutdown()) {
-            logManager.info("AbstractBus", "Shutting down command executor");
-            commandExecutor.shutdown();
-            try {
-                // Wait for existing tasks to terminate
-                if (!commandExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                    logManager.warn("AbstractBus", "Command executor did not terminate in time, forcing shutdown");
-                    commandExecutor.shutdownNow();
+        synchronized (lanes) {
+            for (ExecutorService executor : lanes) {
+                if (executor == null || executor.isShutdown()) {
+                    continue;
+                }
+                logManager.info("AbstractBus", "Shutting down command executor");
+                executor.shutdown();
+                try {
+                    // Wait for existing tasks to terminate
+                    if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                        logManager.warn("AbstractBus", "Command executor did not terminate in time, forcing shutdown");
+                        executor.shutdownNow();
+                    }
+                } catch (InterruptedException e) {
+                    logManager.error("AbstractBus", "Command executor shutdown was interrupted", e);
+                    executor.shutdownNow();
+                    Thread.currentThread().interrupt();
                 }
-            } catch (InterruptedException e) {
-                logManager.error("AbstractBus", "Command executor shutdown was interrupted", e);
-                commandExecutor.shutdownNow();
-                Thread.currentThread().interrupt();
             }
         }
     }
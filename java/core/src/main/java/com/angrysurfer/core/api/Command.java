@@ -1,5 +1,6 @@
 package com.angrysurfer.core.api;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -10,9 +11,35 @@ public class Command {
     private Object sender;
     private Object data;
 
+    // CommandRegistry id, resolved lazily for commands built from a name
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int commandId = CommandRegistry.UNKNOWN;
+
     Command(String command, Object sender, Object data) {
         this.command = command;
         this.sender = sender;
         this.data = data;
     }
+
+    Command(int commandId, String command, Object sender, Object data) {
+        this(command, sender, data);
+        this.commandId = commandId;
+    }
+
+    public void setCommand(String command) {
+        this.command = command;
+        this.commandId = CommandRegistry.UNKNOWN;
+    }
+
+    /**
+     * Registry id of this command, for listeners that compare ids instead of
+     * strings.
+     */
+    public int getCommandId() {
+        if (commandId == CommandRegistry.UNKNOWN && command != null) {
+            commandId = CommandRegistry.idOf(command);
+        }
+        return commandId;
+    }
 }
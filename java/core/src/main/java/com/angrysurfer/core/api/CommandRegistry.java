@@ -0,0 +1,92 @@
+package com.angrysurfer.core.api;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense int ids for command names. Every constant in {@link Commands} gets an
+ * id when this class loads; names first seen at runtime are added on demand.
+ * Ids are shared by all buses, so listeners can be registered and commands
+ * published by id, and listener lookup becomes an array index.
+ */
+public final class CommandRegistry {
+
+    public static final int UNKNOWN = -1;
+
+    private static final Object lock = new Object();
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[0];
+
+    static {
+        for (Field field : Commands.class.getFields()) {
+            int modifiers = field.getModifiers();
+            if (field.getType() == String.class && Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers)) {
+                try {
+                    idOf((String) field.get(null));
+                } catch (IllegalAccessException e) {
+                    throw new ExceptionInInitializerError(e);
+                }
+            }
+        }
+        idOf("*"); // AbstractBus.WILDCARD
+    }
+
+    private CommandRegistry() {
+    }
+
+    /**
+     * Id for a command name, assigning the next id if it has none yet.
+     */
+    public static int idOf(String command) {
+        Integer id = ids.get(command);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (lock) {
+            id = ids.get(command);
+            if (id == null) {
+                id = names.length;
+                String[] grown = Arrays.copyOf(names, id + 1);
+                grown[id] = command;
+                names = grown;
+                ids.put(command, id);
+            }
+            return id;
+        }
+    }
+
+    public static int[] idsOf(String... commands) {
+        int[] result = new int[commands.length];
+        for (int i = 0; i < commands.length; i++) {
+            result[i] = idOf(commands[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Id for a command name, or {@link #UNKNOWN} without assigning one.
+     */
+    public static int find(String command) {
+        if (command == null) {
+            return UNKNOWN;
+        }
+        Integer id = ids.get(command);
+        return id != null ? id : UNKNOWN;
+    }
+
+    public static String nameOf(int id) {
+        String[] current = names;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * Number of ids assigned so far; every id is below this.
+     */
+    public static int size() {
+        return names.length;
+    }
+}
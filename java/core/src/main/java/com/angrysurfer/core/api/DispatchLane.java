@@ -0,0 +1,27 @@
+package com.angrysurfer.core.api;
+
+import java.awt.Component;
+
+/**
+ * Queue a listener's queued (asynchronous) commands are delivered on. Each bus
+ * keeps one single-threaded lane per value, so a slow UI listener can never
+ * hold up engine listeners or reorder their commands. {@link TimingBus} uses
+ * the same split in ring-buffer mode: ENGINE listeners run on the clock
+ * thread, UI listeners read the ring on their own threads.
+ */
+public enum DispatchLane {
+    ENGINE,
+    UI;
+
+    /**
+     * Default lane for a listener: UI if it is, or is declared inside, an AWT
+     * component (inner classes and lambdas of a panel); ENGINE otherwise.
+     */
+    public static DispatchLane of(Object listener) {
+        Class<?> type = listener.getClass();
+        if (Component.class.isAssignableFrom(type) || Component.class.isAssignableFrom(type.getNestHost())) {
+            return UI;
+        }
+        return ENGINE;
+    }
+}
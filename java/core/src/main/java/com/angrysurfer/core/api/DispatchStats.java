@@ -0,0 +1,107 @@
+package com.angrysurfer.core.api;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-command dispatch counts and time spent in listeners, indexed by
+ * {@link CommandRegistry} id. Every dispatch is counted, but only one in
+ * {@link #SAMPLE_INTERVAL} is timed, since reading the clock twice would
+ * otherwise cost more than a typical dispatch. Updates are lock-free; the
+ * counters grow when the registry does.
+ */
+public final class DispatchStats {
+
+    public static final int SAMPLE_INTERVAL = 32;
+
+    /**
+     * Snapshot of one command's dispatch cost.
+     */
+    public record Entry(String command, long dispatches, long meanNanos) {
+        public double meanMicros() {
+            return meanNanos / 1000.0;
+        }
+
+        /**
+         * Estimated time spent dispatching this command, from the sampled mean.
+         */
+        public long totalNanos() {
+            return meanNanos * dispatches;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d dispatches, %.1fus mean, %.1fms total", command, dispatches,
+                    meanMicros(), totalNanos() / 1_000_000.0);
+        }
+    }
+
+    // Per id: [3 * id] = dispatches, [3 * id + 1] = timed samples, [3 * id + 2] = sampled nanos
+    private volatile AtomicLongArray counters = new AtomicLongArray(0);
+
+    // Racy on purpose; it only spreads samples out
+    private int sampleCounter;
+
+    /**
+     * Whether the caller should time the next dispatch.
+     */
+    boolean shouldSample() {
+        return (sampleCounter++ % SAMPLE_INTERVAL) == 0;
+    }
+
+    // Plain read-modify-write: a concurrent dispatch can lose a count, which a gauge can afford
+    void count(int id) {
+        AtomicLongArray current = counters(id);
+        current.setPlain(3 * id, current.getPlain(3 * id) + 1);
+    }
+
+    void sample(int id, long elapsedNanos) {
+        AtomicLongArray current = counters(id);
+        current.incrementAndGet(3 * id + 1);
+        current.addAndGet(3 * id + 2, elapsedNanos);
+    }
+
+    private AtomicLongArray counters(int id) {
+        AtomicLongArray current = counters;
+        return 3 * id + 2 < current.length() ? current : grow(id);
+    }
+
+    private synchronized AtomicLongArray grow(int id) {
+        AtomicLongArray current = counters;
+        int length = 3 * Math.max(id + 1, CommandRegistry.size());
+        if (current.length() >= length) {
+            return current;
+        }
+        // Counts recorded concurrently during the copy may be lost; it's a gauge
+        AtomicLongArray grown = new AtomicLongArray(length);
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        counters = grown;
+        return grown;
+    }
+
+    /**
+     * Commands dispatched since the last reset, most expensive first.
+     */
+    public List<Entry> snapshot() {
+        AtomicLongArray current = counters;
+        List<Entry> entries = new ArrayList<>();
+        for (int id = 0; 3 * id + 2 < current.length(); id++) {
+            long dispatches = current.get(3 * id);
+            if (dispatches > 0) {
+                long samples = current.get(3 * id + 1);
+                long mean = samples > 0 ? current.get(3 * id + 2) / samples : 0;
+                entries.add(new Entry(CommandRegistry.nameOf(id), dispatches, mean));
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::totalNanos).reversed());
+        return entries;
+    }
+
+    public synchronized void reset() {
+        counters = new AtomicLongArray(counters.length());
+    }
+}
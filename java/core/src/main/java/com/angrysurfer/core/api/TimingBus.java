@@ -1,17 +1,34 @@
 package com.angrysurfer.core.api;
 
-import com.angrysurfer.core.model.Player;
+import com.angrysurfer.core.sequencer.TimingFrame;
 import com.angrysurfer.core.sequencer.TimingUpdate;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class TimingBus extends AbstractBus {
     private static final String[] EMPTY = new String[]{};
     private static TimingBus instance;
+    private static final TimingFrameListener[] NO_FRAME_LISTENERS = new TimingFrameListener[0];
+    private static final IBusListener[] NO_LISTENERS = new IBusListener[0];
     // Initialize field BEFORE constructor is called
-    private final ConcurrentLinkedQueue<IBusListener> timingListeners = new ConcurrentLinkedQueue<>();
+    // Listener snapshots are swapped on (rare) registration so the per-tick
+    // loops index plain arrays and never allocate an iterator
+    private final Object registrationLock = new Object();
+    private volatile TimingFrameListener[] frameListeners = NO_FRAME_LISTENERS;
+    private volatile IBusListener[] legacyListeners = NO_LISTENERS;
+    // Listeners called on the clock thread: all of them, or only ENGINE ones in ring mode
+    private volatile TimingFrameListener[] inlineFrameListeners = NO_FRAME_LISTENERS;
+    private volatile IBusListener[] inlineLegacyListeners = NO_LISTENERS;
+    private final Map<IBusListener, DispatchLane> listenerLanes = new IdentityHashMap<>();
+    // Non-null in ring-buffer mode; UI listeners then read frames from it on their own threads
+    private volatile TimingRing ring;
+    // Scratch frame for TimingUpdates that arrive through the legacy publish API
+    private final TimingFrame adapterFrame = new TimingFrame();
     private final ExecutorService timingExecutor = Executors.newSingleThreadExecutor(r -> {
         Thread t = new Thread(r, "TimingBus-Thread");
         t.setPriority(Thread.MAX_PRIORITY);
@@ -29,7 +46,7 @@ public class TimingBus extends AbstractBus {
         // Don't call super() which calls register() before fields are initialized
 
         // Add diagnostic message
-        System.out.println("TimingBus initialized with " + timingListeners.size() + " listeners");
+        System.out.println("TimingBus initialized with " + getListenerCount() + " listeners");
 
         // Start a diagnostic thread to monitor timing events
         if (diagnostic)
@@ -62,25 +79,21 @@ public class TimingBus extends AbstractBus {
     @Override
     public void publish(String commandName, Object source, Object data) {
         // Add immediate diagnostic output
-        // System.out.println("TimingBus: Publishing " + commandName + ", listeners: " + timingListeners.size());
+        // System.out.println("TimingBus: Publishing " + commandName + ", listeners: " + getListenerCount());
 
         if (Commands.TIMING_UPDATE.equals(commandName)) {
+            TimingRing current = ring;
+            // Frame listeners still get a primitive frame when timing arrives the old way
+            if (data instanceof TimingUpdate update && (inlineFrameListeners.length > 0 || current != null)) {
+                dispatchFrame(source, adapterFrame.load(update));
+                if (current != null) {
+                    current.publish(source, adapterFrame);
+                }
+            }
+
             // DON'T reuse the shared command for timing - create a new one for thread
             // safety
-            Command cmd = new Command(commandName, source, data);
-
-            // Fast path for timing updates
-            for (IBusListener listener : timingListeners) {
-                if (listener != source) // Avoid sending to self
-                    try {
-                        // Simple direct call to onAction
-                        listener.onAction(cmd);
-                    } catch (Exception e) {
-                        // Log exceptions but continue with other listeners
-                        System.err.println("Error in timing listener: " + e.getMessage());
-                        e.printStackTrace();
-                    }
-            }
+            dispatchLegacy(source, new Command(commandName, source, data));
 
             // Increment diagnostic counter
             eventCount++;
@@ -91,9 +104,159 @@ public class TimingBus extends AbstractBus {
         // super.publish(commandName, source, data);
     }
 
+    /**
+     * Allocation-free timing path. Frame listeners receive the frame itself;
+     * legacy listeners share a single {@link TimingUpdate} snapshot and
+     * {@link Command}, built only if any are registered. In ring-buffer mode
+     * the frame is also copied into the ring for UI consumers.
+     *
+     * @param source the publisher, skipped during dispatch
+     * @param frame  the current tick frame
+     */
+    public void publishFrame(Object source, TimingFrame frame) {
+        dispatchFrame(source, frame);
+
+        if (inlineLegacyListeners.length > 0) {
+            dispatchLegacy(source, new Command(Commands.TIMING_UPDATE, source, frame.toTimingUpdate()));
+        }
+
+        TimingRing current = ring;
+        if (current != null) {
+            current.publish(source, frame);
+        }
+
+        eventCount++;
+    }
+
+    private void dispatchFrame(Object source, TimingFrame frame) {
+        TimingFrameListener[] listeners = inlineFrameListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            TimingFrameListener listener = listeners[i];
+            if (listener != source) // Avoid sending to self
+                try {
+                    listener.onTimingFrame(frame);
+                } catch (Exception e) {
+                    // Log exceptions but continue with other listeners
+                    System.err.println("Error in timing frame listener: " + e.getMessage());
+                    e.printStackTrace();
+                }
+        }
+    }
+
+    private void dispatchLegacy(Object source, Command cmd) {
+        IBusListener[] listeners = inlineLegacyListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            IBusListener listener = listeners[i];
+            if (listener != source) // Avoid sending to self
+                try {
+                    // Simple direct call to onAction
+                    listener.onAction(cmd);
+                } catch (Exception e) {
+                    // Log exceptions but continue with other listeners
+                    System.err.println("Error in timing listener: " + e.getMessage());
+                    e.printStackTrace();
+                }
+        }
+    }
+
+    public int getListenerCount() {
+        return frameListeners.length + legacyListeners.length;
+    }
+
+    /**
+     * Switch to ring-buffer dispatch: ENGINE listeners (sequencers, players)
+     * keep running inline on the clock thread, while UI listeners each get a
+     * thread reading from a preallocated ring and may skip frames when they
+     * fall behind. No-op if already enabled.
+     */
+    public void enableRingBuffer() {
+        enableRingBuffer(TimingRing.DEFAULT_CAPACITY);
+    }
+
+    public void enableRingBuffer(int capacity) {
+        synchronized (registrationLock) {
+            if (ring != null) {
+                return;
+            }
+            ring = new TimingRing(capacity);
+            rebuildDispatch();
+        }
+    }
+
+    /**
+     * Return to calling every listener inline and stop the consumer threads.
+     */
+    public void disableRingBuffer() {
+        synchronized (registrationLock) {
+            TimingRing current = ring;
+            if (current == null) {
+                return;
+            }
+            ring = null;
+            rebuildDispatch();
+            current.close();
+        }
+    }
+
+    public boolean isRingBufferEnabled() {
+        return ring != null;
+    }
+
+    /**
+     * Backlog gauge for each ring consumer; empty unless ring-buffer mode is on.
+     */
+    public List<TimingRing.ConsumerStatus> getConsumerStatus() {
+        TimingRing current = ring;
+        return current != null ? current.getConsumerStatus() : Collections.emptyList();
+    }
+
+    @Override
+    public void shutdown() {
+        disableRingBuffer();
+        super.shutdown();
+    }
+
+    // Called with registrationLock held after any listener, lane or mode change
+    private void rebuildDispatch() {
+        TimingRing current = ring;
+        if (current == null) {
+            inlineFrameListeners = frameListeners;
+            inlineLegacyListeners = legacyListeners;
+            return;
+        }
+
+        TimingFrameListener[] inlineFrames = NO_FRAME_LISTENERS;
+        for (TimingFrameListener listener : frameListeners) {
+            if (listenerLanes.get(listener) == DispatchLane.UI) {
+                current.attach(listener, consumerName(listener), (source, frame) -> listener.onTimingFrame(frame));
+            } else {
+                inlineFrames = append(inlineFrames, listener);
+            }
+        }
+        IBusListener[] inlineLegacy = NO_LISTENERS;
+        for (IBusListener listener : legacyListeners) {
+            if (listenerLanes.get(listener) == DispatchLane.UI) {
+                current.attach(listener, consumerName(listener), (source, frame) ->
+                        listener.onAction(new Command(Commands.TIMING_UPDATE, source, frame.toTimingUpdate())));
+            } else {
+                inlineLegacy = append(inlineLegacy, listener);
+            }
+        }
+        inlineFrameListeners = inlineFrames;
+        inlineLegacyListeners = inlineLegacy;
+    }
+
+    private static String consumerName(Object listener) {
+        String name = listener.getClass().getSimpleName();
+        return name.isEmpty() ? listener.getClass().getName() : name;
+    }
+
     // Add a method to check registration
     public boolean isRegistered(IBusListener listener) {
-        return timingListeners.contains(listener);
+        if (listener instanceof TimingFrameListener frameListener) {
+            return indexOf(frameListeners, frameListener) >= 0;
+        }
+        return indexOf(legacyListeners, listener) >= 0;
     }
 
     // Add method to update shared command without creating new objects
@@ -105,46 +268,81 @@ public class TimingBus extends AbstractBus {
 
     // Add a specialized method for highest performance timing events
     public void publishTimingUpdate(TimingUpdate update) {
-        // Even more optimized path for timing updates
-        Command command = new Command(Commands.TIMING_UPDATE, this, update);
-        for (IBusListener listener : timingListeners) {
-            try {
-                ((Player) listener).onTick(update); // Direct call to avoid command overhead
-            } catch (ClassCastException e) {
-                // Fall back to standard method if not a Player
-                listener.onAction(command);
-            } catch (Exception e) {
-                // Minimal error handling
-            }
-        }
+        publishFrame(this, adapterFrame.load(update));
     }
 
     public void register(IBusListener listener) {
         register(listener, EMPTY);
     }
 
+    // Timing listeners get every tick; command ids don't apply
+    @Override
+    public void register(IBusListener listener, int[] ids) {
+        register(listener, EMPTY);
+    }
+
+    @Override
+    public void register(IBusListener listener, int[] ids, DispatchLane lane) {
+        register(listener, EMPTY, lane);
+    }
+
     @Override
     public void register(IBusListener listener, String[] commands) {
         if (listener != null) {
-            if (timingListeners == null) {
-                System.err.println("TimingBus: timingListeners is null!");
-                return;
-            }
+            register(listener, commands, DispatchLane.of(listener));
+        }
+    }
 
-            if (!timingListeners.contains(listener)) {
-                timingListeners.add(listener);
-                System.out.println("TimingBus: Registered listener: " + (listener.getClass() != null ? listener.getClass().getSimpleName() + ": " + listener : "null"));
+    /**
+     * Register for timing, choosing explicitly whether the listener runs on
+     * the clock thread (ENGINE) or on its own ring consumer (UI) when
+     * ring-buffer mode is on.
+     */
+    @Override
+    public void register(IBusListener listener, String[] commands, DispatchLane lane) {
+        if (listener == null) {
+            return;
+        }
+
+        synchronized (registrationLock) {
+            if (listener instanceof TimingFrameListener frameListener) {
+                if (indexOf(frameListeners, frameListener) >= 0) {
+                    return;
+                }
+                frameListeners = append(frameListeners, frameListener);
+            } else {
+                if (indexOf(legacyListeners, listener) >= 0) {
+                    return;
+                }
+                legacyListeners = append(legacyListeners, listener);
             }
+            listenerLanes.put(listener, lane != null ? lane : DispatchLane.ENGINE);
+            rebuildDispatch();
         }
+        System.out.println("TimingBus: Registered listener: " + (listener.getClass() != null ? listener.getClass().getSimpleName() + ": " + listener : "null"));
     }
 
     @Override
     public void unregister(IBusListener listener) {
-        if (listener != null && timingListeners != null) {
-            timingListeners.remove(listener);
-            // System.out.println("TimingBus: Unregistered listener: " +
-            // (listener.getClass() != null ? listener.getClass().getSimpleName() :
-            // "null"));
+        if (listener == null) {
+            return;
+        }
+
+        synchronized (registrationLock) {
+            if (listener instanceof TimingFrameListener frameListener) {
+                frameListeners = remove(frameListeners, frameListener);
+            } else {
+                legacyListeners = remove(legacyListeners, listener);
+            }
+            listenerLanes.remove(listener);
+            TimingRing current = ring;
+            if (current != null) {
+                current.detach(listener);
+            }
+            rebuildDispatch();
         }
+        // System.out.println("TimingBus: Unregistered listener: " +
+        // (listener.getClass() != null ? listener.getClass().getSimpleName() :
+        // "null"));
     }
 }
@@ -0,0 +1,14 @@
+package com.angrysurfer.core.api;
+
+import com.angrysurfer.core.sequencer.TimingFrame;
+
+/**
+ * Fast-path timing listener. {@link TimingBus} hands these the session's
+ * reusable {@link TimingFrame} directly instead of wrapping a
+ * {@link com.angrysurfer.core.sequencer.TimingUpdate} in a {@link Command}.
+ * The frame is only valid for the duration of the call.
+ */
+public interface TimingFrameListener {
+
+    void onTimingFrame(TimingFrame frame);
+}
@@ -0,0 +1,264 @@
+package com.angrysurfer.core.api;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import com.angrysurfer.core.sequencer.TimingFrame;
+
+/**
+ * Preallocated ring of tick frames for timing consumers that must not hold up
+ * the clock. The clock copies each frame into the next slot and moves on; every
+ * consumer reads the ring on its own thread with its own cursor.
+ * <p>
+ * The clock never waits for a consumer. A consumer that falls a full ring
+ * behind jumps to the newest frame and counts the frames it skipped, so a
+ * stalled UI costs the engine nothing. Each slot carries a sequence stamp that
+ * readers check before and after copying, so a slot overwritten mid-read is
+ * discarded rather than delivered torn.
+ */
+public final class TimingRing {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    // Consumers recheck this often when the clock is stopped; publish wakes them sooner
+    private static final long PARK_NANOS = 50_000_000L;
+
+    /**
+     * Callback run on a consumer's thread. The frame belongs to the consumer
+     * and is rewritten for the next tick after the call returns.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void onFrame(Object source, TimingFrame frame);
+    }
+
+    /**
+     * Point-in-time view of one consumer: how many frames it is behind, how
+     * many it has handled and how many it dropped by falling a ring behind.
+     */
+    public record ConsumerStatus(String name, long backlog, long delivered, long skipped) {
+    }
+
+    private static final class Slot {
+        final TimingFrame frame = new TimingFrame();
+        Object source;
+        // Sequence of the frame in this slot, or -1 while the clock is rewriting it
+        volatile long sequence = -1;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private volatile long cursor = -1;
+    private volatile Consumer[] consumers = new Consumer[0];
+
+    public TimingRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TimingRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Copy a frame into the ring and wake any idle consumers. Never blocks on
+     * consumers; synchronized only so two clocks can't interleave a slot.
+     */
+    public synchronized void publish(Object source, TimingFrame frame) {
+        long next = cursor + 1;
+        Slot slot = slots[(int) next & mask];
+        slot.sequence = -1;
+        VarHandle.storeStoreFence();
+        slot.frame.copyFrom(frame);
+        slot.source = source;
+        slot.sequence = next;
+        cursor = next;
+
+        Consumer[] current = consumers;
+        for (int i = 0; i < current.length; i++) {
+            current[i].wake();
+        }
+    }
+
+    /**
+     * Start a consumer thread for {@code owner}, reading from the next frame
+     * published. Frames whose source is {@code owner} are skipped. Attaching
+     * the same owner twice returns the running consumer.
+     */
+    public synchronized Consumer attach(Object owner, String name, Handler handler) {
+        for (Consumer consumer : consumers) {
+            if (consumer.owner == owner) {
+                return consumer;
+            }
+        }
+        Consumer consumer = new Consumer(owner, name, handler, cursor);
+        Consumer[] grown = Arrays.copyOf(consumers, consumers.length + 1);
+        grown[consumers.length] = consumer;
+        consumers = grown;
+        consumer.thread.start();
+        return consumer;
+    }
+
+    public synchronized void detach(Object owner) {
+        Consumer[] current = consumers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].owner == owner) {
+                Consumer[] shrunk = new Consumer[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                consumers = shrunk;
+                current[i].stop();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stop every consumer thread. The ring can't be reused afterwards.
+     */
+    public synchronized void close() {
+        Consumer[] current = consumers;
+        consumers = new Consumer[0];
+        for (Consumer consumer : current) {
+            consumer.stop();
+        }
+    }
+
+    public List<ConsumerStatus> getConsumerStatus() {
+        Consumer[] current = consumers;
+        List<ConsumerStatus> status = new ArrayList<>(current.length);
+        for (Consumer consumer : current) {
+            status.add(consumer.getStatus());
+        }
+        return status;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Sequence of the newest frame published, -1 before the first.
+     */
+    public long getCursor() {
+        return cursor;
+    }
+
+    /**
+     * One reader of the ring: a thread, a cursor and a frame of its own.
+     */
+    public final class Consumer implements Runnable {
+        private final Object owner;
+        private final String name;
+        private final Handler handler;
+        private final TimingFrame frame = new TimingFrame();
+        private final Thread thread;
+
+        // Last sequence handled; written only by the consumer thread
+        private volatile long sequence;
+        private volatile long delivered;
+        private volatile long skipped;
+        private volatile boolean parked;
+        private volatile boolean running = true;
+
+        private Consumer(Object owner, String name, Handler handler, long start) {
+            this.owner = owner;
+            this.name = name;
+            this.handler = handler;
+            this.sequence = start;
+            this.thread = new Thread(this, "TimingRing-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Slot[] ring = slots;
+            long next = sequence + 1;
+            while (running) {
+                long available = cursor;
+                if (available < next) {
+                    await(next);
+                    continue;
+                }
+                if (available - next >= ring.length) {
+                    // Lapped: everything before the newest frame is stale for a UI anyway
+                    skipped += available - next;
+                    next = available;
+                }
+
+                Slot slot = ring[(int) next & mask];
+                if (slot.sequence != next) {
+                    continue;
+                }
+                Object source = slot.source;
+                frame.copyFrom(slot.frame);
+                VarHandle.acquireFence();
+                if (slot.sequence != next) {
+                    // Overwritten while copying; the next pass sees how far behind we are
+                    continue;
+                }
+
+                sequence = next;
+                next++;
+                if (source != owner) {
+                    deliver(source);
+                }
+            }
+        }
+
+        private void deliver(Object source) {
+            try {
+                handler.onFrame(source, frame);
+                delivered++;
+            } catch (Exception e) {
+                // Log exceptions but keep consuming
+                System.err.println("Error in timing ring consumer " + name + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+
+        // Flag first, then recheck: publish reads the flag after moving the cursor
+        private void await(long next) {
+            parked = true;
+            if (running && cursor < next) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            parked = false;
+        }
+
+        private void wake() {
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * Frames published but not yet handled by this consumer.
+         */
+        public long getBacklog() {
+            return Math.max(0, cursor - sequence);
+        }
+
+        public ConsumerStatus getStatus() {
+            return new ConsumerStatus(name, getBacklog(), delivered, skipped);
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.angrysurfer.core.audio;
+
+/**
+ * How a {@link SampleVoice} reads between sample frames when it plays at a
+ * fractional rate. Kernels are fixed and precomputed, so none of them
+ * allocates while rendering.
+ */
+public enum Interpolation {
+
+    /**
+     * Straight line between the two nearest frames. Cheapest; dulls the top
+     * end and aliases when pitched far from the reference note.
+     */
+    LINEAR,
+
+    /**
+     * Catmull-Rom through the four nearest frames. Little more than linear
+     * and noticeably cleaner on tonal samples.
+     */
+    CUBIC,
+
+    /**
+     * Blackman-windowed sinc over the eight nearest frames. Cleanest for
+     * moderate shifts; the cutoff doesn't follow the rate, so samples pitched
+     * up by more than an octave still alias somewhat.
+     */
+    SINC;
+
+    static final int SINC_TAPS = 8;
+    static final int SINC_PHASES = 512;
+    // SINC_TAPS weights per fractional phase; tap t weighs frame + t - (SINC_TAPS / 2 - 1)
+    static final float[] SINC_KERNEL = sincKernel();
+
+    private static float[] sincKernel() {
+        float[] kernel = new float[(SINC_PHASES + 1) * SINC_TAPS];
+        int half = SINC_TAPS / 2;
+        for (int phase = 0; phase <= SINC_PHASES; phase++) {
+            double frac = phase / (double) SINC_PHASES;
+            double sum = 0;
+            for (int t = 0; t < SINC_TAPS; t++) {
+                double x = t - (half - 1) - frac;
+                double sinc = x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+                // Blackman window spanning -half..half
+                double w = 0.5 + 0.5 * x / half;
+                double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * w) + 0.08 * Math.cos(4 * Math.PI * w);
+                kernel[phase * SINC_TAPS + t] = (float) (sinc * window);
+                sum += sinc * window;
+            }
+            // Unity gain at every phase, so a constant signal stays constant
+            for (int t = 0; t < SINC_TAPS; t++) {
+                kernel[phase * SINC_TAPS + t] /= (float) sum;
+            }
+        }
+        return kernel;
+    }
+}
@@ -0,0 +1,251 @@
+package com.angrysurfer.core.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PCM frames read in place from a file mapping, converted to float as they
+ * are read. The file is mapped in segments of 2^18 frames, so no single
+ * mapping nears the 2 GB limit. Eager frames map and load every segment up
+ * front and close the file; lazy (streamed) frames keep the file open, map the
+ * first segment up front and the rest as they are wanted, keeping at most
+ * {@link #MAX_RESIDENT} more mapped and dropping the oldest for the GC to
+ * unmap.
+ * <p>
+ * The audio thread reads lazy frames with {@link #getResident(int, int)},
+ * which never maps: the {@link SegmentPrefetcher} maps and touches the
+ * segments the engine asks for with {@link #readAhead(int)}, and a segment
+ * still missing when it is read plays as silence and counts a miss.
+ */
+final class MappedFrames {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedFrames.class);
+
+    static final int SEGMENT_SHIFT = 18;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+    static final int MAX_RESIDENT = 16;
+
+    private static final int U8 = 0, S8 = 1, S16 = 2, S24 = 3, S32 = 4, F32 = 5, F64 = 6;
+
+    private final FileChannel channel;
+    private final long dataOffset;
+    private final long dataLength;
+    private final int frameSize;
+    private final int stride;
+    private final int kind;
+    private final ByteOrder order;
+    private final boolean lazy;
+    private final AtomicReferenceArray<ByteBuffer> segments;
+    // 1 for a segment the audio thread wants mapped
+    private final AtomicIntegerArray wanted;
+    private final AtomicLong misses = new AtomicLong();
+
+    // Mapped segment indexes in mapping order, for eviction when lazy
+    private final int[] resident;
+    private int residentHead;
+    private int residentCount;
+
+    MappedFrames(FileChannel channel, PcmFileHeader header, boolean lazy) throws IOException {
+        AudioFormat format = header.format;
+        this.channel = channel;
+        this.dataOffset = header.dataOffset;
+        this.dataLength = header.dataLength;
+        this.frameSize = format.getFrameSize();
+        this.stride = frameSize / format.getChannels();
+        this.order = format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        this.kind = kindOf(format);
+        this.lazy = lazy;
+
+        long frames = dataLength / frameSize;
+        this.segments = new AtomicReferenceArray<>((int) ((frames + SEGMENT_MASK) >>> SEGMENT_SHIFT));
+        this.wanted = new AtomicIntegerArray(lazy ? segments.length() : 0);
+        this.resident = new int[lazy ? MAX_RESIDENT : 0];
+        // Loaded here, off the audio thread, so it never takes their page faults. The
+        // first segment of a stream stays mapped for voices starting at the top.
+        for (int i = 0; i < (lazy ? Math.min(1, segments.length()) : segments.length()); i++) {
+            segments.set(i, map(i).load());
+        }
+        if (lazy) {
+            SegmentPrefetcher.register(this);
+        }
+    }
+
+    private static int kindOf(AudioFormat format) {
+        int bits = format.getSampleSizeInBits();
+        if (AudioFormat.Encoding.PCM_FLOAT.equals(format.getEncoding())) {
+            return bits == 64 ? F64 : F32;
+        }
+        switch (bits) {
+            case 8:
+                return AudioFormat.Encoding.PCM_UNSIGNED.equals(format.getEncoding()) ? U8 : S8;
+            case 16:
+                return S16;
+            case 24:
+                return S24;
+            default:
+                return S32;
+        }
+    }
+
+    int frames() {
+        return (int) (dataLength / frameSize);
+    }
+
+    /**
+     * Any thread but the audio thread: maps the segment if it must
+     */
+    float get(int frame, int channel) {
+        ByteBuffer segment = segments.get(frame >>> SEGMENT_SHIFT);
+        if (segment == null) {
+            segment = load(frame >>> SEGMENT_SHIFT);
+        }
+        return read(segment, frame, channel);
+    }
+
+    /**
+     * The audio thread's read: silence for a segment not mapped yet, which is
+     * counted and handed to the prefetcher
+     */
+    float getResident(int frame, int channel) {
+        ByteBuffer segment = segments.get(frame >>> SEGMENT_SHIFT);
+        if (segment == null) {
+            misses.incrementAndGet();
+            want(frame >>> SEGMENT_SHIFT);
+            return 0f;
+        }
+        return read(segment, frame, channel);
+    }
+
+    /**
+     * Ask for the segment holding {@code frame} and the one after it to be
+     * mapped; allocates nothing and never blocks
+     */
+    void readAhead(int frame) {
+        int index = frame >>> SEGMENT_SHIFT;
+        want(index);
+        if (index + 1 < segments.length()) {
+            want(index + 1);
+        }
+    }
+
+    private void want(int index) {
+        if (lazy && segments.get(index) == null && wanted.compareAndSet(index, 0, 1)) {
+            SegmentPrefetcher.wake();
+        }
+    }
+
+    // Map what the audio thread asked for; the prefetcher's work
+    void loadWanted() {
+        for (int i = 0; i < wanted.length(); i++) {
+            if (wanted.get(i) == 1) {
+                load(i);
+                wanted.set(i, 0);
+            }
+        }
+    }
+
+    private float read(ByteBuffer segment, int frame, int channel) {
+        int pos = (frame & SEGMENT_MASK) * frameSize + channel * stride;
+        switch (kind) {
+            case S16:
+                return segment.getShort(pos) * (1f / 32768f);
+            case S24: {
+                int value = order == ByteOrder.LITTLE_ENDIAN
+                        ? (segment.get(pos + 2) << 16) | ((segment.get(pos + 1) & 0xFF) << 8) | (segment.get(pos) & 0xFF)
+                        : (segment.get(pos) << 16) | ((segment.get(pos + 1) & 0xFF) << 8) | (segment.get(pos + 2) & 0xFF);
+                return value * (1f / 8388608f);
+            }
+            case S32:
+                return segment.getInt(pos) * (1f / 2147483648f);
+            case F32:
+                return segment.getFloat(pos);
+            case F64:
+                return (float) segment.getDouble(pos);
+            case U8:
+                return ((segment.get(pos) & 0xFF) - 128) * (1f / 128f);
+            default:
+                return segment.get(pos) * (1f / 128f);
+        }
+    }
+
+    // Map and touch a segment, dropping the oldest if too many are mapped
+    private synchronized ByteBuffer load(int index) {
+        ByteBuffer segment = segments.get(index);
+        if (segment != null) {
+            return segment;
+        }
+        if (residentCount == resident.length) {
+            segments.set(resident[residentHead], null);
+            residentHead = (residentHead + 1) % resident.length;
+            residentCount--;
+        }
+        try {
+            segment = map(index).load();
+        } catch (IOException | RuntimeException | InternalError e) {
+            // Read as silence rather than fail the reader. Touching a mapping of a file
+            // cut short since raises an InternalError.
+            logger.error("Error mapping sample frames: {}", e.toString());
+            segment = ByteBuffer.allocate(segmentLength(index)).order(order);
+        }
+        segments.set(index, segment);
+        resident[(residentHead + residentCount) % resident.length] = index;
+        residentCount++;
+        return segment;
+    }
+
+    private MappedByteBuffer map(int index) throws IOException {
+        long start = ((long) index << SEGMENT_SHIFT) * frameSize;
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + start,
+                segmentLength(index));
+        segment.order(order);
+        return segment;
+    }
+
+    private int segmentLength(int index) {
+        long start = ((long) index << SEGMENT_SHIFT) * frameSize;
+        return (int) Math.min((long) frameSize << SEGMENT_SHIFT, dataLength - start);
+    }
+
+    boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Reads by the audio thread that found their segment unmapped
+     */
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * File bytes currently mapped
+     */
+    long getMappedBytes() {
+        long bytes = 0;
+        for (int i = 0; i < segments.length(); i++) {
+            ByteBuffer segment = segments.get(i);
+            bytes += segment != null ? segment.capacity() : 0;
+        }
+        return bytes;
+    }
+
+    void close() {
+        SegmentPrefetcher.unregister(this);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Error closing sample file: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.angrysurfer.core.audio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Where the PCM frames of a WAV or AIFF file sit, read from the file's
+ * chunks so the frames can be mapped in place. Only uncompressed integer and
+ * float PCM is described; anything else (u-law, ADPCM, compressed AIFC, an
+ * unknown container) reads as null and is decoded through Java Sound instead.
+ */
+final class PcmFileHeader {
+
+    final AudioFormat format;
+    final long dataOffset;
+    final long dataLength;
+
+    private PcmFileHeader(AudioFormat format, long dataOffset, long dataLength) {
+        this.format = format;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength - dataLength % format.getFrameSize();
+    }
+
+    static PcmFileHeader read(FileChannel channel) throws IOException {
+        if (channel.size() < 12) {
+            return null;
+        }
+        ByteBuffer head = read(channel, 0, 12, ByteOrder.BIG_ENDIAN);
+        String container = fourCC(head, 0);
+        String type = fourCC(head, 8);
+        if ("RIFF".equals(container) && "WAVE".equals(type)) {
+            return readWave(channel);
+        }
+        if ("FORM".equals(container) && ("AIFF".equals(type) || "AIFC".equals(type))) {
+            return readAiff(channel, "AIFC".equals(type));
+        }
+        return null;
+    }
+
+    private static PcmFileHeader readWave(FileChannel channel) throws IOException {
+        long size = channel.size();
+        AudioFormat format = null;
+        for (long pos = 12; pos + 8 <= size; ) {
+            ByteBuffer chunk = read(channel, pos, 8, ByteOrder.LITTLE_ENDIAN);
+            String id = fourCC(chunk, 0);
+            long length = chunk.getInt(4) & 0xFFFFFFFFL;
+
+            if ("fmt ".equals(id)) {
+                ByteBuffer fmt = read(channel, pos + 8, (int) Math.min(length, 40), ByteOrder.LITTLE_ENDIAN);
+                int tag = fmt.getShort(0) & 0xFFFF;
+                int channels = fmt.getShort(2);
+                int rate = fmt.getInt(4);
+                int blockAlign = fmt.getShort(12);
+                int bits = fmt.getShort(14);
+                // WAVE_FORMAT_EXTENSIBLE carries the real tag at the start of its sub-format GUID
+                if (tag == 0xFFFE && length >= 26) {
+                    tag = fmt.getShort(24) & 0xFFFF;
+                }
+                if (channels <= 0 || bits <= 0 || blockAlign < channels * ((bits + 7) / 8)) {
+                    return null;
+                }
+                AudioFormat.Encoding encoding;
+                if (tag == 1) {
+                    encoding = bits <= 8 ? AudioFormat.Encoding.PCM_UNSIGNED : AudioFormat.Encoding.PCM_SIGNED;
+                } else if (tag == 3) {
+                    encoding = AudioFormat.Encoding.PCM_FLOAT;
+                } else {
+                    return null;
+                }
+                // Bits are left-justified in whole bytes, so decode the container width
+                format = new AudioFormat(encoding, rate, ((bits + 7) / 8) * 8, channels, blockAlign, rate, false);
+            } else if ("data".equals(id) && format != null) {
+                long available = size - (pos + 8);
+                // Streamed writers leave the length unset, so trust the file's size over it
+                long dataLength = length == 0 || length > available ? available : length;
+                return supported(format) ? new PcmFileHeader(format, pos + 8, dataLength) : null;
+            }
+            pos += 8 + length + (length & 1);
+        }
+        return null;
+    }
+
+    private static PcmFileHeader readAiff(FileChannel channel, boolean compressed) throws IOException {
+        long size = channel.size();
+        AudioFormat format = null;
+        long frames = 0;
+        for (long pos = 12; pos + 8 <= size; ) {
+            ByteBuffer chunk = read(channel, pos, 8, ByteOrder.BIG_ENDIAN);
+            String id = fourCC(chunk, 0);
+            long length = chunk.getInt(4) & 0xFFFFFFFFL;
+
+            if ("COMM".equals(id)) {
+                ByteBuffer comm = read(channel, pos + 8, (int) Math.min(length, 22), ByteOrder.BIG_ENDIAN);
+                int channels = comm.getShort(0);
+                frames = comm.getInt(2) & 0xFFFFFFFFL;
+                int bits = comm.getShort(6);
+                float rate = (float) extended(comm, 8);
+                boolean bigEndian = true;
+                AudioFormat.Encoding encoding = AudioFormat.Encoding.PCM_SIGNED;
+                if (compressed && length >= 22) {
+                    String compression = fourCC(comm, 18);
+                    if ("sowt".equals(compression)) {
+                        bigEndian = false;
+                    } else if ("fl32".equalsIgnoreCase(compression) || "fl64".equalsIgnoreCase(compression)) {
+                        encoding = AudioFormat.Encoding.PCM_FLOAT;
+                    } else if (!"NONE".equals(compression)) {
+                        return null;
+                    }
+                }
+                if (channels <= 0 || bits <= 0) {
+                    return null;
+                }
+                int width = ((bits + 7) / 8) * 8;
+                format = new AudioFormat(encoding, rate, width, channels, channels * width / 8, rate, bigEndian);
+            } else if ("SSND".equals(id) && format != null) {
+                ByteBuffer ssnd = read(channel, pos + 8, 8, ByteOrder.BIG_ENDIAN);
+                long offset = ssnd.getInt(0) & 0xFFFFFFFFL;
+                long start = pos + 16 + offset;
+                long dataLength = Math.min(frames * format.getFrameSize(),
+                        Math.min(length - 8 - offset, size - start));
+                return supported(format) ? new PcmFileHeader(format, start, dataLength) : null;
+            }
+            pos += 8 + length + (length & 1);
+        }
+        return null;
+    }
+
+    private static boolean supported(AudioFormat format) {
+        return PcmSample.isDirectlyDecodable(format);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length, ByteOrder order)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(order);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated audio file header");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static String fourCC(ByteBuffer buffer, int offset) {
+        byte[] id = new byte[4];
+        buffer.get(offset, id);
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+
+    // 80-bit IEEE extended, the AIFF sample rate
+    private static double extended(ByteBuffer buffer, int offset) {
+        int exponent = buffer.getShort(offset) & 0x7FFF;
+        long mantissa = buffer.getLong(offset + 2);
+        // The mantissa is unsigned with an explicit leading bit
+        double value = (mantissa >>> 1) * 2.0 + (mantissa & 1);
+        return value * Math.pow(2, exponent - 16383 - 63);
+    }
+}
@@ -0,0 +1,256 @@
+package com.angrysurfer.core.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * A sample's frames as float PCM in -1..1. Frames are either decoded once to
+ * an interleaved heap array or, for WAV and AIFF files opened through
+ * {@link SampleStore}, read in place from a file mapping. Neither is written
+ * after loading, so one instance is shared by every voice playing it and by
+ * the waveform view, on any thread.
+ */
+public final class PcmSample {
+
+    /**
+     * Where the frames live
+     */
+    public enum Storage {
+        // Decoded into a float array
+        HEAP,
+        // The whole file mapped
+        MAPPED,
+        // A window of the file mapped as it is read
+        STREAMED
+    }
+
+    private final float[] data;
+    private final MappedFrames mapped;
+    private final int channels;
+    private final int frames;
+    private final float sampleRate;
+    private final AudioFormat format;
+    private final File file;
+
+    public PcmSample(float[] data, int channels, float sampleRate) {
+        this(data, channels, sampleRate, null, null);
+    }
+
+    private PcmSample(float[] data, int channels, float sampleRate, AudioFormat format, File file) {
+        this.data = data;
+        this.mapped = null;
+        this.channels = channels;
+        this.frames = data.length / channels;
+        this.sampleRate = sampleRate;
+        this.format = format;
+        this.file = file;
+    }
+
+    PcmSample(MappedFrames mapped, AudioFormat format, File file) {
+        this.data = null;
+        this.mapped = mapped;
+        this.channels = format.getChannels();
+        this.frames = mapped.frames();
+        this.sampleRate = format.getSampleRate();
+        this.format = format;
+        this.file = file;
+    }
+
+    /**
+     * Decode a whole file into the heap; {@link SampleStore#open(File)} maps
+     * WAV and AIFF files instead
+     */
+    public static PcmSample load(File file) throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+            PcmSample sample = decode(in);
+            return new PcmSample(sample.data, sample.channels, sample.sampleRate, in.getFormat(), file);
+        }
+    }
+
+    /**
+     * Decode raw sample bytes in {@code format}, e.g. as held by {@code Sample}
+     */
+    public static PcmSample decode(byte[] bytes, AudioFormat format) throws IOException {
+        return decode(bytes, 0, bytes.length, format);
+    }
+
+    public static PcmSample decode(byte[] bytes, int offset, int length, AudioFormat format) throws IOException {
+        if (isDirectlyDecodable(format)) {
+            int frameSize = format.getFrameSize();
+            int frames = length / frameSize;
+            float[] data = new float[frames * format.getChannels()];
+            decodeInto(bytes, offset, frames, format, data);
+            return new PcmSample(data, format.getChannels(), format.getSampleRate(), format, null);
+        }
+        try (AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(bytes, offset, length), format,
+                length / Math.max(1, format.getFrameSize()))) {
+            return decode(in);
+        }
+    }
+
+    public static PcmSample decode(AudioInputStream in) throws IOException {
+        AudioFormat source = in.getFormat();
+        AudioFormat format = source;
+        if (!isDirectlyDecodable(format)) {
+            // u-law, a-law and the like: let Java Sound convert to 16-bit PCM first
+            AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, format.getSampleRate(), 16,
+                    format.getChannels(), format.getChannels() * 2, format.getSampleRate(), false);
+            in = AudioSystem.getAudioInputStream(pcm, in);
+            format = pcm;
+        }
+        byte[] bytes = readAll(in, in.getFrameLength() * format.getFrameSize());
+        int frames = bytes.length / format.getFrameSize();
+        float[] data = new float[frames * format.getChannels()];
+        decodeInto(bytes, 0, frames, format, data);
+        return new PcmSample(data, format.getChannels(), format.getSampleRate(), source, null);
+    }
+
+    private static byte[] readAll(InputStream in, long expected) throws IOException {
+        if (expected > 0 && expected <= Integer.MAX_VALUE) {
+            return in.readNBytes((int) expected);
+        }
+        return in.readAllBytes();
+    }
+
+    static boolean isDirectlyDecodable(AudioFormat format) {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        int bits = format.getSampleSizeInBits();
+        if (AudioFormat.Encoding.PCM_SIGNED.equals(encoding) || AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding)) {
+            return bits == 8 || bits == 16 || bits == 24 || bits == 32;
+        }
+        return AudioFormat.Encoding.PCM_FLOAT.equals(encoding) && (bits == 32 || bits == 64);
+    }
+
+    /**
+     * Convert {@code frames} frames of PCM bytes into floats in -1..1
+     */
+    static void decodeInto(byte[] bytes, int offset, int frames, AudioFormat format, float[] out) {
+        int bytesPerSample = format.getSampleSizeInBits() / 8;
+        int samples = frames * format.getChannels();
+        // Frames may be padded beyond the sample width
+        int stride = format.getFrameSize() / format.getChannels();
+        boolean bigEndian = format.isBigEndian();
+        boolean unsigned = AudioFormat.Encoding.PCM_UNSIGNED.equals(format.getEncoding());
+        boolean floating = AudioFormat.Encoding.PCM_FLOAT.equals(format.getEncoding());
+        float scale = 1f / (1L << (bytesPerSample * 8 - 1));
+
+        int p = offset;
+        for (int i = 0; i < samples; i++, p += stride) {
+            long bits = 0;
+            for (int b = 0; b < bytesPerSample; b++) {
+                int index = bigEndian ? p + b : p + bytesPerSample - 1 - b;
+                bits = (bits << 8) | (bytes[index] & 0xFF);
+            }
+            if (floating) {
+                out[i] = bytesPerSample == 4 ? Float.intBitsToFloat((int) bits) : (float) Double.longBitsToDouble(bits);
+                continue;
+            }
+            int shift = 64 - bytesPerSample * 8;
+            long value = unsigned ? bits - (1L << (bytesPerSample * 8 - 1)) : (bits << shift) >> shift;
+            out[i] = value * scale;
+        }
+    }
+
+    /**
+     * Sample value of one channel of one frame; the caller keeps both in range
+     */
+    public float get(int frame, int channel) {
+        return data != null ? data[frame * channels + channel] : mapped.get(frame, channel);
+    }
+
+    /**
+     * The audio thread's {@link #get(int, int)}: a streamed frame whose
+     * segment isn't mapped yet reads as silence rather than wait on the disk
+     */
+    float getResident(int frame, int channel) {
+        return data != null ? data[frame * channels + channel] : mapped.getResident(frame, channel);
+    }
+
+    /**
+     * Have a streamed sample map the frames from {@code frame} on in the
+     * background; nothing for the others
+     */
+    void readAhead(int frame) {
+        if (mapped != null && mapped.isLazy()) {
+            mapped.readAhead(frame);
+        }
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * The format the frames were read from, or null if they were built in
+     * memory
+     */
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * The file the frames came from, or null
+     */
+    public File getFile() {
+        return file;
+    }
+
+    public Storage getStorage() {
+        return mapped == null ? Storage.HEAP : mapped.isLazy() ? Storage.STREAMED : Storage.MAPPED;
+    }
+
+    /**
+     * Heap held by the frames: the decoded array, or nothing for a mapping
+     */
+    public long getHeapBytes() {
+        return data != null ? (long) data.length * Float.BYTES : 0;
+    }
+
+    /**
+     * File bytes mapped for the frames right now; a streamed sample maps a
+     * bounded window
+     */
+    public long getMappedBytes() {
+        return mapped != null ? mapped.getMappedBytes() : 0;
+    }
+
+    /**
+     * Reads of a streamed sample that found their frames not yet mapped and
+     * played silence
+     */
+    public long getStreamMisses() {
+        return mapped != null ? mapped.getMisses() : 0;
+    }
+
+    /**
+     * Release the file a streamed sample keeps open. Mappings are unmapped by
+     * the GC once nothing reads them.
+     */
+    void close() {
+        if (mapped != null && mapped.isLazy()) {
+            mapped.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d frames, %d ch, %.0f Hz, %s, heap %d KB, mapped %d KB, misses %d",
+                file != null ? file.getName() : "(memory)", frames, channels, sampleRate, getStorage(),
+                getHeapBytes() / 1024, getMappedBytes() / 1024, getStreamMisses());
+    }
+}
@@ -0,0 +1,204 @@
+package com.angrysurfer.core.audio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link PeakPyramid}s kept on disk, one cache file per sample file named by
+ * a hash of the file, so reopening a sample (or the same file under another
+ * name) skips the scan. Files live in {@code beatgen.peaks.dir}, by default
+ * ~/.beatgen/peaks, rather than beside the samples, which may be read-only.
+ * <p>
+ * The hash covers the file's length, its first 64 KB and 16 KB windows at 16
+ * points through it, rather than every byte, so it costs the same for any
+ * size of file. An edit that misses those bytes keeps the hash, so each cache
+ * file also records the size and modification time of the file it was built
+ * from, and one that no longer matches is rebuilt.
+ */
+public final class PeakCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PeakCache.class);
+
+    private static final int MAGIC = 0x4247504B; // "BGPK"
+    private static final int VERSION = 2;
+    private static final int HEAD_BYTES = 64 * 1024;
+    private static final int WINDOW_BYTES = 16 * 1024;
+    private static final int WINDOWS = 16;
+
+    private PeakCache() {
+    }
+
+    public static Path getDirectory() {
+        String dir = System.getProperty("beatgen.peaks.dir");
+        return dir != null ? Paths.get(dir) : Paths.get(System.getProperty("user.home"), ".beatgen", "peaks");
+    }
+
+    /**
+     * The sample's pyramid from the cache, or built on the
+     * {@link PeakPyramid#getExecutor() peak executor} and then cached.
+     * Samples without a file are always built.
+     */
+    public static CompletableFuture<PeakPyramid> load(PcmSample sample) {
+        File file = sample.getFile();
+        if (file == null) {
+            return PeakPyramid.build(sample);
+        }
+        // Stamped before the hash, so an edit made while building is caught next time
+        long length = file.length();
+        long modified = file.lastModified();
+        return CompletableFuture.supplyAsync(() -> cacheFile(file), PeakPyramid.getExecutor())
+                .thenCompose(cache -> {
+                    PeakPyramid cached = cache != null ? read(cache, sample.getFrames(), length, modified) : null;
+                    if (cached != null) {
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    return PeakPyramid.build(sample).thenApply(peaks -> {
+                        if (cache != null) {
+                            write(cache, peaks, length, modified);
+                        }
+                        return peaks;
+                    });
+                });
+    }
+
+    private static Path cacheFile(File file) {
+        try {
+            return getDirectory().resolve(hash(file) + ".peaks");
+        } catch (IOException e) {
+            logger.warn("Could not hash {} for the peak cache: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(0, size));
+            digest(channel, 0, HEAD_BYTES, digest);
+            for (int i = 1; i <= WINDOWS; i++) {
+                long position = Math.max(0, size * i / WINDOWS - WINDOW_BYTES);
+                digest(channel, position, WINDOW_BYTES, digest);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void digest(FileChannel channel, long position, int length, MessageDigest digest)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+            // Read until the window is full or the file ends
+        }
+        digest.update(buffer.flip());
+    }
+
+    /**
+     * The cached pyramid, or null if there is none for {@code frames} frames
+     * read from a file of this length and modification time
+     */
+    static PeakPyramid read(Path cache, int frames, long sourceLength, long sourceModified) {
+        if (!Files.isRegularFile(cache)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cache)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != PeakPyramid.BASE_BLOCK
+                    || in.readInt() != PeakPyramid.FACTOR || in.readInt() != frames
+                    || in.readLong() != sourceLength || in.readLong() != sourceModified) {
+                return null;
+            }
+            int levels = in.readInt();
+            float[][] min = new float[levels][];
+            float[][] max = new float[levels][];
+            float[][] rms = new float[levels][];
+            for (int level = 0; level < levels; level++) {
+                int blocks = in.readInt();
+                min[level] = readFloats(in, blocks);
+                max[level] = readFloats(in, blocks);
+                rms[level] = readFloats(in, blocks);
+            }
+            return new PeakPyramid(frames, min, max, rms);
+        } catch (IOException | RuntimeException e) {
+            // Torn or foreign file: rebuild and overwrite it
+            logger.warn("Ignoring peak cache {}: {}", cache, e.getMessage());
+            return null;
+        }
+    }
+
+    static void write(Path cache, PeakPyramid peaks, long sourceLength, long sourceModified) {
+        Path tmp = null;
+        try {
+            Files.createDirectories(cache.getParent());
+            // A temp file of its own, so two loads of one sample never write into the same file
+            tmp = Files.createTempFile(cache.getParent(), cache.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(PeakPyramid.BASE_BLOCK);
+                out.writeInt(PeakPyramid.FACTOR);
+                out.writeInt(peaks.getFrames());
+                out.writeLong(sourceLength);
+                out.writeLong(sourceModified);
+                out.writeInt(peaks.getLevels());
+                for (int level = 0; level < peaks.getLevels(); level++) {
+                    out.writeInt(peaks.getBlocks(level));
+                    writeFloats(out, peaks.mins(level));
+                    writeFloats(out, peaks.maxes(level));
+                    writeFloats(out, peaks.rmses(level));
+                }
+            }
+            Files.move(tmp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write peak cache {}: {}", cache, e.getMessage());
+            deleteQuietly(tmp);
+        }
+    }
+
+    private static void deleteQuietly(Path tmp) {
+        if (tmp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", tmp, e.getMessage());
+        }
+    }
+
+    private static float[] readFloats(DataInputStream in, int count) throws IOException {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readFloat();
+        }
+        return values;
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        for (float value : values) {
+            out.writeFloat(value);
+        }
+    }
+}
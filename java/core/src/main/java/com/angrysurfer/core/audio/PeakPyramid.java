@@ -0,0 +1,214 @@
+package com.angrysurfer.core.audio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Min, max and RMS of a sample's frames at several resolutions, for drawing
+ * its waveform at any zoom without scanning the frames. Level 0 summarizes
+ * blocks of {@link #BASE_BLOCK} frames and each level above summarizes
+ * {@link #FACTOR} blocks of the one below (256, 1024, 4096 ... frames), up to
+ * a level of a single block. Values are across all channels.
+ * <p>
+ * Level 0 is scanned in parallel chunks; the levels above are reduced from
+ * it. {@link PeakCache} keeps built pyramids on disk.
+ */
+public final class PeakPyramid {
+
+    public static final int BASE_BLOCK = 256;
+    public static final int FACTOR = 4;
+    // Level-0 blocks per scan task: 2^18 frames, one MappedFrames segment
+    private static final int CHUNK_BLOCKS = 1024;
+
+    private static ExecutorService executor;
+
+    private final int frames;
+    private final float[][] min;
+    private final float[][] max;
+    private final float[][] rms;
+
+    PeakPyramid(int frames, float[][] min, float[][] max, float[][] rms) {
+        this.frames = frames;
+        this.min = min;
+        this.max = max;
+        this.rms = rms;
+    }
+
+    /**
+     * Daemon pool the pyramids are built on, one thread per core
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread thread = new Thread(r, "Waveform-Peaks-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    public static CompletableFuture<PeakPyramid> build(PcmSample sample) {
+        return build(sample, getExecutor());
+    }
+
+    /**
+     * Scan the sample's frames in parallel chunks on {@code executor}
+     */
+    public static CompletableFuture<PeakPyramid> build(PcmSample sample, Executor executor) {
+        int frames = sample.getFrames();
+        int blocks = Math.max(1, (frames + BASE_BLOCK - 1) / BASE_BLOCK);
+        float[] min = new float[blocks];
+        float[] max = new float[blocks];
+        float[] rms = new float[blocks];
+
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int first = 0; first < blocks; first += CHUNK_BLOCKS) {
+            int from = first;
+            int to = Math.min(first + CHUNK_BLOCKS, blocks);
+            chunks.add(CompletableFuture.runAsync(() -> scan(sample, from, to, min, max, rms), executor));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> reduce(frames, min, max, rms));
+    }
+
+    // Level-0 blocks [from, to)
+    private static void scan(PcmSample sample, int from, int to, float[] min, float[] max, float[] rms) {
+        int channels = sample.getChannels();
+        for (int block = from; block < to; block++) {
+            int start = block * BASE_BLOCK;
+            int end = Math.min(start + BASE_BLOCK, sample.getFrames());
+            float lo = Float.MAX_VALUE;
+            float hi = -Float.MAX_VALUE;
+            double squares = 0;
+            for (int frame = start; frame < end; frame++) {
+                for (int ch = 0; ch < channels; ch++) {
+                    float value = sample.get(frame, ch);
+                    lo = Math.min(lo, value);
+                    hi = Math.max(hi, value);
+                    squares += value * value;
+                }
+            }
+            boolean empty = end <= start;
+            min[block] = empty ? 0f : lo;
+            max[block] = empty ? 0f : hi;
+            rms[block] = empty ? 0f : (float) Math.sqrt(squares / ((end - start) * channels));
+        }
+    }
+
+    private static PeakPyramid reduce(int frames, float[] min0, float[] max0, float[] rms0) {
+        List<float[]> min = new ArrayList<>(List.of(min0));
+        List<float[]> max = new ArrayList<>(List.of(max0));
+        List<float[]> rms = new ArrayList<>(List.of(rms0));
+        long blockSize = BASE_BLOCK;
+        while (min.get(min.size() - 1).length > 1) {
+            float[] lowerMin = min.get(min.size() - 1);
+            float[] lowerMax = max.get(max.size() - 1);
+            float[] lowerRms = rms.get(rms.size() - 1);
+            int count = (lowerMin.length + FACTOR - 1) / FACTOR;
+            float[] upperMin = new float[count];
+            float[] upperMax = new float[count];
+            float[] upperRms = new float[count];
+            for (int i = 0; i < count; i++) {
+                float lo = Float.MAX_VALUE;
+                float hi = -Float.MAX_VALUE;
+                double squares = 0;
+                long weight = 0;
+                for (int j = i * FACTOR; j < Math.min((i + 1) * FACTOR, lowerMin.length); j++) {
+                    lo = Math.min(lo, lowerMin[j]);
+                    hi = Math.max(hi, lowerMax[j]);
+                    // Weigh by frames so a short last block counts for what it holds
+                    long blockFrames = Math.max(0, Math.min(blockSize, frames - j * blockSize));
+                    squares += (double) lowerRms[j] * lowerRms[j] * blockFrames;
+                    weight += blockFrames;
+                }
+                upperMin[i] = lo;
+                upperMax[i] = hi;
+                upperRms[i] = weight > 0 ? (float) Math.sqrt(squares / weight) : 0f;
+            }
+            min.add(upperMin);
+            max.add(upperMax);
+            rms.add(upperRms);
+            blockSize *= FACTOR;
+        }
+        return new PeakPyramid(frames, min.toArray(new float[0][]), max.toArray(new float[0][]),
+                rms.toArray(new float[0][]));
+    }
+
+    /**
+     * The coarsest level whose blocks are no wider than
+     * {@code framesPerPixel}, or -1 if even level 0 is too coarse and the
+     * frames should be read directly
+     */
+    public int levelFor(double framesPerPixel) {
+        int level = -1;
+        long blockSize = BASE_BLOCK;
+        while (level + 1 < getLevels() && blockSize <= framesPerPixel) {
+            level++;
+            blockSize *= FACTOR;
+        }
+        return level;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public int getLevels() {
+        return min.length;
+    }
+
+    public long getBlockSize(int level) {
+        long size = BASE_BLOCK;
+        for (int i = 0; i < level; i++) {
+            size *= FACTOR;
+        }
+        return size;
+    }
+
+    public int getBlocks(int level) {
+        return min[level].length;
+    }
+
+    public float getMin(int level, int block) {
+        return min[level][block];
+    }
+
+    public float getMax(int level, int block) {
+        return max[level][block];
+    }
+
+    public float getRms(int level, int block) {
+        return rms[level][block];
+    }
+
+    float[] mins(int level) {
+        return min[level];
+    }
+
+    float[] maxes(int level) {
+        return max[level];
+    }
+
+    float[] rmses(int level) {
+        return rms[level];
+    }
+
+    /**
+     * Heap held by every level
+     */
+    public long getSizeInBytes() {
+        long values = 0;
+        for (float[] level : min) {
+            values += level.length;
+        }
+        return values * 3 * Float.BYTES;
+    }
+}
@@ -0,0 +1,517 @@
+package com.angrysurfer.core.audio;
+
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Real-time sample mixer: one {@link SourceDataLine}, a fixed pool of
+ * voices, and one audio thread that mixes every playing voice into a
+ * preallocated buffer each period. Starting a note claims a free voice (or
+ * steals one, fading it out on a spare tail voice) and sets its fields, so it
+ * allocates nothing and never opens a line.
+ * <p>
+ * Samples are {@link PcmSample}s, decoded once and shared by every voice.
+ * The mixer reads only frames already in memory: a streamed sample is mapped
+ * ahead of its voices by a background thread.
+ * Each voice has its own gain, playback rate, region and loop points, and
+ * plays the shared frames at a fractional rate through an
+ * {@link Interpolation} kernel rather than a resampled copy.
+ * <p>
+ * {@link #getInstance()} is the engine the app plays through; it opens the
+ * line when first asked for, which the app does at startup. Engines made
+ * with the constructor are never started and are driven with
+ * {@link #render(float[], int)}, e.g. to render offline or to measure the
+ * mix cost.
+ */
+public class SampleEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(SampleEngine.class);
+
+    public static final float DEFAULT_SAMPLE_RATE = 44100f;
+    public static final int DEFAULT_VOICES = 32;
+    // 256 frames is 5.8 ms at 44.1 kHz
+    public static final int DEFAULT_PERIOD_FRAMES = 256;
+    // Periods of audio queued in the line ahead of the one being mixed
+    private static final int LINE_PERIODS = 3;
+    // Spare voices that finish the release fade of stolen voices
+    private static final int TAIL_VOICES = 4;
+
+    // 2^(n/12) for n = -127..127, every interval between two MIDI notes
+    private static final double[] SEMITONE_RATIOS = new double[255];
+
+    static {
+        for (int i = 0; i < SEMITONE_RATIOS.length; i++) {
+            SEMITONE_RATIOS[i] = Math.pow(2.0, (i - 127) / 12.0);
+        }
+    }
+
+    private static SampleEngine instance;
+
+    private final float sampleRate;
+    private final int periodFrames;
+    private final SampleVoice[] voices;
+    private final SampleVoice[] tails;
+    private final float[] mix;
+    private final byte[] output;
+    private final boolean realtime;
+
+    private SourceDataLine line;
+    private Thread audioThread;
+    private volatile boolean running;
+    private boolean lineUnavailable;
+    private long order;
+    private Interpolation interpolation = Interpolation.LINEAR;
+
+    private long triggerCount;
+    private long stolenCount;
+    private long failedVoiceCount;
+    private Throwable lastVoiceFailure;
+    private long periodCount;
+    private long underrunCount;
+    private long lastMixNanos;
+    private long maxMixNanos;
+    private long lastTriggerNanos;
+    private long maxTriggerNanos;
+
+    public SampleEngine(float sampleRate, int voiceCount, int periodFrames) {
+        this(sampleRate, voiceCount, periodFrames, false);
+    }
+
+    private SampleEngine(float sampleRate, int voiceCount, int periodFrames, boolean realtime) {
+        this.sampleRate = sampleRate;
+        this.periodFrames = periodFrames;
+        this.realtime = realtime;
+        this.voices = new SampleVoice[voiceCount];
+        for (int i = 0; i < voiceCount; i++) {
+            voices[i] = new SampleVoice(i);
+        }
+        this.tails = new SampleVoice[TAIL_VOICES];
+        for (int i = 0; i < TAIL_VOICES; i++) {
+            tails[i] = new SampleVoice(voiceCount + i);
+        }
+        this.mix = new float[periodFrames * 2];
+        this.output = new byte[periodFrames * 4];
+    }
+
+    /**
+     * The engine the app plays through, opening its output line on the first
+     * call so no note has to
+     */
+    public static synchronized SampleEngine getInstance() {
+        if (instance == null) {
+            instance = new SampleEngine(DEFAULT_SAMPLE_RATE, DEFAULT_VOICES, DEFAULT_PERIOD_FRAMES, true);
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Open the output line and start the audio thread
+     *
+     * @return false if no line could be opened
+     */
+    public synchronized boolean start() {
+        if (running) {
+            return true;
+        }
+        if (lineUnavailable) {
+            return false;
+        }
+        AudioFormat format = new AudioFormat(sampleRate, 16, 2, true, false);
+        try {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, output.length * LINE_PERIODS);
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+            // Don't retry on every note
+            lineUnavailable = true;
+            logger.warn("No audio line for sample playback: {}", e.getMessage());
+            return false;
+        }
+        running = true;
+        audioThread = new Thread(this::run, "Sample-Engine");
+        audioThread.setDaemon(true);
+        audioThread.setPriority(Thread.MAX_PRIORITY);
+        audioThread.start();
+        logger.info("Sample engine started: {} Hz, {} voices, {} frame periods, {} ms output latency",
+                (int) sampleRate, voices.length, periodFrames, String.format("%.1f", getOutputLatencyMillis()));
+        return true;
+    }
+
+    public void shutdown() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = audioThread;
+            audioThread = null;
+        }
+        if (thread != null) {
+            try {
+                thread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            stopAll();
+            if (line != null) {
+                line.stop();
+                line.close();
+                line = null;
+            }
+        }
+    }
+
+    /**
+     * Play a whole sample once at its own pitch
+     */
+    public long play(PcmSample sample, float gain, long tag) {
+        return play(sample, gain, 1.0, 0, sample.getFrames(), false, 0, 0, 0, tag);
+    }
+
+    /**
+     * Playback rate that sounds {@code note} from a sample recorded at
+     * {@code referenceNote}
+     */
+    public static double noteRatio(int note, int referenceNote) {
+        int semitones = note - referenceNote;
+        if (semitones < -127 || semitones > 127) {
+            return Math.pow(2.0, semitones / 12.0);
+        }
+        return SEMITONE_RATIOS[semitones + 127];
+    }
+
+    /**
+     * Start a voice with the engine's default {@link #getInterpolation()}
+     */
+    public long play(PcmSample sample, float gain, double rate, int startFrame, int endFrame,
+                     boolean loop, int loopStart, int loopEnd, int durationMillis, long tag) {
+        return play(sample, gain, rate, startFrame, endFrame, loop, loopStart, loopEnd, durationMillis, tag,
+                null);
+    }
+
+    /**
+     * Start a voice. Frames are sample frames; the loop, if enabled, repeats
+     * [loopStart, loopEnd) once the voice reaches loopEnd until it is
+     * released.
+     *
+     * @param gain           linear gain, 1 for the sample's own level
+     * @param rate           playback speed; 2 plays an octave up
+     * @param durationMillis release the voice after this long, 0 to play to
+     *                       the end (or until stopped, if looping)
+     * @param tag            caller's id for the voice, e.g. a player id, for
+     *                       {@link #stopTag(long)}
+     * @param interpolation  kernel for reading between frames, null for the
+     *                       engine's default
+     * @return a handle for {@link #stop(long)}, or -1 if the engine has no
+     * output line running
+     */
+    public synchronized long play(PcmSample sample, float gain, double rate, int startFrame, int endFrame,
+                                  boolean loop, int loopStart, int loopEnd, int durationMillis, long tag,
+                                  Interpolation interpolation) {
+        // Opening a line takes milliseconds, so never on the caller's (clock) thread
+        if (realtime && !running) {
+            return -1;
+        }
+        int frames = sample.getFrames();
+        int end = Math.min(endFrame <= 0 ? frames : endFrame, frames);
+        int start = Math.max(0, Math.min(startFrame, end));
+        if (start >= end || rate <= 0) {
+            return -1;
+        }
+        boolean looping = loop && loopStart >= start && loopEnd <= end && loopStart < loopEnd;
+
+        SampleVoice voice = claimVoice();
+        voice.sample = sample;
+        voice.tag = tag;
+        voice.order = order++;
+        voice.position = start;
+        voice.increment = rate * sample.getSampleRate() / sampleRate;
+        voice.end = end;
+        voice.looping = looping;
+        voice.loopStart = loopStart;
+        voice.loopEnd = loopEnd;
+        voice.wrapped = false;
+        voice.interpolation = interpolation != null ? interpolation : this.interpolation;
+        voice.gain = gain;
+        voice.releaseRemaining = 0;
+        voice.framesUntilRelease = durationMillis > 0 ? (long) (durationMillis * sampleRate / 1000) : 0;
+        voice.triggerNanos = System.nanoTime();
+        voice.rendered = false;
+        // A streamed sample maps its frames on the prefetch thread, never the audio thread
+        voice.readAhead();
+        triggerCount++;
+        return ((long) voice.generation << 16) | voice.index;
+    }
+
+    // A free voice, else the quietest one already releasing, else the oldest
+    private SampleVoice claimVoice() {
+        SampleVoice oldest = null;
+        SampleVoice quietest = null;
+        for (SampleVoice voice : voices) {
+            if (!voice.isActive()) {
+                return voice;
+            }
+            if (voice.isReleasing() && (quietest == null || voice.level() < quietest.level())) {
+                quietest = voice;
+            }
+            if (oldest == null || voice.order < oldest.order) {
+                oldest = voice;
+            }
+        }
+        SampleVoice stolen = quietest != null ? quietest : oldest;
+        stolenCount++;
+        fadeOut(stolen);
+        stolen.free();
+        return stolen;
+    }
+
+    // Hand a stolen voice's sound to a tail voice to finish its release fade
+    private void fadeOut(SampleVoice stolen) {
+        SampleVoice tail = null;
+        for (SampleVoice candidate : tails) {
+            if (!candidate.isActive()) {
+                tail = candidate;
+                break;
+            }
+            if (tail == null || candidate.level() < tail.level()) {
+                tail = candidate;
+            }
+        }
+        tail.takeOver(stolen);
+        tail.release();
+    }
+
+    /**
+     * Release a voice started by {@link #play}; does nothing if it has already
+     * finished
+     */
+    public synchronized void stop(long handle) {
+        SampleVoice voice = voiceFor(handle);
+        if (voice != null) {
+            voice.release();
+        }
+    }
+
+    /**
+     * Sample frame a voice started by {@link #play} is reading, e.g. for a
+     * playhead, or -1 once it has finished
+     */
+    public synchronized int getPosition(long handle) {
+        SampleVoice voice = voiceFor(handle);
+        return voice != null && voice.isActive() ? (int) voice.position : -1;
+    }
+
+    // The voice a handle was issued for, or null if the handle is stale or not one of ours
+    private SampleVoice voiceFor(long handle) {
+        int index = (int) (handle & 0xFFFF);
+        if (handle < 0 || index >= voices.length) {
+            return null;
+        }
+        SampleVoice voice = voices[index];
+        return voice.generation == (int) (handle >>> 16) ? voice : null;
+    }
+
+    /**
+     * Release every voice started with this tag
+     */
+    public synchronized void stopTag(long tag) {
+        for (SampleVoice voice : voices) {
+            if (voice.isActive() && voice.tag == tag) {
+                voice.release();
+            }
+        }
+    }
+
+    public synchronized void stopAll() {
+        for (SampleVoice voice : voices) {
+            voice.release();
+        }
+        for (SampleVoice tail : tails) {
+            tail.release();
+        }
+    }
+
+    /**
+     * Mix the next {@code frames} frames of every playing voice into
+     * {@code out} as interleaved stereo, replacing what was there
+     */
+    public synchronized void render(float[] out, int frames) {
+        Arrays.fill(out, 0, frames * 2, 0f);
+        long now = System.nanoTime();
+        for (SampleVoice voice : voices) {
+            if (!voice.isActive()) {
+                continue;
+            }
+            if (!voice.rendered) {
+                voice.rendered = true;
+                lastTriggerNanos = now - voice.triggerNanos;
+                maxTriggerNanos = Math.max(maxTriggerNanos, lastTriggerNanos);
+            }
+            renderVoice(voice, out, frames);
+            if (voice.isActive()) {
+                voice.readAhead();
+            }
+        }
+        for (SampleVoice tail : tails) {
+            if (tail.isActive()) {
+                renderVoice(tail, out, frames);
+            }
+        }
+    }
+
+    // A voice whose frames can't be read, e.g. from a mapped file truncated
+    // under it, is dropped rather than take the audio thread down with it
+    private void renderVoice(SampleVoice voice, float[] out, int frames) {
+        try {
+            voice.render(out, frames);
+        } catch (RuntimeException | InternalError e) {
+            // Logged by the audio thread once the mix is done and the lock released
+            failedVoiceCount++;
+            lastVoiceFailure = e;
+            voice.free();
+        }
+    }
+
+    private void run() {
+        SourceDataLine out;
+        synchronized (this) {
+            out = line;
+        }
+        while (running) {
+            long start = System.nanoTime();
+            render(mix, periodFrames);
+            toPcm16(mix, output, periodFrames * 2);
+            long elapsed = System.nanoTime() - start;
+
+            Throwable failure;
+            long failed;
+            synchronized (this) {
+                failure = lastVoiceFailure;
+                lastVoiceFailure = null;
+                failed = failedVoiceCount;
+                lastMixNanos = elapsed;
+                maxMixNanos = Math.max(maxMixNanos, elapsed);
+                // Everything queued has played: the line ran dry before this period arrived
+                if (periodCount > LINE_PERIODS && out.available() >= out.getBufferSize()) {
+                    underrunCount++;
+                }
+                periodCount++;
+            }
+            if (failure != null) {
+                logger.error("Dropped a sample voice whose frames could not be read ({} so far): {}", failed,
+                        failure.toString());
+            }
+            // Blocks until the line has room, which paces the loop
+            out.write(output, 0, output.length);
+        }
+    }
+
+    static void toPcm16(float[] in, byte[] out, int samples) {
+        for (int i = 0; i < samples; i++) {
+            float v = in[i];
+            int s = v >= 1f ? Short.MAX_VALUE : v <= -1f ? Short.MIN_VALUE : (int) (v * Short.MAX_VALUE);
+            out[2 * i] = (byte) s;
+            out[2 * i + 1] = (byte) (s >> 8);
+        }
+    }
+
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getPeriodFrames() {
+        return periodFrames;
+    }
+
+    public int getVoiceCount() {
+        return voices.length;
+    }
+
+    public synchronized Interpolation getInterpolation() {
+        return interpolation;
+    }
+
+    /**
+     * Kernel for voices started without one; playing voices keep theirs
+     */
+    public synchronized void setInterpolation(Interpolation interpolation) {
+        this.interpolation = interpolation;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public synchronized int getActiveVoices() {
+        int active = 0;
+        for (SampleVoice voice : voices) {
+            active += voice.isActive() ? 1 : 0;
+        }
+        return active;
+    }
+
+    /**
+     * Audio queued between the mixer and the speaker: the line's buffer plus
+     * the period being mixed
+     */
+    public synchronized double getOutputLatencyMillis() {
+        int queuedFrames = line != null ? line.getBufferSize() / 4 : periodFrames * LINE_PERIODS;
+        return (queuedFrames + periodFrames) * 1000.0 / sampleRate;
+    }
+
+    /**
+     * Time from the last note's trigger to the mixer first rendering it; add
+     * {@link #getOutputLatencyMillis()} for trigger to sound
+     */
+    public synchronized double getLastTriggerMillis() {
+        return lastTriggerNanos / 1e6;
+    }
+
+    public synchronized double getMaxTriggerMillis() {
+        return maxTriggerNanos / 1e6;
+    }
+
+    public synchronized double getLastMixMillis() {
+        return lastMixNanos / 1e6;
+    }
+
+    public synchronized double getMaxMixMillis() {
+        return maxMixNanos / 1e6;
+    }
+
+    public synchronized long getTriggerCount() {
+        return triggerCount;
+    }
+
+    public synchronized long getStolenCount() {
+        return stolenCount;
+    }
+
+    /**
+     * Voices dropped because their frames could not be read
+     */
+    public synchronized long getFailedVoiceCount() {
+        return failedVoiceCount;
+    }
+
+    public synchronized long getUnderrunCount() {
+        return underrunCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("voices=%d/%d triggers=%d stolen=%d failed=%d underruns=%d mix last=%.3fms "
+                        + "max=%.3fms trigger last=%.2fms max=%.2fms output=%.1fms",
+                getActiveVoices(), voices.length, triggerCount, stolenCount, failedVoiceCount, underrunCount,
+                lastMixNanos / 1e6, maxMixNanos / 1e6, lastTriggerNanos / 1e6, maxTriggerNanos / 1e6,
+                getOutputLatencyMillis());
+    }
+}
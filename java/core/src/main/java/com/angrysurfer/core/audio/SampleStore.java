@@ -0,0 +1,144 @@
+package com.angrysurfer.core.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One {@link PcmSample} per sample file, shared by the Sample model, the
+ * playback engine and the waveform view so a file is loaded once however
+ * many places use it.
+ * <p>
+ * WAV and AIFF PCM is memory-mapped and read in place, so it costs no heap.
+ * Files larger than {@code beatgen.sample.streamThreshold} bytes (256 MB by
+ * default) are streamed: only a window of the file is mapped at a time.
+ * Other formats are decoded into the heap.
+ */
+public class SampleStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SampleStore.class);
+
+    public static final long DEFAULT_STREAM_THRESHOLD = 256L << 20;
+
+    private static SampleStore instance;
+
+    private final Map<String, Entry> samples = new ConcurrentHashMap<>();
+    private final long streamThreshold;
+
+    /**
+     * A store of its own, apart from {@link #getInstance()}, e.g. to try
+     * another threshold
+     */
+    public SampleStore(long streamThreshold) {
+        this.streamThreshold = streamThreshold;
+    }
+
+    public static synchronized SampleStore getInstance() {
+        if (instance == null) {
+            instance = new SampleStore(Long.getLong("beatgen.sample.streamThreshold", DEFAULT_STREAM_THRESHOLD));
+        }
+        return instance;
+    }
+
+    /**
+     * The frames of a file, loaded on first use and again if the file has
+     * changed since
+     */
+    public PcmSample open(File file) throws IOException, UnsupportedAudioFileException {
+        String key = file.getCanonicalPath();
+        Entry entry = samples.get(key);
+        if (entry != null && entry.isCurrent(file)) {
+            return entry.sample;
+        }
+        synchronized (this) {
+            entry = samples.get(key);
+            if (entry != null && entry.isCurrent(file)) {
+                return entry.sample;
+            }
+            // A replaced sample stays readable for voices still playing it. A streamed one's
+            // file is closed, though, and the segments it has yet to map play as silence.
+            PcmSample sample = load(file);
+            samples.put(key, new Entry(sample, file.length(), file.lastModified()));
+            if (entry != null) {
+                entry.sample.close();
+            }
+            logger.info("Loaded sample {}", sample);
+            return sample;
+        }
+    }
+
+    private PcmSample load(File file) throws IOException, UnsupportedAudioFileException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            PcmFileHeader header = PcmFileHeader.read(channel);
+            if (header != null) {
+                boolean stream = header.dataLength > streamThreshold;
+                PcmSample sample = new PcmSample(new MappedFrames(channel, header, stream), header.format, file);
+                if (!stream) {
+                    // Mappings outlive the channel
+                    channel.close();
+                }
+                return sample;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        channel.close();
+        return PcmSample.load(file);
+    }
+
+    /**
+     * Forget a file, closing it if it was streamed
+     */
+    public void evict(File file) throws IOException {
+        Entry entry = samples.remove(file.getCanonicalPath());
+        if (entry != null) {
+            entry.sample.close();
+        }
+    }
+
+    public List<PcmSample> getLoaded() {
+        List<PcmSample> loaded = new ArrayList<>();
+        samples.values().forEach(entry -> loaded.add(entry.sample));
+        return loaded;
+    }
+
+    public long getHeapBytes() {
+        return samples.values().stream().mapToLong(entry -> entry.sample.getHeapBytes()).sum();
+    }
+
+    public long getMappedBytes() {
+        return samples.values().stream().mapToLong(entry -> entry.sample.getMappedBytes()).sum();
+    }
+
+    public long getStreamThreshold() {
+        return streamThreshold;
+    }
+
+    private static final class Entry {
+        final PcmSample sample;
+        final long length;
+        final long lastModified;
+
+        Entry(PcmSample sample, long length, long lastModified) {
+            this.sample = sample;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        boolean isCurrent(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+}
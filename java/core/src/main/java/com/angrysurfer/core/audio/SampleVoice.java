@@ -0,0 +1,187 @@
+package com.angrysurfer.core.audio;
+
+/**
+ * One playing sample in the {@link SampleEngine} pool. Voices are allocated
+ * with the engine and reused; all their state is owned by the engine's lock.
+ */
+final class SampleVoice {
+
+    // Linear fade applied on release, so stopping a voice mid-waveform doesn't click
+    static final int RELEASE_FRAMES = 64;
+
+    final int index;
+    int generation;
+
+    PcmSample sample;
+    long tag;
+    long order;
+
+    // Read position in sample frames, and how far it moves per output frame
+    double position;
+    double increment;
+    int end;
+    boolean looping;
+    int loopStart;
+    int loopEnd;
+    // Set once the voice has jumped back to the loop start, from when the
+    // frames before loopStart are no longer the ones it came from
+    boolean wrapped;
+    Interpolation interpolation = Interpolation.LINEAR;
+
+    float gain;
+    int releaseRemaining;
+    long framesUntilRelease;
+
+    long triggerNanos;
+    boolean rendered;
+
+    SampleVoice(int index) {
+        this.index = index;
+    }
+
+    boolean isActive() {
+        return sample != null;
+    }
+
+    boolean isReleasing() {
+        return releaseRemaining > 0;
+    }
+
+    void release() {
+        if (sample != null && releaseRemaining == 0) {
+            releaseRemaining = RELEASE_FRAMES;
+        }
+    }
+
+    // Current linear level, counting the release fade
+    float level() {
+        return releaseRemaining > 0 ? gain * releaseRemaining / RELEASE_FRAMES : gain;
+    }
+
+    /**
+     * Carry on playing where another voice is, e.g. to fade out a voice
+     * that has been stolen for a new note
+     */
+    void takeOver(SampleVoice other) {
+        sample = other.sample;
+        tag = other.tag;
+        order = other.order;
+        position = other.position;
+        increment = other.increment;
+        end = other.end;
+        looping = other.looping;
+        loopStart = other.loopStart;
+        loopEnd = other.loopEnd;
+        wrapped = other.wrapped;
+        interpolation = other.interpolation;
+        gain = other.gain;
+        releaseRemaining = other.releaseRemaining;
+        framesUntilRelease = 0;
+        rendered = true;
+        generation++;
+    }
+
+    void free() {
+        sample = null;
+        releaseRemaining = 0;
+        generation++;
+    }
+
+    // Have a streamed sample map what this voice reads next, and where it loops back to
+    void readAhead() {
+        sample.readAhead((int) position);
+        if (looping) {
+            sample.readAhead(loopStart);
+        }
+    }
+
+    /**
+     * Add this voice's next {@code frames} frames into the stereo {@code mix}
+     * buffer, freeing the voice when it finishes
+     */
+    void render(float[] mix, int frames) {
+        int channels = sample.getChannels();
+
+        for (int i = 0; i < frames; i++) {
+            if (position >= end && !looping) {
+                free();
+                return;
+            }
+            int frame = (int) position;
+            float frac = (float) (position - frame);
+            float left = read(0, frame, frac);
+            float right = channels > 1 ? read(1, frame, frac) : left;
+
+            float level = gain;
+            if (releaseRemaining > 0) {
+                level *= releaseRemaining / (float) RELEASE_FRAMES;
+                if (--releaseRemaining == 0) {
+                    free();
+                    return;
+                }
+            }
+            mix[2 * i] += left * level;
+            mix[2 * i + 1] += right * level;
+
+            position += increment;
+            if (looping && position >= loopEnd) {
+                position -= loopEnd - loopStart;
+                wrapped = true;
+            }
+            if (framesUntilRelease > 0 && --framesUntilRelease == 0) {
+                release();
+            }
+        }
+    }
+
+    // One channel's value at frame + frac
+    private float read(int channel, int frame, float frac) {
+        switch (interpolation) {
+            case CUBIC: {
+                float y0 = sample.getResident(at(frame - 1), channel);
+                float y1 = sample.getResident(at(frame), channel);
+                float y2 = sample.getResident(at(frame + 1), channel);
+                float y3 = sample.getResident(at(frame + 2), channel);
+                float a = -0.5f * y0 + 1.5f * y1 - 1.5f * y2 + 0.5f * y3;
+                float b = y0 - 2.5f * y1 + 2f * y2 - 0.5f * y3;
+                float c = 0.5f * (y2 - y0);
+                return ((a * frac + b) * frac + c) * frac + y1;
+            }
+            case SINC: {
+                float[] kernel = Interpolation.SINC_KERNEL;
+                int base = Math.round(frac * Interpolation.SINC_PHASES) * Interpolation.SINC_TAPS;
+                int first = frame - (Interpolation.SINC_TAPS / 2 - 1);
+                float sum = 0f;
+                for (int t = 0; t < Interpolation.SINC_TAPS; t++) {
+                    sum += kernel[base + t] * sample.getResident(at(first + t), channel);
+                }
+                return sum;
+            }
+            default: {
+                float y1 = sample.getResident(frame, channel);
+                float y2 = sample.getResident(at(frame + 1), channel);
+                return y1 + (y2 - y1) * frac;
+            }
+        }
+    }
+
+    /**
+     * The sample frame the kernel reads for {@code frame}: past the loop end
+     * it wraps to the loop start, and once the voice has wrapped, before the
+     * loop start it wraps to the loop end. Past the region end it holds the
+     * last frame, and before the data it holds the first.
+     */
+    private int at(int frame) {
+        if (looping) {
+            if (frame >= loopEnd) {
+                return loopStart + (frame - loopEnd) % (loopEnd - loopStart);
+            }
+            if (wrapped && frame < loopStart) {
+                return loopEnd - 1 - (loopStart - 1 - frame) % (loopEnd - loopStart);
+            }
+        } else if (frame >= end) {
+            return end - 1;
+        }
+        return frame < 0 ? 0 : frame;
+    }
+}
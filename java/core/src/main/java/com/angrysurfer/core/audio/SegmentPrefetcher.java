@@ -0,0 +1,65 @@
+package com.angrysurfer.core.audio;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The thread that maps streamed segments ahead of the voices reading them.
+ * The audio thread only marks the segments it wants and wakes this thread,
+ * so file mapping and the page faults of first touch never land on it or
+ * hold up the engine lock.
+ */
+final class SegmentPrefetcher {
+
+    // Looked over this often even if nothing wakes the thread
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private static final List<MappedFrames> streams = new CopyOnWriteArrayList<>();
+    private static volatile Thread thread;
+
+    private SegmentPrefetcher() {
+    }
+
+    static void register(MappedFrames frames) {
+        streams.add(frames);
+        start();
+    }
+
+    static void unregister(MappedFrames frames) {
+        streams.remove(frames);
+    }
+
+    /**
+     * Have the thread map wanted segments now; allocates nothing and never
+     * blocks, so the audio thread may call it
+     */
+    static void wake() {
+        Thread current = thread;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    private static synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        Thread started = new Thread(SegmentPrefetcher::run, "Sample-Prefetch");
+        started.setDaemon(true);
+        // Behind the audio thread, ahead of the UI
+        started.setPriority(Thread.NORM_PRIORITY + 2);
+        thread = started;
+        started.start();
+    }
+
+    private static void run() {
+        while (true) {
+            for (MappedFrames frames : streams) {
+                frames.loadWanted();
+            }
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+    }
+}
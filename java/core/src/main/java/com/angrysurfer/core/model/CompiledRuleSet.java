@@ -0,0 +1,239 @@
+package com.angrysurfer.core.model;
+
+import java.util.Collection;
+
+import com.angrysurfer.core.sequencer.TimingFrame;
+
+/**
+ * A player's rules flattened into primitive form so they can be evaluated on
+ * every tick without iterating collections, unboxing or allocating.
+ * <p>
+ * Positional rules (tick, beat, bar) are expanded into bitmasks over the first
+ * {@link #MASK_SIZE} positions, so the common case is a single bit test.
+ * Positions outside the mask fall back to evaluating the rules directly. Count
+ * rules are kept as parallel arrays, with integral modulo divisors precomputed.
+ * <p>
+ * Semantics match the original rule loop: rules within a category are OR'd,
+ * categories are AND'd, and a category with no rules always matches. Instances
+ * are immutable; rebuild with {@link #compile(Collection)} when rules change.
+ */
+public final class CompiledRuleSet {
+
+    // Positions 0..511 cover any sensible tick/beat/bar value
+    static final int MASK_SIZE = 512;
+
+    public static final CompiledRuleSet EMPTY = new CompiledRuleSet(null, null, null, null, null, null, null, 0);
+
+    private final PositionRules tick;
+    private final PositionRules beat;
+    private final PositionRules bar;
+    private final CountRules tickCount;
+    private final CountRules beatCount;
+    private final CountRules barCount;
+    private final CountRules partCount;
+    private final int ruleCount;
+
+    private CompiledRuleSet(PositionRules tick, PositionRules beat, PositionRules bar,
+                            CountRules tickCount, CountRules beatCount, CountRules barCount,
+                            CountRules partCount, int ruleCount) {
+        this.tick = tick;
+        this.beat = beat;
+        this.bar = bar;
+        this.tickCount = tickCount;
+        this.beatCount = beatCount;
+        this.barCount = barCount;
+        this.partCount = partCount;
+        this.ruleCount = ruleCount;
+    }
+
+    /**
+     * Compile a rule collection. Rules missing an operator, comparison or value
+     * are skipped, as are PART rules, which the rule loop never evaluated.
+     */
+    public static CompiledRuleSet compile(Collection<Rule> rules) {
+        if (rules == null || rules.isEmpty()) {
+            return EMPTY;
+        }
+
+        RuleBuffer[] buffers = new RuleBuffer[Comparison.PART_COUNT + 1];
+        int count = 0;
+        for (Rule rule : rules) {
+            if (rule == null || rule.getOperator() == null || rule.getComparison() == null
+                    || rule.getValue() == null) {
+                continue;
+            }
+            int category = rule.getOperator();
+            if (category < 0 || category >= buffers.length || category == Comparison.PART
+                    || category == Comparison.BEAT_DURATION) {
+                continue;
+            }
+            if (buffers[category] == null) {
+                buffers[category] = new RuleBuffer(rules.size());
+            }
+            buffers[category].add(rule.getComparison(), rule.getValue());
+            count++;
+        }
+
+        if (count == 0) {
+            return EMPTY;
+        }
+
+        return new CompiledRuleSet(
+                PositionRules.of(buffers[Comparison.TICK]),
+                PositionRules.of(buffers[Comparison.BEAT]),
+                PositionRules.of(buffers[Comparison.BAR]),
+                CountRules.of(buffers[Comparison.TICK_COUNT]),
+                CountRules.of(buffers[Comparison.BEAT_COUNT]),
+                CountRules.of(buffers[Comparison.BAR_COUNT]),
+                CountRules.of(buffers[Comparison.PART_COUNT]),
+                count);
+    }
+
+    /**
+     * Whether the rules allow a trigger on this frame. Probability is not
+     * considered here.
+     */
+    public boolean matches(TimingFrame frame) {
+        return (tick == null || tick.matches(frame.getTick()))
+                && (beat == null || beat.matches(frame.getBeat()))
+                && (bar == null || bar.matches(frame.getBar()))
+                && (tickCount == null || tickCount.matches(frame.getTickCount()))
+                && (beatCount == null || beatCount.matches(frame.getBeatCount()))
+                && (barCount == null || barCount.matches(frame.getBarCount()))
+                && (partCount == null || partCount.matches(frame.getPartCount()));
+    }
+
+    /**
+     * Positional rules only (tick, beat, bar); used to expand periodic rule
+     * sets into a trigger schedule.
+     */
+    public boolean matchesPosition(long tickPosition, double beatPosition, int barPosition) {
+        return (tick == null || tick.matches(tickPosition))
+                && (beat == null || beat.matches(beatPosition))
+                && (bar == null || bar.matches(barPosition));
+    }
+
+    public boolean isEmpty() {
+        return ruleCount == 0;
+    }
+
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    public boolean hasCountRules() {
+        return tickCount != null || beatCount != null || barCount != null || partCount != null;
+    }
+
+    /**
+     * True when the outcome depends only on tick/beat/bar position, so it
+     * repeats every session cycle.
+     */
+    public boolean isPeriodic() {
+        return !isEmpty() && !hasCountRules();
+    }
+
+    /**
+     * Growable primitive buffer used only while compiling.
+     */
+    private static final class RuleBuffer {
+        int[] comparisons;
+        double[] values;
+        int size;
+
+        RuleBuffer(int capacity) {
+            comparisons = new int[capacity];
+            values = new double[capacity];
+        }
+
+        void add(int comparison, double value) {
+            comparisons[size] = comparison;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    /**
+     * OR of rules against a positional value, precomputed as a bitmask.
+     */
+    private static final class PositionRules {
+        final long[] mask = new long[MASK_SIZE / Long.SIZE];
+        final CountRules fallback;
+
+        private PositionRules(CountRules rules) {
+            this.fallback = rules;
+            for (int p = 0; p < MASK_SIZE; p++) {
+                if (rules.matches((double) p)) {
+                    mask[p >>> 6] |= 1L << p;
+                }
+            }
+        }
+
+        static PositionRules of(RuleBuffer buffer) {
+            return buffer == null ? null : new PositionRules(CountRules.of(buffer));
+        }
+
+        boolean matches(long position) {
+            if (position >= 0 && position < MASK_SIZE) {
+                return (mask[(int) (position >>> 6)] & (1L << position)) != 0;
+            }
+            return fallback.matches(position);
+        }
+
+        boolean matches(double position) {
+            long whole = (long) position;
+            if (whole == position) {
+                return matches(whole);
+            }
+            return fallback.matches(position);
+        }
+    }
+
+    /**
+     * OR of rules evaluated directly against a value. Modulo rules with an
+     * integral divisor use an integer remainder, which is exact for counters.
+     */
+    private static final class CountRules {
+        final int[] comparisons;
+        final double[] values;
+        final long[] divisors;
+
+        private CountRules(RuleBuffer buffer) {
+            int n = buffer.size;
+            comparisons = new int[n];
+            values = new double[n];
+            divisors = new long[n];
+            for (int i = 0; i < n; i++) {
+                comparisons[i] = buffer.comparisons[i];
+                values[i] = buffer.values[i];
+                long divisor = (long) values[i];
+                if (comparisons[i] == Operator.MODULO && divisor == values[i] && divisor != 0) {
+                    divisors[i] = Math.abs(divisor);
+                }
+            }
+        }
+
+        static CountRules of(RuleBuffer buffer) {
+            return buffer == null ? null : new CountRules(buffer);
+        }
+
+        boolean matches(long value) {
+            for (int i = 0; i < comparisons.length; i++) {
+                long divisor = divisors[i];
+                if (divisor != 0 ? value % divisor == 0 : Operator.evaluate(comparisons[i], (double) value, values[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean matches(double value) {
+            for (int i = 0; i < comparisons.length; i++) {
+                if (Operator.evaluate(comparisons[i], value, values[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.angrysurfer.core.model;
 
 import com.angrysurfer.core.api.midi.MidiControlMessageEnum;
+import com.angrysurfer.core.audio.PcmSample;
 import com.angrysurfer.core.model.feature.Pad;
+import com.angrysurfer.core.sequencer.MidiEventScheduler;
 import com.angrysurfer.core.sequencer.SequencerConstants;
 import com.angrysurfer.core.service.ReceiverManager;
 import com.angrysurfer.core.util.IntegerArrayConverter;
@@ -16,8 +18,6 @@ import org.slf4j.LoggerFactory;
 import javax.sound.midi.*;
 import java.io.Serializable;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 @Getter
@@ -28,8 +28,8 @@ public final class InstrumentWrapper implements Serializable {
     public static final Integer[] DEFAULT_CHANNELS = new Integer[]{DEFAULT_CHANNEL};
     public static final Integer[] ALL_CHANNELS = new Integer[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15};
     static final Random rand = new Random();
+    private static final int UNBOUND = -1;
     static Logger logger = LoggerFactory.getLogger(InstrumentWrapper.class.getCanonicalName());
-    private static ScheduledExecutorService NOTE_OFF_SCHEDULER;
     // Cached ShortMessages for better performance
     @JsonIgnore
     private final ShortMessage cachedNoteOn = new ShortMessage();
@@ -57,7 +57,16 @@ public final class InstrumentWrapper implements Serializable {
     private Map<Integer, Map<Long, String>> captions = new HashMap<>();
     // Primary change: Receiver becomes the primary MIDI output mechanism
     @JsonIgnore
-    private Receiver receiver;  // Direct reference for faster access
+    private volatile Receiver receiver;  // Bound once; every send goes straight to it
+    // ReceiverManager generation the receiver was bound in, or UNBOUND to adopt/resolve on next send
+    @JsonIgnore
+    private transient int boundGeneration = UNBOUND;
+    // Replaced by the device's shared counters on bind; never null, so a failed send can't turn into an NPE
+    @JsonIgnore
+    private transient ReceiverManager.SendCounters sendCounters = new ReceiverManager.SendCounters();
+    // A sample instrument's frames, resolved when it is set up so notes do no file I/O
+    @JsonIgnore
+    private transient volatile PcmSample sampleFrames;
     // Keep device as a backup and for metadata
     @JsonIgnore
     private MidiDevice device;
@@ -158,23 +167,6 @@ public final class InstrumentWrapper implements Serializable {
         logger.info("Created instrument {} with channels: {}", getName(), Arrays.toString(channels));
     }
 
-    /**
-     * Shutdown the scheduler when needed
-     */
-    public static void shutdownScheduler() {
-        if (NOTE_OFF_SCHEDULER != null) {
-            NOTE_OFF_SCHEDULER.shutdown();
-            try {
-                if (!NOTE_OFF_SCHEDULER.awaitTermination(500, TimeUnit.MILLISECONDS)) {
-                    NOTE_OFF_SCHEDULER.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                NOTE_OFF_SCHEDULER.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
-        }
-    }
-
     public void setName(String name) {
         this.name = name;
         if (name != null) {
@@ -228,67 +220,107 @@ public final class InstrumentWrapper implements Serializable {
      * @param message The MIDI message to send
      */
     public void sendMessage(MidiMessage message) {
-        try {
-            // First try the direct receiver
-//            if (receiver != null) {
-//                receiver.send(message, -1);
-//                return;
-//            }
-
-            // If receiver is null but we have a device, try to get a receiver
-            if (device != null) {
-                ensureDeviceOpen();
-                Receiver deviceReceiver = device.getReceiver();
-                if (deviceReceiver != null) {
-                    deviceReceiver.send(message, -1);
-                    return;
-                }
-            }
+        sendMessage(message, -1);
+    }
 
-            // Last resort: try ReceiverManager
-            if (deviceName != null) {
-                Receiver managedReceiver = ReceiverManager.getInstance()
-                        .getOrCreateReceiver(deviceName, device);
-                if (managedReceiver != null) {
-                    managedReceiver.send(message, -1);
-                    // Save for future use
-                    this.receiver = managedReceiver;
-                    return;
-                }
+    /**
+     * Send MIDI message with a device timestamp in microseconds, or -1 for
+     * immediately. Only receivers that honour timestamps (the software
+     * synthesizer) will delay the message.
+     */
+    public void sendMessage(MidiMessage message, long timeStamp) {
+        Receiver bound = receiver;
+        if (bound == null || boundGeneration != ReceiverManager.getBindingGeneration()) {
+            bound = bindReceiver();
+            if (bound == null) {
+                // If we get here, we couldn't send the message
+                logger.warn("Could not send MIDI message - no receiver available");
+                return;
             }
+        }
 
-            // If we get here, we couldn't send the message
-            logger.warn("Could not send MIDI message - no receiver available");
+        try {
+            bound.send(message, timeStamp);
+            sendCounters.recordSend();
         } catch (Exception e) {
+            sendCounters.recordFailure();
             logger.error("Error sending MIDI message: {}", e.getMessage());
 
-            // Try recovery if needed
-            tryRecoverReceiver();
+            // The bound receiver is dead: rebind once and retry
+            Receiver rebound = rebindReceiver(bound);
+            if (rebound != null) {
+                try {
+                    rebound.send(message, timeStamp);
+                    sendCounters.recordSend();
+                } catch (Exception retryError) {
+                    sendCounters.recordFailure();
+                    logger.error("Error resending MIDI message: {}", retryError.getMessage());
+                }
+            }
         }
     }
 
     /**
-     * Try to recover a working receiver if our current one has failed
+     * Bind the receiver messages go to: adopt one set through a constructor
+     * or {@link #setReceiver}, or resolve a fresh one if there is none or the
+     * binding generation has moved on.
      */
-    private void tryRecoverReceiver() {
+    private synchronized Receiver bindReceiver() {
+        int generation = ReceiverManager.getBindingGeneration();
+        Receiver current = receiver;
+        if (current != null && (boundGeneration == generation || boundGeneration == UNBOUND)) {
+            bind(current, generation);
+            return current;
+        }
+
+        Receiver resolved = null;
         try {
-            // Try to get a new receiver from the device
             if (device != null) {
                 ensureDeviceOpen();
-                this.receiver = device.getReceiver();
-                logger.info("Recovered receiver from device");
-                return;
+                resolved = device.getReceiver();
             }
+        } catch (MidiUnavailableException e) {
+            logger.warn("Could not get receiver from device: {}", e.getMessage());
+        }
+        if (resolved == null && deviceName != null) {
+            resolved = ReceiverManager.getInstance().getOrCreateReceiver(deviceName, device);
+        }
 
-            // If we have a device name, try ReceiverManager
-            if (deviceName != null) {
-                this.receiver = ReceiverManager.getInstance()
-                        .getOrCreateReceiver(deviceName, device);
-                logger.info("Recovered receiver from ReceiverManager");
-            }
-        } catch (Exception e) {
-            logger.error("Failed to recover receiver: {}", e.getMessage());
+        if (resolved != null) {
+            bind(resolved, generation);
+            logger.debug("Bound receiver for instrument: {}", getName());
+        } else {
+            boundGeneration = UNBOUND;
+            receiver = null;
         }
+        return resolved;
+    }
+
+    // The volatile receiver is written last, so a sender that reads it sees the counters and generation too
+    private void bind(Receiver bound, int generation) {
+        sendCounters = ReceiverManager.getInstance().countersFor(deviceName);
+        boundGeneration = generation;
+        receiver = bound;
+    }
+
+    /**
+     * Drop a receiver that failed and bind a new one, unless another thread
+     * already has.
+     */
+    private synchronized Receiver rebindReceiver(Receiver failed) {
+        if (receiver != failed && receiver != null) {
+            return receiver;
+        }
+        if (deviceName != null) {
+            ReceiverManager.getInstance().discardReceiver(deviceName, failed);
+        }
+        receiver = null;
+        boundGeneration = UNBOUND;
+        Receiver rebound = bindReceiver();
+        if (rebound != null) {
+            logger.info("Rebound receiver for instrument: {}", getName());
+        }
+        return rebound;
     }
 
     /**
@@ -388,26 +420,21 @@ public final class InstrumentWrapper implements Serializable {
         noteOn(note, velocity);
 
         // Schedule note off
-        scheduleNoteOff(note, 0, decay);
+        MidiEventScheduler.getInstance().scheduleNoteOff(this, note, 0, TimeUnit.MILLISECONDS.toNanos(decay));
     }
 
     /**
-     * Schedule a noteOff command after specified delay
+     * Play a note after a delay (nudge, swing), with its note-off following
+     * {@code decay} ms after it sounds. Both go through the shared scheduler.
      */
-    private void scheduleNoteOff(int note, int velocity, int delayMs) {
-        // Initialize scheduler if needed
-        if (NOTE_OFF_SCHEDULER == null) {
-            NOTE_OFF_SCHEDULER = Executors.newScheduledThreadPool(1, r -> {
-                Thread t = new Thread(r, "NoteOffScheduler");
-                t.setDaemon(true);
-                return t;
-            });
+    public void playMidiNote(int note, int velocity, int decay, long delayNanos) {
+        if (delayNanos <= 0) {
+            playMidiNote(note, velocity, decay);
+            return;
         }
-
-        // Schedule the note-off message
-        NOTE_OFF_SCHEDULER.schedule(() -> {
-            noteOff(note, velocity);
-        }, delayMs, TimeUnit.MILLISECONDS);
+        MidiEventScheduler scheduler = MidiEventScheduler.getInstance();
+        scheduler.scheduleNoteOn(this, note, velocity, delayNanos);
+        scheduler.scheduleNoteOff(this, note, 0, delayNanos + TimeUnit.MILLISECONDS.toNanos(decay));
     }
 
     /**
@@ -421,6 +448,7 @@ public final class InstrumentWrapper implements Serializable {
             try {
                 receiver.close();
                 receiver = null;
+                boundGeneration = UNBOUND;
             } catch (Exception e) {
                 logger.warn("Error closing receiver: {}", e.getMessage());
             }
@@ -494,39 +522,17 @@ public final class InstrumentWrapper implements Serializable {
      * @return The instrument's receiver
      */
     public Receiver getReceiver() {
-        // If we already have a working receiver, use it
-        if (receiver != null) {
-            return receiver;
-        }
-
-        // If we have a device, try to get a receiver from it
-        if (device != null) {
-            try {
-                ensureDeviceOpen();
-                receiver = device.getReceiver();
-                if (receiver != null) {
-                    return receiver;
-                }
-            } catch (MidiUnavailableException e) {
-                logger.warn("Could not get receiver from device: {}", e.getMessage());
-            }
+        // If we already have a bound receiver, use it
+        Receiver bound = receiver;
+        if (bound != null && boundGeneration == ReceiverManager.getBindingGeneration()) {
+            return bound;
         }
 
-        // Last resort: try ReceiverManager
-        if (deviceName != null) {
-            try {
-                receiver = ReceiverManager.getInstance()
-                        .getOrCreateReceiver(deviceName, device);
-                if (receiver != null) {
-                    return receiver;
-                }
-            } catch (Exception e) {
-                logger.warn("Could not get receiver from ReceiverManager: {}", e.getMessage());
-            }
+        bound = bindReceiver();
+        if (bound == null) {
+            logger.error("Failed to get a receiver for instrument: {}", getName());
         }
-
-        logger.error("Failed to get a receiver for instrument: {}", getName());
-        return null;
+        return bound;
     }
 
     /**
@@ -543,6 +549,7 @@ public final class InstrumentWrapper implements Serializable {
         }
 
         this.receiver = receiver;
+        this.boundGeneration = UNBOUND;
         logger.debug("Set receiver for instrument: {}", getName());
     }
 
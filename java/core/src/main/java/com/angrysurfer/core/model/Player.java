@@ -2,8 +2,11 @@ package com.angrysurfer.core.model;
 
 import com.angrysurfer.core.api.*;
 import com.angrysurfer.core.model.feature.Pad;
+import com.angrysurfer.core.sequencer.MidiEventScheduler;
 import com.angrysurfer.core.sequencer.Scale;
 import com.angrysurfer.core.sequencer.SequencerConstants;
+import com.angrysurfer.core.sequencer.SequencerRandom;
+import com.angrysurfer.core.sequencer.TimingFrame;
 import com.angrysurfer.core.sequencer.TimingUpdate;
 import com.angrysurfer.core.util.Cycler;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -18,21 +21,16 @@ import javax.sound.midi.MidiDevice;
 import javax.sound.midi.ShortMessage;
 import java.io.*;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
 
 @Getter
 @Setter
-public abstract class Player implements Serializable, IBusListener {
+public abstract class Player implements Serializable, IBusListener, TimingFrameListener {
 
-    static final Random rand = new Random();
-    // Add these fields to Player class
-    @JsonIgnore
-    private static final ExecutorService NOTE_EXECUTOR = Executors.newFixedThreadPool(4);
-    @JsonIgnore
-    private static final ScheduledExecutorService NOTE_OFF_SCHEDULER = Executors.newScheduledThreadPool(4);
+    // Keeps player seeds apart from sequencer ones under a fixed seed
+    private static final long RANDOM_SALT = 1L << 32;
     private static final long MIN_UI_UPDATE_INTERVAL = 100; // Only update UI every 100ms max
     private static final long NOTE_THROTTLE_THRESHOLD = 1; // 1ms minimum between notes
     static Logger logger = LoggerFactory.getLogger(Player.class.getCanonicalName());
@@ -42,22 +40,18 @@ public abstract class Player implements Serializable, IBusListener {
     private transient final ShortMessage reuseableMessage = new ShortMessage();
     @JsonIgnore
     private transient final Object messageLock = new Object();
+    // Rules flattened for the tick path; rebuilt by invalidateRuleCache()
     @JsonIgnore
-    private final Set<Rule> tickRuleCache = new HashSet<>();
-    @JsonIgnore
-    private final Set<Rule> beatRuleCache = new HashSet<>();
-    @JsonIgnore
-    private final Set<Rule> barRuleCache = new HashSet<>();
-    @JsonIgnore
-    private final Map<Long, Set<Rule>> partRuleCache = new HashMap<>();
-    @JsonIgnore
-    private final Set<Rule> tickCountRuleCache = new HashSet<>();
+    private transient volatile CompiledRuleSet compiledRules;
+    // Set while the session's TriggerSchedule fires this player instead of live evaluation
     @JsonIgnore
-    private final Set<Rule> beatCountRuleCache = new HashSet<>();
+    private transient volatile boolean scheduled;
+    // Row refresh queued after each note-off; built once rather than per note
     @JsonIgnore
-    private final Set<Rule> barCountRuleCache = new HashSet<>();
+    private transient Runnable rowRefresh;
+    // Probability and swing rolls, on the clock thread; created on the first roll, once the id is known
     @JsonIgnore
-    private final Set<Rule> partCountRuleCache = new HashSet<>();
+    private transient RandomGenerator random;
     // Add to Player class:
     @JsonIgnore
     private final Map<String, Object> properties = new HashMap<>();
@@ -143,8 +137,6 @@ public abstract class Player implements Serializable, IBusListener {
 
     @JsonIgnore
     private boolean isPlaying = false;
-    @JsonIgnore
-    private boolean hasCachedRules = false;
     // Add this property to the Player class
     @JsonIgnore
     private long lastTriggeredTick = -1;
@@ -152,12 +144,6 @@ public abstract class Player implements Serializable, IBusListener {
     private Boolean followRules = true;
     private Boolean followSessionOffset = false;
 
-    // Add cleanup method to shutdown pools on application exit
-    public static void shutdownExecutors() {
-        NOTE_EXECUTOR.shutdown();
-        NOTE_OFF_SCHEDULER.shutdown();
-    }
-
     public Map<String, Object> getProperties() {
         return properties;
     }
@@ -238,6 +224,14 @@ public abstract class Player implements Serializable, IBusListener {
 
     public abstract void onTick(TimingUpdate timingUpdate);
 
+    /**
+     * Frame-based tick. Defaults to the legacy {@link #onTick(TimingUpdate)};
+     * subclasses on the hot path override this to avoid the adapter.
+     */
+    public void onTick(TimingFrame frame) {
+        onTick(frame.toTimingUpdate());
+    }
+
     /**
      * Trigger a note with throttling to prevent MIDI buffer overflows
      *
@@ -258,16 +252,9 @@ public abstract class Player implements Serializable, IBusListener {
         long timeSinceLastNote = now - lastNoteTime;
 
         if (timeSinceLastNote < NOTE_THROTTLE_THRESHOLD) {
-            // Use the executor to slightly delay the note if we're sending too many
-            NOTE_EXECUTOR.submit(() -> {
-                try {
-                    // Small sleep to prevent overwhelming the MIDI system
-                    Thread.sleep(NOTE_THROTTLE_THRESHOLD - timeSinceLastNote + 1);
-                    sendNoteOnMessage(note, velocity);
-                } catch (Exception e) {
-                    logger.error("Error in throttled note trigger: {}", e.getMessage(), e);
-                }
-            });
+            // Slightly delay the note if we're sending too many
+            MidiEventScheduler.getInstance().schedule(() -> sendNoteOnMessage(note, velocity),
+                    NOTE_THROTTLE_THRESHOLD - timeSinceLastNote + 1, TimeUnit.MILLISECONDS);
         } else {
             // Send note immediately if we're not throttling
             sendNoteOnMessage(note, velocity);
@@ -343,6 +330,30 @@ public abstract class Player implements Serializable, IBusListener {
         }
     }
 
+    /**
+     * Facade method to play a note after a delay (nudge, swing); the note and
+     * its note-off are timed by the shared {@link MidiEventScheduler}
+     *
+     * @param note       MIDI note number
+     * @param velocity   Note velocity (0-127)
+     * @param decay      Note duration in ms
+     * @param delayNanos Delay before the note sounds
+     */
+    public void noteOn(int note, int velocity, int decay, long delayNanos) {
+        // Update player state
+        setPlaying(true);
+        updateUIIfNeeded();
+
+        try {
+            // Delegate to instrument wrapper
+            if (instrument != null) {
+                instrument.playMidiNote(note, velocity, decay, delayNanos);
+            }
+        } catch (Exception e) {
+            logger.error("Error in delayed noteOn: {}", e.getMessage(), e);
+        }
+    }
+
     /**
      * Facade method to stop a note
      *
@@ -360,9 +371,10 @@ public abstract class Player implements Serializable, IBusListener {
             setPlaying(false);
 
             // Schedule UI update
-            NOTE_OFF_SCHEDULER.schedule(
-                    () -> CommandBus.getInstance().publish(Commands.PLAYER_ROW_REFRESH, this, this),
-                    50, java.util.concurrent.TimeUnit.MILLISECONDS);
+            if (rowRefresh == null) {
+                rowRefresh = () -> CommandBus.getInstance().publish(Commands.PLAYER_ROW_REFRESH, this, this);
+            }
+            MidiEventScheduler.getInstance().schedule(rowRefresh, 50, TimeUnit.MILLISECONDS);
         } catch (Exception e) {
             logger.error("Error in noteOff: {}", e.getMessage(), e);
         }
@@ -424,7 +436,21 @@ public abstract class Player implements Serializable, IBusListener {
 
     @JsonIgnore
     public boolean isProbable() {
-        return getProbability() == 100 || rand.nextInt(101) < getProbability();
+        return getProbability() == 100 || getRandom().nextInt(101) < getProbability();
+    }
+
+    /**
+     * Generator for this player's probability and swing rolls, seeded from
+     * {@link SequencerRandom#SEED_PROPERTY} and the player id when that is set
+     */
+    @JsonIgnore
+    protected RandomGenerator getRandom() {
+        RandomGenerator generator = random;
+        if (generator == null) {
+            generator = SequencerRandom.create(RANDOM_SALT + (id != null ? id : 0));
+            random = generator;
+        }
+        return generator;
     }
 
     private boolean hasNoMuteGroupConflict() {
@@ -454,9 +480,18 @@ public abstract class Player implements Serializable, IBusListener {
     /**
      * Determines whether this player should play at the given position
      *
-     * @param timingUpdate Current TIMING_UPDATE
+     * @param timingUpdate Current TIMING_UPDATE, converted to a frame
      */
     public boolean shouldPlay(TimingUpdate timingUpdate) {
+        return shouldPlay(TimingFrame.from(timingUpdate));
+    }
+
+    /**
+     * Determines whether this player should play at the given position
+     *
+     * @param frame Current tick frame
+     */
+    public boolean shouldPlay(TimingFrame frame) {
         // Quick checks first
         if (!getEnabled() || isMuted()) {
             return false;
@@ -467,233 +502,21 @@ public abstract class Player implements Serializable, IBusListener {
             return true;
         }
 
-        boolean debug = false; // Set to true for verbose logging
-        if (debug) {
-            logger.info("Player {}: Evaluating rules at position tick={}, beat={}, bar={}, part={}",
-                    getName(), timingUpdate.tick(), timingUpdate.beat(), timingUpdate.bar(), timingUpdate.part());
-            logger.info("Player {}: Global counters: tick={}, beat={}, bar={}, part={}",
-                    getName(), timingUpdate.tickCount(), timingUpdate.beatCount(), timingUpdate.barCount(),
-                    timingUpdate.partCount());
-        }
-
-        // Refresh rule cache if needed
-        if (!hasCachedRules) {
-            cacheRulesByType();
-            hasCachedRules = true;
-            if (debug) {
-                logger.info("Player {}: Cached {} tick, {} beat, {} bar rules", getName(),
-                        tickRuleCache.size(), beatRuleCache.size(), barRuleCache.size());
-            }
-        }
-
-        // Evaluate tick rules: default to true if none exists
-        // Now using tickPosition directly (ticks are 1-based in our system)
-        boolean tickTriggered = tickRuleCache.isEmpty();
-        if (!tickTriggered) {
-            for (Rule rule : tickRuleCache) {
-                // Use positional tick value directly
-                boolean match = Operator.evaluate(rule.getComparison(),
-                        timingUpdate.tick(),
-                        rule.getValue());
-                if (debug) {
-                    logger.info("Tick rule: comp={}, tickPosition={}, ruleVal={}, result={}",
-                            rule.getComparison(), timingUpdate.tick(), rule.getValue(), match);
-                }
-                if (match) {
-                    tickTriggered = true;
-                    break;
-                }
-            }
-        }
-
-        // Evaluate beat rules: default to true if none exists
-        // Now using timingUpdate.beat() directly (beats are 1-based in our system)
-        boolean beatTriggered = beatRuleCache.isEmpty();
-        if (!beatTriggered) {
-            for (Rule rule : beatRuleCache) {
-                boolean match = Operator.evaluate(rule.getComparison(),
-                        timingUpdate.beat(),
-                        rule.getValue());
-                logger.info("Beat rule: comp={}, timingUpdate.beat()={}, ruleVal={}, result={}",
-                        rule.getComparison(), timingUpdate.beat(), rule.getValue(), match);
-                if (match) {
-                    beatTriggered = true;
-                    break;
-                }
-            }
-        }
-
-        if (!tickTriggered || !beatTriggered) {
-            logger.info("Player {}: Trigger condition not met. tickTriggered={}, beatTriggered={}",
-                    getName(), tickTriggered, beatTriggered);
-            return false;
-        }
-
-        // Enforce bar rules (if any)
-        // Now using timingUpdate.bar() directly (bars are 1-based in our system)
-        if (!barRuleCache.isEmpty()) {
-            boolean barMatched = false;
-            for (Rule rule : barRuleCache) {
-                boolean match = Operator.evaluate(rule.getComparison(),
-                        (double) timingUpdate.bar(),
-                        rule.getValue());
-                if (debug) {
-                    logger.info("Bar rule: comp={}, timingUpdate.bar()={}, ruleVal={}, result={}",
-                            rule.getComparison(), timingUpdate.bar(), rule.getValue(), match);
-                }
-                if (match) {
-                    barMatched = true;
-                    break;
-                }
-            }
-            if (!barMatched) {
-                if (debug) {
-                    logger.info("Player {}: Bar rule did not match.", getName());
-                }
-                return false;
-            }
-        }
-
-        // Now evaluate count rules using the global counters
-        // Evaluate tick count rules: default to true if none exists
-        boolean tickCountMatched = tickCountRuleCache.isEmpty();
-        if (!tickCountMatched) {
-            for (Rule rule : tickCountRuleCache) {
-                boolean match = Operator.evaluate(rule.getComparison(),
-                        timingUpdate.tickCount(),
-                        rule.getValue());
-                if (debug) {
-                    logger.info("Tick Count rule: comp={}, tickCount={}, ruleVal={}, result={}",
-                            rule.getComparison(), timingUpdate.tickCount(), rule.getValue(), match);
-                }
-                if (match) {
-                    tickCountMatched = true;
-                    break;
-                }
-            }
-        }
-
-        // Evaluate beat count rules: default to true if none exists
-        boolean beatCountMatched = beatCountRuleCache.isEmpty();
-        if (!beatCountMatched) {
-            for (Rule rule : beatCountRuleCache) {
-                boolean match = Operator.evaluate(rule.getComparison(),
-                        timingUpdate.beatCount(),
-                        rule.getValue());
-                if (debug) {
-                    logger.info("Beat Count rule: comp={}, beatCount={}, ruleVal={}, result={}",
-                            rule.getComparison(), timingUpdate.beatCount(), rule.getValue(), match);
-                }
-                if (match) {
-                    beatCountMatched = true;
-                    break;
-                }
-            }
-        }
-
-        // Evaluate bar count rules: default to true if none exists
-        boolean barCountMatched = barCountRuleCache.isEmpty();
-        if (!barCountMatched) {
-            for (Rule rule : barCountRuleCache) {
-                boolean match = Operator.evaluate(rule.getComparison(),
-                        timingUpdate.barCount(), rule.getValue());
-                if (debug) {
-                    logger.info("Bar Count rule: comp={}, barCount={}, ruleVal={}, result={}",
-                            rule.getComparison(), timingUpdate.barCount(), rule.getValue(), match);
-                }
-                if (match) {
-                    barCountMatched = true;
-                    break;
-                }
-            }
-        }
-
-        // Evaluate part count rules: default to true if none exists
-        boolean partCountMatched = partCountRuleCache.isEmpty();
-        if (!partCountMatched) {
-            for (Rule rule : partCountRuleCache) {
-                boolean match = Operator.evaluate(rule.getComparison(),
-                        timingUpdate.partCount(),
-                        rule.getValue());
-                if (debug) {
-                    logger.info("Part Count rule: comp={}, partCount={}, ruleVal={}, result={}",
-                            rule.getComparison(), timingUpdate.partCount(), rule.getValue(), match);
-                }
-                if (match) {
-                    partCountMatched = true;
-                    break;
-                }
-            }
-        }
-
-        // All count constraints must match if present
-        if (!tickCountMatched || !beatCountMatched || !barCountMatched || !partCountMatched) {
-            if (debug) {
-                logger.info(
-                        "Player {}: Count constraints not met: tickCount={}, beatCount={}, barCount={}, partCount={}",
-                        getName(), tickCountMatched, beatCountMatched, barCountMatched, partCountMatched);
-            }
-            return false;
-        }
-
-        // Lastly, check probability
-        if (!isProbable()) {
-            if (debug) {
-                logger.info("Player {}: Failed isProbable check.", getName());
-            }
-            return false;
-        }
-
-        if (debug) {
-            logger.info("Player {}: All checks passed, should play.", getName());
-        }
-
-        return true;
+        // Probability last, so the random draw only happens on rule matches
+        return getCompiledRules().matches(frame) && isProbable();
     }
 
-    // Add this method to Player class
-    private void cacheRulesByType() {
-        // Clear existing caches
-        tickRuleCache.clear();
-        beatRuleCache.clear();
-        barRuleCache.clear();
-        partRuleCache.clear();
-
-        // Skip if no rules
-        if (rules == null || rules.isEmpty()) {
-            return;
-        }
-
-        // Process each rule once and cache it
-        for (Rule rule : rules) {
-            // Group by operator type
-            switch (rule.getOperator()) {
-                case Comparison.TICK:
-                    tickRuleCache.add(rule);
-                    break;
-                case Comparison.BEAT:
-                    beatRuleCache.add(rule);
-                    break;
-                case Comparison.BAR:
-                    barRuleCache.add(rule);
-                    break;
-                case Comparison.PART:
-                    partRuleCache.computeIfAbsent(Long.valueOf(rule.getPart()), k -> new HashSet<>()).add(rule);
-                    break;
-                case Comparison.TICK_COUNT:
-                    tickCountRuleCache.add(rule);
-                    break;
-                case Comparison.BEAT_COUNT:
-                    beatCountRuleCache.add(rule);
-                    break;
-                case Comparison.BAR_COUNT:
-                    barCountRuleCache.add(rule);
-                    break;
-                case Comparison.PART_COUNT:
-                    partCountRuleCache.add(rule);
-                    break;
-            }
+    /**
+     * This player's rules in compiled form, compiled on first use.
+     */
+    @JsonIgnore
+    public CompiledRuleSet getCompiledRules() {
+        CompiledRuleSet compiled = compiledRules;
+        if (compiled == null) {
+            compiled = CompiledRuleSet.compile(rules);
+            compiledRules = compiled;
         }
+        return compiled;
     }
 
     /**
@@ -805,24 +628,9 @@ public abstract class Player implements Serializable, IBusListener {
         if (getSession() != null && getEnabled()) {
             switch (cmd) {
                 case Commands.TIMING_UPDATE -> {
-
-                    if (getRules().isEmpty() || !(action.getData() instanceof TimingUpdate timingUpdate)) {
-                        return;
+                    if (action.getData() instanceof TimingUpdate timingUpdate) {
+                        onTimingFrame(TimingFrame.from(timingUpdate));
                     }
-
-                    if (timingUpdate.tickCount() == lastTriggeredTick) {
-                        return;
-                    }
-
-                    if (shouldPlay(timingUpdate)) {
-
-                        if (getEnabled() && !isMuted()) {
-                            onTick(timingUpdate);
-                            setLastPlayedTick(timingUpdate.tick());
-                        }
-                    }
-
-                    lastTriggeredTick = timingUpdate.tickCount();
                 }
 
                 case Commands.TRANSPORT_STOP -> {
@@ -837,6 +645,58 @@ public abstract class Player implements Serializable, IBusListener {
         }
     }
 
+    /**
+     * Fast-path timing from the {@link TimingBus}; the frame is reused every tick.
+     */
+    @Override
+    public void onTimingFrame(TimingFrame frame) {
+        // The session's trigger schedule already knows when we fire
+        if (scheduled) {
+            return;
+        }
+        playIfRulesMatch(frame);
+    }
+
+    /**
+     * Live evaluation: play on this frame if the rules match.
+     */
+    void playIfRulesMatch(TimingFrame frame) {
+        if (getSession() == null || !getEnabled() || getRules().isEmpty()) {
+            return;
+        }
+
+        if (frame.getTickCount() == lastTriggeredTick) {
+            return;
+        }
+
+        if (shouldPlay(frame)) {
+
+            if (getEnabled() && !isMuted()) {
+                onTick(frame);
+                setLastPlayedTick(frame.getTick());
+            }
+        }
+
+        lastTriggeredTick = frame.getTickCount();
+    }
+
+    /**
+     * Called by the {@link TriggerSchedule} on ticks where this player's rules
+     * are known to match; only the per-tick state is still checked.
+     */
+    void playScheduled(TimingFrame frame) {
+        if (getSession() == null || !getEnabled() || isMuted() || frame.getTickCount() == lastTriggeredTick) {
+            return;
+        }
+
+        if (isProbable()) {
+            onTick(frame);
+            setLastPlayedTick(frame.getTick());
+        }
+
+        lastTriggeredTick = frame.getTickCount();
+    }
+
     /**
      * Determines if the player should be processing timing events
      */
@@ -863,8 +723,18 @@ public abstract class Player implements Serializable, IBusListener {
 
     // Add this method to Player class
     public void invalidateRuleCache() {
-        hasCachedRules = false;
-        logger.info("Player {}: Rule cache invalidated", getName());
+        compiledRules = CompiledRuleSet.compile(rules);
+        logger.debug("Player {}: Recompiled {} rules", getName(), compiledRules.getRuleCount());
+        if (session != null) {
+            session.updateTriggerSchedule();
+        }
+    }
+
+    public void setFollowRules(Boolean followRules) {
+        this.followRules = followRules;
+        if (session != null) {
+            session.updateTriggerSchedule();
+        }
     }
 
     // Make sure this gets called when rules are set or modified
@@ -3,6 +3,7 @@ package com.angrysurfer.core.model;
 import com.angrysurfer.core.api.CommandBus;
 import com.angrysurfer.core.api.Commands;
 import com.angrysurfer.core.api.TimingBus;
+import com.angrysurfer.core.sequencer.TimingFrame;
 import com.angrysurfer.core.sequencer.TimingUpdate;
 import lombok.Getter;
 import lombok.Setter;
@@ -74,6 +75,12 @@ public class Ratchet extends Strike {
         CommandBus.getInstance().publish(Commands.PLAYER_ADDED, this, this);
     }
 
+    @Override
+    public void onTick(TimingFrame frame) {
+        // Ratchets are short-lived and need the legacy record for their target tick check
+        onTick(frame.toTimingUpdate());
+    }
+
     @Override
     public void onTick(TimingUpdate timingUpdate) {
 
@@ -4,6 +4,10 @@ import com.angrysurfer.core.api.Command;
 import com.angrysurfer.core.api.CommandBus;
 import com.angrysurfer.core.api.Commands;
 import com.angrysurfer.core.api.IBusListener;
+import com.angrysurfer.core.audio.Interpolation;
+import com.angrysurfer.core.audio.PcmSample;
+import com.angrysurfer.core.audio.SampleEngine;
+import com.angrysurfer.core.audio.SampleStore;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
@@ -24,14 +28,17 @@ public class Sample implements IBusListener {
 
     private static final float DEFAULT_SAMPLE_RATE = 44100.0f;
     Long id;
-    // Store active clips for note control
-    private Map<Integer, ActiveSample> activeClips = new ConcurrentHashMap<>();
+    // SampleEngine voice handles by note, for note control
+    private Map<Integer, Long> activeClips = new ConcurrentHashMap<>();
     private boolean started = false;
     private File audioFile;
     private Clip audioClip;
     private AudioFormat audioFormat;
+    // Raw bytes, only for samples built in memory; files are read through the SampleStore
     private byte[] audioData;
-    private int[] waveformData;
+    // Frames shared with the sample engine and the waveform view
+    @JsonIgnore
+    private PcmSample pcm;
     private int sampleRate;
     private int channels;
     private int sampleSizeInBits;
@@ -65,6 +72,8 @@ public class Sample implements IBusListener {
 
     // Reference note (plays original sample)
     private int referenceNote = 60; // Middle C
+    // How pitched notes read between frames
+    private Interpolation interpolation = Interpolation.LINEAR;
 
     private String name;
     private Float duration;
@@ -105,9 +114,10 @@ public class Sample implements IBusListener {
         }
 
         try {
-            // Load the audio file
-            AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(file);
-            audioFormat = audioInputStream.getFormat();
+            // Map the file (or reuse it if already loaded); the frames stay on disk
+            pcm = SampleStore.getInstance().open(file);
+            audioFormat = pcm.getFormat();
+            audioData = null;
 
             // Store audio format properties
             sampleRate = (int) audioFormat.getSampleRate();
@@ -115,16 +125,9 @@ public class Sample implements IBusListener {
             sampleSizeInBits = audioFormat.getSampleSizeInBits();
 
             // Calculate duration in seconds
-            long frameLength = audioInputStream.getFrameLength();
+            long frameLength = pcm.getFrames();
             setDuration(frameLength / audioFormat.getFrameRate());
 
-            // Read the entire audio data into a byte array
-            audioData = new byte[(int) (frameLength * audioFormat.getFrameSize())];
-            audioInputStream.read(audioData);
-
-            // Generate waveform data for visualization (downsampled)
-            generateWaveformData();
-
             // Set end frame to full length by default
             sampleEnd = (int) frameLength;
 
@@ -136,8 +139,8 @@ public class Sample implements IBusListener {
                 setName(file.getName().replace(".wav", ""));
             }
 
-            logger.info("Loaded audio file: {}, duration: {:.2f}s, rate: {}Hz, channels: {}",
-                    file.getName(), getDuration(), sampleRate, channels);
+            logger.info("Loaded audio file: {}, duration: {}s, rate: {}Hz, channels: {}, {}",
+                    file.getName(), String.format("%.2f", getDuration()), sampleRate, channels, pcm.getStorage());
 
             return true;
 
@@ -152,59 +155,6 @@ public class Sample implements IBusListener {
         return false;
     }
 
-    /**
-     * Generate downsampled waveform data for visualization
-     */
-    private void generateWaveformData() {
-        if (audioData == null || audioFormat == null) {
-            return;
-        }
-
-        // Create a downsampled representation for visualization
-        // Aim for around 1000 points for the waveform
-        int frameSize = audioFormat.getFrameSize();
-        int totalFrames = audioData.length / frameSize;
-        int pointCount = Math.min(totalFrames, 1000);
-        int samplesPerPoint = totalFrames / pointCount;
-
-        waveformData = new int[pointCount];
-
-        for (int i = 0; i < pointCount; i++) {
-            int startFrame = i * samplesPerPoint;
-            int endFrame = Math.min((i + 1) * samplesPerPoint, totalFrames);
-
-            // Find peak amplitude in this segment
-            int maxAmplitude = 0;
-
-            for (int frame = startFrame; frame < endFrame; frame++) {
-                int sampleIndex = frame * frameSize;
-
-                // Handle different bit depths and formats
-                int amplitude = 0;
-                if (audioFormat.getSampleSizeInBits() == 16) {
-                    // 16-bit samples
-                    if (audioFormat.isBigEndian()) {
-                        amplitude = ((audioData[sampleIndex] & 0xFF) << 8) |
-                                (audioData[sampleIndex + 1] & 0xFF);
-                    } else {
-                        amplitude = ((audioData[sampleIndex + 1] & 0xFF) << 8) |
-                                (audioData[sampleIndex] & 0xFF);
-                    }
-                    // Convert signed value to absolute
-                    amplitude = Math.abs(amplitude);
-                } else if (audioFormat.getSampleSizeInBits() == 8) {
-                    // 8-bit samples are typically unsigned (0-255)
-                    amplitude = Math.abs(audioData[sampleIndex] - 128);
-                }
-
-                // Track maximum amplitude
-                maxAmplitude = Math.max(maxAmplitude, amplitude);
-            }
-
-            waveformData[i] = maxAmplitude;
-        }
-    }
-
 //    @Override
 //    public void onTick(TimingUpdate timingUpdate) {
 //        // Check if we should play based on timing rules
@@ -230,67 +180,33 @@ public class Sample implements IBusListener {
      * Play the sample at a specific pitch
      */
     public void noteOn(int note, int velocity) {
-        if (audioData == null || audioFormat == null) {
+        if (pcm == null && (audioData == null || audioFormat == null)) {
             logger.warn("Cannot play sample - no audio data loaded");
             return;
         }
 
         try {
-            // Calculate pitch shift ratio from MIDI note
-            // Each semitone is a factor of 2^(1/12) in frequency
-            float ratio = (float) Math.pow(2.0, (note - referenceNote) / 12.0);
-
+            // Playback rate from the MIDI note; each semitone is a factor of 2^(1/12)
             // Skip pitch shifting if not enabled or if it's the reference note
-            if (!autoPitchEnabled || note == referenceNote) {
-                ratio = 1.0f;
-            }
+            double ratio = autoPitchEnabled ? SampleEngine.noteRatio(note, referenceNote) : 1.0;
 
-            // Create a new AudioFormat with the adjusted sample rate
-            float newSampleRate = audioFormat.getSampleRate() * ratio;
-
-            AudioFormat newFormat = new AudioFormat(
-                    AudioFormat.Encoding.PCM_SIGNED,
-                    newSampleRate,
-                    audioFormat.getSampleSizeInBits(),
-                    audioFormat.getChannels(),
-                    audioFormat.getFrameSize(),
-                    newSampleRate,
-                    audioFormat.isBigEndian()
-            );
-
-            // Create a new audio input stream with the adjusted format
-            AudioInputStream pitchedStream = new AudioInputStream(
-                    new java.io.ByteArrayInputStream(audioData),
-                    newFormat,
-                    audioData.length / audioFormat.getFrameSize()
-            );
-
-            // Create a new clip for this note
-            Clip clip = AudioSystem.getClip();
-            clip.open(pitchedStream);
+            // Retriggering a note replaces its voice
+            Long previous = activeClips.remove(note);
+            if (previous != null) {
+                SampleEngine.getInstance().stop(previous);
+            }
 
             // Apply volume based on velocity (0-127)
             float gainLevel = velocity / 127.0f;
-            if (clip.isControlSupported(FloatControl.Type.MASTER_GAIN)) {
-                FloatControl gainControl = (FloatControl) clip.getControl(FloatControl.Type.MASTER_GAIN);
-                // Convert linear gain to dB gain (-40dB to 0dB range)
-                float dBGain = 20 * (float) Math.log10(gainLevel);
-                // Clamp to control's range
-                dBGain = Math.max(gainControl.getMinimum(), Math.min(dBGain, gainControl.getMaximum()));
-                gainControl.setValue(dBGain);
+            long handle = SampleEngine.getInstance().play(getPcm(), gainLevel, ratio, sampleStart, sampleEnd,
+                    loopEnabled, loopStart, loopEnd, 0, id != null ? id : 0, interpolation);
+            if (handle < 0) {
+                logger.warn("Sample engine could not play note {}", note);
+                return;
             }
 
-            // Configure playback
-            if (loopEnabled) {
-                clip.setLoopPoints(loopStart, loopEnd);
-                clip.loop(Clip.LOOP_CONTINUOUSLY);
-            }
-
-            // Save the active clip for this note
-            activeClips.put(note, new ActiveSample(clip, note, ratio));
-
-            // Start playback
-            clip.start();
+            // Save the active voice for this note
+            activeClips.put(note, handle);
 
             // Update player state
             setPlaying(true);
@@ -304,12 +220,33 @@ public class Sample implements IBusListener {
         }
     }
 
+    public void setAudioData(byte[] audioData) {
+        this.audioData = audioData;
+        this.pcm = null;
+    }
+
+    public void setAudioFormat(AudioFormat audioFormat) {
+        this.audioFormat = audioFormat;
+        this.pcm = null;
+    }
+
+    /**
+     * The frames played by the sample engine: the file's frames when loaded
+     * from a file, otherwise the audio data decoded on first use
+     */
+    public PcmSample getPcm() throws IOException {
+        if (pcm == null && audioData != null && audioFormat != null) {
+            pcm = PcmSample.decode(audioData, audioFormat);
+        }
+        return pcm;
+    }
+
     public void noteOff(int note, int velocity) {
         // Find and stop the specific note
-        ActiveSample activeSample = activeClips.remove(note);
-        if (activeSample != null) {
+        Long handle = activeClips.remove(note);
+        if (handle != null) {
             try {
-                activeSample.stop();
+                SampleEngine.getInstance().stop(handle);
                 logger.debug("Stopped sample playback for note: {}", note);
 
                 // If no more active clips, update player state
@@ -325,9 +262,9 @@ public class Sample implements IBusListener {
 
     public void allNotesOff() {
         // Stop all active samples
-        for (ActiveSample sample : activeClips.values()) {
+        for (Long handle : activeClips.values()) {
             try {
-                sample.stop();
+                SampleEngine.getInstance().stop(handle);
             } catch (Exception e) {
                 logger.error("Error stopping sample during allNotesOff: {}", e.getMessage());
             }
@@ -390,29 +327,32 @@ public class Sample implements IBusListener {
             return "No sample loaded";
         }
 
-        return String.format("Sample Rate: %d Hz, Bits: %d, Channels: %d, Duration: %.2f sec, Size: %.2f KB",
-                sampleRate, sampleSizeInBits, channels, getDuration(), audioData.length / 1024.0);
+        long dataBytes = audioData != null ? audioData.length : 0;
+        return String.format("Sample Rate: %d Hz, Bits: %d, Channels: %d, Duration: %.2f sec, Frames: %d, "
+                        + "Storage: %s, Heap: %.2f KB, Mapped: %.2f KB",
+                sampleRate, sampleSizeInBits, channels, getDuration(), getFrameCount(),
+                pcm != null ? pcm.getStorage() : "none",
+                (dataBytes + (pcm != null ? pcm.getHeapBytes() : 0)) / 1024.0,
+                (pcm != null ? pcm.getMappedBytes() : 0) / 1024.0);
     }
 
     /**
-     * Class to hold currently playing sample instances
+     * Heap held by this sample's audio: raw bytes and decoded frames. Mapped
+     * frames cost none.
      */
-    private class ActiveSample {
-        private final Clip clip;
-        private final int note;
-        private final float rate;
-
-        public ActiveSample(Clip clip, int note, float rate) {
-            this.clip = clip;
-            this.note = note;
-            this.rate = rate;
-        }
+    @JsonIgnore
+    public long getHeapBytes() {
+        return (audioData != null ? audioData.length : 0) + (pcm != null ? pcm.getHeapBytes() : 0);
+    }
 
-        public void stop() {
-            if (clip.isRunning()) {
-                clip.stop();
-            }
-            clip.close();
+    /**
+     * Length in frames of the loaded audio
+     */
+    @JsonIgnore
+    public int getFrameCount() {
+        if (pcm != null) {
+            return pcm.getFrames();
         }
+        return audioData != null && audioFormat != null ? audioData.length / audioFormat.getFrameSize() : 0;
     }
 }
\ No newline at end of file
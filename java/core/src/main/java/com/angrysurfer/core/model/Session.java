@@ -3,7 +3,7 @@ package com.angrysurfer.core.model;
 import com.angrysurfer.core.api.*;
 import com.angrysurfer.core.sequencer.Scale;
 import com.angrysurfer.core.sequencer.SequencerConstants;
-import com.angrysurfer.core.sequencer.TimingUpdate;
+import com.angrysurfer.core.sequencer.TimingFrame;
 import com.angrysurfer.core.service.DeviceManager;
 import com.angrysurfer.core.service.InstrumentManager;
 import com.angrysurfer.core.service.PlayerManager;
@@ -119,6 +119,18 @@ public class Session implements Serializable, IBusListener {
     @JsonIgnore
     private transient ConcurrentLinkedQueue<IBusListener> timingListeners;
 
+    // Rewritten in place on every tick and handed to the TimingBus
+    @JsonIgnore
+    private transient TimingFrame timingFrame = new TimingFrame();
+
+    // When enabled, players with purely positional rules fire from a per-cycle
+    // trigger table instead of evaluating their rules on every tick
+    @JsonIgnore
+    private transient boolean triggerScheduling = true;
+
+    @JsonIgnore
+    private transient volatile TriggerSchedule triggerSchedule;
+
     // Add this to Session constructor to ensure proper registration
     public Session() {
         setSongLength(Long.MAX_VALUE);
@@ -192,6 +204,7 @@ public class Session implements Serializable, IBusListener {
         }
 
         player.setSession(this);
+        updateTriggerSchedule();
         CommandBus.getInstance().publish(Commands.PLAYER_ADDED, this, player);
 
         // Auto-register as tick listener if session is running
@@ -211,6 +224,7 @@ public class Session implements Serializable, IBusListener {
         }
 
         player.setSession(null);
+        updateTriggerSchedule();
         CommandBus.getInstance().publish(Commands.PLAYER_ADDED, this, player);
 
         // Unregister from tick listeners
@@ -290,6 +304,9 @@ public class Session implements Serializable, IBusListener {
         clearMuteGroups();
         // System.out.println("Session: Mute groups cleared");
 
+        // Back to live evaluation until the next start
+        updateTriggerSchedule();
+
         // System.out.println("Session: Reset complete");
     }
 
@@ -366,6 +383,9 @@ public class Session implements Serializable, IBusListener {
         isActive = true;
         System.out.println("Session: Session marked as active");
 
+        // Expand periodic rules now that players are enabled
+        updateTriggerSchedule();
+
         // Publish session starting event
         CommandBus.getInstance().publish(Commands.SESSION_STARTING, this);
         System.out.println("Session: Published SESSION_STARTING event");
@@ -624,6 +644,9 @@ public class Session implements Serializable, IBusListener {
 
         setGranularBeat(0.0);
 
+        isActive = false;
+        updateTriggerSchedule();
+
         sequencerManager.cleanup();
     }
 
@@ -640,6 +663,9 @@ public class Session implements Serializable, IBusListener {
 
     // Refactored onTick method with fixed references
     public void onTick() {
+        boolean beatChanged = false;
+        boolean barChanged = false;
+        boolean partChanged = false;
 
         try {
             tickCount++;
@@ -649,11 +675,9 @@ public class Session implements Serializable, IBusListener {
             if (newBeat > beatCount) {
                 beat = (beat % beatsPerBar) + 1; // This cycles from 1 to parts
                 beatCount = newBeat;
-                timingBus.publish(Commands.TIMING_BEAT, this,
-                        new TimingUpdate(null, beat, bar, part, tickCount, beatCount, barCount, partCount));
+                beatChanged = true;
             } else if (tick == 1) {
-                timingBus.publish(Commands.TIMING_BEAT, this,
-                        new TimingUpdate(tick, beat, bar, part, tickCount, beatCount, barCount, partCount));
+                beatChanged = true;
             }
 
             // Calculate bar from beat
@@ -661,11 +685,9 @@ public class Session implements Serializable, IBusListener {
             if (newBar > barCount) {
                 bar = (bar % bars) + 1; // This cycles from 1 to parts
                 barCount = newBar;
-                timingBus.publish(Commands.TIMING_BAR, this,
-                        new TimingUpdate(null, null, bar, part, tickCount, beatCount, barCount, partCount));
+                barChanged = true;
             } else if (tick == 1) {
-                timingBus.publish(Commands.TIMING_BAR, this,
-                        new TimingUpdate(null, null, bar, part, tickCount, beatCount, barCount, partCount));
+                barChanged = true;
             }
 
             // Part calculations on bar change - fix to only increment at partLength
@@ -674,23 +696,70 @@ public class Session implements Serializable, IBusListener {
             if (newPart > partCount) {
                 part = (part % parts) + 1; // This cycles from 1 to parts
                 partCount++;
+                partChanged = true;
                 logger.debug("Part changed to {} (partCount={}) at bar {}", part, partCount, barCount);
-                timingBus.publish(Commands.TIMING_PART, this,
-                        new TimingUpdate(null, null, null, part, tickCount, beatCount, barCount, partCount));
             } else if (tick == 1) {
-                timingBus.publish(Commands.TIMING_PART, this,
-                        new TimingUpdate(null, null, null, part, tickCount, beatCount, barCount, partCount));
+                partChanged = true;
             }
         } catch (Exception e) {
             logger.error("Error in onTick", e);
         }
 
-        timingBus.publish(Commands.TIMING_UPDATE, this,
-                new TimingUpdate(tick, beat, bar, part, tickCount, beatCount, barCount, partCount));
+        // One reusable frame per tick instead of up to four TimingUpdate records;
+        // beat/bar/part rollovers ride along as flags
+        if (timingFrame == null) {
+            timingFrame = new TimingFrame();
+        }
+        timingFrame.update(tick, beat, bar, part, tickCount, beatCount, barCount, partCount);
+        timingFrame.setChanges(beatChanged, barChanged, partChanged);
+        timingBus.publishFrame(this, timingFrame);
+
+        TriggerSchedule schedule = triggerSchedule;
+        if (schedule != null) {
+            schedule.fire(timingFrame);
+        }
+
         tick = tick % ticksPerBeat + 1;
 
     }
 
+    /**
+     * Rebuild the trigger table from the current players and timing
+     * parameters, and hand each player to either the table or live
+     * evaluation. Only active sessions keep a table.
+     */
+    public synchronized void updateTriggerSchedule() {
+        TriggerSchedule previous = triggerSchedule;
+        TriggerSchedule next = null;
+        if (triggerScheduling && isActive && players != null
+                && ticksPerBeat != null && beatsPerBar != null && bars != null) {
+            next = TriggerSchedule.build(new ArrayList<>(players), ticksPerBeat, beatsPerBar, bars);
+        }
+
+        // Publish first so a newly scheduled player is never dropped for a tick;
+        // a double fire in between is caught by the player's tick dedup
+        triggerSchedule = next;
+        if (next != null) {
+            for (Player player : next.getPlayers()) {
+                player.setScheduled(true);
+            }
+            logger.debug("Trigger schedule: {} players, {} triggers over {} ticks",
+                    next.getPlayerCount(), next.getTriggerCount(), next.getCycleLength());
+        }
+        if (previous != null) {
+            for (Player player : previous.getPlayers()) {
+                if (next == null || !next.contains(player)) {
+                    player.setScheduled(false);
+                }
+            }
+        }
+    }
+
+    public void setTriggerScheduling(boolean triggerScheduling) {
+        this.triggerScheduling = triggerScheduling;
+        updateTriggerSchedule();
+    }
+
     public void syncToSequencer() {
         sequencerManager.updateTimingParameters(getTempoInBPM(), getTicksPerBeat(), getBeatsPerBar());
     }
@@ -706,6 +775,7 @@ public class Session implements Serializable, IBusListener {
 
     public void setTicksPerBeat(int ticksPerBeat) {
         this.ticksPerBeat = ticksPerBeat;
+        updateTriggerSchedule();
         // Notify about tempo change
         CommandBus.getInstance().publish(Commands.UPDATE_TEMPO, this, ticksPerBeat);
 
@@ -717,6 +787,7 @@ public class Session implements Serializable, IBusListener {
 
     public void setBeatsPerBar(int beatsPerBar) {
         this.beatsPerBar = beatsPerBar;
+        updateTriggerSchedule();
 
         if (isRunning()) {
             syncToSequencer();
@@ -726,6 +797,7 @@ public class Session implements Serializable, IBusListener {
 
     public void setBars(int bars) {
         this.bars = bars;
+        updateTriggerSchedule();
 
         if (isRunning()) {
             syncToSequencer();
@@ -755,6 +827,7 @@ public class Session implements Serializable, IBusListener {
 
         updatedPlayer.setSession(this);
         players.add(updatedPlayer);
+        updateTriggerSchedule();
 
         // Update tick listener registration based on enabled state
         if (updatedPlayer.getEnabled()) {
@@ -823,6 +896,7 @@ public class Session implements Serializable, IBusListener {
 
         // Store in players collection
         players.add(player);
+        updateTriggerSchedule();
 
         // Also store the player's instrument if it exists and is not default
         if (player.getInstrument() != null && !Boolean.TRUE.equals(player.getInstrument().getIsDefault())) {
@@ -1,6 +1,7 @@
 package com.angrysurfer.core.model;
 
 import com.angrysurfer.core.sequencer.SequencerConstants;
+import com.angrysurfer.core.sequencer.TimingFrame;
 import com.angrysurfer.core.sequencer.TimingUpdate;
 import com.angrysurfer.core.service.SessionManager;
 import lombok.Getter;
@@ -55,9 +56,14 @@ public class Strike extends Player {
 
     @Override
     public void onTick(TimingUpdate timingUpdate) {
+        onTick(TimingFrame.from(timingUpdate));
+    }
+
+    @Override
+    public void onTick(TimingFrame frame) {
 
         // Check if we should play based on the current timing
-        if (!getFollowRules() || shouldPlay(timingUpdate)) {
+        if (!getFollowRules() || shouldPlay(frame)) {
             try {
                 int noteToPlay = getRootNote();
                 // System.out.println("Strike.onTick playing note: " + noteToPlay);(
@@ -72,7 +78,7 @@ public class Strike extends Player {
 
     private void handleSwing() {
         try {
-            double offset = getSession().getBeatDuration() * rand.nextLong(getSwing()) * .01;
+            double offset = getSession().getBeatDuration() * getRandom().nextLong(getSwing()) * .01;
             try {
                 Thread.sleep((long) offset);
             } catch (InterruptedException e) {
@@ -0,0 +1,173 @@
+package com.angrysurfer.core.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.angrysurfer.core.sequencer.TimingFrame;
+
+/**
+ * Trigger table for one session cycle (ticksPerBeat x beatsPerBar x bars).
+ * Players whose rules depend only on tick/beat/bar position are expanded once
+ * into per-tick buckets, so each tick fires just the players in its bucket
+ * instead of asking every player to evaluate its rules.
+ * <p>
+ * Buckets are stored flat: bucket {@code i} is
+ * {@code triggers[offsets[i] .. offsets[i + 1])}. Players with count rules,
+ * or that ignore rules, stay on live evaluation and are not in the table.
+ * PART rules are never evaluated, so the part position does not widen the
+ * cycle. Instances are immutable; the session rebuilds one when rules or
+ * timing parameters change.
+ */
+public final class TriggerSchedule {
+
+    // Larger cycles than this aren't worth a table; those sessions stay live
+    static final int MAX_CYCLE_LENGTH = 1 << 16;
+
+    private final int ticksPerBeat;
+    private final int beatsPerBar;
+    private final int bars;
+    private final int[] offsets;
+    private final Player[] triggers;
+    private final Player[] players;
+
+    private TriggerSchedule(int ticksPerBeat, int beatsPerBar, int bars, int[] offsets, Player[] triggers,
+                            Player[] players) {
+        this.ticksPerBeat = ticksPerBeat;
+        this.beatsPerBar = beatsPerBar;
+        this.bars = bars;
+        this.offsets = offsets;
+        this.triggers = triggers;
+        this.players = players;
+    }
+
+    /**
+     * Expand the periodic players in {@code candidates} over one cycle.
+     *
+     * @return the schedule, or null if the cycle is too long or invalid
+     */
+    public static TriggerSchedule build(Collection<Player> candidates, int ticksPerBeat, int beatsPerBar, int bars) {
+        if (ticksPerBeat <= 0 || beatsPerBar <= 0 || bars <= 0
+                || (long) ticksPerBeat * beatsPerBar * bars > MAX_CYCLE_LENGTH) {
+            return null;
+        }
+        int cycleLength = ticksPerBeat * beatsPerBar * bars;
+
+        List<Player> periodic = new ArrayList<>();
+        List<CompiledRuleSet> ruleSets = new ArrayList<>();
+        for (Player player : candidates) {
+            if (player == null || !Boolean.TRUE.equals(player.getFollowRules())) {
+                continue;
+            }
+            CompiledRuleSet rules = player.getCompiledRules();
+            if (rules.isPeriodic()) {
+                periodic.add(player);
+                ruleSets.add(rules);
+            }
+        }
+
+        // First pass sizes the buckets, second pass fills them in player order
+        int[] offsets = new int[cycleLength + 1];
+        boolean[][] fires = new boolean[periodic.size()][];
+        for (int p = 0; p < periodic.size(); p++) {
+            CompiledRuleSet rules = ruleSets.get(p);
+            boolean[] playerFires = new boolean[cycleLength];
+            for (int i = 0; i < cycleLength; i++) {
+                if (rules.matchesPosition(tickAt(i, ticksPerBeat), beatAt(i, ticksPerBeat, beatsPerBar),
+                        barAt(i, ticksPerBeat, beatsPerBar))) {
+                    playerFires[i] = true;
+                    offsets[i + 1]++;
+                }
+            }
+            fires[p] = playerFires;
+        }
+        for (int i = 0; i < cycleLength; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        Player[] triggers = new Player[offsets[cycleLength]];
+        int[] cursor = offsets.clone();
+        for (int p = 0; p < periodic.size(); p++) {
+            boolean[] playerFires = fires[p];
+            for (int i = 0; i < cycleLength; i++) {
+                if (playerFires[i]) {
+                    triggers[cursor[i]++] = periodic.get(p);
+                }
+            }
+        }
+
+        return new TriggerSchedule(ticksPerBeat, beatsPerBar, bars, offsets, triggers,
+                periodic.toArray(new Player[0]));
+    }
+
+    /**
+     * Fire every scheduled player due on this frame. Frames outside the table
+     * (e.g. parameters changed mid-cycle) evaluate the scheduled players live.
+     */
+    public void fire(TimingFrame frame) {
+        int index = indexOf(frame);
+        if (index < 0) {
+            for (Player player : players) {
+                player.playIfRulesMatch(frame);
+            }
+            return;
+        }
+
+        for (int i = offsets[index], end = offsets[index + 1]; i < end; i++) {
+            triggers[i].playScheduled(frame);
+        }
+    }
+
+    /**
+     * Position of this frame within the cycle, or -1 if it doesn't map onto one.
+     */
+    int indexOf(TimingFrame frame) {
+        long tick = frame.getTick();
+        double beat = frame.getBeat();
+        int bar = frame.getBar();
+        int wholeBeat = (int) beat;
+        if (tick < 1 || tick > ticksPerBeat || wholeBeat != beat || wholeBeat < 1 || wholeBeat > beatsPerBar
+                || bar < 1 || bar > bars) {
+            return -1;
+        }
+        return ((bar - 1) * beatsPerBar + (wholeBeat - 1)) * ticksPerBeat + (int) (tick - 1);
+    }
+
+    public boolean contains(Player player) {
+        for (Player scheduled : players) {
+            if (scheduled == player) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Player[] getPlayers() {
+        return players;
+    }
+
+    public int getCycleLength() {
+        return offsets.length - 1;
+    }
+
+    public int getPlayerCount() {
+        return players.length;
+    }
+
+    public int getTriggerCount() {
+        return triggers.length;
+    }
+
+    // Positions are 1-based, matching Session.onTick
+    private static long tickAt(int index, int ticksPerBeat) {
+        return index % ticksPerBeat + 1;
+    }
+
+    private static double beatAt(int index, int ticksPerBeat, int beatsPerBar) {
+        return (index / ticksPerBeat) % beatsPerBar + 1;
+    }
+
+    private static int barAt(int index, int ticksPerBeat, int beatsPerBar) {
+        return index / (ticksPerBeat * beatsPerBar) + 1;
+    }
+}
@@ -13,7 +13,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 @Getter
@@ -25,6 +27,8 @@ class DrumSequenceDataHelper {
     private static final int MAX_STEPS = 64;
     private final JedisPool jedisPool;
     private final ObjectMapper objectMapper;
+    // Form new saves are written in; loads read either
+    private SequenceFormat format = SequenceFormat.fromSystemProperty();
 
     public DrumSequenceDataHelper(JedisPool jedisPool, ObjectMapper objectMapper) {
         this.jedisPool = jedisPool;
@@ -36,9 +40,9 @@ class DrumSequenceDataHelper {
      */
     public DrumSequenceData findDrumSequenceById(Long id) throws JsonProcessingException {
         try (Jedis jedis = jedisPool.getResource()) {
-            String json = jedis.get("drumseq:" + id);
-            if (json != null) {
-                DrumSequenceData data = objectMapper.readValue(json, DrumSequenceData.class);
+            byte[] stored = jedis.get(("drumseq:" + id).getBytes(StandardCharsets.UTF_8));
+            if (stored != null) {
+                DrumSequenceData data = decode(stored);
                 logger.info("Loaded drum sequence {}", id);
                 return data;
             }
@@ -53,48 +57,78 @@ class DrumSequenceDataHelper {
      * Save a drum sequence
      */
     public void saveDrumSequence(DrumSequencer sequencer) {
+        DrumSequenceData data = sequencer.getSequenceData();
         try (Jedis jedis = jedisPool.getResource()) {
-            // Create a data transfer object
-            DrumSequenceData data = sequencer.getSequenceData();
             logger.debug(data.toString());
             // Set or generate ID
             if (data.getId() <= 0) {
                 data.setId(jedis.incr("seq:drumsequence"));
             }
+            writeSave(jedis, data.getId(), prepareSave(sequencer, data));
+        } catch (Exception e) {
+            logger.error("Error saving drum sequence: " + e.getMessage(), e);
+            throw new RuntimeException("Failed to save drum sequence", e);
+        }
+    }
 
-            // Copy instrument data for each drum
-            for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++) {
-                Player player = sequencer.getPlayer(i);
-                if (player != null && player.getInstrument() != null) {
-                    InstrumentWrapper instrument = player.getInstrument();
-                    data.getInstrumentIds()[i] = instrument.getId();
-                    data.getSoundbankNames()[i] = instrument.getSoundbankName();
-                    data.getPresets()[i] = instrument.getPreset();
-                    data.getBankIndices()[i] = instrument.getBankIndex();
-                    data.getDeviceNames()[i] = instrument.getDeviceName();
-                    data.getInstrumentNames()[i] = instrument.getName();
-                }
-                if (player != null)
-                    data.getRootNotes()[i] = player.getRootNote();
+    /**
+     * Copy the sequencer's instrument settings into a drum sequence and encode
+     * it, on the caller's thread, so the save can be written from another
+     * thread while the sequencer keeps editing or loads another sequence
+     */
+    byte[] prepareSave(DrumSequencer sequencer, DrumSequenceData data) throws JsonProcessingException {
+        // Copy instrument data for each drum
+        for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++) {
+            Player player = sequencer.getPlayer(i);
+            if (player != null && player.getInstrument() != null) {
+                InstrumentWrapper instrument = player.getInstrument();
+                data.getInstrumentIds()[i] = instrument.getId();
+                data.getSoundbankNames()[i] = instrument.getSoundbankName();
+                data.getPresets()[i] = instrument.getPreset();
+                data.getBankIndices()[i] = instrument.getBankIndex();
+                data.getDeviceNames()[i] = instrument.getDeviceName();
+                data.getInstrumentNames()[i] = instrument.getName();
             }
+            if (player != null)
+                data.getRootNotes()[i] = player.getRootNote();
+        }
+        return encode(data);
+    }
 
+    /**
+     * Write a drum sequence encoded by {@link #prepareSave}
+     */
+    void writeSave(Long id, byte[] encoded) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            writeSave(jedis, id, encoded);
+        }
+    }
 
-            // Save to Redis
-            String json = objectMapper.writeValueAsString(data);
-            jedis.set("drumseq:" + data.getId(), json);
+    private void writeSave(Jedis jedis, Long id, byte[] encoded) {
+        // Save to Redis in one round trip. The drum-sequences hash used to hold
+        // a second copy that nothing read; drop it as sequences are saved.
+        Pipeline pipeline = jedis.pipelined();
+        pipeline.set(("drumseq:" + id).getBytes(StandardCharsets.UTF_8), encoded);
+        RedisKeyIndex.DRUM_SEQUENCES.add(pipeline, id);
+        pipeline.hdel("drum-sequences", String.valueOf(id));
+        pipeline.sync();
 
-            // Also store in the hash for faster lookup
-            jedis.hset("drum-sequences", String.valueOf(data.getId()), json);
+        logger.info("Saved drum sequence {}", id);
 
-            logger.info("Saved drum sequence {}", data.getId());
+        // Notify listeners
+        CommandBus.getInstance().publish(Commands.DRUM_SEQUENCE_SAVED, this, id);
+    }
 
-            // Notify listeners
-            CommandBus.getInstance().publish(Commands.DRUM_SEQUENCE_SAVED, this, data.getId());
+    byte[] encode(DrumSequenceData data) throws JsonProcessingException {
+        return format == SequenceFormat.BINARY
+                ? SequenceDataCodec.encode(data)
+                : objectMapper.writeValueAsBytes(data);
+    }
 
-        } catch (Exception e) {
-            logger.error("Error saving drum sequence: " + e.getMessage(), e);
-            throw new RuntimeException("Failed to save drum sequence", e);
-        }
+    DrumSequenceData decode(byte[] stored) throws JsonProcessingException {
+        return SequenceDataCodec.isBinary(stored)
+                ? SequenceDataCodec.decodeDrum(stored)
+                : objectMapper.readValue(new String(stored, StandardCharsets.UTF_8), DrumSequenceData.class);
     }
 
     /**
@@ -102,16 +136,7 @@ class DrumSequenceDataHelper {
      */
     public List<Long> getAllDrumSequenceIds() {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("drumseq:*");
-            List<Long> ids = new ArrayList<>();
-            for (String key : keys) {
-                try {
-                    ids.add(Long.parseLong(key.split(":")[1]));
-                } catch (NumberFormatException e) {
-                    logger.error("Invalid drum sequence key: " + key);
-                }
-            }
-            return ids;
+            return RedisKeyIndex.DRUM_SEQUENCES.ids(jedis);
         }
     }
 
@@ -150,8 +175,8 @@ class DrumSequenceDataHelper {
             data.setPatterns(new boolean[DRUM_PAD_COUNT][MAX_STEPS]);
 
             // Save to Redis
-            String json = objectMapper.writeValueAsString(data);
-            jedis.set("drumseq:" + data.getId(), json);
+            jedis.set(("drumseq:" + data.getId()).getBytes(StandardCharsets.UTF_8), encode(data));
+            RedisKeyIndex.DRUM_SEQUENCES.add(jedis, data.getId());
 
             // Initialize root notes array with standard GM drum mapping
             int[] rootNotes = new int[DRUM_PAD_COUNT];
@@ -173,12 +198,7 @@ class DrumSequenceDataHelper {
      */
     public Long getPreviousDrumSequenceId(Long currentId) {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("drumseq:*");
-            return keys.stream()
-                    .map(k -> Long.parseLong(k.split(":")[1]))
-                    .filter(id -> id < currentId)
-                    .max(Long::compareTo)
-                    .orElse(null);
+            return RedisKeyIndex.DRUM_SEQUENCES.previous(jedis, currentId);
         }
     }
 
@@ -187,12 +207,7 @@ class DrumSequenceDataHelper {
      */
     public Long getNextDrumSequenceId(Long currentId) {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("drumseq:*");
-            return keys.stream()
-                    .map(k -> Long.parseLong(k.split(":")[1]))
-                    .filter(id -> id > currentId)
-                    .min(Long::compareTo)
-                    .orElse(null);
+            return RedisKeyIndex.DRUM_SEQUENCES.next(jedis, currentId);
         }
     }
 
@@ -203,31 +218,11 @@ class DrumSequenceDataHelper {
      */
     public Long getMinimumDrumSequenceId() {
         try (Jedis jedis = jedisPool.getResource()) {
-
-            // Get all sequence keys
-            Map<String, String> sequences = jedis.hgetAll("drum-sequences");
-
-            if (sequences == null || sequences.isEmpty()) {
+            Long id = RedisKeyIndex.DRUM_SEQUENCES.first(jedis);
+            if (id == null) {
                 logger.info("No drum sequences found in Redis");
-                return null;
             }
-
-            // Filter out non-numeric keys and find minimum ID
-            return sequences.keySet().stream()
-                    .filter(key -> key != null && !key.equals("null") && key.matches("\\d+")) // Ensure the key is a
-                    // valid number
-                    .map(key -> {
-                        try {
-                            return Long.parseLong(key);
-                        } catch (NumberFormatException e) {
-                            // This shouldn't happen due to the regex filter, but just in case
-                            logger.warn("Failed to parse sequence ID '{}' as Long", key);
-                            return null;
-                        }
-                    })
-                    .filter(id -> id != null) // Filter out any nulls from failed parsing
-                    .min(Long::compareTo)
-                    .orElse(null); // Return null if no valid IDs found
+            return id;
         } catch (Exception e) {
             logger.error("Error getting minimum drum sequence ID: {}", e.getMessage(), e);
             return null;
@@ -241,30 +236,11 @@ class DrumSequenceDataHelper {
      */
     public Long getMaximumDrumSequenceId() {
         try (Jedis jedis = jedisPool.getResource()) {
-            // Get all sequence keys
-            Map<String, String> sequences = jedis.hgetAll("drum-sequences");
-
-            if (sequences == null || sequences.isEmpty()) {
+            Long id = RedisKeyIndex.DRUM_SEQUENCES.last(jedis);
+            if (id == null) {
                 logger.info("No drum sequences found in Redis");
-                return null;
             }
-
-            // Filter out non-numeric keys and find maximum ID
-            return sequences.keySet().stream()
-                    .filter(key -> key != null && !key.equals("null") && key.matches("\\d+")) // Ensure the key is a
-                    // valid number
-                    .map(key -> {
-                        try {
-                            return Long.parseLong(key);
-                        } catch (NumberFormatException e) {
-                            // This shouldn't happen due to the regex filter, but just in case
-                            logger.warn("Failed to parse sequence ID '{}' as Long", key);
-                            return null;
-                        }
-                    })
-                    .filter(id -> id != null) // Filter out any nulls from failed parsing
-                    .max(Long::compareTo)
-                    .orElse(null); // Return null if no valid IDs found
+            return id;
         } catch (Exception e) {
             logger.error("Error getting maximum drum sequence ID: {}", e.getMessage(), e);
             return null;
@@ -294,6 +270,7 @@ class DrumSequenceDataHelper {
 
             // Delete the sequence
             Long result = jedis.del(key);
+            RedisKeyIndex.DRUM_SEQUENCES.remove(jedis, id);
 
             // Also remove from the hash if it exists there
             String hashKey = id.toString();
@@ -325,26 +302,22 @@ class DrumSequenceDataHelper {
      */
     public int deleteAllDrumSequences() {
         try (Jedis jedis = jedisPool.getResource()) {
-            // Get all sequence keys
-            Set<String> keys = jedis.keys("drumseq:*");
-            if (keys == null || keys.isEmpty()) {
+            // Get all sequence ids
+            List<Long> ids = RedisKeyIndex.DRUM_SEQUENCES.ids(jedis);
+            if (ids.isEmpty()) {
                 logger.info("No drum sequences to delete");
                 return 0;
             }
 
             int deletedCount = 0;
-            for (String key : keys) {
+            for (Long id : ids) {
                 try {
-                    // Extract the ID from the key
-                    String idStr = key.split(":")[1];
-                    Long id = Long.parseLong(idStr);
-
                     // Use existing delete method to ensure proper cleanup
                     if (deleteDrumSequence(id)) {
                         deletedCount++;
                     }
                 } catch (Exception e) {
-                    logger.error("Error deleting drum sequence with key {}: {}", key, e.getMessage(), e);
+                    logger.error("Error deleting drum sequence {}: {}", id, e.getMessage(), e);
                 }
             }
 
@@ -0,0 +1,67 @@
+package com.angrysurfer.core.redis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * An {@link EmbeddedStore} in this process, persisted to a directory or, for
+ * tests, held only in memory. No server is needed and a command costs a
+ * method call rather than a network round trip.
+ */
+public class EmbeddedBackend implements StorageBackend {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedBackend.class);
+
+    public static final String NAME = "embedded";
+
+    private final Path directory;
+    private EmbeddedStore store;
+
+    /**
+     * @param directory where the store is kept, or null to keep it in memory
+     */
+    public EmbeddedBackend(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public String getName() {
+        return NAME + " " + (directory != null ? directory : "(memory)");
+    }
+
+    public synchronized EmbeddedStore getStore() {
+        if (store == null) {
+            try {
+                store = directory != null ? EmbeddedStore.open(directory) : EmbeddedStore.inMemory();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open embedded store in " + directory, e);
+            }
+        }
+        return store;
+    }
+
+    @Override
+    public JedisPool createPool(JedisPoolConfig poolConfig) {
+        return new JedisPool(poolConfig, getStore().socketFactory(), DefaultJedisClientConfig.builder().build());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            logger.error("Error closing embedded store: {}", e.getMessage(), e);
+        }
+        store = null;
+    }
+}
@@ -0,0 +1,1188 @@
+package com.angrysurfer.core.redis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.JedisSocketFactory;
+
+/**
+ * In-process store speaking the part of the Redis protocol the helpers use
+ * (strings, counters, sets, hashes, sorted sets, MULTI/EXEC, SCAN), so they
+ * run unchanged without a Redis server. Jedis reaches it through in-memory
+ * sockets from {@link #socketFactory()}: a command runs on the calling
+ * thread when Jedis flushes it, with no network hop.
+ * <p>
+ * Strings, members and fields are held as Latin-1 Java strings, one char per
+ * byte, so binary values come back exactly as written.
+ * <p>
+ * A store opened on a directory appends every write to {@value #LOG_FILE} as
+ * a RESP command, as Redis' append-only file does, and replays it on open.
+ * The log is flushed to the OS after each batch of commands and forced to
+ * disk on close; {@link #compact()} rewrites it as the minimal commands for
+ * the current data.
+ * <p>
+ * A final command cut short by a crash is dropped on open. A log that can't
+ * be read before its end is damaged, not torn: opening fails and the file is
+ * left as it is, rather than losing every command after the damage.
+ */
+public class EmbeddedStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedStore.class);
+
+    public static final String LOG_FILE = "store.aof";
+
+    // Replay more than this many commands per live key and the log is rewritten on open
+    private static final int COMPACT_RATIO = 4;
+
+    private final Map<String, Object> data = new HashMap<>();
+    private final Path logPath;
+    private FileOutputStream logFile;
+    private OutputStream log;
+    private boolean closed;
+
+    private EmbeddedStore(Path logPath) {
+        this.logPath = logPath;
+    }
+
+    /**
+     * A store that lives only as long as the JVM, e.g. for tests
+     */
+    public static EmbeddedStore inMemory() {
+        return new EmbeddedStore(null);
+    }
+
+    /**
+     * Open (or create) the store kept in {@code directory}, replaying its log
+     */
+    public static EmbeddedStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        EmbeddedStore store = new EmbeddedStore(directory.resolve(LOG_FILE));
+        long replayed = store.replay();
+        store.openLog();
+        if (replayed > 1000 && replayed > (long) COMPACT_RATIO * store.data.size()) {
+            store.compact();
+        }
+        logger.info("Opened embedded store {} with {} keys ({} logged commands)", directory, store.data.size(),
+                replayed);
+        return store;
+    }
+
+    /**
+     * Sockets for Jedis connections to this store
+     */
+    public JedisSocketFactory socketFactory() {
+        return () -> new MemorySocket(newClient());
+    }
+
+    public synchronized int size() {
+        return data.size();
+    }
+
+    /**
+     * Rewrite the log as one command per key (or per member), dropping
+     * overwritten values and deleted keys
+     */
+    public synchronized void compact() throws IOException {
+        if (logPath == null) {
+            return;
+        }
+        Path temp = logPath.resolveSibling(LOG_FILE + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             OutputStream out = new BufferedOutputStream(file, 64 * 1024)) {
+            for (Map.Entry<String, Object> entry : data.entrySet()) {
+                for (List<String> command : rebuildCommands(entry.getKey(), entry.getValue())) {
+                    writeCommand(out, command);
+                }
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        if (log != null) {
+            closeLog();
+        }
+        Files.move(temp, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // The rename lives in the directory, which a crash could otherwise lose
+        syncDirectory(logPath.getParent());
+        openLog();
+        logger.info("Compacted embedded store log to {} bytes", Files.size(logPath));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (log != null) {
+            closeLog();
+        }
+    }
+
+    private void openLog() throws IOException {
+        logFile = new FileOutputStream(logPath.toFile(), true);
+        log = new BufferedOutputStream(logFile, 64 * 1024);
+    }
+
+    // Flush, force to disk and close
+    private void closeLog() throws IOException {
+        try {
+            log.flush();
+            logFile.getFD().sync();
+        } finally {
+            log.close();
+            log = null;
+            logFile = null;
+        }
+    }
+
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms (Windows) can't open a directory; their renames are durable on their own
+            logger.debug("Could not sync {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * One connection's state: its MULTI queue, if any
+     */
+    public Client newClient() {
+        return new Client();
+    }
+
+    public final class Client {
+        private List<List<String>> queued;
+
+        private Client() {
+        }
+
+        /**
+         * Run one command, writing its RESP reply to {@code out}
+         */
+        public void execute(List<String> command, OutputStream out) throws IOException {
+            synchronized (EmbeddedStore.this) {
+                executeLocked(command, out);
+                flushLog();
+            }
+        }
+
+        /**
+         * Run a batch of pipelined commands as one unit
+         */
+        void executeAll(List<List<String>> commands, OutputStream out) throws IOException {
+            synchronized (EmbeddedStore.this) {
+                for (List<String> command : commands) {
+                    executeLocked(command, out);
+                }
+                flushLog();
+            }
+        }
+
+        private void executeLocked(List<String> command, OutputStream out) throws IOException {
+            if (closed) {
+                error(out, "ERR store is closed");
+                return;
+            }
+            String name = command.get(0).toUpperCase();
+            switch (name) {
+                case "MULTI" -> {
+                    queued = new ArrayList<>();
+                    simple(out, "OK");
+                }
+                case "EXEC" -> {
+                    if (queued == null) {
+                        error(out, "ERR EXEC without MULTI");
+                        return;
+                    }
+                    List<List<String>> commands = queued;
+                    queued = null;
+                    array(out, commands.size());
+                    for (List<String> queuedCommand : commands) {
+                        run(queuedCommand, out);
+                    }
+                }
+                case "DISCARD" -> {
+                    if (queued == null) {
+                        error(out, "ERR DISCARD without MULTI");
+                        return;
+                    }
+                    queued = null;
+                    simple(out, "OK");
+                }
+                default -> {
+                    if (queued != null) {
+                        queued.add(command);
+                        simple(out, "QUEUED");
+                    } else {
+                        run(command, out);
+                    }
+                }
+            }
+        }
+    }
+
+    private void run(List<String> command, OutputStream out) throws IOException {
+        try {
+            boolean changed = apply(command, out);
+            if (changed && log != null) {
+                writeCommand(log, command);
+            }
+        } catch (CommandException e) {
+            error(out, e.getMessage());
+        }
+    }
+
+    private void flushLog() throws IOException {
+        if (log != null) {
+            log.flush();
+        }
+    }
+
+    private static final class CommandException extends RuntimeException {
+        CommandException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Execute one command against the data, writing the reply if {@code out}
+     * is not null (it is null on replay)
+     *
+     * @return whether the command may have changed the data and belongs in the log
+     */
+    private boolean apply(List<String> c, OutputStream out) throws IOException {
+        String name = c.get(0).toUpperCase();
+        Reply reply = new Reply(out);
+        switch (name) {
+            case "PING" -> {
+                if (c.size() > 1) {
+                    reply.bulk(c.get(1));
+                } else {
+                    reply.simple("PONG");
+                }
+            }
+            case "ECHO" -> reply.bulk(arg(c, 1));
+            case "SELECT", "CLIENT", "QUIT", "RESET" -> reply.simple("OK");
+            case "INFO" -> reply.bulk("# Server\r\nredis_mode:embedded\r\n# Keyspace\r\ndb0:keys=" + data.size() + "\r\n");
+            case "FLUSHDB", "FLUSHALL" -> {
+                // Logged, so replay doesn't bring the flushed keys back
+                boolean changed = !data.isEmpty();
+                data.clear();
+                reply.simple("OK");
+                return changed;
+            }
+            case "DBSIZE" -> reply.integer(data.size());
+            case "TYPE" -> reply.simple(typeOf(data.get(arg(c, 1))));
+            case "EXISTS" -> {
+                int count = 0;
+                for (int i = 1; i < c.size(); i++) {
+                    count += data.containsKey(c.get(i)) ? 1 : 0;
+                }
+                reply.integer(count);
+            }
+            case "KEYS" -> reply.strings(matching(arg(c, 1)));
+            case "SCAN" -> {
+                // Every match in one reply; a cursor of 0 says the iteration is complete
+                String pattern = "*";
+                for (int i = 2; i + 1 < c.size(); i += 2) {
+                    if (c.get(i).equalsIgnoreCase("MATCH")) {
+                        pattern = c.get(i + 1);
+                    }
+                }
+                reply.array(2);
+                reply.bulk("0");
+                reply.strings(matching(pattern));
+            }
+            case "DEL", "UNLINK" -> {
+                int removed = 0;
+                for (int i = 1; i < c.size(); i++) {
+                    removed += data.remove(c.get(i)) != null ? 1 : 0;
+                }
+                reply.integer(removed);
+                return removed > 0;
+            }
+            case "SET" -> {
+                if (c.size() != 3) {
+                    throw new CommandException("ERR SET options are not supported by the embedded store");
+                }
+                data.put(c.get(1), c.get(2));
+                reply.simple("OK");
+                return true;
+            }
+            case "GET" -> reply.bulk(string(arg(c, 1)));
+            case "MGET" -> {
+                reply.array(c.size() - 1);
+                for (int i = 1; i < c.size(); i++) {
+                    reply.bulk(data.get(c.get(i)) instanceof String s ? s : null);
+                }
+            }
+            case "INCR", "INCRBY" -> {
+                long by = name.equals("INCR") ? 1 : parseLong(arg(c, 2));
+                String current = string(arg(c, 1));
+                long value = (current == null ? 0 : parseLong(current)) + by;
+                data.put(c.get(1), Long.toString(value));
+                reply.integer(value);
+                return true;
+            }
+            case "SADD" -> {
+                Set<String> set = set(arg(c, 1), true);
+                int added = 0;
+                for (int i = 2; i < c.size(); i++) {
+                    added += set.add(c.get(i)) ? 1 : 0;
+                }
+                reply.integer(added);
+                return added > 0;
+            }
+            case "SREM" -> {
+                Set<String> set = set(arg(c, 1), false);
+                int removed = 0;
+                for (int i = 2; set != null && i < c.size(); i++) {
+                    removed += set.remove(c.get(i)) ? 1 : 0;
+                }
+                dropIfEmpty(c.get(1), set);
+                reply.integer(removed);
+                return removed > 0;
+            }
+            case "SMEMBERS" -> {
+                Set<String> set = set(arg(c, 1), false);
+                reply.strings(set != null ? new ArrayList<>(set) : List.of());
+            }
+            case "SISMEMBER" -> {
+                Set<String> set = set(arg(c, 1), false);
+                reply.integer(set != null && set.contains(arg(c, 2)) ? 1 : 0);
+            }
+            case "SCARD" -> {
+                Set<String> set = set(arg(c, 1), false);
+                reply.integer(set != null ? set.size() : 0);
+            }
+            case "HSET" -> {
+                if (c.size() < 4 || c.size() % 2 != 0) {
+                    throw new CommandException("ERR wrong number of arguments for 'hset' command");
+                }
+                Map<String, String> hash = hash(c.get(1), true);
+                int added = 0;
+                for (int i = 2; i + 1 < c.size(); i += 2) {
+                    added += hash.put(c.get(i), c.get(i + 1)) == null ? 1 : 0;
+                }
+                reply.integer(added);
+                return true;
+            }
+            case "HGET" -> {
+                Map<String, String> hash = hash(arg(c, 1), false);
+                reply.bulk(hash != null ? hash.get(arg(c, 2)) : null);
+            }
+            case "HDEL" -> {
+                Map<String, String> hash = hash(arg(c, 1), false);
+                int removed = 0;
+                for (int i = 2; hash != null && i < c.size(); i++) {
+                    removed += hash.remove(c.get(i)) != null ? 1 : 0;
+                }
+                dropIfEmpty(c.get(1), hash);
+                reply.integer(removed);
+                return removed > 0;
+            }
+            case "HEXISTS" -> {
+                Map<String, String> hash = hash(arg(c, 1), false);
+                reply.integer(hash != null && hash.containsKey(arg(c, 2)) ? 1 : 0);
+            }
+            case "HKEYS" -> {
+                Map<String, String> hash = hash(arg(c, 1), false);
+                reply.strings(hash != null ? new ArrayList<>(hash.keySet()) : List.of());
+            }
+            case "HLEN" -> {
+                Map<String, String> hash = hash(arg(c, 1), false);
+                reply.integer(hash != null ? hash.size() : 0);
+            }
+            case "HGETALL" -> {
+                Map<String, String> hash = hash(arg(c, 1), false);
+                List<String> flat = new ArrayList<>();
+                if (hash != null) {
+                    hash.forEach((field, value) -> {
+                        flat.add(field);
+                        flat.add(value);
+                    });
+                }
+                reply.strings(flat);
+            }
+            case "ZADD" -> {
+                if (c.size() < 4 || c.size() % 2 != 0) {
+                    throw new CommandException("ERR ZADD options are not supported by the embedded store");
+                }
+                SortedSet zset = zset(c.get(1), true);
+                int added = 0;
+                for (int i = 2; i + 1 < c.size(); i += 2) {
+                    added += zset.add(c.get(i + 1), parseScore(c.get(i))) ? 1 : 0;
+                }
+                reply.integer(added);
+                return true;
+            }
+            case "ZREM" -> {
+                SortedSet zset = zset(arg(c, 1), false);
+                int removed = 0;
+                for (int i = 2; zset != null && i < c.size(); i++) {
+                    removed += zset.remove(c.get(i)) ? 1 : 0;
+                }
+                if (zset != null && zset.scores.isEmpty()) {
+                    data.remove(c.get(1));
+                }
+                reply.integer(removed);
+                return removed > 0;
+            }
+            case "ZSCORE" -> {
+                SortedSet zset = zset(arg(c, 1), false);
+                Double score = zset != null ? zset.scores.get(arg(c, 2)) : null;
+                reply.bulk(score != null ? formatScore(score) : null);
+            }
+            case "ZCARD" -> {
+                SortedSet zset = zset(arg(c, 1), false);
+                reply.integer(zset != null ? zset.scores.size() : 0);
+            }
+            case "ZRANGE" -> {
+                SortedSet zset = zset(arg(c, 1), false);
+                List<ScoredMember> members = zset != null ? new ArrayList<>(zset.ordered) : List.of();
+                int size = members.size();
+                int start = rank(parseLong(arg(c, 2)), size);
+                int stop = Math.min(rank(parseLong(arg(c, 3)), size), size - 1);
+                List<ScoredMember> range = start <= stop ? members.subList(start, stop + 1) : List.of();
+                reply.members(range, hasFlag(c, 4, "WITHSCORES"));
+            }
+            case "ZRANGEBYSCORE", "ZREVRANGEBYSCORE" -> {
+                boolean reverse = name.startsWith("ZREV");
+                SortedSet zset = zset(arg(c, 1), false);
+                ScoreBound min = ScoreBound.parse(arg(c, reverse ? 3 : 2));
+                ScoreBound max = ScoreBound.parse(arg(c, reverse ? 2 : 3));
+                int offset = 0;
+                int count = -1;
+                for (int i = 4; i < c.size(); i++) {
+                    if (c.get(i).equalsIgnoreCase("LIMIT") && i + 2 < c.size()) {
+                        offset = (int) parseLong(c.get(i + 1));
+                        count = (int) parseLong(c.get(i + 2));
+                    }
+                }
+                List<ScoredMember> range = new ArrayList<>();
+                if (zset != null) {
+                    Iterable<ScoredMember> ordered = reverse ? zset.ordered.descendingSet() : zset.ordered;
+                    int skipped = 0;
+                    for (ScoredMember member : ordered) {
+                        if (!min.below(member.score) || !max.above(member.score)) {
+                            continue;
+                        }
+                        if (skipped++ < offset) {
+                            continue;
+                        }
+                        if (count >= 0 && range.size() >= count) {
+                            break;
+                        }
+                        range.add(member);
+                    }
+                }
+                reply.members(range, hasFlag(c, 4, "WITHSCORES"));
+            }
+            default -> throw new CommandException("ERR unknown command '" + name + "' for the embedded store");
+        }
+        return false;
+    }
+
+    // Commands that recreate one key
+    private static List<List<String>> rebuildCommands(String key, Object value) {
+        List<List<String>> commands = new ArrayList<>();
+        if (value instanceof String s) {
+            commands.add(List.of("SET", key, s));
+        } else if (value instanceof Set<?> set) {
+            List<String> command = new ArrayList<>(List.of("SADD", key));
+            set.forEach(member -> command.add((String) member));
+            commands.add(command);
+        } else if (value instanceof Map<?, ?> hash) {
+            List<String> command = new ArrayList<>(List.of("HSET", key));
+            hash.forEach((field, v) -> {
+                command.add((String) field);
+                command.add((String) v);
+            });
+            commands.add(command);
+        } else if (value instanceof SortedSet zset) {
+            List<String> command = new ArrayList<>(List.of("ZADD", key));
+            zset.scores.forEach((member, score) -> {
+                command.add(formatScore(score));
+                command.add(member);
+            });
+            commands.add(command);
+        }
+        return commands;
+    }
+
+    private long replay() throws IOException {
+        if (!Files.exists(logPath)) {
+            return 0;
+        }
+        long count = 0;
+        long validLength = 0;
+        boolean cutShort = false;
+        try (CountingInputStream in = new CountingInputStream(
+                new BufferedInputStream(Files.newInputStream(logPath), 64 * 1024))) {
+            while (true) {
+                List<String> command;
+                try {
+                    command = readCommand(in);
+                } catch (EOFException e) {
+                    cutShort = true;
+                    break;
+                }
+                if (command == null) {
+                    break;
+                }
+                try {
+                    apply(command, null);
+                } catch (CommandException e) {
+                    logger.warn("Skipping logged command {}: {}", command.get(0), e.getMessage());
+                }
+                validLength = in.count;
+                count++;
+            }
+        } catch (IOException e) {
+            throw damaged(validLength, count, e.getMessage());
+        }
+        if (cutShort) {
+            // A damaged length can also run a command off the end; then whole commands follow it
+            if (holdsCommandAfter(validLength)) {
+                throw damaged(validLength, count, "a command runs past the end of the log");
+            }
+            // A write cut short by a crash; drop the partial command so appends line up
+            logger.warn("Truncating {} trailing bytes of the embedded store log",
+                    Files.size(logPath) - validLength);
+            try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+        return count;
+    }
+
+    private IOException damaged(long offset, long count, String reason) {
+        return new IOException(String.format("Embedded store log %s is damaged at byte %d, after %d commands (%s); "
+                + "it has been left as it is", logPath, offset, count, reason));
+    }
+
+    // Whether a whole command starts anywhere past offset
+    private boolean holdsCommandAfter(long offset) throws IOException {
+        byte[] tail;
+        try (InputStream in = Files.newInputStream(logPath)) {
+            in.skipNBytes(offset);
+            tail = in.readAllBytes();
+        }
+        for (int i = 1; i < tail.length; i++) {
+            if (tail[i] != '*' || tail[i - 1] != '\n') {
+                continue;
+            }
+            try {
+                if (readCommand(new ByteArrayInputStream(tail, i, tail.length - i)) != null) {
+                    return true;
+                }
+            } catch (IOException e) {
+                // Not the start of a command after all
+            }
+        }
+        return false;
+    }
+
+    private List<String> matching(String pattern) {
+        Pattern regex = globToRegex(pattern);
+        List<String> keys = new ArrayList<>();
+        for (String key : data.keySet()) {
+            if (regex.matcher(key).matches()) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    static Pattern globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char ch = glob.charAt(i);
+            switch (ch) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                case '[' -> {
+                    int end = glob.indexOf(']', i + 1);
+                    if (end < 0) {
+                        regex.append("\\[");
+                    } else {
+                        String set = glob.substring(i + 1, end);
+                        regex.append('[').append(set.startsWith("^") ? "^" + Pattern.quote(set.substring(1))
+                                : Pattern.quote(set)).append(']');
+                        i = end;
+                    }
+                }
+                case '\\' -> {
+                    if (i + 1 < glob.length()) {
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                }
+                default -> regex.append(Pattern.quote(String.valueOf(ch)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static String typeOf(Object value) {
+        if (value instanceof String) {
+            return "string";
+        } else if (value instanceof Set<?>) {
+            return "set";
+        } else if (value instanceof Map<?, ?>) {
+            return "hash";
+        } else if (value instanceof SortedSet) {
+            return "zset";
+        }
+        return "none";
+    }
+
+    private String string(String key) {
+        Object value = data.get(key);
+        if (value != null && !(value instanceof String)) {
+            throw wrongType();
+        }
+        return (String) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> set(String key, boolean create) {
+        Object value = data.get(key);
+        if (value == null && create) {
+            value = new HashSet<String>();
+            data.put(key, value);
+        } else if (value != null && !(value instanceof Set<?>)) {
+            throw wrongType();
+        }
+        return (Set<String>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> hash(String key, boolean create) {
+        Object value = data.get(key);
+        if (value == null && create) {
+            value = new HashMap<String, String>();
+            data.put(key, value);
+        } else if (value != null && !(value instanceof Map<?, ?>)) {
+            throw wrongType();
+        }
+        return (Map<String, String>) value;
+    }
+
+    private SortedSet zset(String key, boolean create) {
+        Object value = data.get(key);
+        if (value == null && create) {
+            value = new SortedSet();
+            data.put(key, value);
+        } else if (value != null && !(value instanceof SortedSet)) {
+            throw wrongType();
+        }
+        return (SortedSet) value;
+    }
+
+    // Redis deletes a set or hash once its last member is gone
+    private void dropIfEmpty(String key, Object collection) {
+        if ((collection instanceof Set<?> set && set.isEmpty()) || (collection instanceof Map<?, ?> map && map.isEmpty())) {
+            data.remove(key);
+        }
+    }
+
+    private static CommandException wrongType() {
+        return new CommandException("WRONGTYPE Operation against a key holding the wrong kind of value");
+    }
+
+    private static String arg(List<String> c, int index) {
+        if (index >= c.size()) {
+            throw new CommandException("ERR wrong number of arguments for '" + c.get(0).toLowerCase() + "' command");
+        }
+        return c.get(index);
+    }
+
+    private static boolean hasFlag(List<String> c, int from, String flag) {
+        for (int i = from; i < c.size(); i++) {
+            if (c.get(i).equalsIgnoreCase(flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long parseLong(String s) {
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            throw new CommandException("ERR value is not an integer or out of range");
+        }
+    }
+
+    private static double parseScore(String s) {
+        switch (s.toLowerCase()) {
+            case "inf", "+inf" -> {
+                return Double.POSITIVE_INFINITY;
+            }
+            case "-inf" -> {
+                return Double.NEGATIVE_INFINITY;
+            }
+            default -> {
+                try {
+                    return Double.parseDouble(s);
+                } catch (NumberFormatException e) {
+                    throw new CommandException("ERR value is not a valid float");
+                }
+            }
+        }
+    }
+
+    static String formatScore(double score) {
+        if (Double.isInfinite(score)) {
+            return score > 0 ? "inf" : "-inf";
+        }
+        if (score == Math.rint(score) && Math.abs(score) < 1e15) {
+            return Long.toString((long) score);
+        }
+        return Double.toString(score);
+    }
+
+    // Negative ranks count from the end, as in ZRANGE
+    private static int rank(long index, int size) {
+        long rank = index < 0 ? size + index : index;
+        return (int) Math.max(0, Math.min(rank, Integer.MAX_VALUE));
+    }
+
+    private record ScoredMember(double score, String member) {
+    }
+
+    // Members ordered by score, ties by member, as Redis orders them
+    private static final Comparator<ScoredMember> BY_SCORE = Comparator.comparingDouble(ScoredMember::score)
+            .thenComparing(ScoredMember::member);
+
+    private static final class SortedSet {
+        final Map<String, Double> scores = new HashMap<>();
+        final TreeSet<ScoredMember> ordered = new TreeSet<>(BY_SCORE);
+
+        boolean add(String member, double score) {
+            Double previous = scores.put(member, score);
+            if (previous != null) {
+                ordered.remove(new ScoredMember(previous, member));
+            }
+            ordered.add(new ScoredMember(score, member));
+            return previous == null;
+        }
+
+        boolean remove(String member) {
+            Double previous = scores.remove(member);
+            if (previous == null) {
+                return false;
+            }
+            ordered.remove(new ScoredMember(previous, member));
+            return true;
+        }
+    }
+
+    private record ScoreBound(double value, boolean exclusive) {
+        static ScoreBound parse(String s) {
+            boolean exclusive = s.startsWith("(");
+            return new ScoreBound(parseScore(exclusive ? s.substring(1) : s), exclusive);
+        }
+
+        // This bound, as a minimum, admits the score
+        boolean below(double score) {
+            return exclusive ? score > value : score >= value;
+        }
+
+        // This bound, as a maximum, admits the score
+        boolean above(double score) {
+            return exclusive ? score < value : score <= value;
+        }
+    }
+
+    // RESP replies; writes nothing when replaying the log
+    private static final class Reply {
+        private final OutputStream out;
+
+        Reply(OutputStream out) {
+            this.out = out;
+        }
+
+        void simple(String s) throws IOException {
+            if (out != null) {
+                EmbeddedStore.simple(out, s);
+            }
+        }
+
+        void integer(long value) throws IOException {
+            if (out != null) {
+                write(out, ":" + value + "\r\n");
+            }
+        }
+
+        void array(int size) throws IOException {
+            if (out != null) {
+                EmbeddedStore.array(out, size);
+            }
+        }
+
+        void bulk(String value) throws IOException {
+            if (out != null) {
+                EmbeddedStore.bulk(out, value);
+            }
+        }
+
+        void strings(List<String> values) throws IOException {
+            array(values.size());
+            for (String value : values) {
+                bulk(value);
+            }
+        }
+
+        void members(List<ScoredMember> members, boolean withScores) throws IOException {
+            array(withScores ? members.size() * 2 : members.size());
+            for (ScoredMember member : members) {
+                bulk(member.member());
+                if (withScores) {
+                    bulk(formatScore(member.score()));
+                }
+            }
+        }
+    }
+
+    private static void simple(OutputStream out, String s) throws IOException {
+        write(out, "+" + s + "\r\n");
+    }
+
+    private static void error(OutputStream out, String s) throws IOException {
+        write(out, "-" + s + "\r\n");
+    }
+
+    private static void array(OutputStream out, int size) throws IOException {
+        write(out, "*" + size + "\r\n");
+    }
+
+    private static void bulk(OutputStream out, String value) throws IOException {
+        if (value == null) {
+            write(out, "$-1\r\n");
+            return;
+        }
+        write(out, "$" + value.length() + "\r\n");
+        write(out, value);
+        write(out, "\r\n");
+    }
+
+    private static void write(OutputStream out, String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    static void writeCommand(OutputStream out, List<String> command) throws IOException {
+        array(out, command.size());
+        for (String arg : command) {
+            bulk(out, arg);
+        }
+    }
+
+    /**
+     * Read one RESP command (an array of bulk strings)
+     *
+     * @return the command, or null at a clean end of stream
+     * @throws EOFException if the stream ends inside a command
+     * @throws IOException  if the bytes are not a command
+     */
+    static List<String> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Expected array, got " + (char) type);
+        }
+        int count = readLength(in);
+        List<String> args = new ArrayList<>(Math.min(count, 64));
+        for (int i = 0; i < count; i++) {
+            int marker = in.read();
+            if (marker == -1) {
+                throw new EOFException();
+            }
+            if (marker != '$') {
+                throw new IOException("Expected bulk string");
+            }
+            int length = readLength(in);
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length < length) {
+                throw new EOFException();
+            }
+            expect(in, '\r');
+            expect(in, '\n');
+            args.add(new String(bytes, StandardCharsets.ISO_8859_1));
+        }
+        return args;
+    }
+
+    private static int readLength(InputStream in) throws IOException {
+        String line = readLine(in);
+        try {
+            int length = Integer.parseInt(line);
+            if (length >= 0) {
+                return length;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IOException("Bad length '" + line + "'");
+    }
+
+    private static void expect(InputStream in, char expected) throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        if (b != expected) {
+            throw new IOException("Expected CRLF");
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException();
+            }
+            sb.append((char) b);
+        }
+        expect(in, '\n');
+        return sb.toString();
+    }
+
+    private static final class CountingInputStream extends InputStream {
+        private final InputStream in;
+        long count;
+
+        CountingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Socket whose output runs the commands written to it against the store
+     * when flushed, and whose input returns their replies
+     */
+    private static final class MemorySocket extends Socket {
+        private final Client client;
+        private byte[] request = new byte[8192];
+        private int requestSize;
+        private byte[] reply = new byte[8192];
+        private int replyStart;
+        private int replyEnd;
+        private int soTimeout;
+        private boolean socketClosed;
+
+        MemorySocket(Client client) {
+            this.client = client;
+        }
+
+        private final OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) {
+                ensureRequest(1);
+                request[requestSize++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                ensureRequest(len);
+                System.arraycopy(b, off, request, requestSize, len);
+                requestSize += len;
+            }
+
+            @Override
+            public void flush() throws IOException {
+                runRequests();
+            }
+        };
+
+        private final OutputStream replyOutput = new OutputStream() {
+            @Override
+            public void write(int b) {
+                ensureReply(1);
+                reply[replyEnd++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                ensureReply(len);
+                System.arraycopy(b, off, reply, replyEnd, len);
+                replyEnd += len;
+            }
+        };
+
+        private final InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                checkReply();
+                return reply[replyStart++] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                checkReply();
+                int n = Math.min(len, replyEnd - replyStart);
+                System.arraycopy(reply, replyStart, b, off, n);
+                replyStart += n;
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return replyEnd - replyStart;
+            }
+        };
+
+        // Commands run synchronously on flush, so a read with nothing buffered would never be answered
+        private void checkReply() throws IOException {
+            if (socketClosed) {
+                throw new IOException("Socket closed");
+            }
+            if (replyStart == replyEnd) {
+                throw new IOException("No reply pending from the embedded store");
+            }
+        }
+
+        private void runRequests() throws IOException {
+            List<List<String>> commands = new ArrayList<>();
+            InputStream in = new ByteArrayInputStream(request, 0, requestSize);
+            int consumed = 0;
+            while (consumed < requestSize) {
+                List<String> command;
+                try {
+                    command = readCommand(in);
+                } catch (EOFException e) {
+                    // Rest of a command not flushed yet
+                    break;
+                }
+                commands.add(command);
+                consumed = requestSize - in.available();
+            }
+            System.arraycopy(request, consumed, request, 0, requestSize - consumed);
+            requestSize -= consumed;
+            if (!commands.isEmpty()) {
+                if (replyStart == replyEnd) {
+                    replyStart = 0;
+                    replyEnd = 0;
+                }
+                client.executeAll(commands, replyOutput);
+            }
+        }
+
+        private void ensureRequest(int extra) {
+            if (requestSize + extra > request.length) {
+                request = Arrays.copyOf(request, Math.max(request.length * 2, requestSize + extra));
+            }
+        }
+
+        private void ensureReply(int extra) {
+            if (replyEnd + extra > reply.length) {
+                reply = Arrays.copyOf(reply, Math.max(reply.length * 2, replyEnd + extra));
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return input;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return output;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public boolean isBound() {
+            return true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return socketClosed;
+        }
+
+        @Override
+        public boolean isInputShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isOutputShutdown() {
+            return false;
+        }
+
+        @Override
+        public int getSoTimeout() {
+            return soTimeout;
+        }
+
+        @Override
+        public void setSoTimeout(int timeout) {
+            soTimeout = timeout;
+        }
+
+        @Override
+        public void close() {
+            socketClosed = true;
+        }
+    }
+}
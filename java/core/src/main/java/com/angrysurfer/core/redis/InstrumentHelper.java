@@ -1,6 +1,7 @@
 package com.angrysurfer.core.redis;
 
 import com.angrysurfer.core.model.InstrumentWrapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Getter;
@@ -33,8 +34,8 @@ public class InstrumentHelper {
 
     public List<InstrumentWrapper> findAllInstruments() {
         try (Jedis jedis = jedisPool.getResource()) {
-            return jedis.keys("instrument:*").stream()
-                    .map(key -> findInstrumentById(Long.parseLong(key.split(":")[1])))
+            return RedisKeyIndex.INSTRUMENTS.ids(jedis).stream()
+                    .map(this::findInstrumentById)
                     .filter(i -> i != null)
                     .collect(Collectors.toList());
         }
@@ -85,8 +86,7 @@ public class InstrumentHelper {
             if (instrument.getId() == null) {
                 instrument.setId(jedis.incr("seq:instrument"));
             }
-            String json = objectMapper.writeValueAsString(instrument);
-            jedis.set("instrument:" + instrument.getId(), json);
+            writeSave(jedis, instrument.getId(), prepareSave(instrument));
             logger.debug("Saved instrument to Redis: {}", instrument.getName());
         } catch (Exception e) {
             logger.error("Error saving instrument: " + e.getMessage());
@@ -94,9 +94,32 @@ public class InstrumentHelper {
         }
     }
 
+    /**
+     * Serialize an instrument as it is now, so the save can be written from
+     * another thread while the instrument keeps changing
+     */
+    String prepareSave(InstrumentWrapper instrument) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(instrument);
+    }
+
+    /**
+     * Write an instrument serialized by {@link #prepareSave(InstrumentWrapper)}
+     */
+    void writeSave(Long id, String json) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            writeSave(jedis, id, json);
+        }
+    }
+
+    private void writeSave(Jedis jedis, Long id, String json) {
+        jedis.set("instrument:" + id, json);
+        RedisKeyIndex.INSTRUMENTS.add(jedis, id);
+    }
+
     public void deleteInstrument(Long id) {
         try (Jedis jedis = jedisPool.getResource()) {
             jedis.del("instrument:" + id);
+            RedisKeyIndex.INSTRUMENTS.remove(jedis, id);
         } catch (Exception e) {
             logger.error("Error deleting instrument: " + e.getMessage());
             throw new RuntimeException("Failed to delete instrument", e);
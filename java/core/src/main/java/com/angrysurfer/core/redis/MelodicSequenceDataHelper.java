@@ -20,8 +20,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
 
 import javax.sound.midi.MidiDevice;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 @Getter
@@ -32,6 +34,8 @@ public class MelodicSequenceDataHelper {
     private static final int MAX_STEPS = 16;
     private final JedisPool jedisPool;
     private final ObjectMapper objectMapper;
+    // Form new saves are written in; loads read either
+    private SequenceFormat format = SequenceFormat.fromSystemProperty();
 
     public MelodicSequenceDataHelper(JedisPool jedisPool) {
         this.jedisPool = jedisPool;
@@ -59,34 +63,32 @@ public class MelodicSequenceDataHelper {
      */
     public MelodicSequenceData findMelodicSequenceById(Long id, Integer sequencerId) {
         try (Jedis jedis = jedisPool.getResource()) {
-            String json = null;
+            byte[] stored = null;
             String source = "unknown";
 
             // Try first with the newer key format
-            json = jedis.get("melodicseq:" + sequencerId + ":" + id);
+            stored = jedis.get(bytes("melodicseq:" + sequencerId + ":" + id));
             logger.info("findMelodicSequenceById(id: {}, sequencerId: {})", id, sequencerId);
-            logger.info(json);
-            if (json != null) source = "melodicseq key";
+            if (stored != null) source = "melodicseq key";
 
             // If not found, try the older key format
-            if (json == null) {
-                json = jedis.get("melseq:" + sequencerId + ":" + id);
-                if (json != null) source = "melseq key";
+            if (stored == null) {
+                stored = jedis.get(bytes("melseq:" + sequencerId + ":" + id));
+                if (stored != null) source = "melseq key";
             }
 
-            // If still not found, try looking up in the hash for faster lookup
-            if (json == null) {
-                json = jedis.hget("melodic-sequences:" + sequencerId, String.valueOf(id));
-                if (json != null) source = "hash table";
+            // If still not found, try the hash older saves also wrote to
+            if (stored == null) {
+                stored = jedis.hget(bytes("melodic-sequences:" + sequencerId), bytes(String.valueOf(id)));
+                if (stored != null) source = "hash table";
             }
 
-            if (json != null) {
-                // Log a portion of the JSON to debug
-                logger.debug("Found melodic sequence from {}, JSON excerpt: {}",
-                        source, json.length() > 100 ? json.substring(0, 100) + "..." : json);
+            if (stored != null) {
+                logger.debug("Found melodic sequence from {}, {} bytes, {}", source, stored.length,
+                        SequenceDataCodec.isBinary(stored) ? "binary" : "JSON");
 
                 try {
-                    MelodicSequenceData data = objectMapper.readValue(json, MelodicSequenceData.class);
+                    MelodicSequenceData data = decode(stored);
                     logger.info("Loaded melodic sequence {} for sequencer {} with instrument: {} ({})",
                             id, sequencerId,
                             data.getInstrumentName(),
@@ -438,12 +440,12 @@ public class MelodicSequenceDataHelper {
                 }
             }
 
-            // Save to Redis
-            String json = objectMapper.writeValueAsString(data);
-
-            // Save to both storage formats
-            jedis.set("melodicseq:" + sequencer.getId() + ":" + data.getId(), json);
-            jedis.hset("melodic-sequences:" + sequencer.getId(), String.valueOf(data.getId()), json);
+            // Save to Redis in one round trip, dropping the copy older saves kept in the hash
+            Pipeline pipeline = jedis.pipelined();
+            pipeline.set(bytes("melodicseq:" + sequencer.getId() + ":" + data.getId()), encode(data));
+            pipeline.hdel("melodic-sequences:" + sequencer.getId(), String.valueOf(data.getId()));
+            RedisKeyIndex.melodicSequences(sequencer.getId()).add(pipeline, data.getId());
+            pipeline.sync();
 
             logger.info("Saved melodic sequence {} for sequencer {}.",
                     data.getId(), sequencer.getId());
@@ -486,41 +488,10 @@ public class MelodicSequenceDataHelper {
      */
     public List<Long> getAllMelodicSequenceIds(Integer sequencerId) {
         try (Jedis jedis = jedisPool.getResource()) {
-            // Use a Set to avoid duplicate IDs
-            Set<Long> uniqueIds = new HashSet<>();
-
-            // Check older key format
-            Set<String> oldKeys = jedis.keys("melseq:" + sequencerId + ":*");
-            for (String key : oldKeys) {
-                try {
-                    uniqueIds.add(Long.parseLong(key.split(":")[2]));
-                } catch (NumberFormatException e) {
-                    logger.error("Invalid melodic sequence key: " + key);
-                }
-            }
-
-            // Check newer key format
-            Set<String> newKeys = jedis.keys("melodicseq:" + sequencerId + ":*");
-            for (String key : newKeys) {
-                try {
-                    uniqueIds.add(Long.parseLong(key.split(":")[2]));
-                } catch (NumberFormatException e) {
-                    logger.error("Invalid melodic sequence key: " + key);
-                }
-            }
-
-            // Check hash storage
-            Map<String, String> hashEntries = jedis.hgetAll("melodic-sequences:" + sequencerId);
-            for (String idStr : hashEntries.keySet()) {
-                try {
-                    uniqueIds.add(Long.parseLong(idStr));
-                } catch (NumberFormatException e) {
-                    logger.error("Invalid melodic sequence hash key: " + idStr);
-                }
-            }
-
-            logger.info("Found {} melodic sequences for sequencer {}", uniqueIds.size(), sequencerId);
-            return new ArrayList<>(uniqueIds);
+            // The index covers the melseq:, melodicseq: and hash storage formats
+            List<Long> ids = RedisKeyIndex.melodicSequences(sequencerId).ids(jedis);
+            logger.info("Found {} melodic sequences for sequencer {}", ids.size(), sequencerId);
+            return ids;
         }
     }
 
@@ -529,11 +500,7 @@ public class MelodicSequenceDataHelper {
      */
     public Long getMinimumMelodicSequenceId(Integer sequencerId) {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("melseq:" + sequencerId + ":*");
-            return keys.stream()
-                    .map(key -> Long.parseLong(key.split(":")[2]))
-                    .min(Long::compareTo)
-                    .orElse(null);
+            return RedisKeyIndex.melodicSequences(sequencerId).first(jedis);
         }
     }
 
@@ -542,20 +509,36 @@ public class MelodicSequenceDataHelper {
      */
     public Long getMaximumMelodicSequenceId(Integer sequencerId) {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("melseq:" + sequencerId + ":*");
-            return keys.stream()
-                    .map(key -> Long.parseLong(key.split(":")[2]))
-                    .max(Long::compareTo)
-                    .orElse(null);
+            return RedisKeyIndex.melodicSequences(sequencerId).last(jedis);
         }
     }
 
+    byte[] encode(MelodicSequenceData data) throws JsonProcessingException {
+        return format == SequenceFormat.BINARY
+                ? SequenceDataCodec.encode(data)
+                : objectMapper.writeValueAsBytes(data);
+    }
+
+    MelodicSequenceData decode(byte[] stored) throws JsonProcessingException {
+        return SequenceDataCodec.isBinary(stored)
+                ? SequenceDataCodec.decodeMelodic(stored)
+                : objectMapper.readValue(new String(stored, StandardCharsets.UTF_8), MelodicSequenceData.class);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
     /**
      * Delete a melodic sequence
      */
     public void deleteMelodicSequence(Integer sequencerId, Long melSequenceId) {
         try (Jedis jedis = jedisPool.getResource()) {
-            jedis.del("melseq:" + sequencerId + ":" + melSequenceId);
+            // Remove every storage format, so the sequence can't be found again after leaving the index
+            jedis.del("melseq:" + sequencerId + ":" + melSequenceId,
+                    "melodicseq:" + sequencerId + ":" + melSequenceId);
+            jedis.hdel("melodic-sequences:" + sequencerId, String.valueOf(melSequenceId));
+            RedisKeyIndex.melodicSequences(sequencerId).remove(jedis, melSequenceId);
             logger.info("Deleted melodic sequence {} for sequencer {}", melSequenceId, sequencerId);
 
             // Notify listeners
@@ -634,8 +617,8 @@ public class MelodicSequenceDataHelper {
             data.setProbabilityValues(probabilityValues);
 
             // Save to Redis
-            String json = objectMapper.writeValueAsString(data);
-            jedis.set("melseq:" + sequencerId + ":" + data.getId(), json);
+            jedis.set(bytes("melseq:" + sequencerId + ":" + data.getId()), encode(data));
+            RedisKeyIndex.melodicSequences(sequencerId).add(jedis, data.getId());
 
             logger.info("Created new melodic sequence with ID: {} for sequencer {}", data.getId(), sequencerId);
             return data;
@@ -650,12 +633,7 @@ public class MelodicSequenceDataHelper {
      */
     public Long getPreviousMelodicSequenceId(Integer sequencerId, Long currentId) {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("melseq:" + sequencerId + ":*");
-            return keys.stream()
-                    .map(k -> Long.parseLong(k.split(":")[2]))
-                    .filter(id -> id < currentId)
-                    .max(Long::compareTo)
-                    .orElse(null);
+            return RedisKeyIndex.melodicSequences(sequencerId).previous(jedis, currentId);
         }
     }
 
@@ -664,12 +642,7 @@ public class MelodicSequenceDataHelper {
      */
     public Long getNextMelodicSequenceId(Integer sequencerId, Long currentId) {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("melseq:" + sequencerId + ":*");
-            return keys.stream()
-                    .map(k -> Long.parseLong(k.split(":")[2]))
-                    .filter(id -> id > currentId)
-                    .min(Long::compareTo)
-                    .orElse(null);
+            return RedisKeyIndex.melodicSequences(sequencerId).next(jedis, currentId);
         }
     }
 
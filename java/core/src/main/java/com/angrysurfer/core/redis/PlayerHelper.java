@@ -1,9 +1,15 @@
 package com.angrysurfer.core.redis;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,26 +21,48 @@ import com.angrysurfer.core.model.Session;
 import com.angrysurfer.core.model.Strike;
 import com.angrysurfer.core.service.SessionManager;
 import com.angrysurfer.core.util.ErrorHandler;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import lombok.Getter;
 import lombok.Setter;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
 
 @Getter
 @Setter
 public class PlayerHelper {
     private static final Logger logger = LoggerFactory.getLogger(PlayerHelper.class.getName());
 
+    /**
+     * A player serialized for saving. The last one written for each player is
+     * kept to diff the next save against; these are shared by every
+     * PlayerHelper, since several are created.
+     */
+    record PlayerSnapshot(Long playerId, String playerKey, String json, String playersKey, Map<Long, String> rules) {
+    }
+
+    private static final Map<Long, PlayerSnapshot> SNAPSHOTS = new ConcurrentHashMap<>();
+
     private final JedisPool jedisPool;
     private final ObjectMapper objectMapper;
     private final RuleHelper ruleHelper;
+    // Player JSON without the rules, which are stored under their own keys
+    private final ObjectWriter playerWriter;
+
+    @JsonIgnoreProperties({"rules"})
+    private abstract static class PlayerWithoutRules {
+    }
 
     public PlayerHelper(JedisPool jedisPool, ObjectMapper objectMapper) {
         this.jedisPool = jedisPool;
         this.objectMapper = objectMapper;
         this.ruleHelper = new RuleHelper(jedisPool, objectMapper);
+        this.playerWriter = objectMapper.copy().addMixIn(Player.class, PlayerWithoutRules.class).writer();
     }
 
     private String getPlayerKey(String className, Long id) {
@@ -77,28 +105,12 @@ public class PlayerHelper {
     public Player findPlayerById(Long id, String className) {
         try (Jedis jedis = jedisPool.getResource()) {
             // Normalize the class name (capitalize first letter for consistency)
-            String normalizedClassName = className;
-            if (className != null && !className.isEmpty()) {
-                normalizedClassName = className.substring(0, 1).toUpperCase() + className.substring(1).toLowerCase();
-            }
+            String normalizedClassName = normalizeClassName(className);
 
             String json = jedis.get(getPlayerKey(normalizedClassName, id));
             if (json != null) {
-                // Dynamically determine class based on normalized className parameter
-                Class<? extends Player> playerClass;
-                switch (normalizedClassName) {
-                    case "Note":
-                        playerClass = Note.class;
-                        break;
-                    case "Strike":
-                        playerClass = Strike.class;
-                        break;
-                    default:
-                        throw new IllegalArgumentException("Unsupported player class: " + className);
-                }
-
                 // Use the correct class for deserialization
-                Player player = objectMapper.readValue(json, playerClass);
+                Player player = objectMapper.readValue(json, playerClass(normalizedClassName));
 
                 // Load rules for this player
                 Set<String> ruleIds = jedis.smembers("player:" + id + ":rules");
@@ -127,6 +139,103 @@ public class PlayerHelper {
         }
     }
 
+    private static String normalizeClassName(String className) {
+        if (className == null || className.isEmpty()) {
+            return className;
+        }
+        return className.substring(0, 1).toUpperCase() + className.substring(1).toLowerCase();
+    }
+
+    private static Class<? extends Player> playerClass(String normalizedClassName) {
+        switch (normalizedClassName) {
+            case "Note":
+                return Note.class;
+            case "Strike":
+                return Strike.class;
+            default:
+                throw new IllegalArgumentException("Unsupported player class: " + normalizedClassName);
+        }
+    }
+
+    /**
+     * Load many players with their rules in two round trips instead of two
+     * plus one per rule for each player: one pipeline carrying an MGET of the
+     * player JSON per type and every player's rule-id set, then one MGET of
+     * all the rule JSON.
+     *
+     * @param jedis     Connection to use, so a caller's own reads can share it
+     * @param idsByType Player ids keyed by class name ("Strike", "Note")
+     * @return The players found, with rules set; missing ids are skipped
+     */
+    public List<Player> findPlayersByIds(Jedis jedis, Map<String, ? extends Collection<String>> idsByType) {
+        List<Player> players = new ArrayList<>();
+        if (idsByType == null || idsByType.isEmpty()) {
+            return players;
+        }
+
+        try {
+            Pipeline pipeline = jedis.pipelined();
+            Map<String, Response<List<String>>> jsonByType = new HashMap<>();
+            Map<String, Response<Set<String>>> ruleIdsByPlayer = new HashMap<>();
+            idsByType.forEach((className, ids) -> {
+                if (ids == null || ids.isEmpty()) {
+                    return;
+                }
+                String normalized = normalizeClassName(className);
+                String[] keys = new String[ids.size()];
+                int i = 0;
+                for (String id : ids) {
+                    keys[i++] = getPlayerKey(normalized, Long.valueOf(id));
+                    ruleIdsByPlayer.computeIfAbsent(id, pid -> pipeline.smembers("player:" + pid + ":rules"));
+                }
+                jsonByType.put(normalized, pipeline.mget(keys));
+            });
+            pipeline.sync();
+
+            // All rules in one MGET
+            Set<String> ruleIds = new LinkedHashSet<>();
+            ruleIdsByPlayer.values().forEach(response -> ruleIds.addAll(response.get()));
+            Map<String, String> ruleJson = new HashMap<>();
+            if (!ruleIds.isEmpty()) {
+                String[] ruleKeys = ruleIds.stream().map(id -> "rule:" + id).toArray(String[]::new);
+                List<String> values = jedis.mget(ruleKeys);
+                int i = 0;
+                for (String id : ruleIds) {
+                    ruleJson.put(id, values.get(i++));
+                }
+            }
+
+            for (Map.Entry<String, Response<List<String>>> entry : jsonByType.entrySet()) {
+                Class<? extends Player> playerClass = playerClass(entry.getKey());
+                for (String json : entry.getValue().get()) {
+                    if (json == null) {
+                        continue;
+                    }
+                    Player player = objectMapper.readValue(json, playerClass);
+                    Set<Rule> rules = new HashSet<>();
+                    Response<Set<String>> playerRuleIds = ruleIdsByPlayer.get(String.valueOf(player.getId()));
+                    if (playerRuleIds != null) {
+                        for (String ruleId : playerRuleIds.get()) {
+                            String rule = ruleJson.get(ruleId);
+                            if (rule != null) {
+                                rules.add(objectMapper.readValue(rule, Rule.class));
+                            }
+                        }
+                    }
+                    player.setRules(rules);
+                    players.add(player);
+                }
+            }
+
+            logger.info("Batch loaded {} players with {} rules", players.size(), ruleJson.size());
+            return players;
+        } catch (Exception e) {
+            logger.error("Error batch loading players: " + e.getMessage(), e);
+            ErrorHandler.logError("PlayerHelper", "Failed to load players", e);
+            throw new RuntimeException("Failed to load players", e);
+        }
+    }
+
     public Set<Player> findPlayersForSession(Long sessionId, String className) {
         try (Jedis jedis = jedisPool.getResource()) {
             Set<Player> players = new HashSet<>();
@@ -180,92 +289,189 @@ public class PlayerHelper {
 
     /**
      * Save player to Redis
-     * This handles instrument references and session updates
+     * This handles instrument references and session updates.
+     * <p>
+     * Only keys that changed since this player was last saved are written, in
+     * one MULTI/EXEC: the player JSON, new or edited rules, rules removed from
+     * the player and a new session membership. Saving an unchanged player
+     * costs no Redis writes at all.
      */
     public void savePlayer(Player player) {
-        try (Jedis jedis = jedisPool.getResource()) {
-            if (player == null) {
-                logger.warn("Cannot save null player");
-                return;
-            }
+        if (player == null) {
+            logger.warn("Cannot save null player");
+            return;
+        }
 
-            // Skip saving default players
-            if (Boolean.TRUE.equals(player.getIsDefault())) {
-                logger.debug("Skipping Redis save for default player: {}", player.getName());
-                return;
-            }
+        // Skip saving default players
+        if (Boolean.TRUE.equals(player.getIsDefault())) {
+            logger.debug("Skipping Redis save for default player: {}", player.getName());
+            return;
+        }
 
-            logger.debug("Saving player ID: {} with name: {}", player.getId(), player.getName());
+        logger.debug("Saving player ID: {} with name: {}", player.getId(), player.getName());
 
-            // Save the instrument first if it exists and is not default
-            if (player.getInstrument() != null && !Boolean.TRUE.equals(player.getInstrument().getIsDefault())) {
-                InstrumentHelper instrumentHelper = new InstrumentHelper(jedisPool, objectMapper);
-                instrumentHelper.saveInstrument(player.getInstrument());
+        // Save the instrument first if it exists and is not default
+        if (player.getInstrument() != null && !Boolean.TRUE.equals(player.getInstrument().getIsDefault())) {
+            InstrumentHelper instrumentHelper = new InstrumentHelper(jedisPool, objectMapper);
+            instrumentHelper.saveInstrument(player.getInstrument());
 
-                // Ensure the player's instrumentId is set correctly
-                player.setInstrumentId(player.getInstrument().getId());
+            // Ensure the player's instrumentId is set correctly
+            player.setInstrumentId(player.getInstrument().getId());
 
-                logger.debug("Associated instrument ID: {} with name: {}",
-                        player.getInstrumentId(), player.getInstrument().getName());
-            }
+            logger.debug("Associated instrument ID: {} with name: {}",
+                    player.getInstrumentId(), player.getInstrument().getName());
+        }
+
+        PlayerSnapshot save;
+        try {
+            save = prepareSave(player);
+        } catch (Exception e) {
+            logger.error("Error saving player: {}", e.getMessage(), e);
+            ErrorHandler.logError("PlayerHelper", "Failed to save player", e);
+            return;
+        }
+        writeSave(save);
+    }
 
-            // If the player belongs to a session, update the session as well
-            Session session = player.getSession();
-            if (session != null) {
-                String playersKey = String.format("session:%d:players:%s", 
-                        session.getId(), player.getPlayerClassName());
-                jedis.sadd(playersKey, player.getId().toString());
+    /**
+     * Serialize a player and its rules as they are now, on the caller's
+     * thread, so the save can be written later from another thread while the
+     * player keeps changing. Ids for a new player or new rules are taken from
+     * Redis here, so the caller sees them at once.
+     */
+    PlayerSnapshot prepareSave(Player player) throws Exception {
+        Set<Rule> rules = new HashSet<>(player.getRules() != null ? player.getRules() : Set.of());
+        List<Rule> unsavedRules = rules.stream().filter(rule -> rule.getId() == null).toList();
+        if (player.getId() == null || !unsavedRules.isEmpty()) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                if (player.getId() == null) {
+                    player.setId(jedis.incr("seq:player"));
+                }
+                // Ids for new rules in one INCRBY
+                if (!unsavedRules.isEmpty()) {
+                    long nextRuleId = jedis.incrBy("seq:rule", unsavedRules.size()) - unsavedRules.size() + 1;
+                    for (Rule rule : unsavedRules) {
+                        rule.setId(nextRuleId++);
+                    }
+                }
             }
+        }
 
-            // Now proceed with existing player saving logic...
-            if (player.getId() == null) {
-                player.setId(jedis.incr("seq:player"));
+        Map<Long, String> ruleJson = new HashMap<>();
+        for (Rule rule : rules) {
+            ruleJson.put(rule.getId(), objectMapper.writeValueAsString(rule));
+        }
+        Session session = player.getSession();
+        String playersKey = session != null && session.getId() != null
+                ? String.format("session:%d:players:%s", session.getId(), player.getPlayerClassName())
+                : null;
+        return new PlayerSnapshot(player.getId(), getPlayerKey(player.getPlayerClassName(), player.getId()),
+                playerWriter.writeValueAsString(player), playersKey, ruleJson);
+    }
+
+    /**
+     * Write a save made by {@link #prepareSave(Player)}. Only keys that differ
+     * from the player's last save are written.
+     */
+    void writeSave(PlayerSnapshot save) {
+        synchronized (SNAPSHOTS) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                writeChanges(jedis, save);
+            } catch (Exception e) {
+                // The stored state is unknown now, so the next save writes everything
+                SNAPSHOTS.remove(save.playerId());
+                logger.error("Error saving player: {}", e.getMessage(), e);
+                ErrorHandler.logError("PlayerHelper", "Failed to save player", e);
             }
+        }
+    }
 
-            // Save rules first and maintain relationships
-            String rulesKey = String.format("player:%d:rules", player.getId());
-            jedis.del(rulesKey); // Clear existing rules
+    // Called holding the SNAPSHOTS lock
+    private void writeChanges(Jedis jedis, PlayerSnapshot save) {
+        Long playerId = save.playerId();
+        String playerKey = save.playerKey();
+        String playersKey = save.playersKey();
+        PlayerSnapshot previous = SNAPSHOTS.get(playerId);
+        if (previous != null && !previous.playerKey().equals(playerKey)) {
+            previous = null;
+        }
 
-            if (player.getRules() != null) {
-                for (Rule rule : player.getRules()) {
-                    if (rule.getId() == null) {
-                        rule.setId(jedis.incr("seq:rule"));
+        // Collect the changed keys first, so an unchanged player costs no round trip at all
+        String rulesKey = String.format("player:%d:rules", playerId);
+        List<Consumer<Transaction>> writes = new ArrayList<>();
+        if (previous == null) {
+            // Nothing known about what is stored: replace the rule set outright
+            writes.add(t -> t.del(rulesKey));
+        }
+        if (playersKey != null && (previous == null || !playersKey.equals(previous.playersKey()))) {
+            writes.add(t -> t.sadd(playersKey, playerId.toString()));
+        }
+        for (Map.Entry<Long, String> rule : save.rules().entrySet()) {
+            Long ruleId = rule.getKey();
+            if (previous == null || !rule.getValue().equals(previous.rules().get(ruleId))) {
+                boolean added = previous == null || !previous.rules().containsKey(ruleId);
+                writes.add(t -> {
+                    t.set("rule:" + ruleId, rule.getValue());
+                    RedisKeyIndex.RULES.add(t, ruleId);
+                    if (added) {
+                        t.sadd(rulesKey, ruleId.toString());
                     }
-                    // Save rule
-                    String ruleJson = objectMapper.writeValueAsString(rule);
-                    jedis.set("rule:" + rule.getId(), ruleJson);
-                    // Add to player's rules set
-                    jedis.sadd(rulesKey, rule.getId().toString());
+                });
+            }
+        }
+        if (previous != null) {
+            for (Long ruleId : previous.rules().keySet()) {
+                if (!save.rules().containsKey(ruleId)) {
+                    writes.add(t -> {
+                        t.srem(rulesKey, ruleId.toString());
+                        t.del("rule:" + ruleId);
+                        RedisKeyIndex.RULES.remove(t, ruleId);
+                    });
                 }
             }
+        }
+        if (previous == null || !save.json().equals(previous.json())) {
+            writes.add(t -> {
+                t.set(playerKey, save.json());
+                RedisKeyIndex.PLAYERS.add(t, playerId);
+            });
+        }
 
-            // Store references before removing
-            Set<Rule> rules = new HashSet<>(player.getRules() != null ? player.getRules() : new HashSet<>());
-            
-            // Temporarily remove circular references
-            player.setSession(null);
-            player.setRules(null);
-
-            // Save the player
-            String json = objectMapper.writeValueAsString(player);
-            String playerKey = getPlayerKey(player.getPlayerClassName(), player.getId());
-            jedis.set(playerKey, json);
+        if (writes.isEmpty()) {
+            logger.debug("Player {} unchanged, nothing to save", playerId);
+            return;
+        }
+        Transaction transaction = jedis.multi();
+        writes.forEach(write -> write.accept(transaction));
+        transaction.exec();
+        SNAPSHOTS.put(playerId, save);
 
-            // Restore references
-            player.setSession(session);
-            player.setRules(rules);
+        logger.info("Saved player {} with {} rules ({} changes)", playerId, save.rules().size(), writes.size());
+    }
 
-            logger.info("Saved player {} with {} rules", player.getId(), rules.size());
-        } catch (Exception e) {
-            logger.error("Error saving player: {}", e.getMessage(), e);
-            ErrorHandler.logError("PlayerHelper", "Failed to save player", e);
+    /**
+     * Forget what was last written for any player holding this rule, after
+     * the rule was written or deleted outside savePlayer
+     */
+    static void forgetRule(Long ruleId) {
+        if (ruleId != null) {
+            SNAPSHOTS.values().removeIf(snapshot -> snapshot.rules().containsKey(ruleId));
         }
     }
 
+    /**
+     * Forget every snapshot, e.g. after the database was flushed
+     */
+    static void forgetAll() {
+        SNAPSHOTS.clear();
+    }
+
     public void deletePlayerById(Long id, String className) {
         try (Jedis jedis = jedisPool.getResource()) {
             String playerKey = getPlayerKey(className, id);
             jedis.del(playerKey);
+            SNAPSHOTS.remove(id);
+            RedisKeyIndex.PLAYERS.remove(jedis, id);
             logger.info("Deleted player with ID: " + id);
         } catch (Exception e) {
             logger.error("Error deleting player: " + e.getMessage());
@@ -291,6 +497,8 @@ public class PlayerHelper {
             // Delete the player
             String key = getPlayerKey(player.getPlayerClassName(), player.getId());
             jedis.del(key);
+            SNAPSHOTS.remove(player.getId());
+            RedisKeyIndex.PLAYERS.remove(jedis, player.getId());
         } catch (Exception e) {
             logger.error("Error deleting player: " + e.getMessage());
             throw new RuntimeException("Failed to delete player", e);
@@ -0,0 +1,140 @@
+package com.angrysurfer.core.redis;
+
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+
+/**
+ * One-time build of the {@link RedisKeyIndex} sets from entity keys saved
+ * before the indexes existed. Runs at startup until it has completed once,
+ * which is recorded under {@value #VERSION_KEY}; uses SCAN rather than KEYS so
+ * Redis stays responsive while it walks a large database.
+ */
+public final class RedisIndexMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisIndexMigration.class);
+
+    static final String VERSION_KEY = RedisKeyIndex.PREFIX + "version";
+    static final String VERSION = "1";
+
+    private static final int SCAN_COUNT = 500;
+
+    private RedisIndexMigration() {
+    }
+
+    /**
+     * Build the indexes unless a previous run already did
+     */
+    public static void migrate(JedisPool jedisPool) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            if (VERSION.equals(jedis.get(VERSION_KEY))) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            int indexed = rebuild(jedis);
+            markCurrent(jedis);
+            logger.info("Indexed {} existing entities in {} ms", indexed, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("Error building Redis key indexes: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Record that the indexes are current, e.g. after the database was flushed
+     */
+    public static void markCurrent(Jedis jedis) {
+        jedis.set(VERSION_KEY, VERSION);
+    }
+
+    /**
+     * Add every stored entity to its index. Safe to repeat: ZADD of an id
+     * already present is a no-op.
+     *
+     * @return the number of keys indexed
+     */
+    public static int rebuild(Jedis jedis) {
+        int[] count = new int[1];
+
+        indexSimple(jedis, "session", RedisKeyIndex.SESSIONS, count);
+        indexSimple(jedis, "song", RedisKeyIndex.SONGS, count);
+        indexSimple(jedis, "rule", RedisKeyIndex.RULES, count);
+        indexSimple(jedis, "instrument", RedisKeyIndex.INSTRUMENTS, count);
+        indexSimple(jedis, "drumseq", RedisKeyIndex.DRUM_SEQUENCES, count);
+
+        // player:<type>:<id>, skipping player:<id>:rules
+        scan(jedis, "player:*", key -> {
+            String[] parts = key.split(":");
+            if (parts.length == 3 && isId(parts[2]) && !isId(parts[1])) {
+                RedisKeyIndex.PLAYERS.add(jedis, Long.parseLong(parts[2]));
+                count[0]++;
+            }
+        });
+
+        // melseq:<sequencer>:<id> and melodicseq:<sequencer>:<id>
+        Consumer<String> melodicKey = key -> {
+            String[] parts = key.split(":");
+            if (parts.length == 3 && isId(parts[1]) && isId(parts[2])) {
+                RedisKeyIndex.melodicSequences(Integer.parseInt(parts[1])).add(jedis, Long.parseLong(parts[2]));
+                count[0]++;
+            }
+        };
+        scan(jedis, "melseq:*", melodicKey);
+        scan(jedis, "melodicseq:*", melodicKey);
+
+        // melodic-sequences:<sequencer> hashes, keyed by sequence id
+        scan(jedis, "melodic-sequences:*", key -> {
+            String sequencerId = key.substring(key.indexOf(':') + 1);
+            if (!isId(sequencerId)) {
+                return;
+            }
+            RedisKeyIndex index = RedisKeyIndex.melodicSequences(Integer.parseInt(sequencerId));
+            for (String field : jedis.hkeys(key)) {
+                if (isId(field)) {
+                    index.add(jedis, Long.parseLong(field));
+                    count[0]++;
+                }
+            }
+        });
+
+        return count[0];
+    }
+
+    // <prefix>:<id> only; relation keys like session:<id>:players:note are skipped
+    private static void indexSimple(Jedis jedis, String prefix, RedisKeyIndex index, int[] count) {
+        scan(jedis, prefix + ":*", key -> {
+            String[] parts = key.split(":");
+            if (parts.length == 2 && isId(parts[1])) {
+                index.add(jedis, Long.parseLong(parts[1]));
+                count[0]++;
+            }
+        });
+    }
+
+    private static void scan(Jedis jedis, String pattern, Consumer<String> keyConsumer) {
+        ScanParams params = new ScanParams().match(pattern).count(SCAN_COUNT);
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            ScanResult<String> result = jedis.scan(cursor, params);
+            result.getResult().forEach(keyConsumer);
+            cursor = result.getCursor();
+        } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+    }
+
+    private static boolean isId(String s) {
+        if (s.isEmpty() || s.length() > 18) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+package com.angrysurfer.core.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.commands.PipelineCommands;
+
+/**
+ * Sorted-set index of the ids stored for one entity type, scored by id, so the
+ * helpers can list entities and step through them (min/max/next/previous)
+ * with ZRANGEBYSCORE instead of scanning the whole keyspace with KEYS.
+ * <p>
+ * Every helper that writes or deletes an entity key updates its index with the
+ * same Jedis connection. {@link RedisIndexMigration} builds the indexes once
+ * from keys written before they existed.
+ */
+public final class RedisKeyIndex {
+
+    static final String PREFIX = "index:";
+
+    public static final RedisKeyIndex SESSIONS = new RedisKeyIndex(PREFIX + "session");
+    public static final RedisKeyIndex SONGS = new RedisKeyIndex(PREFIX + "song");
+    public static final RedisKeyIndex PLAYERS = new RedisKeyIndex(PREFIX + "player");
+    public static final RedisKeyIndex RULES = new RedisKeyIndex(PREFIX + "rule");
+    public static final RedisKeyIndex INSTRUMENTS = new RedisKeyIndex(PREFIX + "instrument");
+    public static final RedisKeyIndex DRUM_SEQUENCES = new RedisKeyIndex(PREFIX + "drumseq");
+
+    private final String key;
+
+    private RedisKeyIndex(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Index of the melodic sequences saved for one sequencer
+     */
+    public static RedisKeyIndex melodicSequences(Integer sequencerId) {
+        return new RedisKeyIndex(PREFIX + "melseq:" + sequencerId);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void add(Jedis jedis, Long id) {
+        if (id != null) {
+            jedis.zadd(key, id, id.toString());
+        }
+    }
+
+    public void remove(Jedis jedis, Long id) {
+        if (id != null) {
+            jedis.zrem(key, id.toString());
+        }
+    }
+
+    /**
+     * Queue the add on a pipeline or transaction that writes the entity
+     */
+    public void add(PipelineCommands pipeline, Long id) {
+        if (id != null) {
+            pipeline.zadd(key, id, id.toString());
+        }
+    }
+
+    public void remove(PipelineCommands pipeline, Long id) {
+        if (id != null) {
+            pipeline.zrem(key, id.toString());
+        }
+    }
+
+    public boolean contains(Jedis jedis, Long id) {
+        return id != null && jedis.zscore(key, id.toString()) != null;
+    }
+
+    public long size(Jedis jedis) {
+        return jedis.zcard(key);
+    }
+
+    public Long first(Jedis jedis) {
+        return single(jedis.zrangeByScore(key, "-inf", "+inf", 0, 1));
+    }
+
+    public Long last(Jedis jedis) {
+        return single(jedis.zrevrangeByScore(key, "+inf", "-inf", 0, 1));
+    }
+
+    /**
+     * Smallest id greater than {@code currentId}, or null
+     */
+    public Long next(Jedis jedis, long currentId) {
+        return single(jedis.zrangeByScore(key, "(" + currentId, "+inf", 0, 1));
+    }
+
+    /**
+     * Largest id less than {@code currentId}, or null
+     */
+    public Long previous(Jedis jedis, long currentId) {
+        return single(jedis.zrevrangeByScore(key, "(" + currentId, "-inf", 0, 1));
+    }
+
+    /**
+     * All indexed ids in ascending order
+     */
+    public List<Long> ids(Jedis jedis) {
+        List<String> members = jedis.zrange(key, 0, -1);
+        List<Long> ids = new ArrayList<>(members.size());
+        for (String member : members) {
+            ids.add(Long.parseLong(member));
+        }
+        return ids;
+    }
+
+    private static Long single(List<String> members) {
+        return members == null || members.isEmpty() ? null : Long.parseLong(members.get(0));
+    }
+}
@@ -0,0 +1,41 @@
+package com.angrysurfer.core.redis;
+
+import com.angrysurfer.core.config.RedisConfig;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * A Redis server, by default the one at {@link RedisConfig#REDIS_HOST}
+ */
+public class RedisServerBackend implements StorageBackend {
+
+    public static final String NAME = "redis";
+
+    private final String host;
+    private final int port;
+
+    public RedisServerBackend() {
+        this(RedisConfig.REDIS_HOST, RedisConfig.REDIS_PORT);
+    }
+
+    public RedisServerBackend(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public String getName() {
+        return NAME + " " + host + ":" + port;
+    }
+
+    @Override
+    public JedisPool createPool(JedisPoolConfig poolConfig) {
+        return new JedisPool(poolConfig, host, port);
+    }
+
+    @Override
+    public void close() {
+        // The server outlives us
+    }
+}
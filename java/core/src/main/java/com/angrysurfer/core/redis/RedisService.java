@@ -2,7 +2,6 @@ package com.angrysurfer.core.redis;
 
 import com.angrysurfer.core.api.*;
 import com.angrysurfer.core.config.FrameState;
-import com.angrysurfer.core.config.RedisConfig;
 import com.angrysurfer.core.config.TableState;
 import com.angrysurfer.core.config.UserConfig;
 import com.angrysurfer.core.model.*;
@@ -30,6 +29,8 @@ import java.util.Set;
 public class RedisService implements IBusListener {
     private static final Logger logger = LoggerFactory.getLogger(RedisService.class);
     private static RedisService instance;
+    // Redis server or embedded store, per -Dbeatgen.storage
+    private final StorageBackend storageBackend;
     private final JedisPool jedisPool;
     private final ObjectMapper objectMapper;
 
@@ -44,9 +45,12 @@ public class RedisService implements IBusListener {
     private final UserConfigHelper userConfigHelper;
     private final DrumSequenceDataHelper drumSequenceHelper;
     private final MelodicSequenceDataHelper melodicSequencerHelper;
+    // Saves made from editors are written from here, off the calling thread
+    private final WriteBehindQueue writeBehindQueue;
     // private final RedisConfigHelper configHelper;
 
     private RedisService() {
+        this.storageBackend = StorageBackend.fromSystemProperties();
         this.jedisPool = initJedisPool();
         this.objectMapper = createObjectMapper();
 
@@ -61,6 +65,14 @@ public class RedisService implements IBusListener {
         this.userConfigHelper = new UserConfigHelper(jedisPool, objectMapper);
         this.drumSequenceHelper = new DrumSequenceDataHelper(jedisPool, objectMapper);
         this.melodicSequencerHelper = new MelodicSequenceDataHelper(jedisPool);
+        RedisIndexMigration.migrate(jedisPool);
+
+        this.writeBehindQueue = WriteBehindQueue.start("Redis-Write-Behind", WriteBehindQueue.DEFAULT_MAX_DELAY_MS);
+        // Queued saves are held briefly; write them out before exit
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            writeBehindQueue.shutdown(5000);
+            storageBackend.close();
+        }, "Redis-Write-Behind-Flush"));
         // this.configHelper = new RedisConfigHelper(jedisPool, objectMapper);
 
         CommandBus.getInstance().register(this, new String[]{Commands.CLEAR_DATABASE});
@@ -84,7 +96,8 @@ public class RedisService implements IBusListener {
         poolConfig.setMaxTotal(10);
         poolConfig.setMaxIdle(5);
         poolConfig.setMinIdle(1);
-        return new JedisPool(poolConfig, RedisConfig.REDIS_HOST, RedisConfig.REDIS_PORT);
+        logger.info("Using {} storage", storageBackend.getName());
+        return storageBackend.createPool(poolConfig);
     }
 
     private ObjectMapper createObjectMapper() {
@@ -106,6 +119,7 @@ public class RedisService implements IBusListener {
 
     // Session operations
     public Session findSessionById(Long id) {
+        writeBehindQueue.flush();
         return sessionHelper.findSessionById(id);
     }
 
@@ -113,6 +127,24 @@ public class RedisService implements IBusListener {
         sessionHelper.saveSession(session);
     }
 
+    /**
+     * Save a session from the write-behind queue. The session is serialized
+     * now, so the writer never reads it while it changes. Sessions without an
+     * id are saved now, since callers may need the id.
+     */
+    public void queueSessionSave(Session session) {
+        if (session == null || session.getId() == null) {
+            saveSession(session);
+            return;
+        }
+        try {
+            SessionHelper.SessionSave save = sessionHelper.prepareSave(session);
+            writeBehindQueue.enqueue("session:" + session.getId(), () -> sessionHelper.writeSave(save));
+        } catch (Exception e) {
+            logger.error("Error queueing session save: {}", e.getMessage(), e);
+        }
+    }
+
     public Long getMinimumSessionId() {
         return sessionHelper.getMinimumSessionId();
     }
@@ -130,30 +162,9 @@ public class RedisService implements IBusListener {
             return null;
         }
 
-        Long currentId = session.getId();
-        List<Long> allIds = getAllSessionIds();
-        logger.info("Finding next ID after {} among {} session IDs", currentId, allIds != null ? allIds.size() : 0);
-
-        if (allIds == null || allIds.isEmpty()) {
-            return null;
-        }
-
-        // Sort IDs in ascending order
-        allIds.sort(Long::compareTo);
-
-        // Log all IDs for debugging
-        logger.debug("All session IDs (sorted): {}", allIds);
-
-        // Find first ID greater than current
-        for (Long id : allIds) {
-            if (id > currentId) {
-                logger.info("Found next ID: {} > {}", id, currentId);
-                return id;
-            }
-        }
-
-        logger.info("No session ID greater than {} found", currentId);
-        return null;
+        Long nextId = sessionHelper.getNextSessionId(session);
+        logger.info("Found next ID: {} > {}", nextId, session.getId());
+        return nextId;
     }
 
     /**
@@ -165,31 +176,8 @@ public class RedisService implements IBusListener {
             return null;
         }
 
-        Long currentId = session.getId();
-        List<Long> allIds = getAllSessionIds();
-        logger.info("Finding previous ID before {} among {} session IDs", currentId,
-                allIds != null ? allIds.size() : 0);
-
-        if (allIds == null || allIds.isEmpty()) {
-            return null;
-        }
-
-        // Sort IDs in ascending order
-        allIds.sort(Long::compareTo);
-
-        // Log all IDs for debugging
-        logger.debug("All session IDs (sorted): {}", allIds);
-
-        // Find last ID less than current
-        Long prevId = null;
-        for (Long id : allIds) {
-            if (id >= currentId) {
-                break;
-            }
-            prevId = id;
-        }
-
-        logger.info("Found previous ID: {} < {}", prevId, currentId);
+        Long prevId = sessionHelper.getPreviousSessionId(session);
+        logger.info("Found previous ID: {} < {}", prevId, session.getId());
         return prevId;
     }
 
@@ -198,6 +186,8 @@ public class RedisService implements IBusListener {
     }
 
     public void deleteSession(Long sessionId) {
+        // Drops a queued save and waits out one being written, so it can't land after the delete
+        writeBehindQueue.cancel("session:" + sessionId);
         sessionHelper.deleteSession(sessionId);
     }
 
@@ -231,6 +221,31 @@ public class RedisService implements IBusListener {
         playerHelper.savePlayer(player);
     }
 
+    /**
+     * Save player to Redis from the write-behind queue, merging repeated saves
+     * made while editing. The player and its rules are serialized now, so the
+     * writer never reads them while the editor changes them. Players without
+     * an id are saved now.
+     */
+    public void queuePlayerSave(Player player) {
+        if (player == null || player.getId() == null || Boolean.TRUE.equals(player.getIsDefault())) {
+            savePlayer(player);
+            return;
+        }
+
+        InstrumentWrapper instrument = player.getInstrument();
+        if (instrument != null && !Boolean.TRUE.equals(instrument.getIsDefault())) {
+            queueInstrumentSave(instrument);
+            player.setInstrumentId(instrument.getId());
+        }
+        try {
+            PlayerHelper.PlayerSnapshot save = playerHelper.prepareSave(player);
+            writeBehindQueue.enqueue("player:" + player.getId(), () -> playerHelper.writeSave(save));
+        } catch (Exception e) {
+            logger.error("Error queueing player save: {}", e.getMessage(), e);
+        }
+    }
+
     public Long getNextPlayerId() {
         return playerHelper.getNextPlayerId();
     }
@@ -308,8 +323,11 @@ public class RedisService implements IBusListener {
     }
 
     public void clearDatabase() {
+        writeBehindQueue.clear();
         try (Jedis jedis = jedisPool.getResource()) {
             jedis.flushDB();
+            RedisIndexMigration.markCurrent(jedis);
+            PlayerHelper.forgetAll();
             logger.info("Database cleared");
             Session session = sessionHelper.newSession();
             CommandBus.getInstance().publish(Commands.SESSION_LOADED, this, session);
@@ -318,7 +336,8 @@ public class RedisService implements IBusListener {
 
     public boolean isDatabaseEmpty() {
         try (Jedis jedis = jedisPool.getResource()) {
-            return jedis.keys("*").isEmpty();
+            // The index version marker doesn't count as data
+            return jedis.dbSize() <= (jedis.exists(RedisIndexMigration.VERSION_KEY) ? 1 : 0);
         }
     }
 
@@ -346,8 +365,27 @@ public class RedisService implements IBusListener {
         instrumentHelper.saveInstrument(instrument);
     }
 
+    /**
+     * Save an instrument from the write-behind queue, serialized now; new
+     * instruments are saved now so they get their id
+     */
+    public void queueInstrumentSave(InstrumentWrapper instrument) {
+        if (instrument == null || instrument.getId() == null || Boolean.TRUE.equals(instrument.getIsDefault())) {
+            saveInstrument(instrument);
+            return;
+        }
+        try {
+            Long id = instrument.getId();
+            String json = instrumentHelper.prepareSave(instrument);
+            writeBehindQueue.enqueue("instrument:" + id, () -> instrumentHelper.writeSave(id, json));
+        } catch (Exception e) {
+            logger.error("Error queueing instrument save: {}", e.getMessage(), e);
+        }
+    }
+
     public void deleteInstrument(InstrumentWrapper instrument) {
         if (instrument != null && instrument.getId() != null) {
+            writeBehindQueue.cancel("instrument:" + instrument.getId());
             instrumentHelper.deleteInstrument(instrument.getId());
         }
     }
@@ -430,6 +468,7 @@ public class RedisService implements IBusListener {
     }
 
     public void deletePlayer(Player player) {
+        writeBehindQueue.cancel("player:" + player.getId());
         playerHelper.deletePlayer(player);
     }
 
@@ -482,6 +521,7 @@ public class RedisService implements IBusListener {
 
     // Drum sequence methods
     public DrumSequenceData findDrumSequenceById(Long id) throws JsonProcessingException {
+        writeBehindQueue.flush();
         return drumSequenceHelper.findDrumSequenceById(id);
     }
 
@@ -496,6 +536,29 @@ public class RedisService implements IBusListener {
         drumSequenceHelper.saveDrumSequence(sequencer);
     }
 
+    /**
+     * Save the sequencer's current drum sequence from the write-behind queue.
+     * The sequence is encoded now, so the save holds the pattern as it was
+     * and still lands if the sequencer loads another one first. Unsaved
+     * sequences are saved now to get an id.
+     */
+    public void queueDrumSequenceSave(DrumSequencer sequencer) {
+        DrumSequenceData data = sequencer.getSequenceData();
+        if (data.getId() == null || data.getId() <= 0) {
+            saveDrumSequence(sequencer);
+            return;
+        }
+        CommandBus.getInstance().publish(Commands.STATUS_UPDATE, this, new StatusUpdate("Saving Drum Sequence " +
+                data.getId().toString()));
+        try {
+            Long id = data.getId();
+            byte[] encoded = drumSequenceHelper.prepareSave(sequencer, data);
+            writeBehindQueue.enqueue("drumseq:" + id, () -> drumSequenceHelper.writeSave(id, encoded));
+        } catch (Exception e) {
+            logger.error("Error queueing drum sequence save: {}", e.getMessage(), e);
+        }
+    }
+
     public List<Long> getAllDrumSequenceIds() {
         return drumSequenceHelper.getAllDrumSequenceIds();
     }
@@ -513,6 +576,7 @@ public class RedisService implements IBusListener {
     }
 
     public void deleteDrumSequence(Long id) {
+        writeBehindQueue.cancel("drumseq:" + id);
         drumSequenceHelper.deleteDrumSequence(id);
     }
 
@@ -67,6 +67,8 @@ public class RuleHelper {
             // Save the rule
             String json = objectMapper.writeValueAsString(rule);
             jedis.set("rule:" + rule.getId(), json);
+            RedisKeyIndex.RULES.add(jedis, rule.getId());
+            PlayerHelper.forgetRule(rule.getId());
 
             // Update player-rule relationship
             if (player != null) {
@@ -108,6 +110,8 @@ public class RuleHelper {
                 jedis.srem(rulesKey, ruleId.toString());
             }
             jedis.del("rule:" + ruleId);
+            RedisKeyIndex.RULES.remove(jedis, ruleId);
+            PlayerHelper.forgetRule(ruleId);
         } catch (Exception e) {
             logger.error("Error deleting rule: " + e.getMessage());
             throw new RuntimeException("Failed to delete rule", e);
@@ -164,18 +168,18 @@ public class RuleHelper {
 
             // Delete the actual rule from Redis
             jedis.del("rule:" + rule.getId());
+            RedisKeyIndex.RULES.remove(jedis, rule.getId());
+            PlayerHelper.forgetRule(rule.getId());
         }
     }
 
     public Player findPlayerForRule(Rule rule) {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> playerKeys = jedis.keys("player:*");
-            for (String playerKey : playerKeys) {
-                String playerId = playerKey.split(":")[1];
+            for (Long playerId : RedisKeyIndex.PLAYERS.ids(jedis)) {
                 String rulesKey = "player:" + playerId + ":rules";
                 if (jedis.sismember(rulesKey, rule.getId().toString())) {
                     // Use RedisService to find player to avoid circular dependency
-                    return RedisService.getInstance().findPlayerById(Long.valueOf(playerId));
+                    return RedisService.getInstance().findPlayerById(playerId);
                 }
             }
         }
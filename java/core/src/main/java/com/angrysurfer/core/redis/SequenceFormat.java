@@ -0,0 +1,21 @@
+package com.angrysurfer.core.redis;
+
+/**
+ * How the sequence data helpers write drum and melodic sequences. Either form
+ * is read back whatever the setting, so it can be changed at any time.
+ * Defaults to {@link #BINARY}; start with {@code -Dbeatgen.sequence.format=json}
+ * to keep writing JSON, e.g. while older builds still share the database.
+ */
+public enum SequenceFormat {
+    // Jackson JSON text
+    JSON,
+    // Compact form written by SequenceDataCodec
+    BINARY;
+
+    public static final String FORMAT_PROPERTY = "beatgen.sequence.format";
+
+    public static SequenceFormat fromSystemProperty() {
+        String value = System.getProperty(FORMAT_PROPERTY);
+        return value != null && value.trim().equalsIgnoreCase(JSON.name()) ? JSON : BINARY;
+    }
+}
@@ -4,6 +4,7 @@ import com.angrysurfer.core.api.CommandBus;
 import com.angrysurfer.core.api.Commands;
 import com.angrysurfer.core.model.Player;
 import com.angrysurfer.core.model.Session;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -13,11 +14,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 
 import javax.swing.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Getter
@@ -28,6 +34,12 @@ public class SessionHelper {
     private final ObjectMapper objectMapper;
     private final PlayerHelper playerHelper;
 
+    /**
+     * A session serialized for saving: its JSON and its player ids by type
+     */
+    record SessionSave(Long sessionId, String json, Map<String, List<String>> playerIds) {
+    }
+
     public SessionHelper(JedisPool jedisPool, ObjectMapper objectMapper) {
         this.jedisPool = jedisPool;
 
@@ -43,7 +55,21 @@ public class SessionHelper {
 
     public Session findSessionById(Long id) {
         try (Jedis jedis = jedisPool.getResource()) {
-            String json = jedis.get("session:" + id);
+            // Check for different player types
+            String[] playerTypes = {"Strike", "Note"};
+
+            // Session JSON and its player id sets in one round trip
+            Pipeline pipeline = jedis.pipelined();
+            Response<String> sessionJson = pipeline.get("session:" + id);
+            Map<String, Response<Set<String>>> playerIdResponses = new LinkedHashMap<>();
+            for (String playerType : playerTypes) {
+                // Load players for this session (using a consistent key format)
+                String playerSetKey = "session:" + id + ":players:" + playerType.toLowerCase();
+                playerIdResponses.put(playerType, pipeline.smembers(playerSetKey));
+            }
+            pipeline.sync();
+
+            String json = sessionJson.get();
             if (json != null) {
                 Session session = objectMapper.readValue(json, Session.class);
 
@@ -52,25 +78,19 @@ public class SessionHelper {
                     session.setPlayers(new HashSet<>());
                 }
 
-                // Check for different player types
-                String[] playerTypes = {"Strike", "Note"};
-
-                for (String playerType : playerTypes) {
-                    // Load players for this session (using a consistent key format)
-                    String playerSetKey = "session:" + id + ":players:" + playerType.toLowerCase();
-                    Set<String> playerIds = jedis.smembers(playerSetKey);
-
-                    if (!playerIds.isEmpty()) {
-                        logger.info("Found {} {} players for session {}", playerIds.size(), playerType, id);
-
-                        for (String playerId : playerIds) {
-                            Player player = playerHelper.findPlayerById(Long.parseLong(playerId), playerType);
-                            if (player != null) {
-                                player.setSession(session);
-                                session.getPlayers().add(player);
-                            }
-                        }
+                Map<String, Set<String>> playerIds = new LinkedHashMap<>();
+                playerIdResponses.forEach((playerType, response) -> {
+                    Set<String> ids = response.get();
+                    if (!ids.isEmpty()) {
+                        logger.info("Found {} {} players for session {}", ids.size(), playerType, id);
+                        playerIds.put(playerType, ids);
                     }
+                });
+
+                // Players and their rules in two more round trips
+                for (Player player : playerHelper.findPlayersByIds(jedis, playerIds)) {
+                    player.setSession(session);
+                    session.getPlayers().add(player);
                 }
 
                 logger.info(String.format("Loaded session %d with %d players", id, session.getPlayers().size()));
@@ -84,81 +104,84 @@ public class SessionHelper {
     }
 
     public void saveSession(Session session) {
-        try (Jedis jedis = jedisPool.getResource()) {
+        try {
             if (session.getId() == null) {
-                session.setId(jedis.incr("seq:session"));
+                try (Jedis jedis = jedisPool.getResource()) {
+                    session.setId(jedis.incr("seq:session"));
+                }
             }
+            writeSave(prepareSave(session));
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "Error saving session: " + e.getMessage());
+            throw new RuntimeException("Failed to save session", e);
+        }
+    }
 
-            // Clear existing player relationships for all types
-            String strikePlayerSetKey = "session:" + session.getId() + ":players:strike";
-            String notePlayerSetKey = "session:" + session.getId() + ":players:note";
-            jedis.del(strikePlayerSetKey);
-            jedis.del(notePlayerSetKey);
-
-            // Save player relationships by type
-            if (session.getPlayers() != null) {
-                session.getPlayers().forEach(player -> {
-                    String className = player.getClass().getSimpleName().toLowerCase();
-                    String playerSetKey = "session:" + session.getId() + ":players:" + className;
-                    jedis.sadd(playerSetKey, player.getId().toString());
-
-                    logger.debug("Added player {} of type {} to session {}",
-                            player.getId(), className, session.getId());
-                });
+    /**
+     * Serialize a session and its player ids as they are now, on the caller's
+     * thread, so the save can be written from another thread while the
+     * session keeps changing. The session must already have an id.
+     */
+    SessionSave prepareSave(Session session) throws JsonProcessingException {
+        Map<String, List<String>> playerIds = new HashMap<>();
+        playerIds.put("strike", new ArrayList<>());
+        playerIds.put("note", new ArrayList<>());
+        Set<Player> players = session.getPlayers();
+        if (players != null) {
+            for (Player player : players) {
+                String className = player.getClass().getSimpleName().toLowerCase();
+                playerIds.computeIfAbsent(className, type -> new ArrayList<>()).add(player.getId().toString());
             }
+        }
 
-            // Temporarily remove circular references
-            Set<Player> players = session.getPlayers();
-            session.setPlayers(null);
-
-            // Save session
-            String json = objectMapper.writeValueAsString(session);
-            jedis.set("session:" + session.getId(), json);
-
+        // Temporarily remove circular references
+        session.setPlayers(null);
+        try {
+            return new SessionSave(session.getId(), objectMapper.writeValueAsString(session), playerIds);
+        } finally {
             // Restore references
             session.setPlayers(players);
-
-            logger.info(String.format("Saved session %d with %d players",
-                    session.getId(),
-                    players != null ? players.size() : 0));
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, "Error saving session: " + e.getMessage());
-            throw new RuntimeException("Failed to save session", e);
         }
     }
 
-    public List<Long> getAllSessionIds() {
+    /**
+     * Write a save made by {@link #prepareSave(Session)}, replacing the
+     * session's player sets
+     */
+    void writeSave(SessionSave save) {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("session:*");
-            List<Long> ids = new ArrayList<>();
-            for (String key : keys) {
-                try {
-                    ids.add(Long.parseLong(key.split(":")[1]));
-                } catch (NumberFormatException e) {
-                    JOptionPane.showMessageDialog(null, "Invalid session key: " + key);
+            int playerCount = 0;
+            for (Map.Entry<String, List<String>> entry : save.playerIds().entrySet()) {
+                String playerSetKey = "session:" + save.sessionId() + ":players:" + entry.getKey();
+                jedis.del(playerSetKey);
+                if (!entry.getValue().isEmpty()) {
+                    jedis.sadd(playerSetKey, entry.getValue().toArray(String[]::new));
+                    playerCount += entry.getValue().size();
                 }
             }
-            return ids;
+
+            jedis.set("session:" + save.sessionId(), save.json());
+            RedisKeyIndex.SESSIONS.add(jedis, save.sessionId());
+
+            logger.info(String.format("Saved session %d with %d players", save.sessionId(), playerCount));
+        }
+    }
+
+    public List<Long> getAllSessionIds() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return RedisKeyIndex.SESSIONS.ids(jedis);
         }
     }
 
     public Long getMinimumSessionId() {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("session:*");
-            return keys.stream()
-                    .map(key -> Long.parseLong(key.split(":")[1]))
-                    .min(Long::compareTo)
-                    .orElse(null);
+            return RedisKeyIndex.SESSIONS.first(jedis);
         }
     }
 
     public Long getMaximumSessionId() {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("session:*");
-            return keys.stream()
-                    .map(key -> Long.parseLong(key.split(":")[1]))
-                    .max(Long::compareTo)
-                    .orElse(null);
+            return RedisKeyIndex.SESSIONS.last(jedis);
         }
     }
 
@@ -175,6 +198,7 @@ public class SessionHelper {
 
             // Delete the session itself
             jedis.del("session:" + sessionId);
+            RedisKeyIndex.SESSIONS.remove(jedis, sessionId);
 
             // Notify via command bus
             CommandBus.getInstance().publish(Commands.SESSION_DELETED, this, sessionId);
@@ -213,31 +237,20 @@ public class SessionHelper {
 
     public Long getPreviousSessionId(Session session) {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("session:*");
-            return keys.stream()
-                    .map(k -> Long.parseLong(k.split(":")[1]))
-                    .filter(id -> id < session.getId())
-                    .max(Long::compareTo)
-                    .orElse(null);
+            return RedisKeyIndex.SESSIONS.previous(jedis, session.getId());
         }
     }
 
     public Long getNextSessionId(Session session) {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("session:*");
-            return keys.stream()
-                    .map(k -> Long.parseLong(k.split(":")[1]))
-                    .filter(id -> id > session.getId())
-                    .min(Long::compareTo)
-                    .orElse(null);
+            return RedisKeyIndex.SESSIONS.next(jedis, session.getId());
         }
     }
 
     public void clearInvalidSessions() {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("session:*");
-            for (String key : keys) {
-                Session session = findSessionById(Long.parseLong(key.split(":")[1]));
+            for (Long id : RedisKeyIndex.SESSIONS.ids(jedis)) {
+                Session session = findSessionById(id);
                 if (session != null && !session.isValid()) {
                     deleteSession(session.getId());
                 }
@@ -253,9 +266,8 @@ public class SessionHelper {
 
     public Session findFirstValidSession() {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("session:*");
-            for (String key : keys) {
-                Session session = findSessionById(Long.parseLong(key.split(":")[1]));
+            for (Long id : RedisKeyIndex.SESSIONS.ids(jedis)) {
+                Session session = findSessionById(id);
                 if (session != null && session.isValid()) {
                     return session;
                 }
@@ -277,17 +289,13 @@ public class SessionHelper {
             String playerType = player.getClass().getSimpleName().toLowerCase();
             logger.debug("Finding session for player {} of type {}", player.getId(), playerType);
 
-            Set<String> sessionKeys = jedis.keys("session:*");
-            for (String sessionKey : sessionKeys) {
-                if (!sessionKey.contains(":players")) {
-                    String sessionId = sessionKey.split(":")[1];
-                    String playersKey = "session:" + sessionId + ":players:" + playerType;
+            for (Long sessionId : RedisKeyIndex.SESSIONS.ids(jedis)) {
+                String playersKey = "session:" + sessionId + ":players:" + playerType;
 
-                    if (jedis.sismember(playersKey, player.getId().toString())) {
-                        logger.info("Found session {} for player {} of type {}",
-                                sessionId, player.getId(), playerType);
-                        return findSessionById(Long.valueOf(sessionId));
-                    }
+                if (jedis.sismember(playersKey, player.getId().toString())) {
+                    logger.info("Found session {} for player {} of type {}",
+                            sessionId, player.getId(), playerType);
+                    return findSessionById(sessionId);
                 }
             }
 
@@ -341,11 +349,12 @@ public class SessionHelper {
         List<Session> sessions = new ArrayList<>();
 
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("session:*");
-
-            for (String key : keys) {
+            for (Long id : RedisKeyIndex.SESSIONS.ids(jedis)) {
                 try {
-                    String json = jedis.get(key);
+                    String json = jedis.get("session:" + id);
+                    if (json == null) {
+                        continue;
+                    }
                     Session session = objectMapper.readValue(json, Session.class);
                     if (session != null) {
                         sessions.add(session);
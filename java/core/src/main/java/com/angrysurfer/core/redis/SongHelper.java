@@ -63,6 +63,7 @@ public class SongHelper {
             // Save the song
             String json = objectMapper.writeValueAsString(song);
             jedis.set("song:" + song.getId(), json);
+            RedisKeyIndex.SONGS.add(jedis, song.getId());
 
             // Restore references
             song.setPatterns(patterns);
@@ -75,11 +76,7 @@ public class SongHelper {
 
     public Long getMinimumSongId() {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("song:*");
-            return keys.isEmpty() ? null : keys.stream()
-                .map(key -> Long.parseLong(key.split(":")[1]))
-                .min(Long::compareTo)
-                .orElse(null);
+            return RedisKeyIndex.SONGS.first(jedis);
         } catch (Exception e) {
             logger.error("Error getting minimum song ID: " + e.getMessage());
             return null;
@@ -88,33 +85,19 @@ public class SongHelper {
 
     public Long getMaximumSongId() {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("song:*");
-            return keys.isEmpty() ? null : keys.stream()
-                .map(key -> Long.parseLong(key.split(":")[1]))
-                .max(Long::compareTo)
-                .orElse(null);
+            return RedisKeyIndex.SONGS.last(jedis);
         }
     }
 
     public Long getNextSongId(Long currentId) {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("song:*");
-            return keys.stream()
-                .map(key -> Long.parseLong(key.split(":")[1]))
-                .filter(id -> id > currentId)
-                .min(Long::compareTo)
-                .orElse(null);
+            return RedisKeyIndex.SONGS.next(jedis, currentId);
         }
     }
 
     public Long getPreviousSongId(Long currentId) {
         try (Jedis jedis = jedisPool.getResource()) {
-            Set<String> keys = jedis.keys("song:*");
-            return keys.stream()
-                .map(key -> Long.parseLong(key.split(":")[1]))
-                .filter(id -> id < currentId)
-                .max(Long::compareTo)
-                .orElse(null);
+            return RedisKeyIndex.SONGS.previous(jedis, currentId);
         }
     }
 
@@ -129,6 +112,7 @@ public class SongHelper {
                 }
                 // Delete the song
                 jedis.del("song:" + songId);
+                RedisKeyIndex.SONGS.remove(jedis, songId);
             }
         } catch (Exception e) {
             logger.error("Error deleting song: " + e.getMessage());
@@ -0,0 +1,42 @@
+package com.angrysurfer.core.redis;
+
+import java.nio.file.Path;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * Where {@link RedisService} keeps its data. Every helper talks to a
+ * {@link JedisPool}, so a backend is anything that can hand out one: a Redis
+ * server, or the in-process {@link EmbeddedStore}.
+ * <p>
+ * Chosen at startup with {@code -Dbeatgen.storage=redis|embedded} (default
+ * redis); the embedded store lives in {@code -Dbeatgen.storage.dir}, by
+ * default {@code ~/.beatgen/store}. {@link StorageMigration} copies data
+ * between the two.
+ */
+public interface StorageBackend extends AutoCloseable {
+
+    String STORAGE_PROPERTY = "beatgen.storage";
+    String STORAGE_DIR_PROPERTY = "beatgen.storage.dir";
+
+    String getName();
+
+    JedisPool createPool(JedisPoolConfig poolConfig);
+
+    @Override
+    void close();
+
+    static StorageBackend fromSystemProperties() {
+        String storage = System.getProperty(STORAGE_PROPERTY, RedisServerBackend.NAME).trim();
+        if (storage.equalsIgnoreCase(EmbeddedBackend.NAME)) {
+            return new EmbeddedBackend(defaultDirectory());
+        }
+        return new RedisServerBackend();
+    }
+
+    static Path defaultDirectory() {
+        String dir = System.getProperty(STORAGE_DIR_PROPERTY);
+        return dir != null ? Path.of(dir) : Path.of(System.getProperty("user.home"), ".beatgen", "store");
+    }
+}
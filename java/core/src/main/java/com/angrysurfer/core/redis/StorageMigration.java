@@ -0,0 +1,145 @@
+package com.angrysurfer.core.redis;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.resps.Tuple;
+
+/**
+ * Copies every key from one storage backend to another, e.g. from a Redis
+ * server into the embedded store before switching a rig over, or back again.
+ * Values are copied as bytes, so JSON and binary sequences alike arrive
+ * unchanged; keys already in the target are overwritten.
+ * <p>
+ * Usage: StorageMigration &lt;from&gt; &lt;to&gt; [--flush-target], where a
+ * backend is {@code redis}, {@code redis:host:port}, {@code embedded} (the
+ * default directory) or {@code embedded:/path/to/dir}.
+ */
+public final class StorageMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageMigration.class);
+
+    private static final int SCAN_COUNT = 500;
+
+    private StorageMigration() {
+    }
+
+    /**
+     * @return the number of keys copied
+     */
+    public static int copy(JedisPool from, JedisPool to, boolean flushTarget) {
+        int copied = 0;
+        try (Jedis source = from.getResource(); Jedis target = to.getResource()) {
+            if (flushTarget) {
+                target.flushDB();
+            }
+            ScanParams params = new ScanParams().count(SCAN_COUNT);
+            byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+            do {
+                ScanResult<byte[]> result = source.scan(cursor, params);
+                // One pipeline per page, so the target sees a round trip per page rather than per key
+                Pipeline pipeline = target.pipelined();
+                for (byte[] key : result.getResult()) {
+                    if (copyKey(source, pipeline, key)) {
+                        copied++;
+                    }
+                }
+                pipeline.sync();
+                cursor = result.getCursorAsBytes();
+            } while (!ScanParams.SCAN_POINTER_START.equals(new String(cursor)));
+        }
+        return copied;
+    }
+
+    private static boolean copyKey(Jedis source, Pipeline target, byte[] key) {
+        String type = source.type(key);
+        switch (type) {
+            case "string" -> {
+                byte[] value = source.get(key);
+                if (value == null) {
+                    return false;
+                }
+                target.set(key, value);
+            }
+            case "hash" -> {
+                Map<byte[], byte[]> hash = source.hgetAll(key);
+                if (hash.isEmpty()) {
+                    return false;
+                }
+                target.del(key);
+                target.hset(key, hash);
+            }
+            case "set" -> {
+                byte[][] members = source.smembers(key).toArray(new byte[0][]);
+                if (members.length == 0) {
+                    return false;
+                }
+                target.del(key);
+                target.sadd(key, members);
+            }
+            case "zset" -> {
+                List<Tuple> members = source.zrangeWithScores(key, 0, -1);
+                if (members.isEmpty()) {
+                    return false;
+                }
+                Map<byte[], Double> scores = new HashMap<>();
+                members.forEach(tuple -> scores.put(tuple.getBinaryElement(), tuple.getScore()));
+                target.del(key);
+                target.zadd(key, scores);
+            }
+            default -> {
+                // Gone since the scan, or a type the app never writes
+                if (!"none".equals(type)) {
+                    logger.warn("Skipping {} key {}", type, new String(key));
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static StorageBackend parseBackend(String spec) {
+        String[] parts = spec.split(":", 2);
+        if (parts[0].equalsIgnoreCase(EmbeddedBackend.NAME)) {
+            return new EmbeddedBackend(parts.length > 1 ? Path.of(parts[1]) : StorageBackend.defaultDirectory());
+        }
+        if (parts[0].equalsIgnoreCase(RedisServerBackend.NAME)) {
+            if (parts.length == 1) {
+                return new RedisServerBackend();
+            }
+            int colon = parts[1].lastIndexOf(':');
+            return colon < 0 ? new RedisServerBackend(parts[1], 6379)
+                    : new RedisServerBackend(parts[1].substring(0, colon), Integer.parseInt(parts[1].substring(colon + 1)));
+        }
+        throw new IllegalArgumentException("Unknown storage backend: " + spec);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: StorageMigration <from> <to> [--flush-target]");
+            System.err.println("  backends: redis, redis:host:port, embedded, embedded:/path/to/dir");
+            System.exit(1);
+        }
+        boolean flushTarget = args.length > 2 && args[2].equals("--flush-target");
+        try (StorageBackend from = parseBackend(args[0]);
+             StorageBackend to = parseBackend(args[1]);
+             JedisPool fromPool = from.createPool(new JedisPoolConfig());
+             JedisPool toPool = to.createPool(new JedisPoolConfig())) {
+            long start = System.currentTimeMillis();
+            int copied = copy(fromPool, toPool, flushTarget);
+            logger.info("Copied {} keys from {} to {} in {} ms", copied, from.getName(), to.getName(),
+                    System.currentTimeMillis() - start);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.angrysurfer.core.redis;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind queue for editor saves, so the EDT, the command bus and the
+ * sequencer threads never wait on Redis. Each save is enqueued under its
+ * entity key (e.g. "session:12"); a later save for the same key replaces the
+ * pending one, so a burst of edits becomes a single write.
+ * <p>
+ * A background writer drains the queue in batches. A batch is written once
+ * its oldest save has waited {@code maxDelayMs}, which bounds how stale Redis
+ * can be; {@link #flush()} writes everything now, and {@link #shutdown(long)}
+ * drains the queue before the JVM exits. After shutdown, saves are written
+ * on the caller's thread.
+ */
+public class WriteBehindQueue {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    public static final long DEFAULT_MAX_DELAY_MS = 100;
+
+    private record Pending(Runnable write, long enqueuedNanos) {
+    }
+
+    // Insertion ordered, so the first entry is always the oldest save
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+    private final long maxDelayNanos;
+    private final Thread writer;
+
+    private volatile boolean running = true;
+    private boolean flushRequested;
+    private boolean writing;
+
+    private long enqueuedCount;
+    private long coalescedCount;
+    private long writtenCount;
+    private long failedCount;
+    private long batchCount;
+    private long lastBatchSize;
+    private long lastFlushNanos;
+    private long maxFlushNanos;
+    private long totalFlushNanos;
+    private long maxWaitNanos;
+
+    private WriteBehindQueue(String name, long maxDelayMs) {
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.writer = new Thread(this::run, name);
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Create a queue and start its writer thread
+     *
+     * @param name       Name of the writer thread
+     * @param maxDelayMs Longest a save waits before it is written
+     */
+    public static WriteBehindQueue start(String name, long maxDelayMs) {
+        WriteBehindQueue queue = new WriteBehindQueue(name, maxDelayMs);
+        queue.writer.start();
+        return queue;
+    }
+
+    /**
+     * Queue a write under an entity key, replacing any write still pending for
+     * that key. The replaced write keeps its place and its age, so steady
+     * editing can't postpone a key past the delay bound.
+     */
+    public void enqueue(String key, Runnable write) {
+        synchronized (this) {
+            if (running) {
+                putPending(key, new Pending(write, System.nanoTime()));
+                return;
+            }
+        }
+        write.run();
+    }
+
+    // Called holding the lock
+    private void putPending(String key, Pending save) {
+        enqueuedCount++;
+        Pending previous = pending.get(key);
+        if (previous != null) {
+            coalescedCount++;
+            pending.put(key, new Pending(save.write(), previous.enqueuedNanos()));
+        } else {
+            pending.put(key, save);
+            if (pending.size() == 1) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Drop a pending write and wait out a batch already being written, e.g.
+     * when the entity is deleted, so no save of it can land after the delete
+     */
+    public synchronized boolean cancel(String key) {
+        boolean cancelled = pending.remove(key) != null;
+        awaitBatch();
+        return cancelled;
+    }
+
+    /**
+     * Drop every pending write and wait out a batch already being written,
+     * e.g. before the database is flushed
+     */
+    public synchronized void clear() {
+        pending.clear();
+        awaitBatch();
+    }
+
+    // Called holding the lock; a write calling back into the queue doesn't wait for itself
+    private void awaitBatch() {
+        if (Thread.currentThread() == writer) {
+            return;
+        }
+        try {
+            while (writing && writer.isAlive()) {
+                wait(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized boolean isPending(String key) {
+        return pending.containsKey(key);
+    }
+
+    /**
+     * Write everything queued so far and wait for it. Called before reads that
+     * must see pending saves; returns at once when nothing is queued.
+     */
+    public void flush() {
+        if (Thread.currentThread() == writer) {
+            return;
+        }
+        synchronized (this) {
+            if (pending.isEmpty() && !writing) {
+                return;
+            }
+            if (!writer.isAlive()) {
+                drainOnCaller();
+                return;
+            }
+            flushRequested = true;
+            notifyAll();
+            try {
+                while ((!pending.isEmpty() || writing) && writer.isAlive()) {
+                    wait(100);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stop accepting queued saves and wait for the writer to drain the queue
+     */
+    public void shutdown(long timeoutMs) {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            writer.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                logger.warn("Writer did not finish in {} ms, writing {} saves on shutdown", timeoutMs, pending.size());
+                drainOnCaller();
+            }
+        }
+        logger.info("Write-behind queue stopped: {}", this);
+    }
+
+    private void run() {
+        while (true) {
+            Map<String, Pending> batch;
+            synchronized (this) {
+                try {
+                    while (pending.isEmpty() && running) {
+                        wait();
+                    }
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                    // Let the oldest save age up to the bound, gathering more in the meantime
+                    long deadline = pending.values().iterator().next().enqueuedNanos() + maxDelayNanos;
+                    long remaining;
+                    while (running && !flushRequested && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    // Drain what is queued before exiting
+                    running = false;
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                }
+                batch = takeBatch();
+            }
+            write(batch);
+            synchronized (this) {
+                writing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    // Called holding the lock
+    private Map<String, Pending> takeBatch() {
+        Map<String, Pending> batch = new LinkedHashMap<>(pending);
+        pending.clear();
+        flushRequested = false;
+        writing = true;
+        return batch;
+    }
+
+    // Called holding the lock, once the writer is gone
+    private void drainOnCaller() {
+        write(takeBatch());
+        writing = false;
+    }
+
+    private void write(Map<String, Pending> batch) {
+        long start = System.nanoTime();
+        long maxWait = 0;
+        int failed = 0;
+        for (Map.Entry<String, Pending> entry : batch.entrySet()) {
+            maxWait = Math.max(maxWait, System.nanoTime() - entry.getValue().enqueuedNanos());
+            try {
+                entry.getValue().write().run();
+            } catch (Exception e) {
+                failed++;
+                logger.error("Write-behind save of {} failed: {}", entry.getKey(), e.getMessage(), e);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        synchronized (this) {
+            batchCount++;
+            lastBatchSize = batch.size();
+            writtenCount += batch.size() - failed;
+            failedCount += failed;
+            lastFlushNanos = elapsed;
+            maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+            totalFlushNanos += elapsed;
+            maxWaitNanos = Math.max(maxWaitNanos, maxWait);
+        }
+        logger.debug("Wrote {} queued saves in {} us", batch.size(), elapsed / 1_000);
+    }
+
+    /**
+     * Saves waiting to be written
+     */
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    public synchronized long getEnqueuedCount() {
+        return enqueuedCount;
+    }
+
+    /**
+     * Saves replaced by a later save of the same key before being written
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    public synchronized long getWrittenCount() {
+        return writtenCount;
+    }
+
+    public synchronized long getFailedCount() {
+        return failedCount;
+    }
+
+    public synchronized long getBatchCount() {
+        return batchCount;
+    }
+
+    public synchronized long getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public synchronized double getLastFlushMillis() {
+        return lastFlushNanos / 1e6;
+    }
+
+    public synchronized double getMaxFlushMillis() {
+        return maxFlushNanos / 1e6;
+    }
+
+    public synchronized double getMeanFlushMillis() {
+        return batchCount == 0 ? 0 : totalFlushNanos / 1e6 / batchCount;
+    }
+
+    /**
+     * Longest time any save spent between enqueue and being written
+     */
+    public synchronized double getMaxWaitMillis() {
+        return maxWaitNanos / 1e6;
+    }
+
+    /**
+     * Pending keys, oldest first
+     */
+    public synchronized List<String> getPendingKeys() {
+        return new ArrayList<>(pending.keySet());
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("depth=%d enqueued=%d coalesced=%d written=%d failed=%d batches=%d "
+                        + "flush last=%.2fms mean=%.2fms max=%.2fms maxWait=%.2fms",
+                pending.size(), enqueuedCount, coalescedCount, writtenCount, failedCount, batchCount,
+                lastFlushNanos / 1e6, getMeanFlushMillis(), maxFlushNanos / 1e6, maxWaitNanos / 1e6);
+    }
+}
@@ -1,11 +1,15 @@
 package com.angrysurfer.core.sequencer;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * Data storage class for DrumSequencer constants and state.
@@ -18,6 +22,43 @@ public class DrumSequenceData {
 
     private static final Logger logger = LoggerFactory.getLogger(DrumSequenceData.class);
 
+    // Steps stored per drum; maxPatternLength can't go past this
+    public static final int MAX_STEPS = 128;
+
+    // Active steps are bitsets, 64 steps per word
+    public static final int STEP_WORDS = MAX_STEPS / 64;
+
+    // Bit layout of a packed step word. Every value field has a spare top bit,
+    // so an all-ones field never matches a real value.
+    public static final int VELOCITY_SHIFT = 0;
+    public static final int PROBABILITY_SHIFT = 8;
+    public static final int PAN_SHIFT = 16;
+    public static final int CHORUS_SHIFT = 24;
+    public static final int REVERB_SHIFT = 32;
+    public static final int DECAY_SHIFT = 40;
+    public static final int NUDGE_SHIFT = 55;
+    public static final long VELOCITY_FIELD = 0xFFL << VELOCITY_SHIFT;
+    public static final long PROBABILITY_FIELD = 0xFFL << PROBABILITY_SHIFT;
+    public static final long PAN_FIELD = 0xFFL << PAN_SHIFT;
+    public static final long CHORUS_FIELD = 0xFFL << CHORUS_SHIFT;
+    public static final long REVERB_FIELD = 0xFFL << REVERB_SHIFT;
+    public static final long DECAY_FIELD = 0x7FFFL << DECAY_SHIFT;
+    public static final long NUDGE_FIELD = 0x7FL << NUDGE_SHIFT;
+    public static final long ACCENT_BIT = 1L << 63;
+    public static final long EFFECT_FIELDS = PAN_FIELD | CHORUS_FIELD | REVERB_FIELD | DECAY_FIELD;
+
+    public static final int MAX_DECAY = 0x3FFF;
+    public static final int MIN_NUDGE = -64;
+    public static final int MAX_NUDGE = 63;
+
+    // Word of a step nobody has edited
+    static final long DEFAULT_STEP = pack(0L, VELOCITY_SHIFT, VELOCITY_FIELD, SequencerConstants.DEFAULT_VELOCITY)
+            | pack(0L, PROBABILITY_SHIFT, PROBABILITY_FIELD, SequencerConstants.DEFAULT_PROBABILITY)
+            | pack(0L, PAN_SHIFT, PAN_FIELD, SequencerConstants.DEFAULT_PAN)
+            | pack(0L, CHORUS_SHIFT, CHORUS_FIELD, SequencerConstants.DEFAULT_CHORUS)
+            | pack(0L, REVERB_SHIFT, REVERB_FIELD, SequencerConstants.DEFAULT_REVERB)
+            | pack(0L, DECAY_SHIFT, DECAY_FIELD, SequencerConstants.DEFAULT_DECAY);
+
     // Reusable arrays for effects to avoid constant object creation
     private final int[] effectControllers = new int[4];
     private final int[] effectValues = new int[4];
@@ -40,30 +81,24 @@ public class DrumSequenceData {
     private TimingDivision[] timingDivisions; // Timing for each drum
     private boolean[] loopingFlags; // Loop setting for each drum
     private int[] bounceDirections; // 1 for forward, -1 for backward (for bounce mode)
-    private boolean[][] stepAccents; // Velocity for each drum
     private int[] velocities; // Velocity for each drum
     private int[] originalVelocities; // Saved original velocities for resetting
-    // Pattern data storage
-    private boolean[][] patterns; // [drumIndex][stepIndex]
-    // Per-step parameter values for each drum
-    private int[][] stepVelocities; // Velocity for each step of each drum [drumIndex][stepIndex]
-    private int[][] stepDecays; // Decay (gate time) for each step of each drum [drumIndex][stepIndex]
-    private int[][] stepProbabilities; // Probability for each step [drumIndex][stepIndex]
-    private int[][] stepNudges; // Timing nudge for each step [drumIndex][stepIndex]
-    // Effect parameters
-    private int[][] stepPans; // Pan position (0-127) for each step [drumIndex][stepIndex]
-    private int[][] stepChorus; // Chorus amount (0-100) for each step [drumIndex][stepIndex]
-    private int[][] stepReverb; // Reverb amount (0-100) for each step [drumIndex][stepIndex]
-    // Track last sent effect values to avoid redundant MIDI messages
-    private int[][] lastSentPans;
-    private int[][] lastSentChorus;
-    private int[][] lastSentReverb;
-    private int[][] lastSentDecays; // For delay effect
-    // These track the last sent values to avoid redundant messages
-    private int[][] lastPanValues;
-    private int[][] lastReverbValues;
-    private int[][] lastChorusValues;
-    private int[][] lastDecayValues;
+    // Which steps play, as bitsets: bit (step % 64) of word [drumIndex * STEP_WORDS + step / 64]
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long[] activeSteps;
+    // Every step of every drum as one word: accent, velocity, decay, probability, nudge and effects.
+    // Drum-major, [drumIndex * MAX_STEPS + stepIndex], so a drum's pattern is one contiguous run.
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long[] steps;
+    // Effect fields of each step as last sent, to avoid redundant MIDI messages; all ones until first sent
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long[] sentEffects;
     // Selection state
     private int selectedPadIndex = 0; // Currently selected drum pad
     // Swing parameters
@@ -94,8 +129,8 @@ public class DrumSequenceData {
 
 
     // Mute state for each step of each drum
-    private Boolean[][] barMuteValues = new Boolean[SequencerConstants.DRUM_PAD_COUNT][SequencerConstants.MAX_BAR_COUNT];
-    private Integer[][] barOffsetValues = new Integer[SequencerConstants.DRUM_PAD_COUNT][SequencerConstants.MAX_BAR_COUNT];
+    private boolean[][] barMuteValues = new boolean[SequencerConstants.DRUM_PAD_COUNT][SequencerConstants.MAX_BAR_COUNT];
+    private int[][] barOffsetValues = new int[SequencerConstants.DRUM_PAD_COUNT][SequencerConstants.MAX_BAR_COUNT];
 
     private Integer sequencerId = -1;
 
@@ -124,29 +159,12 @@ public class DrumSequenceData {
         velocities = new int[SequencerConstants.DRUM_PAD_COUNT];
         originalVelocities = new int[SequencerConstants.DRUM_PAD_COUNT];
 
-        // Initialize pattern and step parameter arrays
-        patterns = new boolean[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        stepVelocities = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        stepDecays = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        stepProbabilities = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        stepNudges = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        stepAccents = new boolean[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-
-        // Initialize effect arrays
-        stepPans = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        stepChorus = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        stepReverb = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-
-        // Initialize effect tracking arrays
-        lastSentPans = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        lastSentChorus = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        lastSentReverb = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        lastSentDecays = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-
-        lastPanValues = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        lastReverbValues = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        lastChorusValues = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
-        lastDecayValues = new int[SequencerConstants.DRUM_PAD_COUNT][maxPatternLength];
+        // Initialize packed step words with the default step parameters, all inactive
+        activeSteps = new long[SequencerConstants.DRUM_PAD_COUNT * STEP_WORDS];
+        steps = new long[SequencerConstants.DRUM_PAD_COUNT * MAX_STEPS];
+        Arrays.fill(steps, DEFAULT_STEP);
+        sentEffects = new long[SequencerConstants.DRUM_PAD_COUNT * MAX_STEPS];
+        Arrays.fill(sentEffects, -1L);
 
         // Initialize mute arrays
         instrumentIds = new Long[SequencerConstants.DRUM_PAD_COUNT];
@@ -168,36 +186,6 @@ public class DrumSequenceData {
         masterTempo = SequencerConstants.DEFAULT_MASTER_TEMPO;
 
 
-        // Initialize arrays with default values
-        for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++) {
-            for (int j = 0; j < maxPatternLength; j++) {
-                // Set initial values to -1 to ensure first message gets sent
-                lastPanValues[i][j] = -1;
-                lastReverbValues[i][j] = -1;
-                lastChorusValues[i][j] = -1;
-                lastDecayValues[i][j] = -1;
-
-                // Set default values for step parameters
-                stepVelocities[i][j] = SequencerConstants.DEFAULT_VELOCITY;
-                stepDecays[i][j] = SequencerConstants.DEFAULT_DECAY;
-                stepProbabilities[i][j] = SequencerConstants.DEFAULT_PROBABILITY;
-                stepNudges[i][j] = 0;
-
-                // Set defaults for effect parameters
-                stepPans[i][j] = SequencerConstants.DEFAULT_PAN;
-                stepChorus[i][j] = SequencerConstants.DEFAULT_CHORUS;
-                stepReverb[i][j] = SequencerConstants.DEFAULT_REVERB;
-
-                // Initialize last sent values to invalid defaults
-                lastSentPans[i][j] = -1;
-                lastSentChorus[i][j] = -1;
-                lastSentReverb[i][j] = -1;
-                lastSentDecays[i][j] = -1;
-                stepAccents[i][j] = false;
-            }
-        }
-
-
         // Initialize with defaults
         java.util.Arrays.fill(presets, 0); // Default drum kit preset
         java.util.Arrays.fill(bankIndices, 0); // Default bank
@@ -227,7 +215,7 @@ public class DrumSequenceData {
     public boolean isStepActive(int drumIndex, int stepIndex) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT &&
                 stepIndex >= 0 && stepIndex < maxPatternLength) {
-            return patterns[drumIndex][stepIndex];
+            return (activeSteps[drumIndex * STEP_WORDS + (stepIndex >>> 6)] & (1L << stepIndex)) != 0;
         }
         return false;
     }
@@ -242,14 +230,14 @@ public class DrumSequenceData {
     public void setStepActive(int drumIndex, int stepIndex, boolean active) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT &&
                 stepIndex >= 0 && stepIndex < maxPatternLength) {
-            patterns[drumIndex][stepIndex] = active;
+            setActive(drumIndex, stepIndex, active);
         }
     }
 
     public boolean isStepAccented(int drumIndex, int stepIndex) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT &&
                 stepIndex >= 0 && stepIndex < maxPatternLength) {
-            return stepAccents[drumIndex][stepIndex];
+            return (steps[drumIndex * MAX_STEPS + stepIndex] & ACCENT_BIT) != 0;
         }
         return false;
     }
@@ -257,7 +245,7 @@ public class DrumSequenceData {
     public void setStepAccent(int drumIndex, int stepIndex, boolean accented) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT &&
                 stepIndex >= 0 && stepIndex < maxPatternLength) {
-            stepAccents[drumIndex][stepIndex] = accented;
+            setFlag(drumIndex * MAX_STEPS + stepIndex, ACCENT_BIT, accented);
         }
     }
 
@@ -271,12 +259,415 @@ public class DrumSequenceData {
     public boolean toggleStep(int drumIndex, int stepIndex) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT &&
                 stepIndex >= 0 && stepIndex < maxPatternLength) {
-            patterns[drumIndex][stepIndex] = !patterns[drumIndex][stepIndex];
-            return patterns[drumIndex][stepIndex];
+            int word = drumIndex * STEP_WORDS + (stepIndex >>> 6);
+            activeSteps[word] ^= 1L << stepIndex;
+            return (activeSteps[word] & (1L << stepIndex)) != 0;
         }
         return false;
     }
 
+    /**
+     * First active step of a drum at or after {@code fromStep} and before
+     * {@code length}, or -1 if there is none. Skips a word of inactive steps
+     * at a time.
+     */
+    public int nextActiveStep(int drumIndex, int fromStep, int length) {
+        int end = Math.min(length, MAX_STEPS);
+        if (fromStep < 0 || fromStep >= end) {
+            return -1;
+        }
+        int base = drumIndex * STEP_WORDS;
+        int wordIndex = fromStep >>> 6;
+        long word = activeSteps[base + wordIndex] & (-1L << fromStep);
+        while (true) {
+            if (word != 0) {
+                int step = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                return step < end ? step : -1;
+            }
+            if (++wordIndex >= STEP_WORDS || wordIndex << 6 >= end) {
+                return -1;
+            }
+            word = activeSteps[base + wordIndex];
+        }
+    }
+
+    public int getActiveStepCount(int drumIndex) {
+        int count = 0;
+        for (int w = 0; w < STEP_WORDS; w++) {
+            count += Long.bitCount(activeSteps[drumIndex * STEP_WORDS + w]);
+        }
+        return count;
+    }
+
+    /**
+     * Copy of a drum's active-step bitset, STEP_WORDS long.
+     */
+    public long[] getPatternBits(int drumIndex) {
+        return Arrays.copyOfRange(activeSteps, drumIndex * STEP_WORDS, (drumIndex + 1) * STEP_WORDS);
+    }
+
+    /**
+     * Replace a drum's active steps with a bitset (bit n = step n). Missing
+     * words are treated as empty.
+     */
+    public void setPatternBits(int drumIndex, long[] bits) {
+        for (int w = 0; w < STEP_WORDS; w++) {
+            activeSteps[drumIndex * STEP_WORDS + w] = bits != null && w < bits.length ? bits[w] : 0L;
+        }
+    }
+
+    /**
+     * Turn off a drum's first {@code length} steps.
+     */
+    public void clearPattern(int drumIndex, int length) {
+        long[] mask = lengthMask(length);
+        for (int w = 0; w < STEP_WORDS; w++) {
+            activeSteps[drumIndex * STEP_WORDS + w] &= ~mask[w];
+        }
+    }
+
+    /**
+     * Flip every step of a drum within its first {@code length} steps.
+     */
+    public void invertPattern(int drumIndex, int length) {
+        long[] mask = lengthMask(length);
+        for (int w = 0; w < STEP_WORDS; w++) {
+            activeSteps[drumIndex * STEP_WORDS + w] ^= mask[w];
+        }
+    }
+
+    /**
+     * Rotate a drum's first {@code length} steps, pattern and parameters, by
+     * {@code distance} steps; positive moves later, wrapping at the end.
+     */
+    public void rotatePattern(int drumIndex, int length, int distance) {
+        length = Math.min(length, MAX_STEPS);
+        if (length <= 1) {
+            return;
+        }
+        distance = Math.floorMod(distance, length);
+        if (distance == 0) {
+            return;
+        }
+
+        // (bits << distance) | (bits >>> (length - distance)), over the drum's two words
+        int base = drumIndex * STEP_WORDS;
+        long[] mask = lengthMask(length);
+        long lo = activeSteps[base] & mask[0];
+        long hi = activeSteps[base + 1] & mask[1];
+        long[] left = shiftLeft(lo, hi, distance);
+        long[] right = shiftRight(lo, hi, length - distance);
+        activeSteps[base] = (activeSteps[base] & ~mask[0]) | ((left[0] | right[0]) & mask[0]);
+        activeSteps[base + 1] = (activeSteps[base + 1] & ~mask[1]) | ((left[1] | right[1]) & mask[1]);
+
+        int start = drumIndex * MAX_STEPS;
+        long[] copy = Arrays.copyOfRange(steps, start, start + length);
+        System.arraycopy(copy, 0, steps, start + distance, length - distance);
+        System.arraycopy(copy, length - distance, steps, start, distance);
+        // Rotated steps no longer match what was sent for their positions
+        Arrays.fill(sentEffects, start, start + length, -1L);
+    }
+
+    // Words with the first length bits set; these helpers assume STEP_WORDS == 2
+    private static long[] lengthMask(int length) {
+        long[] mask = new long[2];
+        length = Math.max(0, Math.min(length, MAX_STEPS));
+        mask[0] = length >= 64 ? -1L : (1L << length) - 1;
+        mask[1] = length >= 128 ? -1L : length > 64 ? (1L << (length - 64)) - 1 : 0L;
+        return mask;
+    }
+
+    private static long[] shiftLeft(long lo, long hi, int n) {
+        if (n == 0) {
+            return new long[]{lo, hi};
+        }
+        if (n >= 64) {
+            return new long[]{0L, lo << (n - 64)};
+        }
+        return new long[]{lo << n, (hi << n) | (lo >>> (64 - n))};
+    }
+
+    private static long[] shiftRight(long lo, long hi, int n) {
+        if (n == 0) {
+            return new long[]{lo, hi};
+        }
+        if (n >= 64) {
+            return new long[]{hi >>> (n - 64), 0L};
+        }
+        return new long[]{(lo >>> n) | (hi << (64 - n)), hi >>> n};
+    }
+
+    private void setActive(int drumIndex, int stepIndex, boolean active) {
+        int word = drumIndex * STEP_WORDS + (stepIndex >>> 6);
+        activeSteps[word] = active ? activeSteps[word] | (1L << stepIndex) : activeSteps[word] & ~(1L << stepIndex);
+    }
+
+    /**
+     * Packed word for one step; decode it with the {@code *Of} methods. Lets
+     * the engine read every parameter of a step with a single array load.
+     */
+    public long getStepWord(int drumIndex, int stepIndex) {
+        return steps[drumIndex * MAX_STEPS + stepIndex];
+    }
+
+    // Backing arrays, shared rather than copied, for SequenceDataCodec
+    long[] stepWords() {
+        return steps;
+    }
+
+    long[] activeStepWords() {
+        return activeSteps;
+    }
+
+    public static boolean isAccented(long step) {
+        return (step & ACCENT_BIT) != 0;
+    }
+
+    public static int velocityOf(long step) {
+        return (int) ((step & VELOCITY_FIELD) >>> VELOCITY_SHIFT);
+    }
+
+    public static int probabilityOf(long step) {
+        return (int) ((step & PROBABILITY_FIELD) >>> PROBABILITY_SHIFT);
+    }
+
+    public static int panOf(long step) {
+        return (int) ((step & PAN_FIELD) >>> PAN_SHIFT);
+    }
+
+    public static int chorusOf(long step) {
+        return (int) ((step & CHORUS_FIELD) >>> CHORUS_SHIFT);
+    }
+
+    public static int reverbOf(long step) {
+        return (int) ((step & REVERB_FIELD) >>> REVERB_SHIFT);
+    }
+
+    public static int decayOf(long step) {
+        return (int) ((step & DECAY_FIELD) >>> DECAY_SHIFT);
+    }
+
+    public static int nudgeOf(long step) {
+        // Sign-extend the 7-bit field
+        return (int) (step << (64 - NUDGE_SHIFT - 7) >> (64 - 7));
+    }
+
+    public int getStepVelocity(int drumIndex, int stepIndex) {
+        return velocityOf(steps[drumIndex * MAX_STEPS + stepIndex]);
+    }
+
+    public void setStepVelocity(int drumIndex, int stepIndex, int velocity) {
+        setField(drumIndex * MAX_STEPS + stepIndex, VELOCITY_SHIFT, VELOCITY_FIELD, clamp(velocity, 0, 127));
+    }
+
+    public int getStepDecay(int drumIndex, int stepIndex) {
+        return decayOf(steps[drumIndex * MAX_STEPS + stepIndex]);
+    }
+
+    public void setStepDecay(int drumIndex, int stepIndex, int decay) {
+        setField(drumIndex * MAX_STEPS + stepIndex, DECAY_SHIFT, DECAY_FIELD, clamp(decay, 0, MAX_DECAY));
+    }
+
+    public int getStepProbability(int drumIndex, int stepIndex) {
+        return probabilityOf(steps[drumIndex * MAX_STEPS + stepIndex]);
+    }
+
+    public void setStepProbability(int drumIndex, int stepIndex, int probability) {
+        setField(drumIndex * MAX_STEPS + stepIndex, PROBABILITY_SHIFT, PROBABILITY_FIELD, clamp(probability, 0, 100));
+    }
+
+    public int getStepNudge(int drumIndex, int stepIndex) {
+        return nudgeOf(steps[drumIndex * MAX_STEPS + stepIndex]);
+    }
+
+    public void setStepNudge(int drumIndex, int stepIndex, int nudge) {
+        setField(drumIndex * MAX_STEPS + stepIndex, NUDGE_SHIFT, NUDGE_FIELD, clamp(nudge, MIN_NUDGE, MAX_NUDGE));
+    }
+
+    public int getStepPan(int drumIndex, int stepIndex) {
+        return panOf(steps[drumIndex * MAX_STEPS + stepIndex]);
+    }
+
+    public void setStepPan(int drumIndex, int stepIndex, int pan) {
+        setField(drumIndex * MAX_STEPS + stepIndex, PAN_SHIFT, PAN_FIELD, clamp(pan, 0, 127));
+    }
+
+    public int getStepChorus(int drumIndex, int stepIndex) {
+        return chorusOf(steps[drumIndex * MAX_STEPS + stepIndex]);
+    }
+
+    public void setStepChorus(int drumIndex, int stepIndex, int chorus) {
+        setField(drumIndex * MAX_STEPS + stepIndex, CHORUS_SHIFT, CHORUS_FIELD, clamp(chorus, 0, 127));
+    }
+
+    public int getStepReverb(int drumIndex, int stepIndex) {
+        return reverbOf(steps[drumIndex * MAX_STEPS + stepIndex]);
+    }
+
+    public void setStepReverb(int drumIndex, int stepIndex, int reverb) {
+        setField(drumIndex * MAX_STEPS + stepIndex, REVERB_SHIFT, REVERB_FIELD, clamp(reverb, 0, 127));
+    }
+
+    /**
+     * Effect fields of {@code step} that differ from what was last sent for
+     * this step, as a mask of the *_FIELD constants. The step's effects are
+     * recorded as sent.
+     */
+    public long takeChangedEffects(int drumIndex, int stepIndex, long step) {
+        int index = drumIndex * MAX_STEPS + stepIndex;
+        long sent = sentEffects[index];
+        long changed = (step ^ sent) & EFFECT_FIELDS;
+        if (changed != 0) {
+            sentEffects[index] = (sent & ~EFFECT_FIELDS) | (step & EFFECT_FIELDS);
+        }
+        return changed;
+    }
+
+    private void setFlag(int index, long bit, boolean on) {
+        steps[index] = on ? steps[index] | bit : steps[index] & ~bit;
+    }
+
+    private void setField(int index, int shift, long field, int value) {
+        steps[index] = pack(steps[index], shift, field, value);
+    }
+
+    private static long pack(long step, int shift, long field, int value) {
+        return (step & ~field) | (((long) value << shift) & field);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // Jagged-array views of the packed steps. They keep the JSON format stored in Redis
+    // unchanged; each call builds a copy, so writing into the result changes nothing.
+
+    public boolean[][] getPatterns() {
+        boolean[][] result = new boolean[SequencerConstants.DRUM_PAD_COUNT][MAX_STEPS];
+        for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++) {
+            for (int j = 0; j < MAX_STEPS; j++) {
+                result[i][j] = isStepActive(i, j);
+            }
+        }
+        return result;
+    }
+
+    public void setPatterns(boolean[][] patterns) {
+        forEachStep(patterns, (index, i, j) -> setActive(i, j, patterns[i][j]));
+    }
+
+    public boolean[][] getStepAccents() {
+        boolean[][] result = new boolean[SequencerConstants.DRUM_PAD_COUNT][MAX_STEPS];
+        for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++) {
+            for (int j = 0; j < MAX_STEPS; j++) {
+                result[i][j] = isAccented(steps[i * MAX_STEPS + j]);
+            }
+        }
+        return result;
+    }
+
+    public void setStepAccents(boolean[][] accents) {
+        forEachStep(accents, (index, i, j) -> setFlag(index, ACCENT_BIT, accents[i][j]));
+    }
+
+    public int[][] getStepVelocities() {
+        return unpack(VELOCITY_SHIFT, VELOCITY_FIELD);
+    }
+
+    public void setStepVelocities(int[][] values) {
+        forEachStep(values, (index, i, j) -> setField(index, VELOCITY_SHIFT, VELOCITY_FIELD, clamp(values[i][j], 0, 127)));
+    }
+
+    public int[][] getStepDecays() {
+        return unpack(DECAY_SHIFT, DECAY_FIELD);
+    }
+
+    public void setStepDecays(int[][] values) {
+        forEachStep(values, (index, i, j) -> setField(index, DECAY_SHIFT, DECAY_FIELD, clamp(values[i][j], 0, MAX_DECAY)));
+    }
+
+    public int[][] getStepProbabilities() {
+        return unpack(PROBABILITY_SHIFT, PROBABILITY_FIELD);
+    }
+
+    public void setStepProbabilities(int[][] values) {
+        forEachStep(values, (index, i, j) -> setField(index, PROBABILITY_SHIFT, PROBABILITY_FIELD,
+                clamp(values[i][j], 0, 100)));
+    }
+
+    public int[][] getStepNudges() {
+        int[][] result = new int[SequencerConstants.DRUM_PAD_COUNT][MAX_STEPS];
+        for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++) {
+            for (int j = 0; j < MAX_STEPS; j++) {
+                result[i][j] = nudgeOf(steps[i * MAX_STEPS + j]);
+            }
+        }
+        return result;
+    }
+
+    public void setStepNudges(int[][] values) {
+        forEachStep(values, (index, i, j) -> setField(index, NUDGE_SHIFT, NUDGE_FIELD,
+                clamp(values[i][j], MIN_NUDGE, MAX_NUDGE)));
+    }
+
+    public int[][] getStepPans() {
+        return unpack(PAN_SHIFT, PAN_FIELD);
+    }
+
+    public void setStepPans(int[][] values) {
+        forEachStep(values, (index, i, j) -> setField(index, PAN_SHIFT, PAN_FIELD, clamp(values[i][j], 0, 127)));
+    }
+
+    public int[][] getStepChorus() {
+        return unpack(CHORUS_SHIFT, CHORUS_FIELD);
+    }
+
+    public void setStepChorus(int[][] values) {
+        forEachStep(values, (index, i, j) -> setField(index, CHORUS_SHIFT, CHORUS_FIELD, clamp(values[i][j], 0, 127)));
+    }
+
+    public int[][] getStepReverb() {
+        return unpack(REVERB_SHIFT, REVERB_FIELD);
+    }
+
+    public void setStepReverb(int[][] values) {
+        forEachStep(values, (index, i, j) -> setField(index, REVERB_SHIFT, REVERB_FIELD, clamp(values[i][j], 0, 127)));
+    }
+
+    private int[][] unpack(int shift, long field) {
+        int[][] result = new int[SequencerConstants.DRUM_PAD_COUNT][MAX_STEPS];
+        for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++) {
+            for (int j = 0; j < MAX_STEPS; j++) {
+                result[i][j] = (int) ((steps[i * MAX_STEPS + j] & field) >>> shift);
+            }
+        }
+        return result;
+    }
+
+    private interface StepVisitor {
+        void visit(int index, int drumIndex, int stepIndex);
+    }
+
+    // Older sequences may have been saved with fewer drums or steps; take what is there
+    private static void forEachStep(Object[] rows, StepVisitor visitor) {
+        if (rows == null) {
+            return;
+        }
+        for (int i = 0; i < Math.min(rows.length, SequencerConstants.DRUM_PAD_COUNT); i++) {
+            if (rows[i] == null) {
+                continue;
+            }
+            int length = Math.min(java.lang.reflect.Array.getLength(rows[i]), MAX_STEPS);
+            for (int j = 0; j < length; j++) {
+                visitor.visit(i * MAX_STEPS + j, i, j);
+            }
+        }
+    }
+
+    public void setMaxPatternLength(int maxPatternLength) {
+        this.maxPatternLength = Math.min(maxPatternLength, MAX_STEPS);
+    }
+
     /**
      * Reset all pattern data to initial state
      *
@@ -308,6 +699,18 @@ public class DrumSequenceData {
      * @return The previous step index (for UI updates)
      */
     public int calculateNextStep(int drumIndex) {
+        return calculateNextStep(drumIndex, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Calculate the next step for a drum, drawing RANDOM steps from the given
+     * generator (the owning sequencer's, so seeded renders repeat)
+     *
+     * @param drumIndex The drum to calculate for
+     * @param random    Source for the RANDOM direction
+     * @return The previous step index (for UI updates)
+     */
+    public int calculateNextStep(int drumIndex, RandomGenerator random) {
         if (drumIndex < 0 || drumIndex >= SequencerConstants.DRUM_PAD_COUNT) {
             return 0;
         }
@@ -359,7 +762,7 @@ public class DrumSequenceData {
             case RANDOM:
                 int oldStep = currentStep[drumIndex];
                 // Generate a random step position
-                currentStep[drumIndex] = (int) (Math.random() * length);
+                currentStep[drumIndex] = random.nextInt(Math.max(1, length));
 
                 // Ensure we don't get the same step twice in a row
                 if (currentStep[drumIndex] == oldStep && length > 1) {
@@ -378,11 +781,7 @@ public class DrumSequenceData {
      * Clear all patterns (set all steps to inactive)
      */
     public void clearPatterns() {
-        for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++) {
-            for (int j = 0; j < maxPatternLength; j++) {
-                patterns[i][j] = false;
-            }
-        }
+        Arrays.fill(activeSteps, 0L);
     }
 
     /**
@@ -406,6 +805,17 @@ public class DrumSequenceData {
      * @param density   The pattern density (1-10)
      */
     public void generatePattern(int drumIndex, int density) {
+        generatePattern(drumIndex, density, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Generate a random pattern for a drum, placing hits with the given generator
+     *
+     * @param drumIndex The drum index
+     * @param density   The pattern density (1-10)
+     * @param random    Source for hit placement
+     */
+    public void generatePattern(int drumIndex, int density, RandomGenerator random) {
         if (drumIndex < 0 || drumIndex >= SequencerConstants.DRUM_PAD_COUNT) {
             return;
         }
@@ -413,22 +823,20 @@ public class DrumSequenceData {
         int length = patternLengths[drumIndex];
 
         // Clear existing pattern
-        for (int step = 0; step < length; step++) {
-            patterns[drumIndex][step] = false;
-        }
+        clearPattern(drumIndex, length);
 
         // Generate new pattern based on density (1-10)
         int hitsToAdd = Math.max(1, Math.min(SequencerConstants.MAX_DENSITY, density)) * length / SequencerConstants.MAX_DENSITY;
 
         // Always add a hit on the first beat
-        patterns[drumIndex][0] = true;
+        setActive(drumIndex, 0, true);
         hitsToAdd--;
 
         // Randomly distribute remaining hits
         while (hitsToAdd > 0) {
-            int step = (int) (Math.random() * length);
-            if (!patterns[drumIndex][step]) {
-                patterns[drumIndex][step] = true;
+            int step = random.nextInt(length);
+            if (!isStepActive(drumIndex, step)) {
+                setActive(drumIndex, step, true);
                 hitsToAdd--;
             }
         }
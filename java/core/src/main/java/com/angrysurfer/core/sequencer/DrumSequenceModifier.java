@@ -9,14 +9,13 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Utility class for modifying drum sequences without UI dependencies
  */
 public class DrumSequenceModifier {
     private static final Logger logger = LoggerFactory.getLogger(DrumSequenceModifier.class);
-    private static final Random random = new Random();
 
     /**
      * Applies an Euclidean pattern to the specified drum
@@ -40,22 +39,27 @@ public class DrumSequenceModifier {
             int newLength = pattern.length;
             sequencer.setPatternLength(drumIndex, newLength);
 
-            // Apply pattern values (activate steps where pattern is true)
-            for (int step = 0; step < pattern.length; step++) {
+            // Apply pattern values as one bitset (activate steps where pattern is true)
+            long[] bits = new long[DrumSequenceData.STEP_WORDS];
+            for (int step = 0; step < Math.min(pattern.length, DrumSequenceData.MAX_STEPS); step++) {
                 if (pattern[step]) {
-                    // Toggle the step to make it active
-                    sequencer.toggleStep(drumIndex, step);
+                    bits[step >>> 6] |= 1L << step;
+                }
+            }
+            DrumSequenceData data = sequencer.getSequenceData();
+            data.setPatternBits(drumIndex, bits);
 
-                    // Always set default parameters for active steps
-                    sequencer.setStepVelocity(drumIndex, step, SequencerConstants.DEFAULT_VELOCITY);
-                    sequencer.setStepDecay(drumIndex, step, SequencerConstants.DEFAULT_DECAY);
-                    sequencer.setStepProbability(drumIndex, step, SequencerConstants.DEFAULT_PROBABILITY);
+            for (int step = data.nextActiveStep(drumIndex, 0, newLength); step >= 0;
+                 step = data.nextActiveStep(drumIndex, step + 1, newLength)) {
+                // Always set default parameters for active steps
+                sequencer.setStepVelocity(drumIndex, step, SequencerConstants.DEFAULT_VELOCITY);
+                sequencer.setStepDecay(drumIndex, step, SequencerConstants.DEFAULT_DECAY);
+                sequencer.setStepProbability(drumIndex, step, SequencerConstants.DEFAULT_PROBABILITY);
 
-                    // Set default effect parameters too
-                    sequencer.setStepPan(drumIndex, step, 64); // Center
-                    sequencer.setStepChorus(drumIndex, step, 0);
-                    sequencer.setStepReverb(drumIndex, step, 0);
-                }
+                // Set default effect parameters too
+                sequencer.setStepPan(drumIndex, step, 64); // Center
+                sequencer.setStepChorus(drumIndex, step, 0);
+                sequencer.setStepReverb(drumIndex, step, 0);
             }
 
             // Use our helper method to notify pattern changed
@@ -75,11 +79,8 @@ public class DrumSequenceModifier {
     public static boolean clearDrumTrack(DrumSequencer sequencer, int drumIndex) {
         try {
             int patternLength = sequencer.getPatternLength(drumIndex);
+            sequencer.getSequenceData().clearPattern(drumIndex, patternLength);
             for (int step = 0; step < patternLength; step++) {
-                if (sequencer.isStepActive(drumIndex, step)) {
-                    sequencer.toggleStep(drumIndex, step);
-                }
-
                 // Reset all parameters to defaults (important for clean state)
                 sequencer.setStepVelocity(drumIndex, step, SequencerConstants.DEFAULT_VELOCITY);
                 sequencer.setStepDecay(drumIndex, step, SequencerConstants.DEFAULT_DECAY);
@@ -176,72 +177,8 @@ public class DrumSequenceModifier {
      */
     public static boolean pushPatternForward(DrumSequencer sequencer, int drumIndex) {
         try {
-            int patternLength = sequencer.getPatternLength(drumIndex);
-            boolean[] originalPattern = new boolean[patternLength];
-
-            // Arrays to store all step parameters
-            int[] originalVelocities = new int[patternLength];
-            int[] originalDecays = new int[patternLength];
-            int[] originalProbabilities = new int[patternLength];
-            int[] originalNudges = new int[patternLength];
-            int[] originalPans = new int[patternLength];
-            int[] originalChorus = new int[patternLength];
-            int[] originalReverb = new int[patternLength];
-
-            // Save original pattern with all parameters
-            for (int i = 0; i < patternLength; i++) {
-                originalPattern[i] = sequencer.isStepActive(drumIndex, i);
-                originalVelocities[i] = sequencer.getStepVelocity(drumIndex, i);
-                originalDecays[i] = sequencer.getStepDecay(drumIndex, i);
-                originalProbabilities[i] = sequencer.getStepProbability(drumIndex, i);
-                originalNudges[i] = sequencer.getStepNudge(drumIndex, i);
-                originalPans[i] = sequencer.getStepPan(drumIndex, i);
-                originalChorus[i] = sequencer.getStepChorus(drumIndex, i);
-                originalReverb[i] = sequencer.getStepReverb(drumIndex, i);
-            }
-
-            // Shift pattern right (wrap around for last step)
-            boolean lastStepState = originalPattern[patternLength - 1];
-            int lastVelocity = originalVelocities[patternLength - 1];
-            int lastDecay = originalDecays[patternLength - 1];
-            int lastProbability = originalProbabilities[patternLength - 1];
-            int lastNudge = originalNudges[patternLength - 1];
-            int lastPan = originalPans[patternLength - 1];
-            int lastChorus = originalChorus[patternLength - 1];
-            int lastReverb = originalReverb[patternLength - 1];
-
-            // Clear current pattern
-            clearDrumTrack(sequencer, drumIndex);
-
-            // Apply shifted pattern
-            for (int i = 0; i < patternLength - 1; i++) {
-                if (originalPattern[i]) {
-                    sequencer.toggleStep(drumIndex, i + 1);
-                }
-
-                // Copy parameters regardless of step state
-                sequencer.setStepVelocity(drumIndex, i + 1, originalVelocities[i]);
-                sequencer.setStepDecay(drumIndex, i + 1, originalDecays[i]);
-                sequencer.setStepProbability(drumIndex, i + 1, originalProbabilities[i]);
-                sequencer.setStepNudge(drumIndex, i + 1, originalNudges[i]);
-                sequencer.setStepPan(drumIndex, i + 1, originalPans[i]);
-                sequencer.setStepChorus(drumIndex, i + 1, originalChorus[i]);
-                sequencer.setStepReverb(drumIndex, i + 1, originalReverb[i]);
-            }
-
-            // Wrap last step to first position
-            if (lastStepState) {
-                sequencer.toggleStep(drumIndex, 0);
-            }
-
-            // Wrap last step parameters to first position
-            sequencer.setStepVelocity(drumIndex, 0, lastVelocity);
-            sequencer.setStepDecay(drumIndex, 0, lastDecay);
-            sequencer.setStepProbability(drumIndex, 0, lastProbability);
-            sequencer.setStepNudge(drumIndex, 0, lastNudge);
-            sequencer.setStepPan(drumIndex, 0, lastPan);
-            sequencer.setStepChorus(drumIndex, 0, lastChorus);
-            sequencer.setStepReverb(drumIndex, 0, lastReverb);
+            // Steps and their parameters move together; the last step wraps to the first
+            sequencer.getSequenceData().rotatePattern(drumIndex, sequencer.getPatternLength(drumIndex), 1);
 
             // Notify that the pattern has changed
             notifyPatternChanged(sequencer, drumIndex);
@@ -259,80 +196,53 @@ public class DrumSequenceModifier {
      */
     public static boolean pullPatternBackward(DrumSequencer sequencer, int drumIndex) {
         try {
-            int patternLength = sequencer.getPatternLength(drumIndex);
-            boolean[] originalPattern = new boolean[patternLength];
+            // Steps and their parameters move together; the first step wraps to the last
+            sequencer.getSequenceData().rotatePattern(drumIndex, sequencer.getPatternLength(drumIndex), -1);
 
-            // Arrays to store all step parameters
-            int[] originalVelocities = new int[patternLength];
-            int[] originalDecays = new int[patternLength];
-            int[] originalProbabilities = new int[patternLength];
-            int[] originalNudges = new int[patternLength];
-            int[] originalPans = new int[patternLength];
-            int[] originalChorus = new int[patternLength];
-            int[] originalReverb = new int[patternLength];
-
-            // Save original pattern with all parameters
-            for (int i = 0; i < patternLength; i++) {
-                originalPattern[i] = sequencer.isStepActive(drumIndex, i);
-                originalVelocities[i] = sequencer.getStepVelocity(drumIndex, i);
-                originalDecays[i] = sequencer.getStepDecay(drumIndex, i);
-                originalProbabilities[i] = sequencer.getStepProbability(drumIndex, i);
-                originalNudges[i] = sequencer.getStepNudge(drumIndex, i);
-                originalPans[i] = sequencer.getStepPan(drumIndex, i);
-                originalChorus[i] = sequencer.getStepChorus(drumIndex, i);
-                originalReverb[i] = sequencer.getStepReverb(drumIndex, i);
-            }
+            // Notify that the pattern has changed
+            notifyPatternChanged(sequencer, drumIndex);
 
-            // Shift pattern left (wrap around for first step)
-            boolean firstStepState = originalPattern[0];
-            int firstVelocity = originalVelocities[0];
-            int firstDecay = originalDecays[0];
-            int firstProbability = originalProbabilities[0];
-            int firstNudge = originalNudges[0];
-            int firstPan = originalPans[0];
-            int firstChorus = originalChorus[0];
-            int firstReverb = originalReverb[0];
-
-            // Clear current pattern
-            clearDrumTrack(sequencer, drumIndex);
+            logger.info("Pulled pattern backward for drum {}", drumIndex);
+            return true;
+        } catch (Exception e) {
+            logger.error("Error pulling pattern backward for drum {}", drumIndex, e);
+            return false;
+        }
+    }
 
-            // Apply shifted pattern
-            for (int i = 1; i < patternLength; i++) {
-                if (originalPattern[i]) {
-                    sequencer.toggleStep(drumIndex, i - 1);
-                }
+    /**
+     * Rotates a pattern by any number of steps with parameter preservation;
+     * positive distances move steps later
+     */
+    public static boolean rotatePattern(DrumSequencer sequencer, int drumIndex, int distance) {
+        try {
+            sequencer.getSequenceData().rotatePattern(drumIndex, sequencer.getPatternLength(drumIndex), distance);
 
-                // Copy parameters regardless of step state
-                sequencer.setStepVelocity(drumIndex, i - 1, originalVelocities[i]);
-                sequencer.setStepDecay(drumIndex, i - 1, originalDecays[i]);
-                sequencer.setStepProbability(drumIndex, i - 1, originalProbabilities[i]);
-                sequencer.setStepNudge(drumIndex, i - 1, originalNudges[i]);
-                sequencer.setStepPan(drumIndex, i - 1, originalPans[i]);
-                sequencer.setStepChorus(drumIndex, i - 1, originalChorus[i]);
-                sequencer.setStepReverb(drumIndex, i - 1, originalReverb[i]);
-            }
+            // Notify that the pattern has changed
+            notifyPatternChanged(sequencer, drumIndex);
 
-            // Wrap first step to last position
-            if (firstStepState) {
-                sequencer.toggleStep(drumIndex, patternLength - 1);
-            }
+            logger.info("Rotated pattern by {} steps for drum {}", distance, drumIndex);
+            return true;
+        } catch (Exception e) {
+            logger.error("Error rotating pattern for drum {}", drumIndex, e);
+            return false;
+        }
+    }
 
-            // Wrap first step parameters to last position
-            sequencer.setStepVelocity(drumIndex, patternLength - 1, firstVelocity);
-            sequencer.setStepDecay(drumIndex, patternLength - 1, firstDecay);
-            sequencer.setStepProbability(drumIndex, patternLength - 1, firstProbability);
-            sequencer.setStepNudge(drumIndex, patternLength - 1, firstNudge);
-            sequencer.setStepPan(drumIndex, patternLength - 1, firstPan);
-            sequencer.setStepChorus(drumIndex, patternLength - 1, firstChorus);
-            sequencer.setStepReverb(drumIndex, patternLength - 1, firstReverb);
+    /**
+     * Turns every active step off and every inactive step on, keeping step parameters
+     */
+    public static boolean invertPattern(DrumSequencer sequencer, int drumIndex) {
+        try {
+            sequencer.getSequenceData().invertPattern(drumIndex, sequencer.getPatternLength(drumIndex));
 
             // Notify that the pattern has changed
             notifyPatternChanged(sequencer, drumIndex);
 
-            logger.info("Pulled pattern backward for drum {}", drumIndex);
+            logger.info("Inverted pattern for drum {}", drumIndex);
             return true;
         } catch (Exception e) {
-            logger.error("Error pulling pattern backward for drum {}", drumIndex, e);
+            logger.error("Error inverting pattern for drum {}", drumIndex, e);
             return false;
         }
     }
@@ -342,6 +252,7 @@ public class DrumSequenceModifier {
      */
     public static boolean generateRandomPattern(DrumSequencer sequencer, int drumIndex, int density) {
         try {
+            RandomGenerator random = sequencer.getEditRandom();
             int patternLength = sequencer.getPatternLength(drumIndex);
 
             // Clear existing pattern
@@ -451,28 +362,27 @@ public class DrumSequenceModifier {
      */
     public static boolean randomizeVelocities(DrumSequencer sequencer, int drumIndex) {
         try {
+            RandomGenerator random = sequencer.getEditRandom();
             int patternLength = sequencer.getPatternLength(drumIndex);
 
             // Go through each step in the pattern
-            for (int step = 0; step < patternLength; step++) {
-                // Only modify active steps
-                if (sequencer.isStepActive(drumIndex, step)) {
-                    // Generate random velocity between 50-127 for better musical results
-                    int randomVelocity = 50 + random.nextInt(78);
-                    sequencer.setStepVelocity(drumIndex, step, randomVelocity);
-                }
+            DrumSequenceData data = sequencer.getSequenceData();
+            for (int step = data.nextActiveStep(drumIndex, 0, patternLength); step >= 0;
+                 step = data.nextActiveStep(drumIndex, step + 1, patternLength)) {
+                // Generate random velocity between 50-127 for better musical results
+                int randomVelocity = 50 + random.nextInt(78);
+                sequencer.setStepVelocity(drumIndex, step, randomVelocity);
             }
 
             // Publish parameter-specific event to update dials
-            for (int step = 0; step < patternLength; step++) {
-                if (sequencer.isStepActive(drumIndex, step)) {
-                    // Publish change event for each active step
-                    CommandBus.getInstance().publish(
-                        Commands.DRUM_STEP_PARAMETERS_CHANGED,
-                        DrumSequenceModifier.class,
-                        new DrumStepParametersEvent(sequencer, drumIndex, step)
-                    );
-                }
+            for (int step = data.nextActiveStep(drumIndex, 0, patternLength); step >= 0;
+                 step = data.nextActiveStep(drumIndex, step + 1, patternLength)) {
+                // Publish change event for each active step
+                CommandBus.getInstance().publish(
+                    Commands.DRUM_STEP_PARAMETERS_CHANGED,
+                    DrumSequenceModifier.class,
+                    new DrumStepParametersEvent(sequencer, drumIndex, step)
+                );
             }
 
             // Notify that the pattern has changed
@@ -491,16 +401,16 @@ public class DrumSequenceModifier {
      */
     public static boolean randomizeNudgeValues(DrumSequencer sequencer, int drumIndex) {
         try {
+            RandomGenerator random = sequencer.getEditRandom();
             int patternLength = sequencer.getPatternLength(drumIndex);
 
             // Go through each step in the pattern
-            for (int step = 0; step < patternLength; step++) {
-                // Only modify active steps
-                if (sequencer.isStepActive(drumIndex, step)) {
-                    // Generate random nudge between -25 and 25
-                    int randomNudge = random.nextInt(51) - 25;
-                    sequencer.setStepNudge(drumIndex, step, randomNudge);
-                }
+            DrumSequenceData data = sequencer.getSequenceData();
+            for (int step = data.nextActiveStep(drumIndex, 0, patternLength); step >= 0;
+                 step = data.nextActiveStep(drumIndex, step + 1, patternLength)) {
+                // Generate random nudge between -25 and 25
+                int randomNudge = random.nextInt(51) - 25;
+                sequencer.setStepNudge(drumIndex, step, randomNudge);
             }
 
             // Notify that the pattern has changed
@@ -519,16 +429,16 @@ public class DrumSequenceModifier {
      */
     public static boolean randomizeProbabilities(DrumSequencer sequencer, int drumIndex) {
         try {
+            RandomGenerator random = sequencer.getEditRandom();
             int patternLength = sequencer.getPatternLength(drumIndex);
 
             // Go through each step in the pattern
-            for (int step = 0; step < patternLength; step++) {
-                // Only modify active steps
-                if (sequencer.isStepActive(drumIndex, step)) {
-                    // Generate random probability between 50 and 100 (for musical results)
-                    int randomProb = 50 + random.nextInt(51);
-                    sequencer.setStepProbability(drumIndex, step, randomProb);
-                }
+            DrumSequenceData data = sequencer.getSequenceData();
+            for (int step = data.nextActiveStep(drumIndex, 0, patternLength); step >= 0;
+                 step = data.nextActiveStep(drumIndex, step + 1, patternLength)) {
+                // Generate random probability between 50 and 100 (for musical results)
+                int randomProb = 50 + random.nextInt(51);
+                sequencer.setStepProbability(drumIndex, step, randomProb);
             }
 
             // Notify that the pattern has changed
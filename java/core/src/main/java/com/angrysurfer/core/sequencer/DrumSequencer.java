@@ -17,10 +17,9 @@ import javax.sound.midi.MidiDevice;
 import javax.sound.midi.Receiver;
 import javax.sound.midi.ShortMessage;
 import java.util.Arrays;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
 
 /**
  * Core sequencer engine that handles drum pattern sequencing and playback with
@@ -28,13 +27,15 @@ import java.util.function.Consumer;
  */
 @Getter
 @Setter
-public class DrumSequencer implements IBusListener {
+public class DrumSequencer implements IBusListener, TimingFrameListener {
 
     private static final Logger logger = LoggerFactory.getLogger(DrumSequencer.class);
 
+    // Keeps drum sequencer seeds apart from melodic ones under a fixed seed
+    private static final long RANDOM_SALT = 1000;
+
     // Reference to the data container
     // Add as static fields in both sequencer classes
-    private static final ScheduledExecutorService SHARED_NOTE_SCHEDULER = Executors.newScheduledThreadPool(2);
 
     private final ShortMessage reuseableMessage = new javax.sound.midi.ShortMessage();
 
@@ -46,11 +47,36 @@ public class DrumSequencer implements IBusListener {
     private Consumer<DrumStepUpdateEvent> stepUpdateListener;
     private Consumer<NoteEvent> noteEventListener;
     private Consumer<NoteEvent> noteEventPublisher;
+    // Step events are immutable, so each (drum, step) keeps its last one for reuse
+    private final DrumStepUpdateEvent[][] stepEvents =
+            new DrumStepUpdateEvent[SequencerConstants.DRUM_PAD_COUNT][DrumSequenceData.MAX_STEPS];
     // Add field to track if we're using internal synth
     private boolean usingInternalSynth = false;
     private Integer currentBar = null;
     // private Integer currentPart = null;
-    private TimingUpdate lastTimingUpdate = null;
+    // Next queued pattern, deserialized off the clock thread
+    private final PatternPreloader<DrumSequenceData> patternPreloader = new PatternPreloader<>("drums",
+            id -> DrumSequencerManager.getInstance().loadSequenceById(id));
+    // Probability rolls and the RANDOM direction draw from this, on the clock thread only
+    private RandomGenerator random = SequencerRandom.create(RANDOM_SALT);
+    // Generated patterns, randomize edits and drum resets draw from this, on the UI thread
+    private RandomGenerator editRandom = SequencerRandom.createForEdits(RANDOM_SALT);
+
+    public void setId(Integer id) {
+        this.id = id;
+        if (id != null) {
+            random = SequencerRandom.create(RANDOM_SALT + id);
+            editRandom = SequencerRandom.createForEdits(RANDOM_SALT + id);
+        }
+    }
+
+    /**
+     * Reseed this sequencer's generators so a render can be replayed exactly
+     */
+    public void setRandomSeed(long seed) {
+        random = SequencerRandom.seeded(seed);
+        editRandom = SequencerRandom.seededForEdits(seed);
+    }
 
     /**
      * Creates a new drum sequencer with per-drum parameters
@@ -343,23 +369,7 @@ public class DrumSequencer implements IBusListener {
         if (loaded) {
             logger.info("Loaded drum sequence: {}", sequenceId);
             logger.info(sequenceData.toString());
-            sequenceData.setId(sequenceId);
-            updateDrumRootNotesFromData();
-            // Immediately update visual indicators without resetting
-            if (stepUpdateListener != null) {
-                for (int drumIndex = 0; drumIndex < SequencerConstants.DRUM_PAD_COUNT; drumIndex++) {
-                    // Force an update with the current positions
-                    stepUpdateListener
-                            .accept(new DrumStepUpdateEvent(drumIndex, -1, sequenceData.getCurrentStep()[drumIndex]));
-                }
-            }
-
-            // Publish event to notify UI components
-            CommandBus.getInstance().publish(Commands.DRUM_SEQUENCE_LOADED, this, sequenceData.getId());
-
-            // Preserve playing state (don't stop if we were playing)
-            sequenceData.setPlaying(wasPlaying);
-
+            sequenceLoaded(sequenceId, wasPlaying);
             return true;
         } else {
             logger.warn("Failed to load drum sequence {}", sequenceId);
@@ -367,6 +377,36 @@ public class DrumSequencer implements IBusListener {
         }
     }
 
+    /**
+     * Swap in a sequence that was already loaded by the pattern preloader.
+     * Only a reference changes hands, so this is safe on the clock thread.
+     */
+    private void swapSequence(DrumSequenceData data, long sequenceId) {
+        boolean wasPlaying = sequenceData.isPlaying();
+        sequenceData = data;
+        logger.info("Switched to preloaded drum sequence: {}", sequenceId);
+        sequenceLoaded(sequenceId, wasPlaying);
+    }
+
+    private void sequenceLoaded(long sequenceId, boolean wasPlaying) {
+        sequenceData.setId(sequenceId);
+        updateDrumRootNotesFromData();
+        // Immediately update visual indicators without resetting
+        if (stepUpdateListener != null) {
+            for (int drumIndex = 0; drumIndex < SequencerConstants.DRUM_PAD_COUNT; drumIndex++) {
+                // Force an update with the current positions
+                stepUpdateListener
+                        .accept(new DrumStepUpdateEvent(drumIndex, -1, sequenceData.getCurrentStep()[drumIndex]));
+            }
+        }
+
+        // Publish event to notify UI components
+        CommandBus.getInstance().publish(Commands.DRUM_SEQUENCE_LOADED, this, sequenceData.getId());
+
+        // Preserve playing state (don't stop if we were playing)
+        sequenceData.setPlaying(wasPlaying);
+    }
+
     /**
      * Load the first available sequence
      */
@@ -396,7 +436,6 @@ public class DrumSequencer implements IBusListener {
      */
     public void reset(boolean preservePositions) {
 
-        this.lastTimingUpdate = null;
         sequenceData.reset(preservePositions);
         sequenceData.setMasterTempo(SessionManager.getInstance().getActiveSession().getTicksPerBeat());
 
@@ -482,16 +521,23 @@ public class DrumSequencer implements IBusListener {
         }
 
         // Check for pattern completion
-        if (sequenceData.areAllPatternsCompleted() && sequenceData.getNextPatternId() != null) {
+        Long nextPatternId = sequenceData.getNextPatternId();
+        if (sequenceData.areAllPatternsCompleted() && nextPatternId != null) {
             sequenceData.setPatternJustCompleted(true);
 
-            // Switch to next pattern
+            // Switch to next pattern, from the staging buffer if its load has finished
             Long currentId = sequenceData.getId();
-            loadSequence(sequenceData.getNextPatternId());
+            DrumSequenceData staged = patternPreloader.take(nextPatternId);
+            if (staged != null) {
+                swapSequence(staged, nextPatternId);
+            } else {
+                logger.warn("Drum pattern {} not preloaded, loading on the clock thread", nextPatternId);
+                loadSequence(nextPatternId);
+            }
 
             // Notify about pattern switch
             CommandBus.getInstance().publish(Commands.DRUM_PATTERN_SWITCHED, this,
-                    new PatternSwitchEvent(currentId, sequenceData.getNextPatternId()));
+                    new PatternSwitchEvent(currentId, nextPatternId));
 
             // Clear the next pattern ID (one-shot behavior)
             sequenceData.setNextPatternId(null);
@@ -507,6 +553,8 @@ public class DrumSequencer implements IBusListener {
      */
     public void setNextPatternId(Long patternId) {
         sequenceData.setNextPatternId(patternId);
+        // Start loading it now; the current pattern itself needs no load
+        patternPreloader.preload(patternId != null && patternId.equals(sequenceData.getId()) ? null : patternId);
         logger.info("Set next drum pattern ID: {}", patternId);
     }
 
@@ -521,15 +569,28 @@ public class DrumSequencer implements IBusListener {
 
         // Notify listeners of step update BEFORE playing the sound
         if (stepUpdateListener != null) {
-            DrumStepUpdateEvent event = new DrumStepUpdateEvent(drumIndex, getPreviousStep(drumIndex), step);
-            stepUpdateListener.accept(event);
+            stepUpdateListener.accept(stepUpdateEvent(drumIndex, getPreviousStep(drumIndex), step));
         }
 
-        // Trigger the drum step
-        triggerDrumStep(drumIndex, step);
+        // Trigger the drum step; an inactive step costs one bit test
+        if (sequenceData.isStepActive(drumIndex, step)) {
+            triggerDrumStep(drumIndex, step);
+        }
 
         // Calculate next step - store previous step for UI updates
-        sequenceData.calculateNextStep(drumIndex);
+        sequenceData.calculateNextStep(drumIndex, random);
+    }
+
+    private DrumStepUpdateEvent stepUpdateEvent(int drumIndex, int oldStep, int newStep) {
+        if (newStep < 0 || newStep >= DrumSequenceData.MAX_STEPS) {
+            return new DrumStepUpdateEvent(drumIndex, oldStep, newStep);
+        }
+        DrumStepUpdateEvent event = stepEvents[drumIndex][newStep];
+        if (event == null || event.getOldStep() != oldStep) {
+            event = new DrumStepUpdateEvent(drumIndex, oldStep, newStep);
+            stepEvents[drumIndex][newStep] = event;
+        }
+        return event;
     }
 
     /**
@@ -569,19 +630,17 @@ public class DrumSequencer implements IBusListener {
             return;
         }
 
-        // Skip if step is inactive
-        if (!sequenceData.isStepActive(drumIndex, stepIndex)) {
-            return;
-        }
+        // Every step parameter lives in one packed word; the caller has checked the step is active
+        long step = sequenceData.getStepWord(drumIndex, stepIndex);
 
         // Get all step parameters
-        int velocity = sequenceData.getStepVelocities()[drumIndex][stepIndex];
-        int probability = sequenceData.getStepProbabilities()[drumIndex][stepIndex];
-        int decay = sequenceData.getStepDecays()[drumIndex][stepIndex];
-        int nudge = sequenceData.getStepNudges()[drumIndex][stepIndex];
+        int velocity = DrumSequenceData.velocityOf(step);
+        int probability = DrumSequenceData.probabilityOf(step);
+        int decay = DrumSequenceData.decayOf(step);
+        int nudge = DrumSequenceData.nudgeOf(step);
 
         // Check probability
-        if (Math.random() * 100 >= probability) {
+        if (probability < 100 && random.nextInt(100) >= probability) {
             return;
         }
 
@@ -602,7 +661,7 @@ public class DrumSequencer implements IBusListener {
         }
 
         // Process and send effects before playing the note
-        processEffects(drumIndex, stepIndex, player);
+        processEffects(drumIndex, stepIndex, step, player);
 
         // Apply swing if needed
         if (sequenceData.isSwingEnabled() && stepIndex % 2 == 1) {
@@ -614,7 +673,7 @@ public class DrumSequencer implements IBusListener {
         final int sessionOffset = player.getFollowSessionOffset() ? SessionManager.getInstance().getActiveSession().getNoteOffset() : 0;
         final int finalNoteNumber = player.getRootNote() + offset + sessionOffset;
 
-        int actualVelocity = getSequenceData().isStepAccented(drumIndex, stepIndex) ?
+        int actualVelocity = DrumSequenceData.isAccented(step) ?
                 Math.min(finalVelocity + 20, 126) : finalVelocity;
 
         final int finalDecay = decay;
@@ -622,11 +681,11 @@ public class DrumSequencer implements IBusListener {
         final int finalActualVelocity = actualVelocity;
 
         if (nudge > 0) {
-            // Delayed note
-            SHARED_NOTE_SCHEDULER.schedule(() -> {
-                player.noteOn(finalNoteNumber, finalActualVelocity, finalDecay);
-                publishNoteEvent(finalDrumIndex, finalActualVelocity, finalDecay);
-            }, nudge, TimeUnit.MILLISECONDS);
+            // Delayed note: note, note-off and UI event are all timed by the shared scheduler
+            long delayNanos = TimeUnit.MILLISECONDS.toNanos(nudge);
+            player.noteOn(finalNoteNumber, finalActualVelocity, finalDecay, delayNanos);
+            MidiEventScheduler.getInstance().schedule(
+                    () -> publishNoteEvent(finalDrumIndex, finalActualVelocity, finalDecay), delayNanos);
         } else {
             // Immediate note
             player.noteOn(finalNoteNumber, finalActualVelocity, decay);
@@ -909,7 +968,7 @@ public class DrumSequencer implements IBusListener {
                 sequenceData.getCurrentStep()[drumIndex] = 0;
                 break;
             case RANDOM:
-                sequenceData.getCurrentStep()[drumIndex] = (int) (Math.random() * sequenceData.getPatternLengths()[drumIndex]);
+                sequenceData.getCurrentStep()[drumIndex] = editRandom.nextInt(Math.max(1, sequenceData.getPatternLengths()[drumIndex]));
                 break;
         }
 
@@ -1065,7 +1124,7 @@ public class DrumSequencer implements IBusListener {
     public int getStepVelocity(int drumIndex, int stepIndex) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            return sequenceData.getStepVelocities()[drumIndex][stepIndex];
+            return sequenceData.getStepVelocity(drumIndex, stepIndex);
         }
         return 0;
     }
@@ -1076,7 +1135,7 @@ public class DrumSequencer implements IBusListener {
     public void setStepVelocity(int drumIndex, int stepIndex, int velocity) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            sequenceData.getStepVelocities()[drumIndex][stepIndex] = velocity;
+            sequenceData.setStepVelocity(drumIndex, stepIndex, velocity);
         }
     }
 
@@ -1086,7 +1145,7 @@ public class DrumSequencer implements IBusListener {
     public int getStepDecay(int drumIndex, int stepIndex) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            return sequenceData.getStepDecays()[drumIndex][stepIndex];
+            return sequenceData.getStepDecay(drumIndex, stepIndex);
         }
         return 0;
     }
@@ -1097,7 +1156,7 @@ public class DrumSequencer implements IBusListener {
     public void setStepDecay(int drumIndex, int stepIndex, int decay) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            sequenceData.getStepDecays()[drumIndex][stepIndex] = decay;
+            sequenceData.setStepDecay(drumIndex, stepIndex, decay);
         }
     }
 
@@ -1107,7 +1166,7 @@ public class DrumSequencer implements IBusListener {
     public int getStepProbability(int drumIndex, int stepIndex) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            return sequenceData.getStepProbabilities()[drumIndex][stepIndex];
+            return sequenceData.getStepProbability(drumIndex, stepIndex);
         }
         return SequencerConstants.DEFAULT_PROBABILITY;
     }
@@ -1119,7 +1178,7 @@ public class DrumSequencer implements IBusListener {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
             // Clamp value between 0-100
-            sequenceData.getStepProbabilities()[drumIndex][stepIndex] = Math.max(0, Math.min(100, probability));
+            sequenceData.setStepProbability(drumIndex, stepIndex, Math.max(0, Math.min(100, probability)));
         }
     }
 
@@ -1129,7 +1188,7 @@ public class DrumSequencer implements IBusListener {
     public int getStepNudge(int drumIndex, int stepIndex) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            return sequenceData.getStepNudges()[drumIndex][stepIndex];
+            return sequenceData.getStepNudge(drumIndex, stepIndex);
         }
         return 0;
     }
@@ -1140,7 +1199,7 @@ public class DrumSequencer implements IBusListener {
     public void setStepNudge(int drumIndex, int stepIndex, int nudge) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            sequenceData.getStepNudges()[drumIndex][stepIndex] = nudge;
+            sequenceData.setStepNudge(drumIndex, stepIndex, nudge);
         }
     }
 
@@ -1150,7 +1209,7 @@ public class DrumSequencer implements IBusListener {
     public int getStepPan(int drumIndex, int stepIndex) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            return sequenceData.getStepPans()[drumIndex][stepIndex];
+            return sequenceData.getStepPan(drumIndex, stepIndex);
         }
         return SequencerConstants.DEFAULT_PAN;
     }
@@ -1161,7 +1220,7 @@ public class DrumSequencer implements IBusListener {
     public void setStepPan(int drumIndex, int stepIndex, int pan) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            sequenceData.getStepPans()[drumIndex][stepIndex] = Math.max(0, Math.min(127, pan));
+            sequenceData.setStepPan(drumIndex, stepIndex, Math.max(0, Math.min(127, pan)));
         }
     }
 
@@ -1171,7 +1230,7 @@ public class DrumSequencer implements IBusListener {
     public int getStepChorus(int drumIndex, int stepIndex) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            return sequenceData.getStepChorus()[drumIndex][stepIndex];
+            return sequenceData.getStepChorus(drumIndex, stepIndex);
         }
         return SequencerConstants.DEFAULT_CHORUS;
     }
@@ -1182,7 +1241,7 @@ public class DrumSequencer implements IBusListener {
     public void setStepChorus(int drumIndex, int stepIndex, int chorus) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            sequenceData.getStepChorus()[drumIndex][stepIndex] = Math.max(0, Math.min(100, chorus));
+            sequenceData.setStepChorus(drumIndex, stepIndex, Math.max(0, Math.min(100, chorus)));
         }
     }
 
@@ -1192,7 +1251,7 @@ public class DrumSequencer implements IBusListener {
     public int getStepReverb(int drumIndex, int stepIndex) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            return sequenceData.getStepReverb()[drumIndex][stepIndex];
+            return sequenceData.getStepReverb(drumIndex, stepIndex);
         }
         return SequencerConstants.DEFAULT_REVERB;
     }
@@ -1203,7 +1262,7 @@ public class DrumSequencer implements IBusListener {
     public void setStepReverb(int drumIndex, int stepIndex, int reverb) {
         if (drumIndex >= 0 && drumIndex < SequencerConstants.DRUM_PAD_COUNT && stepIndex >= 0
                 && stepIndex < sequenceData.getMaxPatternLength()) {
-            sequenceData.getStepReverb()[drumIndex][stepIndex] = Math.max(0, Math.min(100, reverb));
+            sequenceData.setStepReverb(drumIndex, stepIndex, Math.max(0, Math.min(100, reverb)));
         }
     }
 
@@ -1309,7 +1368,7 @@ public class DrumSequencer implements IBusListener {
     public void generatePattern(int density) {
         // Generate pattern for selected drum pad
         int drumIndex = sequenceData.getSelectedPadIndex();
-        sequenceData.generatePattern(drumIndex, density);
+        sequenceData.generatePattern(drumIndex, density, editRandom);
 
         // Notify UI of pattern change
         CommandBus.getInstance().publish(Commands.DRUM_SEQUENCE_PARAMS_CHANGED, this, drumIndex);
@@ -1372,76 +1431,78 @@ public class DrumSequencer implements IBusListener {
 
     private void handleTimingUpdate(Command action) {
         if (action.getData() instanceof TimingUpdate update) {
-            this.lastTimingUpdate = update;
-            if (update.bar() != null) {
-                // Adjust for 0-based index
-                int bar = update.bar() - 1;
-                if (currentBar == null || bar != currentBar) {
-                    currentBar = bar;
-                    logger.debug("Current bar updated to {}", currentBar);
-
-                    for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++)
-                        if (sequenceData.getBarMuteValue(i, currentBar) != players[i].isMuted())
-                            players[i].setMuted(!players[i].isMuted());
-
-                    for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++) {
-                        int offset = sequenceData.getBarOffsetValue(i, currentBar);
-                        if (offset != players[i].getOffset())
-                            players[i].setOffset(offset);
-                    }
+            onTimingFrame(TimingFrame.from(update));
+        }
+    }
+
+    /**
+     * Fast-path timing from the {@link TimingBus}; the frame is reused every tick.
+     */
+    @Override
+    public void onTimingFrame(TimingFrame frame) {
+        if (frame.getBar() > 0) {
+            // Adjust for 0-based index
+            int bar = frame.getBar() - 1;
+            if (currentBar == null || bar != currentBar) {
+                currentBar = bar;
+                logger.debug("Current bar updated to {}", currentBar);
+
+                for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++)
+                    if (sequenceData.getBarMuteValue(i, currentBar) != players[i].isMuted())
+                        players[i].setMuted(!players[i].isMuted());
+
+                for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++) {
+                    int offset = sequenceData.getBarOffsetValue(i, currentBar);
+                    if (offset != players[i].getOffset())
+                        players[i].setOffset(offset);
                 }
             }
-            // Process tick for note sequencing
-            if (update.tick() != null && sequenceData.isPlaying())
-                processTick(update.tick());
         }
+        // Process tick for note sequencing
+        if (frame.getTick() > 0 && sequenceData.isPlaying())
+            processTick(frame.getTick());
     }
 
     /**
      * Process effects for a single step
      */
-    private void processEffects(int drumIndex, int stepIndex, Player player) {
-        // Skip if the step is inactive or player has no instrument
-        if (!sequenceData.isStepActive(drumIndex, stepIndex) || player == null || player.getInstrument() == null) {
+    private void processEffects(int drumIndex, int stepIndex, long step, Player player) {
+        // Skip if player has no instrument
+        if (player == null || player.getInstrument() == null) {
             return;
         }
 
         try {
-            // Get current effect values
-            int pan = sequenceData.getStepPans()[drumIndex][stepIndex];
-            int reverb = sequenceData.getStepReverb()[drumIndex][stepIndex];
-            int chorus = sequenceData.getStepChorus()[drumIndex][stepIndex];
-            int decay = sequenceData.getStepDecays()[drumIndex][stepIndex];
+            // Only add effects that have changed since this step last sent them
+            long changed = sequenceData.takeChangedEffects(drumIndex, stepIndex, step);
+            if (changed == 0) {
+                return;
+            }
 
             // Count how many effects need to be sent
             int effectCount = 0;
 
-            // Only add effects that have changed
-            if (pan != sequenceData.getLastPanValues()[drumIndex][stepIndex]) {
+            if ((changed & DrumSequenceData.PAN_FIELD) != 0) {
                 sequenceData.getEffectControllers()[effectCount] = MIDIConstants.CC_PAN;
-                sequenceData.getEffectValues()[effectCount] = pan;
-                sequenceData.getLastPanValues()[drumIndex][stepIndex] = pan;
+                sequenceData.getEffectValues()[effectCount] = DrumSequenceData.panOf(step);
                 effectCount++;
             }
 
-            if (reverb != sequenceData.getLastReverbValues()[drumIndex][stepIndex]) {
+            if ((changed & DrumSequenceData.REVERB_FIELD) != 0) {
                 sequenceData.getEffectControllers()[effectCount] = MIDIConstants.CC_REVERB;
-                sequenceData.getEffectValues()[effectCount] = reverb;
-                sequenceData.getLastReverbValues()[drumIndex][stepIndex] = reverb;
+                sequenceData.getEffectValues()[effectCount] = DrumSequenceData.reverbOf(step);
                 effectCount++;
             }
 
-            if (chorus != sequenceData.getLastChorusValues()[drumIndex][stepIndex]) {
+            if ((changed & DrumSequenceData.CHORUS_FIELD) != 0) {
                 sequenceData.getEffectControllers()[effectCount] = MIDIConstants.CC_CHORUS;
-                sequenceData.getEffectValues()[effectCount] = chorus;
-                sequenceData.getLastChorusValues()[drumIndex][stepIndex] = chorus;
+                sequenceData.getEffectValues()[effectCount] = DrumSequenceData.chorusOf(step);
                 effectCount++;
             }
 
-            if (decay != sequenceData.getLastDecayValues()[drumIndex][stepIndex]) {
+            if ((changed & DrumSequenceData.DECAY_FIELD) != 0) {
                 sequenceData.getEffectControllers()[effectCount] = MIDIConstants.CC_DELAY; // Using delay CC for decay
-                sequenceData.getEffectValues()[effectCount] = decay;
-                sequenceData.getLastDecayValues()[drumIndex][stepIndex] = decay;
+                sequenceData.getEffectValues()[effectCount] = DrumSequenceData.decayOf(step);
                 effectCount++;
             }
 
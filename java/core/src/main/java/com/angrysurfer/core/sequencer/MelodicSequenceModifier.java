@@ -21,6 +21,14 @@ public class MelodicSequenceModifier {
      * @return true if pattern was generated successfully
      */
     public static boolean generatePattern(MelodicSequencer sequencer, int octaveRange, int density) {
+        return generatePattern(sequencer, octaveRange, density, sequencer.getEditRandom());
+    }
+
+    /**
+     * Generate a random pattern, drawing from the given generator
+     */
+    public static boolean generatePattern(MelodicSequencer sequencer, int octaveRange, int density,
+                                          java.util.random.RandomGenerator random) {
 
         MelodicSequenceData sequenceData = sequencer.getSequenceData();
         try {
@@ -61,7 +69,6 @@ public class MelodicSequenceModifier {
             logger.debug("Will activate {} steps out of {}", stepsToActivate, sequenceData.getMaxSteps());
 
             // Generate steps
-            java.util.Random random = new java.util.Random();
             for (int i = 0; i < stepsToActivate; i++) {
                 // Choose a random step that's not already active
                 int step;
@@ -18,11 +18,12 @@ import javax.sound.midi.MidiUnavailableException;
 import javax.sound.midi.ShortMessage;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
 
 @Getter
 @Setter
-public class MelodicSequencer implements IBusListener {
+public class MelodicSequencer implements IBusListener, TimingFrameListener {
 
     private static final Logger logger = LoggerFactory.getLogger(MelodicSequencer.class);
 
@@ -30,7 +31,8 @@ public class MelodicSequencer implements IBusListener {
 
     private Integer id;
 
-    private TimingUpdate lastTimingUpdate;
+    // Reused by the session every tick; only valid while the tick is being processed
+    private TimingFrame lastTimingFrame;
 
     private boolean loopingToggled;
     private boolean isPlaying = false; // Flag indicating playback state
@@ -46,10 +48,16 @@ public class MelodicSequencer implements IBusListener {
 
     private boolean latchEnabled = false;
     private Long nextPatternId = null;
+    // Next queued pattern, deserialized off the clock thread
+    private final PatternPreloader<MelodicSequenceData> patternPreloader = new PatternPreloader<>("melodic",
+            sequenceId -> MelodicSequencerManager.getInstance().getSequenceData(id, sequenceId));
     private long lastNoteTriggeredTime = 0;
     private Player player;
     private int currentTilt = 0;
-    private Random rand = new Random();
+    // Probability rolls, RANDOM direction and latch regeneration draw from this, on the clock thread only
+    private RandomGenerator random = SequencerRandom.create(0);
+    // Generated patterns from the editor draw from this, on the UI thread
+    private RandomGenerator editRandom = SequencerRandom.createForEdits(0);
 
     private Consumer<NoteEvent> noteEventPublisher;
     private Consumer<StepUpdateEvent> stepUpdateListener;
@@ -86,6 +94,18 @@ public class MelodicSequencer implements IBusListener {
 
     public void setId(Integer id) {
         this.id = id;
+        if (id != null) {
+            random = SequencerRandom.create(id);
+            editRandom = SequencerRandom.createForEdits(id);
+        }
+    }
+
+    /**
+     * Reseed this sequencer's generators so a render can be replayed exactly
+     */
+    public void setRandomSeed(long seed) {
+        random = SequencerRandom.seeded(seed);
+        editRandom = SequencerRandom.seededForEdits(seed);
     }
 
     public void setSequenceData(MelodicSequenceData data) {
@@ -140,7 +160,14 @@ public class MelodicSequencer implements IBusListener {
     }
 
     public void processTick(Long tick) {
-        if (!isPlaying || tick == null) {
+        if (tick == null) {
+            return;
+        }
+        processTick(tick.longValue());
+    }
+
+    public void processTick(long tick) {
+        if (!isPlaying) {
             return;
         }
 
@@ -210,7 +237,7 @@ public class MelodicSequencer implements IBusListener {
             case RANDOM -> {
                 int priorStep = currentStep;
 
-                currentStep = (int) (Math.random() * sequenceData.getPatternLength());
+                currentStep = random.nextInt(Math.max(1, sequenceData.getPatternLength()));
 
                 if (currentStep == 0 && priorStep != 0) {
                     handlePatternCompletion();
@@ -228,8 +255,8 @@ public class MelodicSequencer implements IBusListener {
         if (latchEnabled) {
             int octaveRange = 2;
             int density = 50;
-            if (rand.nextBoolean())
-                generatePattern(octaveRange, density);
+            if (random.nextBoolean())
+                generatePattern(octaveRange, density, random);
 
             logger.info("Latch mode: Generated new pattern at cycle end");
         }
@@ -237,8 +264,8 @@ public class MelodicSequencer implements IBusListener {
         if (nextPatternId != null) {
             Long currentId = sequenceData.getId();
 
-            // Use the manager instead of Redis directly
-            if (MelodicSequencerManager.getInstance().applySequenceById(id, nextPatternId)) {
+            if (switchToStagedPattern(nextPatternId)
+                    || MelodicSequencerManager.getInstance().applySequenceById(id, nextPatternId)) {
                 CommandBus.getInstance().publish(
                         Commands.MELODIC_PATTERN_SWITCHED,
                         this,
@@ -249,22 +276,38 @@ public class MelodicSequencer implements IBusListener {
         }
     }
 
+    /**
+     * Set the pattern to switch to when the current one completes and start
+     * loading it in the background.
+     */
+    public void setNextPatternId(Long patternId) {
+        this.nextPatternId = patternId;
+        patternPreloader.preload(patternId != null && patternId.equals(sequenceData.getId()) ? null : patternId);
+    }
+
+    // Swap in the preloaded pattern; instrument and preset changes follow on the loader thread
+    private boolean switchToStagedPattern(long patternId) {
+        MelodicSequenceData staged = patternPreloader.take(patternId);
+        if (staged == null) {
+            logger.warn("Melodic pattern {} not preloaded, loading on the clock thread", patternId);
+            return false;
+        }
+        setSequenceData(staged);
+        PatternPreloader.execute(() -> {
+            if (sequenceData == staged) {
+                RedisService.getInstance().applyMelodicSequenceToSequencer(staged, this);
+            }
+        });
+        return true;
+    }
+
     public int quantizeNote(int noteValue) {
         if (!sequenceData.isQuantizeEnabled() || quantizer == null) {
             return noteValue;
         }
 
-        // Apply octave shift
-        int octaveOffset = sequenceData.getOctaveShift() * 12;
-        int shiftedNote = noteValue + octaveOffset;
-
-        // Apply quantization
-        int quantizedNote = quantizer.quantizeNote(shiftedNote);
-
-        logger.debug("Quantized note {} to {} (with octave shift {})",
-                noteValue, quantizedNote, sequenceData.getOctaveShift());
-
-        return quantizedNote;
+        // Apply octave shift, then quantization: one table lookup
+        return quantizer.quantizeNote(noteValue, sequenceData.getOctaveShift() * 12);
     }
 
     public void reset() {
@@ -322,7 +365,7 @@ public class MelodicSequencer implements IBusListener {
 
             if (player != null) {
                 if (player.getFollowRules()) {
-                    if (player.shouldPlay(lastTimingUpdate))
+                    if (lastTimingFrame != null && player.shouldPlay(lastTimingFrame))
                         player.noteOn(noteValue, velocity, gate);
                 } else player.noteOn(noteValue, velocity, gate);
             }
@@ -342,11 +385,11 @@ public class MelodicSequencer implements IBusListener {
     private boolean stepIsProbable(int stepIndex) {
         int probability = sequenceData.getProbabilityValue(stepIndex);
         if (probability < 100) {
-            int rand = (int) (Math.random() * 100);
+            int roll = random.nextInt(100);
 
-            if (rand >= probability) {
+            if (roll >= probability) {
                 logger.debug("Step {} skipped due to probability ({} < {})",
-                        stepIndex, rand, probability);
+                        stepIndex, roll, probability);
                 return true;
             }
         }
@@ -457,9 +500,13 @@ public class MelodicSequencer implements IBusListener {
      * @return true if pattern was generated successfully
      */
     public boolean generatePattern(int octaveRange, int density) {
+        return generatePattern(octaveRange, density, editRandom);
+    }
 
+    // Latch mode regenerates on the clock thread, with the playback generator
+    private boolean generatePattern(int octaveRange, int density, RandomGenerator random) {
 
-        boolean result = MelodicSequenceModifier.generatePattern(this, octaveRange, density);
+        boolean result = MelodicSequenceModifier.generatePattern(this, octaveRange, density, random);
 
         if (result) {
             // Notify pattern updated (this is a backup in case the modifier doesn't publish)
@@ -568,47 +615,56 @@ public class MelodicSequencer implements IBusListener {
      * @param action the Command containing the timing update with tick and bar info
      */
     private void handleTimingUpdate(Command action) {
-
         if (action.getData() instanceof TimingUpdate update) {
+            onTimingFrame(TimingFrame.from(update));
+        }
+    }
 
-            lastTimingUpdate = update;
-            // Process bar for tilt and mute updates
-            if (update.bar() != null) {
-                int newBar = update.bar() - 1; // Adjust for 0-based index
-
-                // Only process if bar actually changed
-                if (currentBar == null || newBar != currentBar) {
-                    currentBar = newBar;
-                    logger.debug("Current bar updated to {}", currentBar);
-
-                    // Process tilt values
-                    if (getHarmonicTiltValues() != null && getHarmonicTiltValues().size() > currentBar) {
-                        currentTilt = getHarmonicTiltValues().get(currentBar);
-                        logger.debug("Current tilt value for bar {}: {}", currentBar, currentTilt);
-                    }
+    /**
+     * Fast-path timing from the {@link TimingBus}; the frame is reused every tick.
+     *
+     * @param frame the current tick frame with tick and bar info
+     */
+    @Override
+    public void onTimingFrame(TimingFrame frame) {
+
+        lastTimingFrame = frame;
+        // Process bar for tilt and mute updates
+        if (frame.getBar() > 0) {
+            int newBar = frame.getBar() - 1; // Adjust for 0-based index
+
+            // Only process if bar actually changed
+            if (currentBar == null || newBar != currentBar) {
+                currentBar = newBar;
+                logger.debug("Current bar updated to {}", currentBar);
+
+                // Process tilt values
+                if (getHarmonicTiltValues() != null && getHarmonicTiltValues().size() > currentBar) {
+                    currentTilt = getHarmonicTiltValues().get(currentBar);
+                    logger.debug("Current tilt value for bar {}: {}", currentBar, currentTilt);
+                }
 
-                    if (sequenceData.getMuteValues() != null && sequenceData.getMuteValues().size() > currentBar) {
-                        int muteValue = sequenceData.getMuteValue(currentBar);
-                        boolean shouldMute = muteValue > 0;
-
-                        // Only update if mute state changes
-                        if (shouldMute != player.isMuted()) {
-                            player.setMuted(shouldMute);
-                            player.setEnabled(!shouldMute);
-                            logger.debug("Bar {}: Player {} {}",
-                                    currentBar, player.getName(),
-                                    shouldMute ? "muted" : "unmuted");
-                        }
+                if (sequenceData.getMuteValues() != null && sequenceData.getMuteValues().size() > currentBar) {
+                    int muteValue = sequenceData.getMuteValue(currentBar);
+                    boolean shouldMute = muteValue > 0;
+
+                    // Only update if mute state changes
+                    if (shouldMute != player.isMuted()) {
+                        player.setMuted(shouldMute);
+                        player.setEnabled(!shouldMute);
+                        logger.debug("Bar {}: Player {} {}",
+                                currentBar, player.getName(),
+                                shouldMute ? "muted" : "unmuted");
                     }
-
-                    if (loopingToggled)
-                        handleLoopToggled();
                 }
+
+                if (loopingToggled)
+                    handleLoopToggled();
             }
-            // Process tick for note sequencing
-            if (update.tick() != null && isPlaying) {
-                processTick(update.tick());
-            }
+        }
+        // Process tick for note sequencing
+        if (frame.getTick() > 0 && isPlaying) {
+            processTick(frame.getTick());
         }
     }
 
@@ -0,0 +1,417 @@
+package com.angrysurfer.core.sequencer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Synthesizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.angrysurfer.core.model.InstrumentWrapper;
+import com.angrysurfer.core.util.ClockJitterStats;
+
+/**
+ * Single timing wheel for every delayed MIDI event: nudged and swung notes,
+ * gate/decay note-offs, and small deferred actions. One max-priority thread
+ * drains it against absolute nanosecond deadlines, parking while far away and
+ * spinning for the last stretch, like {@link com.angrysurfer.core.util.DeadlineClock}.
+ * <p>
+ * The wheel is hashed by time: slot {@code (dispatchAt >> SLOT_SHIFT) & mask},
+ * about a millisecond each, holds a list kept in deadline order, so finding the
+ * next event is a walk over a few slots rather than a heap. Events live in
+ * pooled primitive arrays linked by index; scheduling a note allocates nothing
+ * once the pool has grown to the busiest moment so far. Deadlines beyond one
+ * revolution simply wait in their slot for later laps.
+ * <p>
+ * Instruments backed by a {@link Synthesizer} with a running clock get their
+ * messages up to {@link #getLookaheadMillis()} early, stamped with the device
+ * time they should sound at, so the synth places them sample-accurately.
+ * Other receivers ignore timestamps, so their messages are sent at the
+ * deadline itself.
+ */
+public final class MidiEventScheduler implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MidiEventScheduler.class);
+
+    private static final long DEFAULT_LOOKAHEAD_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    // Park until we're this close to the next event, then spin
+    private static final long SPIN_THRESHOLD_NANOS = 250_000; // 250µs
+    // 2^20ns (~1.05ms) per slot, 4096 slots: one revolution is ~4.3s
+    private static final int SLOT_SHIFT = 20;
+    private static final int SLOT_COUNT = 4096;
+    private static final int INITIAL_POOL_SIZE = 1024;
+    private static final int NONE = -1;
+    private static final byte FLAG_TIMESTAMPED = 1;
+
+    private static MidiEventScheduler instance;
+
+    private final Object lock = new Object();
+    private final int[] slotHeads = new int[SLOT_COUNT];
+
+    // Event pool, indexed by event id; free events are chained through next[]
+    private long[] dispatchAt = new long[INITIAL_POOL_SIZE];
+    private long[] deadlines = new long[INITIAL_POOL_SIZE];
+    private int[] messages = new int[INITIAL_POOL_SIZE]; // status << 16 | data1 << 8 | data2
+    private byte[] flags = new byte[INITIAL_POOL_SIZE];
+    private int[] next = new int[INITIAL_POOL_SIZE];
+    private InstrumentWrapper[] instruments = new InstrumentWrapper[INITIAL_POOL_SIZE];
+    private Runnable[] actions = new Runnable[INITIAL_POOL_SIZE];
+    private int freeHead;
+
+    // Events popped for firing, copied out of the pool under the lock and
+    // dispatched outside it; grow() may swap the pool arrays meanwhile.
+    // Only the dispatch thread touches these.
+    private long[] batchDispatchAt = new long[64];
+    private long[] batchDeadlines = new long[64];
+    private int[] batchMessages = new int[64];
+    private byte[] batchFlags = new byte[64];
+    private InstrumentWrapper[] batchInstruments = new InstrumentWrapper[64];
+    private Runnable[] batchActions = new Runnable[64];
+    // Reused for untimestamped sends, which receivers handle before send() returns
+    private final ShortMessage immediateMessage = new ShortMessage();
+    private final ClockJitterStats jitterStats = new ClockJitterStats();
+    private final Thread dispatchThread;
+    private volatile long lookaheadNanos = DEFAULT_LOOKAHEAD_NANOS;
+    // dispatchAt of the earliest event, or Long.MAX_VALUE when empty; spun on without the lock
+    private volatile long nextDispatchAt = Long.MAX_VALUE;
+    // Slot time (dispatchAt >> SLOT_SHIFT) the dispatcher has swept up to
+    private long cursorTime;
+    private volatile int pending;
+    private int maxPending;
+    private volatile long dispatched;
+    private volatile long timestampedSends;
+
+    private MidiEventScheduler() {
+        Arrays.fill(slotHeads, NONE);
+        chainFree(0, INITIAL_POOL_SIZE);
+        cursorTime = System.nanoTime() >> SLOT_SHIFT;
+        dispatchThread = new Thread(this, "MIDI-Scheduler");
+        dispatchThread.setPriority(Thread.MAX_PRIORITY);
+        dispatchThread.setDaemon(true);
+        dispatchThread.start();
+    }
+
+    public static synchronized MidiEventScheduler getInstance() {
+        if (instance == null) {
+            instance = new MidiEventScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * Send a channel message to an instrument after a delay.
+     */
+    public void scheduleMessage(InstrumentWrapper instrument, int command, int channel, int data1, int data2,
+                                long delayNanos) {
+        if (instrument == null) {
+            return;
+        }
+        long deadline = System.nanoTime() + Math.max(0, delayNanos);
+        int message = ((command & 0xF0) | (channel & 0x0F)) << 16 | (data1 & 0x7F) << 8 | (data2 & 0x7F);
+        boolean timestamped = supportsTimestamps(instrument.getDevice());
+        enqueue(deadline, instrument, message, timestamped, null);
+    }
+
+    public void scheduleNoteOn(InstrumentWrapper instrument, int note, int velocity, long delayNanos) {
+        if (instrument != null) {
+            scheduleMessage(instrument, ShortMessage.NOTE_ON, instrument.getChannel(), note, velocity, delayNanos);
+        }
+    }
+
+    public void scheduleNoteOff(InstrumentWrapper instrument, int note, int velocity, long delayNanos) {
+        if (instrument != null) {
+            scheduleMessage(instrument, ShortMessage.NOTE_OFF, instrument.getChannel(), note, velocity, delayNanos);
+        }
+    }
+
+    /**
+     * Run an action on the scheduler thread at a deadline. Actions must be
+     * short; anything slow delays every event behind it.
+     */
+    public void schedule(Runnable action, long delayNanos) {
+        if (action != null) {
+            enqueue(System.nanoTime() + Math.max(0, delayNanos), null, 0, false, action);
+        }
+    }
+
+    public void schedule(Runnable action, long delay, TimeUnit unit) {
+        schedule(action, unit.toNanos(delay));
+    }
+
+    private void enqueue(long deadline, InstrumentWrapper instrument, int message, boolean timestamped,
+                         Runnable action) {
+        long at = timestamped ? deadline - lookaheadNanos : deadline;
+        boolean wake;
+        synchronized (lock) {
+            int event = allocate();
+            dispatchAt[event] = at;
+            deadlines[event] = deadline;
+            messages[event] = message;
+            flags[event] = timestamped ? FLAG_TIMESTAMPED : 0;
+            instruments[event] = instrument;
+            actions[event] = action;
+            insert(event, Math.max(at >> SLOT_SHIFT, cursorTime));
+
+            pending++;
+            maxPending = Math.max(maxPending, pending);
+            wake = at < nextDispatchAt;
+            if (wake) {
+                nextDispatchAt = at;
+            }
+        }
+        if (wake) {
+            LockSupport.unpark(dispatchThread);
+        }
+    }
+
+    // Insert into the slot list in dispatch order, after any event due at the same instant
+    private void insert(int event, long slotTime) {
+        int slot = (int) (slotTime & (SLOT_COUNT - 1));
+        long at = dispatchAt[event];
+        int previous = NONE;
+        int current = slotHeads[slot];
+        while (current != NONE && dispatchAt[current] <= at) {
+            previous = current;
+            current = next[current];
+        }
+        next[event] = current;
+        if (previous == NONE) {
+            slotHeads[slot] = event;
+        } else {
+            next[previous] = event;
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            long at = nextDispatchAt;
+            if (at == Long.MAX_VALUE) {
+                LockSupport.park(this);
+                continue;
+            }
+            long remaining = at - System.nanoTime();
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(this, remaining - SPIN_THRESHOLD_NANOS);
+                continue;
+            }
+            if (remaining > 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            int count;
+            synchronized (lock) {
+                count = collectDue(System.nanoTime());
+                nextDispatchAt = findNext();
+            }
+            for (int i = 0; i < count; i++) {
+                dispatch(i);
+                batchInstruments[i] = null;
+                batchActions[i] = null;
+            }
+        }
+    }
+
+    // Pop every due event into the batch and free it, sweeping slots from the cursor up to now
+    private int collectDue(long now) {
+        long nowTime = now >> SLOT_SHIFT;
+        if (nowTime - cursorTime >= SLOT_COUNT) {
+            // Idle for more than a lap: one pass over every slot covers everything due
+            cursorTime = nowTime - SLOT_COUNT + 1;
+        }
+        int count = 0;
+        while (true) {
+            int slot = (int) (cursorTime & (SLOT_COUNT - 1));
+            int head = slotHeads[slot];
+            while (head != NONE && dispatchAt[head] <= now) {
+                int following = next[head];
+                take(count++, head);
+                release(head);
+                head = following;
+            }
+            slotHeads[slot] = head;
+            if (cursorTime >= nowTime) {
+                pending -= count;
+                return count;
+            }
+            cursorTime++;
+        }
+    }
+
+    // Earliest dispatchAt at or after the cursor, looking at most one revolution ahead
+    private long findNext() {
+        if (pending == 0) {
+            return Long.MAX_VALUE;
+        }
+        long earliest = Long.MAX_VALUE;
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            long slotTime = cursorTime + i;
+            int head = slotHeads[(int) (slotTime & (SLOT_COUNT - 1))];
+            if (head == NONE) {
+                continue;
+            }
+            long at = dispatchAt[head];
+            if ((at >> SLOT_SHIFT) <= slotTime) {
+                // Due in this lap; earlier slots were empty for it, so nothing sooner exists
+                return Math.min(earliest, at);
+            }
+            // Only later laps here; remember it in case the whole wheel is like that
+            earliest = Math.min(earliest, at);
+        }
+        return earliest;
+    }
+
+    // Called holding the lock
+    private void take(int index, int event) {
+        if (index == batchDispatchAt.length) {
+            int grown = index * 2;
+            batchDispatchAt = Arrays.copyOf(batchDispatchAt, grown);
+            batchDeadlines = Arrays.copyOf(batchDeadlines, grown);
+            batchMessages = Arrays.copyOf(batchMessages, grown);
+            batchFlags = Arrays.copyOf(batchFlags, grown);
+            batchInstruments = Arrays.copyOf(batchInstruments, grown);
+            batchActions = Arrays.copyOf(batchActions, grown);
+        }
+        batchDispatchAt[index] = dispatchAt[event];
+        batchDeadlines[index] = deadlines[event];
+        batchMessages[index] = messages[event];
+        batchFlags[index] = flags[event];
+        batchInstruments[index] = instruments[event];
+        batchActions[index] = actions[event];
+    }
+
+    // Fire the batch entry at index; reads only the batch copy, never the pool
+    private void dispatch(int index) {
+        long now = System.nanoTime();
+        jitterStats.record(now - batchDispatchAt[index]);
+        try {
+            Runnable action = batchActions[index];
+            if (action != null) {
+                action.run();
+            } else {
+                InstrumentWrapper instrument = batchInstruments[index];
+                int message = batchMessages[index];
+                int status = message >>> 16;
+                int data1 = (message >>> 8) & 0x7F;
+                int data2 = message & 0x7F;
+                if ((batchFlags[index] & FLAG_TIMESTAMPED) != 0) {
+                    // The synth keeps the message until it plays, so it can't be the shared one
+                    MidiDevice device = instrument.getDevice();
+                    long timeStamp = device.getMicrosecondPosition() + Math.max(0, batchDeadlines[index] - now) / 1_000;
+                    instrument.sendMessage(new ShortMessage(status & 0xF0, status & 0x0F, data1, data2), timeStamp);
+                    timestampedSends++;
+                } else {
+                    immediateMessage.setMessage(status & 0xF0, status & 0x0F, data1, data2);
+                    instrument.sendMessage(immediateMessage);
+                }
+            }
+            dispatched++;
+        } catch (InvalidMidiDataException e) {
+            logger.error("Invalid scheduled MIDI event: {}", e.getMessage());
+        } catch (Exception e) {
+            // Never let one event kill the scheduler thread
+            logger.error("Error dispatching scheduled MIDI event: {}", e.getMessage(), e);
+        }
+    }
+
+    private int allocate() {
+        if (freeHead == NONE) {
+            grow();
+        }
+        int event = freeHead;
+        freeHead = next[event];
+        return event;
+    }
+
+    private void release(int event) {
+        instruments[event] = null;
+        actions[event] = null;
+        next[event] = freeHead;
+        freeHead = event;
+    }
+
+    private void grow() {
+        int size = next.length;
+        int grown = size * 2;
+        dispatchAt = Arrays.copyOf(dispatchAt, grown);
+        deadlines = Arrays.copyOf(deadlines, grown);
+        messages = Arrays.copyOf(messages, grown);
+        flags = Arrays.copyOf(flags, grown);
+        next = Arrays.copyOf(next, grown);
+        instruments = Arrays.copyOf(instruments, grown);
+        actions = Arrays.copyOf(actions, grown);
+        chainFree(size, grown);
+        logger.debug("Grew MIDI event pool to {}", grown);
+    }
+
+    private void chainFree(int from, int to) {
+        for (int i = from; i < to - 1; i++) {
+            next[i] = i + 1;
+        }
+        next[to - 1] = NONE;
+        freeHead = from;
+    }
+
+    /**
+     * Whether a device places timestamped messages itself. Java Sound's
+     * software synthesizer does; ports and most other receivers ignore the
+     * timestamp and would play the message as soon as it arrives.
+     */
+    static boolean supportsTimestamps(MidiDevice device) {
+        return device instanceof Synthesizer && device.isOpen() && device.getMicrosecondPosition() >= 0;
+    }
+
+    public long getLookaheadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lookaheadNanos);
+    }
+
+    /**
+     * How early timestamped messages are handed to their synth. Larger values
+     * tolerate more scheduler jitter; smaller ones react sooner to mutes and
+     * pattern changes.
+     */
+    public void setLookaheadMillis(long millis) {
+        if (millis >= 0) {
+            lookaheadNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+
+    /**
+     * Events scheduled but not yet dispatched.
+     */
+    public int getPendingCount() {
+        return pending;
+    }
+
+    /**
+     * Most events pending at once since start, i.e. the size the pool grew to.
+     */
+    public int getMaxPendingCount() {
+        synchronized (lock) {
+            return maxPending;
+        }
+    }
+
+    public long getDispatchedCount() {
+        return dispatched;
+    }
+
+    public long getTimestampedCount() {
+        return timestampedSends;
+    }
+
+    /**
+     * How late each event left the wheel relative to its dispatch time.
+     * Timestamped messages are dispatched a lookahead early and then placed
+     * by the synth, so this is the scheduler's own lateness for every event.
+     */
+    public ClockJitterStats getJitterStats() {
+        return jitterStats;
+    }
+}
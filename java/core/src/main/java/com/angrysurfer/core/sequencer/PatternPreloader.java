@@ -0,0 +1,109 @@
+package com.angrysurfer.core.sequencer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Staging buffer for the pattern a sequencer switches to next. The queued
+ * pattern is loaded (Redis + Jackson) on a background thread as soon as it is
+ * queued, so at the pattern boundary the clock thread only takes a reference
+ * that is already deserialized.
+ * <p>
+ * One slot per sequencer: queueing a different pattern discards whatever was
+ * staged or in flight for the previous one.
+ */
+public final class PatternPreloader<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatternPreloader.class);
+
+    // One loader for every sequencer; loads are rare and Redis serializes them anyway
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Pattern-Preloader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private record Staged<T>(long id, T data) {
+    }
+
+    private final String name;
+    private final LongFunction<T> loader;
+
+    // Pattern id most recently queued, or null; a load finishing for any other id is dropped
+    private volatile Long requestedId;
+    private volatile Staged<T> staged;
+
+    public PatternPreloader(String name, LongFunction<T> loader) {
+        this.name = name;
+        this.loader = loader;
+    }
+
+    /**
+     * Start loading a pattern into the staging slot, replacing anything staged
+     * for a different id. {@code null} clears the slot.
+     */
+    public void preload(Long patternId) {
+        if (patternId == null) {
+            clear();
+            return;
+        }
+        if (patternId.equals(requestedId)) {
+            return;
+        }
+        requestedId = patternId;
+        staged = null;
+
+        long id = patternId;
+        LOADER.execute(() -> {
+            if (!patternId.equals(requestedId)) {
+                return;
+            }
+            try {
+                T data = loader.apply(id);
+                if (data != null && patternId.equals(requestedId)) {
+                    staged = new Staged<>(id, data);
+                    logger.debug("{}: staged pattern {}", name, id);
+                }
+            } catch (Exception e) {
+                logger.warn("{}: could not preload pattern {}: {}", name, id, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Hand over the staged data for {@code patternId} and empty the slot.
+     * Returns null if that pattern isn't staged (not queued, or its load
+     * hasn't finished); the caller then loads it the slow way.
+     */
+    public T take(long patternId) {
+        Staged<T> current = staged;
+        if (current == null || current.id() != patternId) {
+            return null;
+        }
+        staged = null;
+        requestedId = null;
+        return current.data();
+    }
+
+    public boolean isStaged(long patternId) {
+        Staged<T> current = staged;
+        return current != null && current.id() == patternId;
+    }
+
+    public void clear() {
+        requestedId = null;
+        staged = null;
+    }
+
+    /**
+     * Run follow-up work for a switch (instrument and preset changes, cache
+     * updates) on the loader thread instead of the clock thread.
+     */
+    public static void execute(Runnable task) {
+        LOADER.execute(task);
+    }
+}
@@ -1,43 +1,100 @@
 package com.angrysurfer.core.sequencer;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Snaps notes to a scale. Each distinct scale (a root and pattern, as a 12-bit
+ * pitch-class mask) gets one {@code byte[128]} table of MIDI note to nearest
+ * in-scale note, built on first use and shared by every quantizer, so
+ * quantizing a note is a single array load.
+ */
 public class Quantizer {
-    private Boolean[] scale;
+    private static final int NOTE_COUNT = 128;
+
+    // Tables by pitch-class mask; 4096 masks cover every root/scale combination
+    private static final AtomicReferenceArray<byte[]> TABLES = new AtomicReferenceArray<>(1 << 12);
+
+    private final byte[] table;
 
     static Logger logger = LoggerFactory.getLogger(Quantizer.class.getCanonicalName());
 
     public Quantizer(Boolean[] scale) {
-        this.scale = scale;
+        this.table = tableFor(maskOf(scale));
     }
 
     public int quantizeNote(int note) {
-        logger.debug("quantizeNote() - input note: {}", note);
-        
-        int val = note;
-        while (val > 11)
-            val -= 12;
-
-        boolean noteInScale = scale[val];
-        if (noteInScale) {
-            logger.debug("Note {} already in scale", note);
-            return note;
+        if (note >= 0 && note < NOTE_COUNT) {
+            return table[note];
         }
+        // Outside MIDI range: quantize the pitch class and keep the octave
+        int pitchClass = Math.floorMod(note, 12);
+        return note - pitchClass + table[60 + pitchClass] - 60;
+    }
 
-        int distanceUp = 0;
-        while ((val + distanceUp < 11) && (!scale[val + distanceUp]))
-            distanceUp++;
+    /**
+     * Quantize a note after transposing it, e.g. by an octave shift of
+     * {@code 12 * octaves} semitones
+     */
+    public int quantizeNote(int note, int semitones) {
+        return quantizeNote(note + semitones);
+    }
 
-        int distanceDown = 0;
-        while ((val - distanceDown > 0) && (!scale[val - distanceDown]))
-            distanceDown++;
+    /**
+     * The shared note-to-quantized-note table for a scale
+     */
+    public static byte[] tableFor(int mask) {
+        mask &= 0xFFF;
+        byte[] table = TABLES.get(mask);
+        if (table == null) {
+            // A racing thread builds the same table; either copy may win
+            TABLES.compareAndSet(mask, null, buildTable(mask));
+            table = TABLES.get(mask);
+        }
+        return table;
+    }
+
+    /**
+     * Pitch classes in a scale as bits 0 (C) to 11 (B)
+     */
+    public static int maskOf(Boolean[] scale) {
+        int mask = 0;
+        for (int i = 0; i < 12 && i < scale.length; i++) {
+            if (Boolean.TRUE.equals(scale[i])) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    // Nearest in-scale note for each MIDI note, the lower one on a tie, staying within 0..127
+    private static byte[] buildTable(int mask) {
+        byte[] table = new byte[NOTE_COUNT];
+        for (int note = 0; note < NOTE_COUNT; note++) {
+            int result = note;
+            if (mask != 0 && !inScale(mask, note)) {
+                int down = 1;
+                while (note - down >= 0 && !inScale(mask, note - down)) {
+                    down++;
+                }
+                int up = 1;
+                while (note + up < NOTE_COUNT && !inScale(mask, note + up)) {
+                    up++;
+                }
+                boolean downValid = note - down >= 0;
+                boolean upValid = note + up < NOTE_COUNT;
+                result = downValid && (!upValid || down <= up) ? note - down : note + up;
+            }
+            table[note] = (byte) result;
+        }
+        logger.debug("Built quantize table for scale mask {}", Integer.toBinaryString(mask));
+        return table;
+    }
 
-        int result = distanceUp > distanceDown ? note + distanceUp : note - distanceDown;
-        logger.info("Quantized {} ({}) to {} ({})", 
-            note, getNoteForValue(note, Scale.SCALE_NOTES),
-            result, getNoteForValue(result, Scale.SCALE_NOTES));
-        return result;
+    private static boolean inScale(int mask, int note) {
+        return (mask & (1 << (note % 12))) != 0;
     }
 
     public String getNoteForValue(int value, String[] scale) {
@@ -1,10 +1,10 @@
 package com.angrysurfer.core.sequencer;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -146,6 +146,11 @@ public class Scale {
     // Define scale patterns as offsets
     public static Map<String, int[]> SCALE_PATTERNS = new HashMap<>();
 
+    private static final int CHROMATIC_MASK = 0xFFF;
+
+    // Pitch-class masks by "root|scale name"
+    private static final Map<String, Integer> SCALE_MASKS = new ConcurrentHashMap<>();
+
     static {
         // Major and Minor Scales
         SCALE_PATTERNS.put(SCALE_MAJOR, new int[]{0, 2, 4, 5, 7, 9, 11});
@@ -369,49 +374,60 @@ public class Scale {
      * @throws IllegalArgumentException if root or scale name is invalid
      */
     public static Boolean[] getScale(String rootNoteName, String scaleName) {
+        int mask = getScaleMask(rootNoteName, scaleName);
+        Boolean[] scale = new Boolean[12];
+        for (int i = 0; i < 12; i++) {
+            scale[i] = (mask & (1 << i)) != 0;
+        }
+        return scale;
+    }
+
+    /**
+     * The pitch classes of a scale as bits 0 (C) to 11 (B), worked out once
+     * per root and scale name and cached
+     */
+    public static int getScaleMask(String rootNoteName, String scaleName) {
         // Validate parameters to prevent exceptions
         if (rootNoteName == null || scaleName == null) {
             logger.warn("Null parameters passed to getScale: root={}, scale={}", rootNoteName, scaleName);
-            return getDefaultScale(); // Return chromatic scale as fallback
+            return CHROMATIC_MASK; // Chromatic scale as fallback
         }
+        return SCALE_MASKS.computeIfAbsent(rootNoteName + '|' + scaleName,
+                key -> computeScaleMask(rootNoteName, scaleName));
+    }
 
+    /**
+     * The shared {@code byte[128]} note-to-quantized-note table for a scale
+     */
+    public static byte[] getQuantizeTable(String rootNoteName, String scaleName) {
+        return Quantizer.tableFor(getScaleMask(rootNoteName, scaleName));
+    }
+
+    private static int computeScaleMask(String rootNoteName, String scaleName) {
         // Normalize inputs to help with matching
         String normalizedRoot = rootNoteName.trim();
         String normalizedScale = scaleName.trim();
-        
+
         // Check if root note is valid
         int rootOffset = getRootOffset(normalizedRoot);
         if (rootOffset < 0) {
             logger.warn("Invalid root note name: '{}'", normalizedRoot);
-            return getDefaultScale(); // Return chromatic scale as fallback
+            return CHROMATIC_MASK; // Chromatic scale as fallback
         }
-        
-        // Check if scale name is valid 
+
+        // Check if scale name is valid
         int[] pattern = getScalePattern(normalizedScale);
         if (pattern == null) {
             logger.warn("Invalid scale name: '{}'", normalizedScale);
-            return getDefaultScale(); // Return chromatic scale as fallback
+            return CHROMATIC_MASK; // Chromatic scale as fallback
         }
-        
-        // Continue with existing scale creation logic...
-        Boolean[] scale = new Boolean[12];
-        Arrays.fill(scale, Boolean.FALSE);
-        
+
         // Set scale notes based on pattern
+        int mask = 0;
         for (int i : pattern) {
-            scale[(i + rootOffset) % 12] = Boolean.TRUE;
+            mask |= 1 << ((i + rootOffset) % 12);
         }
-        
-        return scale;
-    }
-
-    /**
-     * Get a default chromatic scale as fallback
-     */
-    private static Boolean[] getDefaultScale() {
-        Boolean[] scale = new Boolean[12];
-        Arrays.fill(scale, Boolean.TRUE); // All notes
-        return scale;
+        return mask;
     }
 
     // Find the index of the root note in SCALE_NOTES
@@ -0,0 +1,453 @@
+package com.angrysurfer.core.sequencer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary form of {@link DrumSequenceData} and
+ * {@link MelodicSequenceData}, an alternative to their Jackson JSON.
+ * <p>
+ * Layout: a 3-byte magic that can't start JSON, a type byte, a version byte,
+ * then the fields in a fixed order. Integers are LEB128 varints (zigzag for
+ * signed values), strings are length-prefixed UTF-8, boolean arrays are bit
+ * packed. Drum steps are written as their packed words: a bitmap of the steps
+ * that differ from {@link DrumSequenceData#DEFAULT_STEP}, then each of those
+ * words XORed with the default, so an untouched pattern costs a few bytes.
+ * <p>
+ * Playback state the JSON also carries (step positions, tick counters,
+ * completion flags) is not written; a loaded sequence starts from rest.
+ */
+public final class SequenceDataCodec {
+
+    private static final byte[] MAGIC = {0, 'B', 'G'};
+    private static final byte DRUM = 'D';
+    private static final byte MELODIC = 'M';
+    public static final int VERSION = 1;
+
+    private SequenceDataCodec() {
+    }
+
+    /**
+     * Whether {@code bytes} were written by this codec rather than as JSON
+     */
+    public static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length >= MAGIC.length + 2
+                && bytes[0] == MAGIC[0] && bytes[1] == MAGIC[1] && bytes[2] == MAGIC[2];
+    }
+
+    public static byte[] encode(DrumSequenceData data) {
+        Out out = new Out(1024);
+        out.header(DRUM);
+
+        out.nullableLong(data.getId());
+        out.string(data.getName());
+        out.nullableInt(data.getSequencerId());
+        out.nullableLong(data.getNextPatternId());
+        out.signed(data.getDefaultPatternLength());
+        out.signed(data.getMaxPatternLength());
+        out.signed(data.getTicksPerStep());
+        out.signed(data.getSelectedPadIndex());
+        out.signed(data.getSwingPercentage());
+        out.bool(data.isSwingEnabled());
+        out.signed(data.getMasterTempo());
+
+        for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++) {
+            out.signed(data.getPatternLengths()[i]);
+            out.string(nameOf(data.getDirections()[i]));
+            out.string(nameOf(data.getTimingDivisions()[i]));
+            out.bool(data.getLoopingFlags()[i]);
+            out.signed(data.getVelocities()[i]);
+            out.signed(data.getOriginalVelocities()[i]);
+            out.signed(data.getRootNotes()[i]);
+            out.nullableLong(data.getInstrumentIds()[i]);
+            out.string(data.getSoundbankNames()[i]);
+            out.nullableInt(data.getPresets()[i]);
+            out.nullableInt(data.getBankIndices()[i]);
+            out.string(data.getDeviceNames()[i]);
+            out.string(data.getInstrumentNames()[i]);
+            out.bits(data.getBarMuteValues()[i]);
+            out.signedArray(data.getBarOffsetValues()[i]);
+        }
+
+        for (long word : data.activeStepWords()) {
+            out.unsigned(word);
+        }
+
+        long[] steps = data.stepWords();
+        long[] changed = new long[DrumSequenceData.STEP_WORDS];
+        for (int drum = 0; drum < SequencerConstants.DRUM_PAD_COUNT; drum++) {
+            int base = drum * DrumSequenceData.MAX_STEPS;
+            Arrays.fill(changed, 0L);
+            for (int step = 0; step < DrumSequenceData.MAX_STEPS; step++) {
+                if (steps[base + step] != DrumSequenceData.DEFAULT_STEP) {
+                    changed[step >>> 6] |= 1L << step;
+                }
+            }
+            for (long word : changed) {
+                out.unsigned(word);
+            }
+            for (int step = 0; step < DrumSequenceData.MAX_STEPS; step++) {
+                if ((changed[step >>> 6] & (1L << step)) != 0) {
+                    // Rotate the accent bit down so an accent alone is a one-byte varint
+                    out.unsigned(Long.rotateLeft(steps[base + step] ^ DrumSequenceData.DEFAULT_STEP, 1));
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static DrumSequenceData decodeDrum(byte[] bytes) {
+        In in = new In(bytes, DRUM);
+        DrumSequenceData data = new DrumSequenceData();
+
+        data.setId(in.nullableLong());
+        data.setName(in.string());
+        data.setSequencerId(in.nullableInt());
+        data.setNextPatternId(in.nullableLong());
+        data.setDefaultPatternLength(in.signedInt());
+        data.setMaxPatternLength(in.signedInt());
+        data.setTicksPerStep(in.signedInt());
+        data.setSelectedPadIndex(in.signedInt());
+        data.setSwingPercentage(in.signedInt());
+        data.setSwingEnabled(in.bool());
+        data.setMasterTempo(in.signedInt());
+
+        for (int i = 0; i < SequencerConstants.DRUM_PAD_COUNT; i++) {
+            data.getPatternLengths()[i] = in.signedInt();
+            data.getDirections()[i] = enumOf(Direction.class, in.string(), Direction.FORWARD);
+            data.getTimingDivisions()[i] = enumOf(TimingDivision.class, in.string(), TimingDivision.NORMAL);
+            data.getLoopingFlags()[i] = in.bool();
+            data.getVelocities()[i] = in.signedInt();
+            data.getOriginalVelocities()[i] = in.signedInt();
+            data.getRootNotes()[i] = in.signedInt();
+            data.getInstrumentIds()[i] = in.nullableLong();
+            data.getSoundbankNames()[i] = in.string();
+            data.getPresets()[i] = in.nullableInt();
+            data.getBankIndices()[i] = in.nullableInt();
+            data.getDeviceNames()[i] = in.string();
+            data.getInstrumentNames()[i] = in.string();
+            in.bits(data.getBarMuteValues()[i]);
+            in.signedArray(data.getBarOffsetValues()[i]);
+        }
+
+        long[] active = data.activeStepWords();
+        for (int i = 0; i < active.length; i++) {
+            active[i] = in.unsigned();
+        }
+
+        long[] steps = data.stepWords();
+        long[] changed = new long[DrumSequenceData.STEP_WORDS];
+        for (int drum = 0; drum < SequencerConstants.DRUM_PAD_COUNT; drum++) {
+            int base = drum * DrumSequenceData.MAX_STEPS;
+            for (int w = 0; w < changed.length; w++) {
+                changed[w] = in.unsigned();
+            }
+            for (int step = 0; step < DrumSequenceData.MAX_STEPS; step++) {
+                if ((changed[step >>> 6] & (1L << step)) != 0) {
+                    steps[base + step] = Long.rotateRight(in.unsigned(), 1) ^ DrumSequenceData.DEFAULT_STEP;
+                }
+            }
+        }
+        return data;
+    }
+
+    public static byte[] encode(MelodicSequenceData data) {
+        Out out = new Out(256);
+        out.header(MELODIC);
+
+        out.nullableLong(data.getId());
+        out.nullableLong(data.getPlayerId());
+        out.string(data.getName());
+        out.nullableLong(data.getCreatedAt());
+        out.nullableLong(data.getUpdatedAt());
+        out.nullableInt(data.getSwing());
+        out.bool(data.isSwingEnabled());
+        out.signed(data.getPatternLength());
+        out.bool(data.isLooping());
+        out.string(nameOf(data.getDirection()));
+        out.nullableInt(data.getShuffleAmount());
+        out.bool(data.isQuantizeEnabled());
+        out.nullableInt(data.getRootNote());
+        out.string(data.getScale());
+        out.nullableInt(data.getOctaveShift());
+        out.string(nameOf(data.getTimingDivision()));
+        out.nullableInt(data.getSequencerId());
+        out.nullableInt(data.getFollowNoteSequencerId());
+        out.nullableInt(data.getFollowTiltSequencerId());
+        out.string(data.getSoundbankName());
+        out.nullableInt(data.getBankIndex());
+        out.nullableInt(data.getPreset());
+        out.string(data.getDeviceName());
+        out.nullableLong(data.getInstrumentId());
+        out.string(data.getInstrumentName());
+
+        boolean[] active = new boolean[MelodicSequenceData.MAX_STEPS];
+        for (int i = 0; i < active.length; i++) {
+            active[i] = data.isStepActive(i);
+        }
+        out.bits(active);
+        out.signedArray(data.getNoteValues());
+        out.signedArray(data.getVelocityValues());
+        out.signedArray(data.getGateValues());
+        out.signedArray(data.getProbabilityValues());
+        out.signedArray(data.getNudgeValues());
+        out.signedArray(data.getTiltValues());
+        out.signedArray(data.getMuteValuesRaw());
+        out.signedArray(data.getMuteBarsValues());
+        out.signedArray(data.getMutesBarCountValues());
+        return out.toByteArray();
+    }
+
+    public static MelodicSequenceData decodeMelodic(byte[] bytes) {
+        In in = new In(bytes, MELODIC);
+        MelodicSequenceData data = new MelodicSequenceData();
+
+        data.setId(in.nullableLong());
+        data.setPlayerId(in.nullableLong());
+        data.setName(in.string());
+        data.setCreatedAt(in.nullableLong());
+        data.setUpdatedAt(in.nullableLong());
+        data.setSwing(in.nullableInt());
+        data.setSwingEnabled(in.bool());
+        data.setPatternLength(in.signedInt());
+        data.setLooping(in.bool());
+        data.setDirection(enumOf(Direction.class, in.string(), Direction.FORWARD));
+        data.setShuffleAmount(in.nullableInt());
+        data.setQuantizeEnabled(in.bool());
+        data.setRootNote(in.nullableInt());
+        data.setScale(in.string());
+        data.setOctaveShift(in.nullableInt());
+        data.setTimingDivision(enumOf(TimingDivision.class, in.string(), TimingDivision.SIXTEENTH));
+        data.setSequencerId(in.nullableInt());
+        data.setFollowNoteSequencerId(in.nullableInt());
+        data.setFollowTiltSequencerId(in.nullableInt());
+        data.setSoundbankName(in.string());
+        data.setBankIndex(in.nullableInt());
+        data.setPreset(in.nullableInt());
+        data.setDeviceName(in.string());
+        data.setInstrumentId(in.nullableLong());
+        data.setInstrumentName(in.string());
+
+        boolean[] active = new boolean[MelodicSequenceData.MAX_STEPS];
+        in.bits(active);
+        data.setActiveSteps(active);
+        data.setNoteValues(in.signedArray(MelodicSequenceData.MAX_STEPS));
+        data.setVelocityValues(in.signedArray(MelodicSequenceData.MAX_STEPS));
+        data.setGateValues(in.signedArray(MelodicSequenceData.MAX_STEPS));
+        data.setProbabilityValues(in.signedArray(MelodicSequenceData.MAX_STEPS));
+        data.setNudgeValues(in.signedArray(MelodicSequenceData.MAX_STEPS));
+        data.setTiltValues(in.signedArray(MelodicSequenceData.MAX_BARS));
+        data.setMuteValues(in.signedArray(MelodicSequenceData.MAX_BARS));
+        data.setMuteBarsValues(in.signedArray(MelodicSequenceData.MAX_BARS));
+        data.setMutesBarCountValues(in.signedArray(MelodicSequenceData.MAX_BARS));
+        return data;
+    }
+
+    private static String nameOf(Enum<?> value) {
+        return value != null ? value.name() : null;
+    }
+
+    // Unknown names (from a newer build) fall back rather than failing the load
+    private static <E extends Enum<E>> E enumOf(Class<E> type, String name, E fallback) {
+        if (name == null) {
+            return fallback;
+        }
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+
+    private static final class Out {
+        private byte[] buf;
+        private int size;
+
+        Out(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void header(byte type) {
+            for (byte b : MAGIC) {
+                put(b);
+            }
+            put(type);
+            put((byte) VERSION);
+        }
+
+        void put(byte b) {
+            if (size == buf.length) {
+                buf = Arrays.copyOf(buf, size * 2);
+            }
+            buf[size++] = b;
+        }
+
+        void unsigned(long value) {
+            while ((value & ~0x7FL) != 0) {
+                put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            put((byte) value);
+        }
+
+        void signed(long value) {
+            unsigned((value << 1) ^ (value >> 63));
+        }
+
+        void bool(boolean value) {
+            put((byte) (value ? 1 : 0));
+        }
+
+        void nullableLong(Long value) {
+            bool(value != null);
+            if (value != null) {
+                signed(value);
+            }
+        }
+
+        void nullableInt(Integer value) {
+            bool(value != null);
+            if (value != null) {
+                signed(value);
+            }
+        }
+
+        // Length + 1, so that 0 is null
+        void string(String value) {
+            if (value == null) {
+                unsigned(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            unsigned(bytes.length + 1L);
+            for (byte b : bytes) {
+                put(b);
+            }
+        }
+
+        void bits(boolean[] values) {
+            unsigned(values.length);
+            for (int i = 0; i < values.length; i += 8) {
+                int b = 0;
+                for (int j = 0; j < 8 && i + j < values.length; j++) {
+                    if (values[i + j]) {
+                        b |= 1 << j;
+                    }
+                }
+                put((byte) b);
+            }
+        }
+
+        void signedArray(int[] values) {
+            unsigned(values.length);
+            for (int value : values) {
+                signed(value);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+    }
+
+    private static final class In {
+        private final byte[] buf;
+        private int pos;
+
+        In(byte[] buf, byte type) {
+            if (!isBinary(buf) || buf[MAGIC.length] != type) {
+                throw new IllegalArgumentException("Not a binary " + (char) type + " sequence");
+            }
+            int version = buf[MAGIC.length + 1];
+            if (version > VERSION) {
+                throw new IllegalArgumentException("Sequence format version " + version + " is newer than "
+                        + VERSION);
+            }
+            this.buf = buf;
+            this.pos = MAGIC.length + 2;
+        }
+
+        byte get() {
+            if (pos >= buf.length) {
+                throw new IllegalArgumentException("Truncated sequence data");
+            }
+            return buf[pos++];
+        }
+
+        long unsigned() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        long signed() {
+            long raw = unsigned();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        int signedInt() {
+            return (int) signed();
+        }
+
+        boolean bool() {
+            return get() != 0;
+        }
+
+        Long nullableLong() {
+            return bool() ? signed() : null;
+        }
+
+        Integer nullableInt() {
+            return bool() ? signedInt() : null;
+        }
+
+        String string() {
+            int length = (int) unsigned();
+            if (length == 0) {
+                return null;
+            }
+            length--;
+            if (length > buf.length - pos) {
+                throw new IllegalArgumentException("Truncated sequence data");
+            }
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        // Reads into {@code into}, ignoring values past its end and keeping its values past the stored length
+        void bits(boolean[] into) {
+            int length = (int) unsigned();
+            for (int i = 0; i < length; i += 8) {
+                int b = get();
+                for (int j = 0; j < 8 && i + j < length; j++) {
+                    if (i + j < into.length) {
+                        into[i + j] = (b & (1 << j)) != 0;
+                    }
+                }
+            }
+        }
+
+        void signedArray(int[] into) {
+            int length = (int) unsigned();
+            for (int i = 0; i < length; i++) {
+                int value = signedInt();
+                if (i < into.length) {
+                    into[i] = value;
+                }
+            }
+        }
+
+        int[] signedArray(int size) {
+            int[] values = new int[size];
+            signedArray(values);
+            return values;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.angrysurfer.core.sequencer;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Mutable, primitive tick frame. The session owns a single instance and
+ * rewrites it on every clock tick, so publishing timing costs no allocation.
+ * <p>
+ * Frames are only valid for the duration of the listener call: anything that
+ * hands timing to another thread (Swing, executors) must copy the values or use
+ * {@link #toTimingUpdate()}.
+ */
+@Getter
+public final class TimingFrame {
+
+    private long tick;
+    private double beat;
+    private int bar;
+    private int part;
+    private long tickCount;
+    private int beatCount;
+    private int barCount;
+    private int partCount;
+
+    // Set on the tick where the corresponding position rolled over
+    private boolean beatChanged;
+    private boolean barChanged;
+    private boolean partChanged;
+
+    // Lazily built adapter for legacy TimingUpdate consumers, shared by all of them
+    @Getter(AccessLevel.NONE)
+    private TimingUpdate legacyUpdate;
+
+    public void update(long tick, double beat, int bar, int part,
+                       long tickCount, int beatCount, int barCount, int partCount) {
+        this.tick = tick;
+        this.beat = beat;
+        this.bar = bar;
+        this.part = part;
+        this.tickCount = tickCount;
+        this.beatCount = beatCount;
+        this.barCount = barCount;
+        this.partCount = partCount;
+        this.legacyUpdate = null;
+    }
+
+    public void setChanges(boolean beatChanged, boolean barChanged, boolean partChanged) {
+        this.beatChanged = beatChanged;
+        this.barChanged = barChanged;
+        this.partChanged = partChanged;
+    }
+
+    /**
+     * Copy another frame's position into this one, for consumers that keep a
+     * frame past the listener call. The legacy adapter is not shared.
+     */
+    public TimingFrame copyFrom(TimingFrame other) {
+        update(other.tick, other.beat, other.bar, other.part,
+                other.tickCount, other.beatCount, other.barCount, other.partCount);
+        setChanges(other.beatChanged, other.barChanged, other.partChanged);
+        return this;
+    }
+
+    /**
+     * Load this frame from a legacy update. Missing (null) fields become 0.
+     */
+    public TimingFrame load(TimingUpdate update) {
+        update(update.tick() != null ? update.tick() : 0L,
+                update.beat() != null ? update.beat() : 0.0,
+                update.bar() != null ? update.bar() : 0,
+                update.part() != null ? update.part() : 0,
+                update.tickCount() != null ? update.tickCount() : 0L,
+                update.beatCount() != null ? update.beatCount() : 0,
+                update.barCount() != null ? update.barCount() : 0,
+                update.partCount() != null ? update.partCount() : 0);
+        setChanges(false, false, false);
+        legacyUpdate = update;
+        return this;
+    }
+
+    public static TimingFrame from(TimingUpdate update) {
+        return new TimingFrame().load(update);
+    }
+
+    /**
+     * Immutable snapshot of this frame for listeners that still consume
+     * {@link TimingUpdate}. Built at most once per tick.
+     */
+    public TimingUpdate toTimingUpdate() {
+        TimingUpdate update = legacyUpdate;
+        if (update == null) {
+            update = new TimingUpdate(tick, beat, bar, part, tickCount, beatCount, barCount, partCount);
+            legacyUpdate = update;
+        }
+        return update;
+    }
+}
@@ -6,13 +6,14 @@ import java.util.HashMap;
 import java.util.Map;
 
 import javax.sound.sampled.AudioFormat;
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.angrysurfer.core.audio.PcmSample;
+import com.angrysurfer.core.audio.SampleStore;
+
 /**
  * Manager class for audio file operations
  */
@@ -52,25 +53,25 @@ public class AudioFileManager {
     }
     
     /**
-     * Load audio information from a file
+     * Load audio information from a file, through the sample store so the
+     * file isn't opened again for playback
      */
     private AudioInfo loadAudioInfo(File file) throws IOException, UnsupportedAudioFileException {
-        try (AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(file)) {
-            AudioFormat format = audioInputStream.getFormat();
-            long frameLength = audioInputStream.getFrameLength();
-            float frameRate = format.getFrameRate();
-            
-            double durationSeconds = frameLength / frameRate;
-            
-            return new AudioInfo(
-                    format,
-                    (int)frameLength,
-                    durationSeconds,
-                    format.getSampleRate(),
-                    format.getChannels(),
-                    format.getSampleSizeInBits()
-            );
-        }
+        PcmSample sample = SampleStore.getInstance().open(file);
+        AudioFormat format = sample.getFormat();
+        long frameLength = sample.getFrames();
+        float frameRate = format.getFrameRate();
+
+        double durationSeconds = frameLength / frameRate;
+
+        return new AudioInfo(
+                format,
+                (int)frameLength,
+                durationSeconds,
+                format.getSampleRate(),
+                format.getChannels(),
+                format.getSampleSizeInBits()
+        );
     }
     
     /**
@@ -94,7 +94,7 @@ public class DrumSequencerManager implements IBusListener {
      */
     public Long saveSequence(DrumSequencer sequencer) {
         try {
-            redisService.saveDrumSequence(sequencer);
+            redisService.queueDrumSequenceSave(sequencer);
             logger.info("Saved drum sequence with ID: {}", sequencer.getSequenceData().getId());
             return sequencer.getSequenceData().getId();
         } catch (Exception e) {
@@ -49,7 +49,7 @@ public class MelodicSequencerManager extends DefaultBusListener {
 
         // Initialize with empty data maps for common sequencer IDs
         for (int i = 0; i < SequencerConstants.MELODIC_CHANNELS.length; i++) {
-            sequenceDataMap.put(i, new HashMap<>());
+            sequenceDataMap.put(i, new ConcurrentHashMap<>());
         }
 
         loadAllMelodicSequenceData();
@@ -214,7 +214,7 @@ public class MelodicSequencerManager extends DefaultBusListener {
     public Map<Long, MelodicSequenceData> getAllSequenceData(int sequencerId) {
         // Make sure the map exists
         if (!sequenceDataMap.containsKey(sequencerId)) {
-            sequenceDataMap.put(sequencerId, new HashMap<>());
+            sequenceDataMap.put(sequencerId, new ConcurrentHashMap<>());
         }
 
         // Return a copy to prevent modification
@@ -339,7 +339,7 @@ public class MelodicSequencerManager extends DefaultBusListener {
 
             // Create map if it doesn't exist
             if (!sequenceDataMap.containsKey(sequencerId)) {
-                sequenceDataMap.put(sequencerId, new HashMap<>());
+                sequenceDataMap.put(sequencerId, new ConcurrentHashMap<>());
             }
 
             // Create deep copy of sequence data to avoid reference issues
@@ -400,7 +400,7 @@ public class MelodicSequencerManager extends DefaultBusListener {
         if (!sequenceDataMap.containsKey(sequencerId) ||
                 !sequenceDataMap.get(sequencerId).containsKey(sequenceId)) {
             if (!sequenceDataMap.containsKey(sequencerId)) {
-                sequenceDataMap.put(sequencerId, new HashMap<>());
+                sequenceDataMap.put(sequencerId, new ConcurrentHashMap<>());
             }
             sequenceDataMap.get(sequencerId).put(sequenceId, data);
             logger.debug("Added sequence {} to in-memory cache for sequencer {}", sequenceId, sequencerId);
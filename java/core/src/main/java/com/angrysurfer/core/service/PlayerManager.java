@@ -355,7 +355,8 @@ public class PlayerManager implements IBusListener {
             if (player.getInstrument() != null) {
                 // Skip saving default instruments
                 if (!Boolean.TRUE.equals(player.getInstrument().getIsDefault())) {
-                    RedisService.getInstance().saveInstrument(player.getInstrument());
+                    // Queued, unless the instrument is new and needs its id now
+                    RedisService.getInstance().queueInstrumentSave(player.getInstrument());
                     player.setInstrumentId(player.getInstrument().getId());
 
                     logger.debug("Saved instrument: {} (ID: {}) with preset {}",
@@ -832,6 +833,9 @@ public class PlayerManager implements IBusListener {
         }
 
         try {
+            // Rules may have been edited in place; recompile before the next tick
+            player.invalidateRuleCache();
+
             // Update the player in our cache
             playerCache.put(player.getId(), player);
 
@@ -841,8 +845,8 @@ public class PlayerManager implements IBusListener {
                 session.addOrUpdatePlayer(player);
             }
 
-            // Persist to storage
-            redisService.savePlayer(player);
+            // Persist to storage; rule edits come in bursts, so merge them
+            redisService.queuePlayerSave(player);
 
             logger.info("Saved rules for player {}", player.getId());
         } catch (Exception e) {
@@ -1,5 +1,9 @@
 package com.angrysurfer.core.service;
 
+import com.angrysurfer.core.api.Command;
+import com.angrysurfer.core.api.CommandBus;
+import com.angrysurfer.core.api.Commands;
+import com.angrysurfer.core.api.IBusListener;
 import com.angrysurfer.core.sequencer.SequencerConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -7,27 +11,63 @@ import org.slf4j.LoggerFactory;
 import javax.sound.midi.MidiDevice;
 import javax.sound.midi.MidiSystem;
 import javax.sound.midi.Receiver;
-import javax.sound.midi.ShortMessage;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Centralized manager for MIDI receivers to handle device connections
- * and recovery strategies
+ * and recovery strategies.
+ * <p>
+ * Instruments bind a receiver once and keep sending to it. They rebind when
+ * a send fails or when the binding generation moves on, which happens on
+ * {@link Commands#REPAIR_MIDI_CONNECTIONS}; nothing is probed per message.
  */
-public class ReceiverManager {
+public class ReceiverManager implements IBusListener {
     private static final Logger logger = LoggerFactory.getLogger(ReceiverManager.class);
-    private static final long VALIDATION_INTERVAL_MS = 5000; // Only validate every 5 seconds
     private static ReceiverManager instance;
+    // Bumped to make every instrument drop its bound receiver on its next send
+    private static volatile int bindingGeneration;
     // Cache receivers by device name for reuse
     private final Map<String, Receiver> receiverCache = new ConcurrentHashMap<>();
     // Track if devices are being reconnected to avoid duplicate attempts
     private final Map<String, Boolean> reconnectionInProgress = new ConcurrentHashMap<>();
-    // Add a timestamp map for validation
-    private final Map<String, Long> lastValidationTime = new ConcurrentHashMap<>();
+    // Per-device message counters, handed to instruments when they bind
+    private final Map<String, SendCounters> sendCounters = new ConcurrentHashMap<>();
+
+    /**
+     * Messages sent to one device and sends that threw.
+     */
+    public static final class SendCounters {
+        private final LongAdder sends = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        public void recordSend() {
+            sends.increment();
+        }
+
+        public void recordFailure() {
+            failures.increment();
+        }
+
+        public long getSends() {
+            return sends.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "sends=" + getSends() + " failures=" + getFailures();
+        }
+    }
 
     private ReceiverManager() {
         // Private constructor for singleton pattern
+        CommandBus.getInstance().register(this, new String[]{Commands.REPAIR_MIDI_CONNECTIONS});
     }
 
     public static synchronized ReceiverManager getInstance() {
@@ -37,9 +77,47 @@ public class ReceiverManager {
         return instance;
     }
 
+    public static int getBindingGeneration() {
+        return bindingGeneration;
+    }
+
+    @Override
+    public void onAction(Command action) {
+        if (Commands.REPAIR_MIDI_CONNECTIONS.equals(action.getCommand())) {
+            invalidateBindings();
+        }
+    }
+
+    /**
+     * Forget cached receivers and make every instrument rebind on its next
+     * send. Receivers are dropped rather than closed, since instruments may
+     * still be sending to them until they notice.
+     */
+    public synchronized void invalidateBindings() {
+        receiverCache.clear();
+        bindingGeneration++;
+        logger.info("Invalidated MIDI receiver bindings (generation {})", bindingGeneration);
+    }
+
+    /**
+     * Counters for a device, created on first use. Instruments fetch these
+     * when they bind so the send path never looks them up.
+     */
+    public SendCounters countersFor(String deviceName) {
+        return sendCounters.computeIfAbsent(deviceName != null ? deviceName : "unknown", k -> new SendCounters());
+    }
+
+    /**
+     * Snapshot of send and failure counts per device, by device name.
+     */
+    public Map<String, SendCounters> getSendCounters() {
+        return new TreeMap<>(sendCounters);
+    }
+
     /**
      * Add an improved version of getOrCreateReceiver that handles
-     * error cases better
+     * error cases better. A cached receiver is returned as-is; callers that
+     * see it fail should {@link #closeReceiver(String)} and ask again.
      */
     public Receiver getOrCreateReceiver(String deviceName, MidiDevice device) {
         if (deviceName == null || deviceName.isEmpty()) {
@@ -50,18 +128,7 @@ public class ReceiverManager {
         // Check if we already have a receiver for this device
         Receiver receiver = receiverCache.get(deviceName);
         if (receiver != null) {
-            // Already have a cached receiver - verify it's still valid
-            try {
-                // Try to send a dummy message to test if receiver is still valid
-                ShortMessage msg = new ShortMessage();
-                msg.setMessage(ShortMessage.CONTROL_CHANGE, 0, 7, 127);
-                receiver.send(msg, -1);
-                return receiver; // Receiver is valid
-            } catch (Exception e) {
-                // Receiver is invalid, remove it and continue to create a new one
-                logger.debug("Cached receiver for {} is invalid, creating new one", deviceName);
-                closeReceiver(deviceName);
-            }
+            return receiver;
         }
 
         // If device wasn't provided, try to get it
@@ -124,6 +191,21 @@ public class ReceiverManager {
         }
     }
 
+    /**
+     * Close a receiver that failed and drop it from the cache, if it is still
+     * the cached one for the device.
+     */
+    public void discardReceiver(String deviceName, Receiver receiver) {
+        if (deviceName != null && receiver != null && receiverCache.remove(deviceName, receiver)) {
+            try {
+                receiver.close();
+            } catch (Exception e) {
+                logger.debug("Error closing receiver: {}", e.getMessage());
+            }
+            logger.debug("Discarded failed receiver for: {}", deviceName);
+        }
+    }
+
     /**
      * Check if receiver is valid by sending a test message
      */
@@ -4,27 +4,54 @@ import com.angrysurfer.core.api.Command;
 import com.angrysurfer.core.api.CommandBus;
 import com.angrysurfer.core.api.Commands;
 import com.angrysurfer.core.api.IBusListener;
+import com.angrysurfer.core.audio.PcmSample;
+import com.angrysurfer.core.audio.SampleEngine;
+import com.angrysurfer.core.audio.SampleStore;
 import com.angrysurfer.core.model.InstrumentWrapper;
 import com.angrysurfer.core.model.Player;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.sound.sampled.*;
-import java.io.ByteArrayInputStream;
-import java.util.HashMap;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Service to handle playback of sample-based instruments
+ * Service to handle playback of sample-based instruments. Notes play through
+ * the shared {@link SampleEngine} from the instrument's sample file, opened
+ * through the {@link SampleStore}; instruments that carry raw sample bytes
+ * instead have them decoded once and the decoded frames reused.
+ * <p>
+ * The frames are resolved when the instrument is set up, with
+ * {@link #prepare(InstrumentWrapper)}, and kept on it, so a note does no file
+ * I/O on the sequencer thread. A background thread picks up sample files
+ * changed on disk since.
  */
 public class SamplePlaybackService implements IBusListener {
     private static final Logger logger = LoggerFactory.getLogger(SamplePlaybackService.class);
     private static SamplePlaybackService instance;
 
-    private final ExecutorService executor = Executors.newFixedThreadPool(4);
-    private final Map<String, Clip> activeClips = new HashMap<>();
+    private final SampleEngine engine = SampleEngine.getInstance();
+    // Decoded frames by the instrument's sample bytes (compared by identity)
+    private final Map<byte[], PcmSample> decoded = Collections.synchronizedMap(new WeakHashMap<>());
+    // Instruments whose frames are kept on them, rechecked against their files
+    private final Set<InstrumentWrapper> prepared = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+    private final ScheduledExecutorService loader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Sample-Loader");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private SamplePlaybackService() {
         // Register with command bus for note events
@@ -34,6 +61,7 @@ public class SamplePlaybackService implements IBusListener {
                 Commands.PLAYER_DELETED,
                 Commands.TIMING_UPDATE
         });
+        loader.scheduleWithFixedDelay(this::reloadChanged, 1, 1, TimeUnit.SECONDS);
     }
 
     public static synchronized SamplePlaybackService getInstance() {
@@ -59,130 +87,108 @@ public class SamplePlaybackService implements IBusListener {
             return;
         }
 
-        // Get sample data
-        byte[] sampleData = (byte[]) properties.get("sampleData");
-        AudioFormat format = (AudioFormat) properties.get("sampleFormat");
-
-        if (sampleData == null || format == null) {
-            logger.warn("Missing sample data or format for instrument: {}", instrument.getName());
+        PcmSample pcm = instrument.getSampleFrames();
+        if (pcm == null) {
+            // Not prepared when it was set up; load it off this (clock) thread for the next note
+            if (prepared.add(instrument)) {
+                loader.execute(() -> prepare(instrument));
+            }
             return;
         }
 
         // Calculate start/end frames based on player properties
         Map<String, Object> playerProps = player.getProperties();
-        int startFrame;
-        int endFrame = sampleData.length / format.getFrameSize();
-
-        if (playerProps.containsKey("sampleStart")) {
-            startFrame = (int) playerProps.get("sampleStart");
-        } else {
-            startFrame = 0;
-        }
-
-        if (playerProps.containsKey("sampleEnd")) {
-            endFrame = (int) playerProps.get("sampleEnd");
-        }
-
-        // Calculate start/end positions in bytes
-        int startPos = startFrame * format.getFrameSize();
-        int endPos = endFrame * format.getFrameSize();
-        int length = endPos - startPos;
-
-        // Ensure valid range
-        if (startPos < 0) startPos = 0;
-        if (endPos > sampleData.length) endPos = sampleData.length;
-        if (length <= 0) {
-            logger.warn("Invalid sample length: {}", length);
+        int startFrame = (int) playerProps.getOrDefault("sampleStart", 0);
+        int endFrame = (int) playerProps.getOrDefault("sampleEnd", pcm.getFrames());
+        if (endFrame - startFrame <= 0) {
+            logger.warn("Invalid sample length: {}", endFrame - startFrame);
             return;
         }
 
-        // Extract the desired portion of the sample
-        byte[] playData = new byte[length];
-        System.arraycopy(sampleData, startPos, playData, 0, length);
-
-        // Store player ID outside the lambda for use in the listener
-        final String playerIdString = player.getId().toString();
-
-        // Play the sample asynchronously
-        int finalEndFrame = endFrame;
-        executor.submit(() -> {
-            try {
-                // Create audio stream from sample data
-                ByteArrayInputStream bais = new ByteArrayInputStream(playData);
-                AudioInputStream ais = new AudioInputStream(bais, format, length / format.getFrameSize());
-
-                // Get a clip to play the sample
-                Clip clip = AudioSystem.getClip();
-                clip.open(ais);
+        boolean loopEnabled = (boolean) playerProps.getOrDefault("loopEnabled", false);
+        int loopStart = (int) playerProps.getOrDefault("loopStart", 0);
+        int loopEnd = (int) playerProps.getOrDefault("loopEnd", endFrame);
 
-                // Scale volume based on velocity
-                float volume = (float) velocity / 127.0f;
-                FloatControl gainControl = (FloatControl) clip.getControl(FloatControl.Type.MASTER_GAIN);
-                float dB = (float) (Math.log10(volume) * 20.0f);
-                gainControl.setValue(dB);
+        // Scale volume based on velocity; the engine releases the voice after duration
+        float volume = (float) velocity / 127.0f;
+        engine.play(pcm, volume, 1.0, startFrame, endFrame, loopEnabled, loopStart, loopEnd, duration,
+                player.getId());
+    }
 
-                // Create a final clipId for use in the listener
-                final String clipId = playerIdString + "_" + System.currentTimeMillis();
+    /**
+     * Resolve a sample instrument's frames and keep them on it for its notes.
+     * Call when the instrument is set up, off the sequencer thread.
+     *
+     * @return false if the frames could not be read
+     */
+    public boolean prepare(InstrumentWrapper instrument) {
+        PcmSample pcm = getFrames(instrument);
+        instrument.setSampleFrames(pcm);
+        prepared.add(instrument);
+        return pcm != null;
+    }
 
-                synchronized (activeClips) {
-                    activeClips.put(clipId, clip);
+    // Swap in the frames of sample files changed on disk; the store restats each one
+    private void reloadChanged() {
+        List<InstrumentWrapper> instruments;
+        synchronized (prepared) {
+            instruments = new ArrayList<>(prepared);
+        }
+        for (InstrumentWrapper instrument : instruments) {
+            // A file gone for now keeps the frames already read
+            if (instrument.getProperties().get("sampleFile") instanceof String file && new File(file).isFile()) {
+                PcmSample pcm = getFrames(instrument);
+                if (pcm != null && pcm != instrument.getSampleFrames()) {
+                    instrument.setSampleFrames(pcm);
                 }
+            }
+        }
+    }
 
-                // Add listener to remove from map when done
-                clip.addLineListener(event -> {
-                    if (event.getType() == LineEvent.Type.STOP) {
-                        synchronized (activeClips) {
-                            activeClips.remove(clipId); // Now using final clipId
-                        }
-                        clip.close();
-                    }
-                });
-
-                // Check for looping
-                boolean loopEnabled = (boolean) playerProps.getOrDefault("loopEnabled", false);
-                if (loopEnabled) {
-                    // Create final copies of loop points for use in conditional logic
-                    final int loopStartPos = (int) playerProps.getOrDefault("loopStart", 0) - startFrame;
-                    final int loopEndPos = (int) playerProps.getOrDefault("loopEnd", finalEndFrame) - startFrame;
-                    final int sampleLength = length / format.getFrameSize();
-
-                    if (loopStartPos >= 0 && loopEndPos <= sampleLength && loopStartPos < loopEndPos) {
-                        clip.setLoopPoints(loopStartPos, loopEndPos);
-                        clip.loop(Clip.LOOP_CONTINUOUSLY);
-                    } else {
-                        clip.start();
-                    }
-                } else {
-                    clip.start();
-                }
+    /**
+     * The frames of an instrument's sample file, or of its sample bytes if it
+     * has no file
+     */
+    private PcmSample getFrames(InstrumentWrapper instrument) {
+        Map<String, Object> properties = instrument.getProperties();
+        Object path = properties.get("sampleFile");
+        if (path instanceof String file) {
+            try {
+                return SampleStore.getInstance().open(new File(file));
+            } catch (IOException | UnsupportedAudioFileException e) {
+                logger.error("Error opening sample file {} for instrument {}: {}", file, instrument.getName(),
+                        e.getMessage());
+                return null;
+            }
+        }
 
-                // If duration is specified, schedule a stop
-                if (duration > 0) {
-                    Thread.sleep(duration);
-                    clip.stop();
-                }
+        // Get sample data
+        byte[] sampleData = (byte[]) properties.get("sampleData");
+        AudioFormat format = (AudioFormat) properties.get("sampleFormat");
+
+        if (sampleData == null || format == null) {
+            logger.warn("Missing sample data or format for instrument: {}", instrument.getName());
+            return null;
+        }
 
-            } catch (Exception e) {
-                logger.error("Error playing sample: {}", e.getMessage(), e);
+        PcmSample pcm = decoded.get(sampleData);
+        if (pcm == null) {
+            try {
+                pcm = PcmSample.decode(sampleData, format);
+            } catch (IOException e) {
+                logger.error("Error decoding sample for instrument {}: {}", instrument.getName(), e.getMessage());
+                return null;
             }
-        });
+            decoded.put(sampleData, pcm);
+        }
+        return pcm;
     }
 
     /**
      * Stop all active sample playback
      */
     public void stopAllSamples() {
-        synchronized (activeClips) {
-            for (Clip clip : activeClips.values()) {
-                try {
-                    clip.stop();
-                    clip.close();
-                } catch (Exception e) {
-                    logger.warn("Error stopping clip: {}", e.getMessage());
-                }
-            }
-            activeClips.clear();
-        }
+        engine.stopAll();
     }
 
     @Override
@@ -198,17 +204,7 @@ public class SamplePlaybackService implements IBusListener {
             case Commands.PLAYER_DELETED:
                 if (action.getData() instanceof Player player) {
                     // Stop any samples from this player
-                    String playerId = player.getId().toString();
-                    synchronized (activeClips) {
-                        for (String clipId : new HashMap<>(activeClips).keySet()) {
-                            if (clipId.startsWith(playerId + "_")) {
-                                Clip clip = activeClips.get(clipId);
-                                clip.stop();
-                                clip.close();
-                                activeClips.remove(clipId);
-                            }
-                        }
-                    }
+                    engine.stopTag(player.getId());
                 }
                 break;
         }
@@ -218,7 +214,8 @@ public class SamplePlaybackService implements IBusListener {
      * Clean up resources
      */
     public void shutdown() {
+        loader.shutdownNow();
         stopAllSamples();
-        executor.shutdown();
+        engine.shutdown();
     }
 }
\ No newline at end of file
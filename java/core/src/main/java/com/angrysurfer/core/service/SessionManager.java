@@ -455,11 +455,9 @@ public class SessionManager implements IBusListener {
             // Update player in active session
             activeSession.updatePlayer(player);
 
-            // Save player to Redis
-            RedisService.getInstance().savePlayer(player);
-
-            // Save updated session to Redis
-            RedisService.getInstance().saveSession(activeSession);
+            // Queue the player and session saves; further edits in the next few ms merge into them
+            RedisService.getInstance().queuePlayerSave(player);
+            RedisService.getInstance().queueSessionSave(activeSession);
 
             // Publish update events
             CommandBus.getInstance().publish(Commands.PLAYER_UPDATE_EVENT, this, new PlayerUpdateEvent(this, player));
@@ -536,7 +534,10 @@ public class SessionManager implements IBusListener {
         }
     }
 
+    /**
+     * Save the active session from the write-behind queue
+     */
     public void saveActiveSession() {
-        saveSession(getActiveSession());
+        RedisService.getInstance().queueSessionSave(getActiveSession());
     }
 }
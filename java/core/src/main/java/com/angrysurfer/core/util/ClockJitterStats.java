@@ -0,0 +1,112 @@
+package com.angrysurfer.core.util;
+
+import java.util.Arrays;
+
+/**
+ * Records per-tick lateness (actual fire time minus scheduled deadline) for a
+ * clock thread. Writes come from the clock thread only; readers get a
+ * best-effort snapshot, which is all we need for diagnostics.
+ */
+public class ClockJitterStats {
+
+    // 10µs buckets up to 2ms, anything later lands in the overflow bucket
+    public static final long BUCKET_WIDTH_NANOS = 10_000;
+    public static final int BUCKET_COUNT = 200;
+
+    private final long[] histogram = new long[BUCKET_COUNT + 1];
+    private volatile long count;
+    private long totalLatenessNanos;
+    private long maxLatenessNanos;
+    private long resyncCount;
+
+    /**
+     * Record the lateness of one tick. Negative values (woke early) count as 0.
+     */
+    public void record(long latenessNanos) {
+        if (latenessNanos < 0) {
+            latenessNanos = 0;
+        }
+
+        int bucket = (int) Math.min(latenessNanos / BUCKET_WIDTH_NANOS, BUCKET_COUNT);
+        histogram[bucket]++;
+        totalLatenessNanos += latenessNanos;
+        if (latenessNanos > maxLatenessNanos) {
+            maxLatenessNanos = latenessNanos;
+        }
+        count++;
+    }
+
+    /**
+     * Record that the clock fell too far behind and re-anchored to "now"
+     * instead of bursting through the missed ticks.
+     */
+    public void recordResync() {
+        resyncCount++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getResyncCount() {
+        return resyncCount;
+    }
+
+    public double getMeanMicros() {
+        long n = count;
+        return n == 0 ? 0.0 : (totalLatenessNanos / (double) n) / 1_000.0;
+    }
+
+    public double getMaxMicros() {
+        return maxLatenessNanos / 1_000.0;
+    }
+
+    /**
+     * Upper bound of the bucket containing the given percentile, in microseconds.
+     *
+     * @param percentile value between 0 and 100
+     */
+    public double getPercentileMicros(double percentile) {
+        long n = count;
+        if (n == 0) {
+            return 0.0;
+        }
+
+        long target = (long) Math.ceil(n * (percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i <= BUCKET_COUNT; i++) {
+            seen += histogram[i];
+            if (seen >= target) {
+                return i == BUCKET_COUNT ? getMaxMicros() : ((i + 1) * BUCKET_WIDTH_NANOS) / 1_000.0;
+            }
+        }
+        return getMaxMicros();
+    }
+
+    /**
+     * Number of recorded ticks that were later than the given threshold.
+     */
+    public long countLaterThanMicros(long micros) {
+        int firstBucket = (int) Math.min((micros * 1_000) / BUCKET_WIDTH_NANOS, BUCKET_COUNT);
+        long late = 0;
+        for (int i = firstBucket; i <= BUCKET_COUNT; i++) {
+            late += histogram[i];
+        }
+        return late;
+    }
+
+    public void reset() {
+        Arrays.fill(histogram, 0);
+        totalLatenessNanos = 0;
+        maxLatenessNanos = 0;
+        resyncCount = 0;
+        count = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ticks=%d mean=%.1fus p50=%.0fus p99=%.0fus p99.9=%.0fus max=%.1fus resyncs=%d",
+                getCount(), getMeanMicros(), getPercentileMicros(50), getPercentileMicros(99),
+                getPercentileMicros(99.9), getMaxMicros(), getResyncCount());
+    }
+}
@@ -0,0 +1,203 @@
+package com.angrysurfer.core.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Clock engine that schedules every tick against an absolute nanosecond
+ * deadline rather than a fixed-rate period, so scheduling error never
+ * accumulates. Waiting uses the same park-then-spin approach as
+ * {@link PreciseTimer}: park while far from the deadline, spin for the last
+ * stretch. Tempo and PPQ changes are picked up at the next tick without
+ * restarting the thread.
+ */
+public class DeadlineClock implements Timer {
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineClock.class);
+
+    // Park until we're this close to the deadline, then spin
+    private static final long SPIN_THRESHOLD_NANOS = 250_000; // 250µs
+    // If we fall further behind than this, re-anchor instead of bursting ticks
+    private static final long MAX_CATCH_UP_NANOS = 50_000_000; // 50ms
+
+    private final AtomicLong ticks = new AtomicLong(0);
+    private final ClockJitterStats jitterStats = new ClockJitterStats();
+    private volatile float bpm;
+    private volatile int ppq;
+    private volatile boolean running = false;
+    private volatile Thread clockThread;
+    private Runnable tickCallback;
+    private Runnable beatCallback;
+
+    public DeadlineClock(float bpm, int ppq) {
+        this.bpm = bpm;
+        this.ppq = ppq;
+    }
+
+    /**
+     * Start the clock on its own max-priority daemon thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread t = new Thread(this, "MIDI-Clock");
+        t.setPriority(Thread.MAX_PRIORITY);
+        t.setDaemon(true);
+        clockThread = t;
+        t.start();
+    }
+
+    @Override
+    public void addTickCallback(Runnable callback) {
+        this.tickCallback = callback;
+    }
+
+    @Override
+    public void addBeatCallback(Runnable callback) {
+        this.beatCallback = callback;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        Thread t = clockThread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+        clockThread = null;
+    }
+
+    @Override
+    public void setBpm(int newBpm) {
+        setTempo(newBpm);
+    }
+
+    /**
+     * Change tempo; applied when the next deadline is computed.
+     */
+    public void setTempo(float newBpm) {
+        if (newBpm > 0) {
+            bpm = newBpm;
+        }
+    }
+
+    @Override
+    public void setPpq(int newPpq) {
+        if (newPpq > 0) {
+            ppq = newPpq;
+        }
+    }
+
+    @Override
+    public int getBpm() {
+        return Math.round(bpm);
+    }
+
+    public float getTempo() {
+        return bpm;
+    }
+
+    @Override
+    public int getPpq() {
+        return ppq;
+    }
+
+    @Override
+    public long getCurrentTick() {
+        return ticks.get();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    public ClockJitterStats getJitterStats() {
+        return jitterStats;
+    }
+
+    @Override
+    public void run() {
+        float appliedBpm = bpm;
+        int appliedPpq = ppq;
+        double intervalNanos = intervalNanos(appliedBpm, appliedPpq);
+        logger.info("run() - starting deadline clock with BPM: {}, PPQ: {}", appliedBpm, appliedPpq);
+
+        // Deadlines are anchor + n * interval, computed fresh each tick so
+        // rounding never accumulates
+        long anchor = System.nanoTime();
+        long ticksSinceAnchor = 0;
+
+        while (running) {
+            long deadline = anchor + (long) (ticksSinceAnchor * intervalNanos);
+            waitUntil(deadline);
+            if (!running) {
+                break;
+            }
+
+            long lateness = System.nanoTime() - deadline;
+            jitterStats.record(lateness);
+
+            long tickNum = ticks.incrementAndGet();
+            fire(tickCallback);
+            if (tickNum % appliedPpq == 0) {
+                fire(beatCallback);
+            }
+
+            ticksSinceAnchor++;
+
+            if (lateness > MAX_CATCH_UP_NANOS) {
+                // We were descheduled for a long time; don't replay the backlog
+                anchor = System.nanoTime();
+                ticksSinceAnchor = 1;
+                jitterStats.recordResync();
+                logger.warn("Clock fell {}ms behind, re-anchoring", lateness / 1_000_000);
+            }
+
+            float newBpm = bpm;
+            int newPpq = ppq;
+            if (newBpm != appliedBpm || newPpq != appliedPpq) {
+                // Re-anchor at the tick we just fired so the next one uses the new interval
+                anchor = anchor + (long) ((ticksSinceAnchor - 1) * intervalNanos);
+                ticksSinceAnchor = 1;
+                appliedBpm = newBpm;
+                appliedPpq = newPpq;
+                intervalNanos = intervalNanos(appliedBpm, appliedPpq);
+                logger.info("Applied tempo change: BPM: {}, PPQ: {} at tick: {}", appliedBpm, appliedPpq, tickNum);
+            }
+        }
+
+        logger.info("run() - deadline clock stopped after {} ticks, jitter: {}", ticks.get(), jitterStats);
+    }
+
+    private void fire(Runnable callback) {
+        if (callback == null) {
+            return;
+        }
+        try {
+            callback.run();
+        } catch (Exception e) {
+            // Never let a listener kill the clock thread
+            logger.error("Error in clock callback: {}", e.getMessage(), e);
+        }
+    }
+
+    private void waitUntil(long deadline) {
+        long remaining;
+        while (running && (remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static double intervalNanos(float bpm, int ppq) {
+        return 60_000_000_000.0 / (bpm * ppq);
+    }
+}
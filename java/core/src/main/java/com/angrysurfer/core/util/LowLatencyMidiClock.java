@@ -3,25 +3,13 @@ package com.angrysurfer.core.util;
 import com.angrysurfer.core.model.Session;
 import com.angrysurfer.core.sequencer.SequencerConstants;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LowLatencyMidiClock {
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
-            r -> {
-                Thread t = new Thread(r, "MIDI-Clock");
-                t.setPriority(Thread.MAX_PRIORITY);
-                t.setDaemon(true);
-                return t;
-            }
-    );
 
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final Session session;
-    private ScheduledFuture<?> clockTask;
+    private DeadlineClock clock;
 
     public LowLatencyMidiClock(Session session) {
         this.session = session;
@@ -29,24 +17,17 @@ public class LowLatencyMidiClock {
 
     public void start() {
         if (running.compareAndSet(false, true)) {
-            // Calculate tick interval in nanoseconds for more precision
-            // long intervalNanos = (long)(60_000_000_000L / 
-            //     (session.getTempoInBPM() * session.getTicksPerBeat()));
-            long intervalNanos = (long) (60_000_000_000L /
-                    (session.getTempoInBPM() * SequencerConstants.DEFAULT_PPQ));
-
-            clockTask = scheduler.scheduleAtFixedRate(
-                    this::tick,
-                    0,
-                    intervalNanos,
-                    TimeUnit.NANOSECONDS
-            );
+            // Each tick is scheduled against an absolute deadline, so tempo
+            // changes no longer need a restart and error doesn't accumulate
+            clock = new DeadlineClock(getSessionTempo(), getSessionPpq());
+            clock.addTickCallback(this::tick);
+            clock.start();
         }
     }
 
     public void stop() {
-        if (running.compareAndSet(true, false) && clockTask != null) {
-            clockTask.cancel(false);
+        if (running.compareAndSet(true, false) && clock != null) {
+            clock.stop();
         }
     }
 
@@ -54,14 +35,37 @@ public class LowLatencyMidiClock {
         try {
             if (session != null) {
                 session.onTick();
+
+                // Cheap volatile writes; the clock applies them at the next deadline
+                clock.setTempo(getSessionTempo());
+                clock.setPpq(getSessionPpq());
             }
         } catch (Exception e) {
-            // Catch exceptions to prevent scheduler from stopping
+            // Catch exceptions to prevent the clock from stopping
             e.printStackTrace();
         }
     }
 
+    private float getSessionTempo() {
+        return session != null && session.getTempoInBPM() != null
+                ? session.getTempoInBPM()
+                : SequencerConstants.DEFAULT_BPM;
+    }
+
+    private int getSessionPpq() {
+        return session != null && session.getTicksPerBeat() != null
+                ? session.getTicksPerBeat()
+                : SequencerConstants.DEFAULT_PPQ;
+    }
+
+    /**
+     * Per-tick lateness recorded by the underlying clock, or null if never started.
+     */
+    public ClockJitterStats getJitterStats() {
+        return clock != null ? clock.getJitterStats() : null;
+    }
+
     public boolean isRunning() {
         return running.get();
     }
-}
\ No newline at end of file
+}
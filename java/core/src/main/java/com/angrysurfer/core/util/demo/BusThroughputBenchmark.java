@@ -0,0 +1,188 @@
+package com.angrysurfer.core.util.demo;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.angrysurfer.core.api.AbstractBus;
+import com.angrysurfer.core.api.Command;
+import com.angrysurfer.core.api.CommandRegistry;
+import com.angrysurfer.core.api.Commands;
+import com.angrysurfer.core.api.IBusListener;
+
+/**
+ * Publishes/sec through the bus with 50 listeners, comparing the copy-on-write
+ * dispatch table in {@link AbstractBus} against the previous map-of-ArrayList
+ * dispatch (replicated here). Usage: BusThroughputBenchmark [listeners] [publishes]
+ */
+public class BusThroughputBenchmark {
+
+    // Command's constructor is package-private; the replica needs it to allocate like the old bus did
+    private static final MethodHandle NEW_COMMAND;
+
+    static {
+        try {
+            NEW_COMMAND = MethodHandles.privateLookupIn(Command.class, MethodHandles.lookup())
+                    .findConstructor(Command.class, MethodType.methodType(void.class, String.class, Object.class,
+                            Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    static long sink;
+
+    /**
+     * The dispatch path AbstractBus used before the copy-on-write table.
+     */
+    static class LegacyBus {
+        private final Map<String, List<IBusListener>> listenerMap = new ConcurrentHashMap<>();
+
+        void register(IBusListener listener, String[] commands) {
+            for (String action : commands) {
+                listenerMap.computeIfAbsent(action, k -> new ArrayList<>()).add(listener);
+            }
+        }
+
+        void publish(String command, Object sender, Object data) {
+            Command cmd = newCommand(command, sender, data);
+
+            List<IBusListener> listeners = listenerMap.get(command);
+            if (listeners != null) {
+                for (IBusListener listener : listeners) {
+                    if (!listener.equals(sender))
+                        listener.onAction(cmd);
+                }
+            }
+
+            listeners = listenerMap.get("*");
+            if (listeners != null) {
+                for (IBusListener listener : listeners) {
+                    if (!listener.equals(sender))
+                        listener.onAction(cmd);
+                }
+            }
+        }
+
+        // processCommand(): copies every listener per publish
+        void processCommand(Command action) {
+            List<IBusListener> listeners = new ArrayList<>();
+
+            List<IBusListener> commandListeners = listenerMap.get(action.getCommand());
+            if (commandListeners != null)
+                listeners.addAll(commandListeners);
+
+            List<IBusListener> wildcardListeners = listenerMap.get("*");
+            if (wildcardListeners != null)
+                listeners.addAll(wildcardListeners);
+
+            if (commandListeners != null) {
+                for (IBusListener listener : listeners) {
+                    if (listener != action.getSender()) {
+                        listener.onAction(action);
+                    }
+                }
+            }
+        }
+    }
+
+    static class BenchmarkBus extends AbstractBus {
+        BenchmarkBus() {
+            super(false);
+        }
+    }
+
+    static class CountingListener implements IBusListener {
+        @Override
+        public void onAction(Command action) {
+            sink++;
+        }
+    }
+
+    public static void main(String[] args) throws Throwable {
+        int listenerCount = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int publishes = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+        // Listeners spread over a handful of commands, like panels and managers in the app
+        String[] commands = {Commands.PLAYER_SELECTION_EVENT, Commands.PLAYER_ROW_REFRESH, Commands.SESSION_CHANGED,
+                Commands.TRANSPORT_START, Commands.RULE_ADDED};
+        LegacyBus legacy = new LegacyBus();
+        BenchmarkBus bus = new BenchmarkBus();
+        for (int i = 0; i < listenerCount; i++) {
+            IBusListener listener = new CountingListener();
+            String[] subscribed = {commands[i % commands.length], commands[(i + 1) % commands.length]};
+            legacy.register(listener, subscribed);
+            bus.register(listener, subscribed);
+        }
+        String hot = commands[0];
+        Object sender = new Object();
+        Object data = new Object();
+
+        Map<String, Runnable> cases = new LinkedHashMap<>();
+        cases.put("legacy publish", () -> {
+            for (int i = 0; i < publishes; i++) {
+                legacy.publish(hot, sender, data);
+            }
+        });
+        cases.put("cow publish", () -> {
+            for (int i = 0; i < publishes; i++) {
+                bus.publish(hot, sender, data);
+            }
+        });
+        int hotId = CommandRegistry.idOf(hot);
+        cases.put("cow publish(id)", () -> {
+            for (int i = 0; i < publishes; i++) {
+                bus.publish(hotId, sender, data);
+            }
+        });
+
+        Command command = (Command) NEW_COMMAND.invokeExact(hot, sender, data);
+        cases.put("legacy processCommand", () -> {
+            for (int i = 0; i < publishes; i++) {
+                legacy.processCommand(command);
+            }
+        });
+        cases.put("cow publishImmediate", () -> {
+            for (int i = 0; i < publishes; i++) {
+                bus.publishImmediate(command);
+            }
+        });
+
+        cases.put("legacy unheard", () -> {
+            for (int i = 0; i < publishes; i++) {
+                legacy.publish(Commands.LOG_DEBUG, sender, data);
+            }
+        });
+        cases.put("cow unheard", () -> {
+            for (int i = 0; i < publishes; i++) {
+                bus.publish(Commands.LOG_DEBUG, sender, data);
+            }
+        });
+
+        // Warm every path up before timing any of them, so JIT order doesn't pick the winner
+        cases.values().forEach(Runnable::run);
+        cases.forEach((name, body) -> run(name, publishes, body));
+
+        bus.getDispatchStats().forEach(System.out::println);
+        System.out.println("checksum " + sink);
+    }
+
+    private static Command newCommand(String command, Object sender, Object data) {
+        try {
+            return (Command) NEW_COMMAND.invokeExact(command, sender, data);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void run(String name, int publishes, Runnable body) {
+        Measurement measured = Measurement.of(body);
+        System.out.println(String.format("%-24s %,14.0f publishes/sec %8.1f bytes/publish", name,
+                1e9 / measured.nanosPer(publishes), measured.bytesPer(publishes)));
+    }
+}
@@ -0,0 +1,36 @@
+package com.angrysurfer.core.util.demo;
+
+import com.angrysurfer.core.util.ClockJitterStats;
+import com.angrysurfer.core.util.DeadlineClock;
+
+/**
+ * Runs the deadline clock at 300 BPM / 96 PPQ and reports per-tick lateness.
+ * Usage: ClockJitterDemo [seconds] [bpm] [ppq]
+ */
+public class ClockJitterDemo {
+    private static final long JITTER_BUDGET_MICROS = 100;
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        float bpm = args.length > 1 ? Float.parseFloat(args[1]) : 300f;
+        int ppq = args.length > 2 ? Integer.parseInt(args[2]) : 96;
+
+        DeadlineClock clock = new DeadlineClock(bpm, ppq);
+        clock.addTickCallback(() -> {
+        });
+        clock.start();
+
+        // Let the JIT settle before measuring
+        Thread.sleep(2000);
+        clock.getJitterStats().reset();
+
+        Thread.sleep(seconds * 1000L);
+        clock.stop();
+
+        ClockJitterStats stats = clock.getJitterStats();
+        long late = stats.countLaterThanMicros(JITTER_BUDGET_MICROS);
+        System.out.println("BPM: " + bpm + ", PPQ: " + ppq + ", " + stats);
+        System.out.println(late + " of " + stats.getCount() + " ticks later than " + JITTER_BUDGET_MICROS + "us -> "
+                + (stats.getPercentileMicros(99.9) <= JITTER_BUDGET_MICROS ? "PASS" : "FAIL"));
+    }
+}
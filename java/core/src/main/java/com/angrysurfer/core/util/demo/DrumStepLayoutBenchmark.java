@@ -0,0 +1,159 @@
+package com.angrysurfer.core.util.demo;
+
+import java.util.Random;
+
+import com.angrysurfer.core.sequencer.DrumSequenceData;
+import com.angrysurfer.core.sequencer.SequencerConstants;
+
+/**
+ * Per-tick cost of reading step parameters the way DrumSequencer.triggerDrumStep
+ * and processEffects do, for 16 pads x 64 steps, with the previous jagged-array
+ * layout of DrumSequenceData (replicated here) against the packed step words,
+ * plus the bytes each layout allocates. Usage: DrumStepLayoutBenchmark [ticks] [density%]
+ */
+public class DrumStepLayoutBenchmark {
+
+    private static final int PADS = SequencerConstants.DRUM_PAD_COUNT;
+    private static final int STEPS = 64;
+    private static final int MAX_STEPS = 128;
+
+    static long sink;
+
+    /**
+     * The per-step arrays DrumSequenceData held before the packed layout.
+     */
+    static class LegacySteps {
+        final boolean[][] patterns = new boolean[PADS][MAX_STEPS];
+        final boolean[][] stepAccents = new boolean[PADS][MAX_STEPS];
+        final int[][] stepVelocities = new int[PADS][MAX_STEPS];
+        final int[][] stepDecays = new int[PADS][MAX_STEPS];
+        final int[][] stepProbabilities = new int[PADS][MAX_STEPS];
+        final int[][] stepNudges = new int[PADS][MAX_STEPS];
+        final int[][] stepPans = new int[PADS][MAX_STEPS];
+        final int[][] stepChorus = new int[PADS][MAX_STEPS];
+        final int[][] stepReverb = new int[PADS][MAX_STEPS];
+        final int[][] lastSentPans = new int[PADS][MAX_STEPS];
+        final int[][] lastSentChorus = new int[PADS][MAX_STEPS];
+        final int[][] lastSentReverb = new int[PADS][MAX_STEPS];
+        final int[][] lastSentDecays = new int[PADS][MAX_STEPS];
+        final int[][] lastPanValues = new int[PADS][MAX_STEPS];
+        final int[][] lastReverbValues = new int[PADS][MAX_STEPS];
+        final int[][] lastChorusValues = new int[PADS][MAX_STEPS];
+        final int[][] lastDecayValues = new int[PADS][MAX_STEPS];
+        final Boolean[][] barMuteValues = new Boolean[PADS][SequencerConstants.MAX_BAR_COUNT];
+        final Integer[][] barOffsetValues = new Integer[PADS][SequencerConstants.MAX_BAR_COUNT];
+
+        LegacySteps() {
+            for (int i = 0; i < PADS; i++) {
+                for (int j = 0; j < MAX_STEPS; j++) {
+                    lastPanValues[i][j] = -1;
+                    lastReverbValues[i][j] = -1;
+                    lastChorusValues[i][j] = -1;
+                    lastDecayValues[i][j] = -1;
+                    stepVelocities[i][j] = SequencerConstants.DEFAULT_VELOCITY;
+                    stepDecays[i][j] = SequencerConstants.DEFAULT_DECAY;
+                    stepProbabilities[i][j] = SequencerConstants.DEFAULT_PROBABILITY;
+                    stepPans[i][j] = SequencerConstants.DEFAULT_PAN;
+                }
+                java.util.Arrays.fill(barMuteValues[i], false);
+                java.util.Arrays.fill(barOffsetValues[i], 0);
+            }
+        }
+    }
+
+    interface Layout {
+        void tick(int step);
+    }
+
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int density = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+        LegacySteps legacy = new LegacySteps();
+        DrumSequenceData packed = new DrumSequenceData();
+        Random random = new Random(42);
+        for (int pad = 0; pad < PADS; pad++) {
+            for (int step = 0; step < STEPS; step++) {
+                boolean active = random.nextInt(100) < density;
+                int velocity = 60 + random.nextInt(60);
+                int pan = random.nextInt(128);
+                legacy.patterns[pad][step] = active;
+                legacy.stepVelocities[pad][step] = velocity;
+                legacy.stepPans[pad][step] = pan;
+                packed.setStepActive(pad, step, active);
+                packed.setStepVelocity(pad, step, velocity);
+                packed.setStepPan(pad, step, pan);
+            }
+        }
+
+        // Fields read per hit, as in triggerDrumStep and processEffects
+        Layout jagged = step -> {
+            for (int pad = 0; pad < PADS; pad++) {
+                if (!legacy.patterns[pad][step]) {
+                    continue;
+                }
+                int velocity = legacy.stepVelocities[pad][step];
+                int probability = legacy.stepProbabilities[pad][step];
+                int decay = legacy.stepDecays[pad][step];
+                int nudge = legacy.stepNudges[pad][step];
+                boolean accent = legacy.stepAccents[pad][step];
+                int pan = legacy.stepPans[pad][step];
+                int reverb = legacy.stepReverb[pad][step];
+                int chorus = legacy.stepChorus[pad][step];
+                int changed = 0;
+                if (pan != legacy.lastPanValues[pad][step]) {
+                    legacy.lastPanValues[pad][step] = pan;
+                    changed++;
+                }
+                if (reverb != legacy.lastReverbValues[pad][step]) {
+                    legacy.lastReverbValues[pad][step] = reverb;
+                    changed++;
+                }
+                if (chorus != legacy.lastChorusValues[pad][step]) {
+                    legacy.lastChorusValues[pad][step] = chorus;
+                    changed++;
+                }
+                if (decay != legacy.lastDecayValues[pad][step]) {
+                    legacy.lastDecayValues[pad][step] = decay;
+                    changed++;
+                }
+                sink += velocity + probability + decay + nudge + (accent ? 1 : 0) + changed;
+            }
+        };
+        Layout words = step -> {
+            for (int pad = 0; pad < PADS; pad++) {
+                if (!packed.isStepActive(pad, step)) {
+                    continue;
+                }
+                long word = packed.getStepWord(pad, step);
+                int velocity = DrumSequenceData.velocityOf(word);
+                int probability = DrumSequenceData.probabilityOf(word);
+                int decay = DrumSequenceData.decayOf(word);
+                int nudge = DrumSequenceData.nudgeOf(word);
+                boolean accent = DrumSequenceData.isAccented(word);
+                long changed = packed.takeChangedEffects(pad, step, word);
+                sink += velocity + probability + decay + nudge + (accent ? 1 : 0) + Long.bitCount(changed);
+            }
+        };
+
+        run("jagged arrays", ticks, jagged);
+        run("packed words", ticks, words);
+        run("jagged arrays", ticks, jagged);
+        run("packed words", ticks, words);
+
+        long legacyBytes = Measurement.of(() -> sink += new LegacySteps().patterns.length).bytes();
+        long packedBytes = Measurement.of(() -> sink += new DrumSequenceData().getMaxPatternLength()).bytes();
+        System.out.println(String.format("%-14s %,10d bytes (step and bar arrays only)", "jagged arrays", legacyBytes));
+        System.out.println(String.format("%-14s %,10d bytes (whole DrumSequenceData)", "packed words", packedBytes));
+        System.out.println("checksum " + sink);
+    }
+
+    private static void run(String name, int ticks, Layout layout) {
+        Measurement measured = Measurement.of(() -> {
+            for (int t = 0; t < ticks; t++) {
+                layout.tick(t % STEPS);
+            }
+        });
+        System.out.println(String.format("%-14s %8.1f ns/tick", name, measured.nanosPer(ticks)));
+    }
+}
@@ -0,0 +1,24 @@
+package com.angrysurfer.core.util.demo;
+
+/**
+ * Wall time and bytes allocated by the calling thread over one run of a
+ * benchmark body, for the benchmarks that report both per operation
+ */
+record Measurement(long nanos, long bytes) {
+
+    static Measurement of(Runnable body) {
+        long bytesBefore = ThreadAllocation.bytes();
+        long start = System.nanoTime();
+        body.run();
+        long elapsed = System.nanoTime() - start;
+        return new Measurement(elapsed, ThreadAllocation.bytes() - bytesBefore);
+    }
+
+    double nanosPer(long operations) {
+        return nanos / (double) operations;
+    }
+
+    double bytesPer(long operations) {
+        return bytes / (double) operations;
+    }
+}
@@ -0,0 +1,94 @@
+package com.angrysurfer.core.util.demo;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.angrysurfer.core.model.InstrumentWrapper;
+import com.angrysurfer.core.sequencer.MidiEventScheduler;
+import com.angrysurfer.core.util.ClockJitterStats;
+
+/**
+ * Lateness of delayed events (nudges, note-offs) scheduled a few ms ahead,
+ * comparing a ScheduledExecutorService, as DrumSequencer and InstrumentWrapper
+ * used, against the shared {@link MidiEventScheduler} timing wheel, plus the
+ * bytes each scheduled note-off costs the sequencer thread.
+ * Usage: NoteSchedulingBenchmark [events] [maxDelayMs]
+ */
+public class NoteSchedulingBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int maxDelayMs = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+        ClockJitterStats executorStats = new ClockJitterStats();
+        run(events, maxDelayMs, executorStats, (action, delayNanos) ->
+                executor.schedule(action, delayNanos, TimeUnit.NANOSECONDS));
+        executor.shutdown();
+        System.out.println("executor   " + executorStats);
+
+        MidiEventScheduler scheduler = MidiEventScheduler.getInstance();
+        ClockJitterStats schedulerStats = new ClockJitterStats();
+        run(events, maxDelayMs, schedulerStats, scheduler::schedule);
+        System.out.println("scheduler  " + schedulerStats);
+
+        // Note-offs to an instrument with no device: the send is a no-op, the scheduling is real
+        InstrumentWrapper instrument = new InstrumentWrapper();
+        instrument.setChannel(9);
+        instrument.setDeviceName(null);
+        ScheduledExecutorService noteOffExecutor = Executors.newScheduledThreadPool(1);
+        allocation("executor note-off", events, delayNanos ->
+                noteOffExecutor.schedule(() -> instrument.noteOff(36, 0), delayNanos, TimeUnit.NANOSECONDS));
+        noteOffExecutor.shutdownNow();
+        allocation("wheel note-off", events, delayNanos -> scheduler.scheduleNoteOff(instrument, 36, 0, delayNanos));
+        Thread.sleep(200);
+        System.out.println("wheel pending " + scheduler.getPendingCount() + ", max pending "
+                + scheduler.getMaxPendingCount() + ", dispatched " + scheduler.getDispatchedCount());
+        System.out.println("wheel lateness " + scheduler.getJitterStats());
+    }
+
+    interface NoteOffScheduler {
+        void schedule(long delayNanos);
+    }
+
+    private static void allocation(String name, int events, NoteOffScheduler scheduler)
+            throws InterruptedException {
+        // Warm up and let it drain first, so the wheel's pool has grown and the JIT has compiled the path
+        for (int i = 0; i < events; i++) {
+            scheduler.schedule(TimeUnit.MILLISECONDS.toNanos(50 + i % 50));
+        }
+        Thread.sleep(200);
+        Measurement measured = Measurement.of(() -> {
+            for (int i = 0; i < events; i++) {
+                scheduler.schedule(TimeUnit.MILLISECONDS.toNanos(50 + i % 50));
+            }
+        });
+        System.out.println(String.format("%-18s %8.1f bytes/event", name, measured.bytesPer(events)));
+    }
+
+    interface Scheduler {
+        void schedule(Runnable action, long delayNanos);
+    }
+
+    private static void run(int events, int maxDelayMs, ClockJitterStats stats, Scheduler scheduler)
+            throws InterruptedException {
+        Random random = new Random(42);
+        CountDownLatch done = new CountDownLatch(events);
+        for (int i = 0; i < events; i++) {
+            long delayNanos = TimeUnit.MICROSECONDS.toNanos(500 + random.nextInt(maxDelayMs * 1_000));
+            long deadline = System.nanoTime() + delayNanos;
+            scheduler.schedule(() -> {
+                stats.record(System.nanoTime() - deadline);
+                done.countDown();
+            }, delayNanos);
+            // Roughly a busy pattern: a few events per clock tick
+            if (i % 4 == 3) {
+                Thread.sleep(1);
+            }
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,147 @@
+package com.angrysurfer.core.util.demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import com.angrysurfer.core.audio.PcmSample;
+import com.angrysurfer.core.audio.PeakCache;
+import com.angrysurfer.core.audio.PeakPyramid;
+import com.angrysurfer.core.audio.SampleStore;
+
+/**
+ * Waveform peaks from a {@link PeakPyramid} against scanning every frame per
+ * pixel as WaveformPanel used to. Builds the pyramid for a generated WAV,
+ * reopens it through {@link PeakCache}, checks each level against a direct
+ * scan, then reports the cost of one 1000-pixel row at several zooms.
+ * Usage: PeakPyramidBenchmark [seconds]
+ */
+public class PeakPyramidBenchmark {
+
+    private static final int WIDTH = 1000;
+
+    // Keeps the row loops from being optimized away
+    private static volatile float sink;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+        Path dir = Files.createTempDirectory("peak-pyramid");
+        System.setProperty("beatgen.peaks.dir", dir.resolve("peaks").toString());
+
+        AudioFormat format = new AudioFormat(44100f, 16, 2, true, false);
+        int frames = (int) (format.getSampleRate() * seconds);
+        File file = dir.resolve("tone.wav").toFile();
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(tone(format, frames)), format, frames),
+                AudioFileFormat.Type.WAVE, file);
+        SampleStore store = new SampleStore(SampleStore.DEFAULT_STREAM_THRESHOLD);
+        PcmSample sample = store.open(file);
+
+        // Warm up the scan before timing it
+        PeakPyramid.build(sample, Runnable::run).get();
+        long start = System.nanoTime();
+        PeakPyramid built = PeakCache.load(sample).get();
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        PeakPyramid cached = PeakCache.load(sample).get();
+        double cachedMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        PeakPyramid.build(sample, Runnable::run).get();
+        double serialMillis = (System.nanoTime() - start) / 1e6;
+
+        System.out.println(String.format("%s: %d frames, %d levels, %d KB of peaks", file.getName(), frames,
+                built.getLevels(), built.getSizeInBytes() / 1024));
+        System.out.println(String.format("build and cache %.1f ms (scan on one thread %.1f ms), reopen from cache %.1f ms",
+                buildMillis, serialMillis, cachedMillis));
+        System.out.println("levels match a direct scan: " + (matches(sample, built) && matches(sample, cached)));
+        System.out.println();
+
+        System.out.println(String.format("%14s %6s %14s %14s", "frames/pixel", "level", "scan ms", "pyramid ms"));
+        for (double framesPerPixel = frames / (double) WIDTH; framesPerPixel >= 64; framesPerPixel /= 16) {
+            int level = built.levelFor(framesPerPixel);
+            double scan = rowMillis(sample, null, framesPerPixel);
+            double pyramid = rowMillis(sample, built, framesPerPixel);
+            System.out.println(String.format("%14.0f %6d %14.3f %14.3f", framesPerPixel, level, scan, pyramid));
+        }
+
+        store.evict(file);
+        for (File peaks : dir.resolve("peaks").toFile().listFiles()) {
+            peaks.delete();
+        }
+        dir.resolve("peaks").toFile().delete();
+        file.delete();
+        dir.toFile().delete();
+    }
+
+    private static boolean matches(PcmSample sample, PeakPyramid peaks) {
+        for (int level = 0; level < peaks.getLevels(); level++) {
+            long size = peaks.getBlockSize(level);
+            for (int block = 0; block < peaks.getBlocks(level); block++) {
+                float lo = Float.MAX_VALUE;
+                float hi = -Float.MAX_VALUE;
+                long end = Math.min(sample.getFrames(), (block + 1) * size);
+                for (long frame = block * size; frame < end; frame++) {
+                    for (int ch = 0; ch < sample.getChannels(); ch++) {
+                        lo = Math.min(lo, sample.get((int) frame, ch));
+                        hi = Math.max(hi, sample.get((int) frame, ch));
+                    }
+                }
+                if (lo != peaks.getMin(level, block) || hi != peaks.getMax(level, block)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // One row of min/max peaks, from the frames when peaks is null
+    private static double rowMillis(PcmSample sample, PeakPyramid peaks, double framesPerPixel) {
+        int level = peaks != null ? peaks.levelFor(framesPerPixel) : -1;
+        float total = 0;
+        long start = System.nanoTime();
+        for (int x = 0; x < WIDTH; x++) {
+            long from = (long) (x * framesPerPixel);
+            long to = Math.max(from + 1, (long) ((x + 1) * framesPerPixel));
+            float lo = Float.MAX_VALUE;
+            float hi = -Float.MAX_VALUE;
+            if (level >= 0) {
+                long size = peaks.getBlockSize(level);
+                for (long block = from / size; block < Math.min(peaks.getBlocks(level), (to + size - 1) / size); block++) {
+                    lo = Math.min(lo, peaks.getMin(level, (int) block));
+                    hi = Math.max(hi, peaks.getMax(level, (int) block));
+                }
+            } else {
+                for (long frame = from; frame < Math.min(to, sample.getFrames()); frame++) {
+                    for (int ch = 0; ch < sample.getChannels(); ch++) {
+                        lo = Math.min(lo, sample.get((int) frame, ch));
+                        hi = Math.max(hi, sample.get((int) frame, ch));
+                    }
+                }
+            }
+            total += hi - lo;
+        }
+        sink = total;
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    private static byte[] tone(AudioFormat format, int frames) {
+        byte[] bytes = new byte[frames * format.getFrameSize()];
+        int p = 0;
+        for (int i = 0; i < frames; i++) {
+            double t = i / format.getSampleRate();
+            // Swells so the peaks differ block to block
+            double gain = 0.2 + 0.6 * Math.abs(Math.sin(2 * Math.PI * 0.1 * t));
+            for (int c = 0; c < format.getChannels(); c++) {
+                short value = (short) (Math.sin(2 * Math.PI * (220 + 110 * c) * t) * gain * Short.MAX_VALUE);
+                bytes[p++] = (byte) value;
+                bytes[p++] = (byte) (value >> 8);
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,99 @@
+package com.angrysurfer.core.util.demo;
+
+import java.util.SplittableRandom;
+
+import com.angrysurfer.core.sequencer.Quantizer;
+import com.angrysurfer.core.sequencer.Scale;
+
+/**
+ * Time per quantized note of the scale walk Quantizer.quantizeNote used to do
+ * (replicated here, without its logging) against the shared lookup tables,
+ * for 16 melodic sequencers each in its own key, quantizing random notes
+ * with an octave shift. Also counts the notes where the two disagree: the old
+ * walk stopped at the octave edge, so near C and B it could pick a farther
+ * note, or one outside the scale, where the tables find the nearest one
+ * across the octave.
+ * Usage: QuantizerBenchmark [notes]
+ */
+public class QuantizerBenchmark {
+
+    private static final String[] ROOTS = {"C", "C#", "D", "Eb", "E", "F", "F#", "G", "Ab", "A", "Bb", "B"};
+    private static final String[] SCALES = {Scale.SCALE_MAJOR, Scale.SCALE_NATURAL_MINOR, Scale.SCALE_BLUES,
+            Scale.SCALE_HIRAJOSHI};
+
+    public static void main(String[] args) {
+        int notes = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        int sequencers = 16;
+        Boolean[][] scales = new Boolean[sequencers][];
+        Quantizer[] quantizers = new Quantizer[sequencers];
+        for (int i = 0; i < sequencers; i++) {
+            scales[i] = Scale.getScale(ROOTS[i % ROOTS.length], SCALES[i % SCALES.length]);
+            quantizers[i] = new Quantizer(scales[i]);
+        }
+
+        SplittableRandom random = new SplittableRandom(3);
+        int[] input = new int[4096];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = 24 + random.nextInt(72);
+        }
+
+        int differences = 0;
+        int outOfScale = 0;
+        for (int s = 0; s < sequencers; s++) {
+            for (int note = 0; note < 116; note++) {
+                int walked = walk(scales[s], note);
+                if (walked != quantizers[s].quantizeNote(note)) {
+                    differences++;
+                    outOfScale += scales[s][walked % 12] ? 0 : 1;
+                }
+            }
+        }
+        System.out.println("notes differing: " + differences + " (old result outside the scale: " + outOfScale + ")");
+
+        // Warm up both paths before measuring
+        long sink = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < notes; i++) {
+                int s = i & 15;
+                sink += walk(scales[s], input[i & 4095] + 12);
+            }
+            double walkNanos = (System.nanoTime() - start) / (double) notes;
+            start = System.nanoTime();
+            for (int i = 0; i < notes; i++) {
+                int s = i & 15;
+                sink += quantizers[s].quantizeNote(input[i & 4095], 12);
+            }
+            double tableNanos = (System.nanoTime() - start) / (double) notes;
+            if (round == 1) {
+                System.out.println(String.format("scale walk %6.2f ns/note   table %6.2f ns/note", walkNanos,
+                        tableNanos));
+            }
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * The previous Quantizer.quantizeNote
+     */
+    private static int walk(Boolean[] scale, int note) {
+        int val = note;
+        while (val > 11)
+            val -= 12;
+
+        if (scale[val]) {
+            return note;
+        }
+
+        int distanceUp = 0;
+        while ((val + distanceUp < 11) && (!scale[val + distanceUp]))
+            distanceUp++;
+
+        int distanceDown = 0;
+        while ((val - distanceDown > 0) && (!scale[val - distanceDown]))
+            distanceDown++;
+
+        return distanceUp > distanceDown ? note + distanceUp : note - distanceDown;
+    }
+}
@@ -0,0 +1,164 @@
+package com.angrysurfer.core.util.demo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.angrysurfer.core.model.Comparison;
+import com.angrysurfer.core.model.CompiledRuleSet;
+import com.angrysurfer.core.model.Operator;
+import com.angrysurfer.core.model.Rule;
+import com.angrysurfer.core.sequencer.TimingFrame;
+
+/**
+ * Compares the per-tick cost of the original HashSet rule loop from
+ * Player.shouldPlay against {@link CompiledRuleSet}, across a session's worth
+ * of players. Usage: RuleEvaluationBenchmark [players] [ticks]
+ */
+public class RuleEvaluationBenchmark {
+
+    private static final int PPQ = 24;
+
+    static long sink;
+
+    /**
+     * The rule loop as Player.shouldPlay ran it, minus logging.
+     */
+    static class LegacyRules {
+        final Set<Rule> tick = new HashSet<>();
+        final Set<Rule> beat = new HashSet<>();
+        final Set<Rule> bar = new HashSet<>();
+        final Set<Rule> tickCount = new HashSet<>();
+        final Set<Rule> beatCount = new HashSet<>();
+        final Set<Rule> barCount = new HashSet<>();
+        final Set<Rule> partCount = new HashSet<>();
+
+        LegacyRules(Set<Rule> rules) {
+            for (Rule rule : rules) {
+                switch (rule.getOperator()) {
+                    case Comparison.TICK -> tick.add(rule);
+                    case Comparison.BEAT -> beat.add(rule);
+                    case Comparison.BAR -> bar.add(rule);
+                    case Comparison.TICK_COUNT -> tickCount.add(rule);
+                    case Comparison.BEAT_COUNT -> beatCount.add(rule);
+                    case Comparison.BAR_COUNT -> barCount.add(rule);
+                    case Comparison.PART_COUNT -> partCount.add(rule);
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        boolean matches(TimingFrame frame) {
+            return any(tick, frame.getTick()) && any(beat, frame.getBeat()) && any(bar, frame.getBar())
+                    && any(tickCount, frame.getTickCount()) && any(beatCount, frame.getBeatCount())
+                    && any(barCount, frame.getBarCount()) && any(partCount, frame.getPartCount());
+        }
+
+        private static boolean any(Set<Rule> rules, double value) {
+            if (rules.isEmpty()) {
+                return true;
+            }
+            for (Rule rule : rules) {
+                if (Operator.evaluate(rule.getComparison(), value, rule.getValue())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public static void main(String[] args) {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        Random random = new Random(42);
+        List<LegacyRules> legacy = new ArrayList<>();
+        List<CompiledRuleSet> compiled = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            Set<Rule> rules = randomRules(random, i);
+            legacy.add(new LegacyRules(rules));
+            compiled.add(CompiledRuleSet.compile(rules));
+        }
+        LegacyRules[] legacyArray = legacy.toArray(new LegacyRules[0]);
+        CompiledRuleSet[] compiledArray = compiled.toArray(new CompiledRuleSet[0]);
+
+        // Both paths must agree before timing means anything
+        TimingFrame frame = new TimingFrame();
+        for (long t = 0; t < PPQ * 4 * 16; t++) {
+            advance(frame, t);
+            for (int p = 0; p < players; p++) {
+                if (legacyArray[p].matches(frame) != compiledArray[p].matches(frame)) {
+                    throw new IllegalStateException("Mismatch for player " + p + " at tick " + t);
+                }
+            }
+        }
+
+        runLegacy(legacyArray, frame, ticks / 5);
+        report("legacy HashSet loop", (long) ticks * players, () -> runLegacy(legacyArray, frame, ticks));
+        runCompiled(compiledArray, frame, ticks / 5);
+        report("CompiledRuleSet", (long) ticks * players, () -> runCompiled(compiledArray, frame, ticks));
+
+        System.out.println("checksum " + sink);
+    }
+
+    private static Set<Rule> randomRules(Random random, int seed) {
+        Set<Rule> rules = new HashSet<>();
+        // Typical drum-style rule: a beat or two, every n-th tick, sometimes gated by bar or count
+        rules.add(rule(seed * 10L, Comparison.BEAT, Operator.EQUALS, 1 + random.nextInt(4)));
+        if (random.nextBoolean()) {
+            rules.add(rule(seed * 10L + 1, Comparison.BEAT, Operator.EQUALS, 1 + random.nextInt(4)));
+        }
+        rules.add(rule(seed * 10L + 2, Comparison.TICK, Operator.MODULO, 1 + random.nextInt(PPQ / 2)));
+        if (random.nextInt(3) == 0) {
+            rules.add(rule(seed * 10L + 3, Comparison.BAR, Operator.LESS_THAN, 1 + random.nextInt(4)));
+        }
+        if (random.nextInt(4) == 0) {
+            rules.add(rule(seed * 10L + 4, Comparison.BAR_COUNT, Operator.MODULO, 1 + random.nextInt(4)));
+        }
+        return rules;
+    }
+
+    private static Rule rule(long id, int category, int comparison, double value) {
+        Rule rule = new Rule(category, comparison, value, 0);
+        rule.setId(id);
+        return rule;
+    }
+
+    private static void advance(TimingFrame frame, long tickCount) {
+        long beatCount = tickCount / PPQ;
+        long barCount = beatCount / 4;
+        frame.update(tickCount % PPQ + 1, beatCount % 4 + 1, (int) (barCount % 4) + 1, 1,
+                tickCount, (int) beatCount, (int) barCount, 0);
+    }
+
+    private static void runLegacy(LegacyRules[] players, TimingFrame frame, int ticks) {
+        for (long t = 0; t < ticks; t++) {
+            advance(frame, t);
+            for (LegacyRules player : players) {
+                if (player.matches(frame)) {
+                    sink++;
+                }
+            }
+        }
+    }
+
+    private static void runCompiled(CompiledRuleSet[] players, TimingFrame frame, int ticks) {
+        for (long t = 0; t < ticks; t++) {
+            advance(frame, t);
+            for (CompiledRuleSet player : players) {
+                if (player.matches(frame)) {
+                    sink++;
+                }
+            }
+        }
+    }
+
+    private static void report(String name, long evaluations, Runnable body) {
+        Measurement measured = Measurement.of(body);
+        System.out.println(String.format("%-20s %8.2f ns/eval %8.3f bytes/eval", name,
+                measured.nanosPer(evaluations), measured.bytesPer(evaluations)));
+    }
+}
@@ -0,0 +1,133 @@
+package com.angrysurfer.core.util.demo;
+
+import java.io.ByteArrayInputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+
+import com.angrysurfer.core.audio.Interpolation;
+import com.angrysurfer.core.audio.PcmSample;
+import com.angrysurfer.core.audio.SampleEngine;
+
+/**
+ * Cost of a sample hit through {@link SampleEngine} against the Clip per note
+ * that Sample.noteOn and SamplePlaybackService used to open: time to start a
+ * note, time to mix a period with 8 to 32 voices playing (against the
+ * period's real-time budget) for each interpolation, and the engine's output
+ * latency. Each interpolation's error is measured on a sine pitched up a
+ * fifth against the exact sine at the new pitch. The Clip figures need an
+ * audio device and are skipped without one.
+ * Usage: SampleEngineBenchmark [hits]
+ */
+public class SampleEngineBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int hits = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        // One second of 16-bit stereo, a decaying tone like a tom
+        AudioFormat format = new AudioFormat(44100f, 16, 2, true, false);
+        byte[] bytes = tone(format, 44100);
+
+        long start = System.nanoTime();
+        PcmSample pcm = PcmSample.decode(bytes, format);
+        System.out.println(String.format("decode once      %8.3f ms for %d frames", (System.nanoTime() - start) / 1e6,
+                pcm.getFrames()));
+
+        SampleEngine engine = new SampleEngine(SampleEngine.DEFAULT_SAMPLE_RATE, SampleEngine.DEFAULT_VOICES,
+                SampleEngine.DEFAULT_PERIOD_FRAMES);
+        float[] mix = new float[engine.getPeriodFrames() * 2];
+
+        // Warm up, then time note starts (stealing voices once the pool is full)
+        for (int i = 0; i < hits; i++) {
+            engine.play(pcm, 0.8f, 1.0 + (i & 7) * 0.05, 0, 0, false, 0, 0, 0, i);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < hits; i++) {
+            engine.play(pcm, 0.8f, 1.0 + (i & 7) * 0.05, 0, 0, false, 0, 0, 0, i);
+        }
+        System.out.println(String.format("engine note on   %8.3f us", (System.nanoTime() - start) / 1e3 / hits));
+
+        double budgetMillis = engine.getPeriodFrames() * 1000.0 / engine.getSampleRate();
+        for (Interpolation interpolation : Interpolation.values()) {
+            engine.setInterpolation(interpolation);
+            System.out.println(String.format("%s: error %.1f dB", interpolation, pitchError(interpolation)));
+            for (int voices : new int[]{8, 16, 32}) {
+                // One period is longer than the release fade, so this frees every voice
+                engine.stopAll();
+                engine.render(mix, engine.getPeriodFrames());
+                for (int v = 0; v < voices; v++) {
+                    // Notes across an octave either side of the reference
+                    engine.play(pcm, 0.2f, SampleEngine.noteRatio(48 + (v * 7) % 25, 60), 0, 0, true, 0,
+                            pcm.getFrames(), 0, v);
+                }
+                int periods = 20_000;
+                for (int i = 0; i < periods; i++) {
+                    engine.render(mix, engine.getPeriodFrames());
+                }
+                start = System.nanoTime();
+                for (int i = 0; i < periods; i++) {
+                    engine.render(mix, engine.getPeriodFrames());
+                }
+                double millis = (System.nanoTime() - start) / 1e6 / periods;
+                System.out.println(String.format("mix %2d voices    %8.3f ms per %d-frame period (%.1f%% of %.1f ms)",
+                        engine.getActiveVoices(), millis, engine.getPeriodFrames(), 100 * millis / budgetMillis,
+                        budgetMillis));
+            }
+        }
+        System.out.println(String.format("output latency   %8.1f ms", engine.getOutputLatencyMillis()));
+
+        try {
+            int clips = 20;
+            start = System.nanoTime();
+            for (int i = 0; i < clips; i++) {
+                Clip clip = AudioSystem.getClip();
+                clip.open(new AudioInputStream(new ByteArrayInputStream(bytes), format, bytes.length / 4));
+                clip.close();
+            }
+            System.out.println(String.format("clip per note    %8.3f ms", (System.nanoTime() - start) / 1e6 / clips));
+        } catch (Exception | LinkageError e) {
+            System.out.println("clip per note    (no audio device: " + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * RMS error, relative to full scale, of a 4.41 kHz sine played a fifth up
+     */
+    private static double pitchError(Interpolation interpolation) {
+        float rate = SampleEngine.DEFAULT_SAMPLE_RATE;
+        float[] sine = new float[(int) rate];
+        for (int i = 0; i < sine.length; i++) {
+            sine[i] = (float) Math.sin(2 * Math.PI * 4410 * i / rate);
+        }
+        SampleEngine engine = new SampleEngine(rate, 1, 4096);
+        double ratio = SampleEngine.noteRatio(67, 60);
+        engine.play(new PcmSample(sine, 1, rate), 1f, ratio, 0, 0, false, 0, 0, 0, 0, interpolation);
+        float[] out = new float[4096 * 2];
+        engine.render(out, 4096);
+
+        // Skip the first frames, where the kernel reads before the data
+        double error = 0;
+        int count = 0;
+        for (int i = 16; i < 4096; i++) {
+            double expected = Math.sin(2 * Math.PI * 4410 * ratio * i / rate);
+            error += (out[2 * i] - expected) * (out[2 * i] - expected);
+            count++;
+        }
+        return 10 * Math.log10(error / count / 0.5);
+    }
+
+    private static byte[] tone(AudioFormat format, int frames) {
+        byte[] bytes = new byte[frames * format.getFrameSize()];
+        for (int i = 0; i < frames; i++) {
+            double t = i / format.getSampleRate();
+            short value = (short) (Math.sin(2 * Math.PI * 110 * t) * Math.exp(-4 * t) * 30000);
+            for (int c = 0; c < 2; c++) {
+                bytes[4 * i + 2 * c] = (byte) value;
+                bytes[4 * i + 2 * c + 1] = (byte) (value >> 8);
+            }
+        }
+        return bytes;
+    }
+}
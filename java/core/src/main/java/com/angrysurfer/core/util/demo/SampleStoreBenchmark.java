@@ -0,0 +1,155 @@
+package com.angrysurfer.core.util.demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import com.angrysurfer.core.audio.PcmSample;
+import com.angrysurfer.core.audio.SampleEngine;
+import com.angrysurfer.core.audio.SampleStore;
+
+/**
+ * Loading sample files through {@link SampleStore} against reading them
+ * whole as Sample.loadAudioFile used to (the file's bytes plus the decoded
+ * floats, read again by the sample viewer). For WAV and AIFF files in several
+ * PCM formats: checks that the mapped and streamed frames match Java Sound's
+ * decoding, and reports load time and heap per sample, then the mix cost of
+ * 32 voices reading heap, mapped and streamed frames.
+ * Usage: SampleStoreBenchmark [seconds]
+ */
+public class SampleStoreBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        Path dir = Files.createTempDirectory("sample-store");
+
+        AudioFormat[] formats = {
+                new AudioFormat(44100f, 16, 2, true, false),
+                new AudioFormat(48000f, 24, 2, true, false),
+                new AudioFormat(44100f, 8, 1, false, false),
+                new AudioFormat(44100f, 16, 2, true, true),
+        };
+        AudioFileFormat.Type[] types = {AudioFileFormat.Type.WAVE, AudioFileFormat.Type.WAVE,
+                AudioFileFormat.Type.WAVE, AudioFileFormat.Type.AIFF};
+
+        SampleStore mappedStore = new SampleStore(SampleStore.DEFAULT_STREAM_THRESHOLD);
+        // Streams everything over 1 MB
+        SampleStore streamedStore = new SampleStore(1L << 20);
+        PcmSample[] heapFrames = new PcmSample[formats.length];
+        PcmSample[] mappedFrames = new PcmSample[formats.length];
+        PcmSample[] streamedFrames = new PcmSample[formats.length];
+
+        System.out.println(String.format("%-28s %10s %10s %12s %12s %9s", "file", "read ms", "map ms",
+                "read heap", "mapped heap", "match"));
+        for (int f = 0; f < formats.length; f++) {
+            AudioFormat format = formats[f];
+            int frames = (int) (format.getSampleRate() * seconds);
+            File file = dir.resolve(String.format("tone-%d-%dbit-%s.%s", (int) format.getSampleRate(),
+                    format.getSampleSizeInBits(), format.isBigEndian() ? "be" : "le",
+                    types[f].getExtension())).toFile();
+            byte[] bytes = tone(format, frames);
+            AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(bytes), format, frames), types[f], file);
+
+            // The old path: all bytes read, then decoded
+            long start = System.nanoTime();
+            byte[] read;
+            try (AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+                read = in.readAllBytes();
+            }
+            heapFrames[f] = PcmSample.decode(read, format);
+            double readMillis = (System.nanoTime() - start) / 1e6;
+            long readHeap = read.length + heapFrames[f].getHeapBytes();
+
+            start = System.nanoTime();
+            mappedFrames[f] = mappedStore.open(file);
+            double mapMillis = (System.nanoTime() - start) / 1e6;
+            streamedFrames[f] = streamedStore.open(file);
+
+            boolean match = same(heapFrames[f], mappedFrames[f]) && same(heapFrames[f], streamedFrames[f])
+                    && mappedStore.open(file) == mappedFrames[f];
+            System.out.println(String.format("%-28s %10.2f %10.2f %9d KB %9d KB %9s", file.getName(), readMillis,
+                    mapMillis, readHeap / 1024, mappedFrames[f].getHeapBytes() / 1024, match));
+        }
+        System.out.println();
+        for (PcmSample sample : streamedStore.getLoaded()) {
+            System.out.println("streamed " + sample);
+        }
+        System.out.println();
+
+        for (String label : new String[]{"heap", "mapped", "streamed"}) {
+            PcmSample sample = label.equals("heap") ? heapFrames[0]
+                    : label.equals("mapped") ? mappedFrames[0] : streamedFrames[0];
+            System.out.println(String.format("mix 32 voices, %-8s %8.3f ms per period", label, mixMillis(sample)));
+            System.out.println("  " + sample);
+        }
+
+        for (File file : dir.toFile().listFiles()) {
+            streamedStore.evict(file);
+            mappedStore.evict(file);
+            file.delete();
+        }
+        dir.toFile().delete();
+    }
+
+    // Voices spread across the whole sample, so a streamed one maps and drops segments as it plays
+    private static double mixMillis(PcmSample sample) {
+        SampleEngine engine = new SampleEngine(SampleEngine.DEFAULT_SAMPLE_RATE, 32,
+                SampleEngine.DEFAULT_PERIOD_FRAMES);
+        for (int v = 0; v < 32; v++) {
+            int start = v * (sample.getFrames() / 32);
+            engine.play(sample, 0.1f, SampleEngine.noteRatio(60 + v % 12, 60), start, 0, true, start,
+                    sample.getFrames(), 0, v);
+        }
+        float[] mix = new float[engine.getPeriodFrames() * 2];
+        int periods = 10_000;
+        for (int i = 0; i < periods; i++) {
+            engine.render(mix, engine.getPeriodFrames());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < periods; i++) {
+            engine.render(mix, engine.getPeriodFrames());
+        }
+        return (System.nanoTime() - start) / 1e6 / periods;
+    }
+
+    private static boolean same(PcmSample expected, PcmSample actual) {
+        if (expected.getFrames() != actual.getFrames() || expected.getChannels() != actual.getChannels()) {
+            return false;
+        }
+        for (int frame = 0; frame < expected.getFrames(); frame++) {
+            for (int ch = 0; ch < expected.getChannels(); ch++) {
+                if (expected.get(frame, ch) != actual.get(frame, ch)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static byte[] tone(AudioFormat format, int frames) {
+        int bytesPerSample = format.getSampleSizeInBits() / 8;
+        byte[] bytes = new byte[frames * format.getFrameSize()];
+        int p = 0;
+        for (int i = 0; i < frames; i++) {
+            double t = i / format.getSampleRate();
+            for (int c = 0; c < format.getChannels(); c++) {
+                double value = Math.sin(2 * Math.PI * (220 + 110 * c) * t) * 0.8;
+                long bits = (long) (value * ((1L << (bytesPerSample * 8 - 1)) - 1));
+                if (!AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding())) {
+                    bits += 1L << (bytesPerSample * 8 - 1);
+                }
+                for (int b = 0; b < bytesPerSample; b++) {
+                    int shift = format.isBigEndian() ? 8 * (bytesPerSample - 1 - b) : 8 * b;
+                    bytes[p++] = (byte) (bits >> shift);
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,20 @@
+package com.angrysurfer.core.util.demo;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated by the calling thread, for the benchmarks that report
+ * allocation per operation
+ */
+final class ThreadAllocation {
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private ThreadAllocation() {
+    }
+
+    static long bytes() {
+        return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().threadId());
+    }
+}
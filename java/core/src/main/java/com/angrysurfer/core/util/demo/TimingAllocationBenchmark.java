@@ -0,0 +1,94 @@
+package com.angrysurfer.core.util.demo;
+
+import com.angrysurfer.core.api.Command;
+import com.angrysurfer.core.api.Commands;
+import com.angrysurfer.core.api.IBusListener;
+import com.angrysurfer.core.api.TimingBus;
+import com.angrysurfer.core.api.TimingFrameListener;
+import com.angrysurfer.core.sequencer.TimingFrame;
+import com.angrysurfer.core.sequencer.TimingUpdate;
+
+/**
+ * Measures bytes allocated per clock tick on the TimingBus, comparing the
+ * legacy TimingUpdate publish (as Session.onTick used to do it) against the
+ * reusable TimingFrame path. Usage: TimingAllocationBenchmark [listeners] [ticks]
+ */
+public class TimingAllocationBenchmark {
+
+    static long sink;
+
+    static class LegacyListener implements IBusListener {
+        @Override
+        public void onAction(Command action) {
+            if (action.getData() instanceof TimingUpdate update) {
+                sink += update.tickCount();
+            }
+        }
+    }
+
+    static class FrameListener implements IBusListener, TimingFrameListener {
+        @Override
+        public void onAction(Command action) {
+        }
+
+        @Override
+        public void onTimingFrame(TimingFrame frame) {
+            sink += frame.getTickCount();
+        }
+    }
+
+    public static void main(String[] args) {
+        int listenerCount = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        TimingBus bus = TimingBus.getInstance();
+
+        IBusListener[] legacy = new IBusListener[listenerCount];
+        for (int i = 0; i < listenerCount; i++) {
+            legacy[i] = new LegacyListener();
+            bus.register(legacy[i]);
+        }
+        runLegacy(bus, ticks / 5);
+        report("legacy TimingUpdate", ticks, () -> runLegacy(bus, ticks));
+        for (IBusListener listener : legacy) {
+            bus.unregister(listener);
+        }
+
+        IBusListener[] frames = new IBusListener[listenerCount];
+        for (int i = 0; i < listenerCount; i++) {
+            frames[i] = new FrameListener();
+            bus.register(frames[i]);
+        }
+        TimingFrame frame = new TimingFrame();
+        runFrames(bus, frame, ticks / 5);
+        report("TimingFrame", ticks, () -> runFrames(bus, frame, ticks));
+        for (IBusListener listener : frames) {
+            bus.unregister(listener);
+        }
+
+        System.out.println("checksum " + sink);
+    }
+
+    private static void runLegacy(TimingBus bus, int ticks) {
+        for (long t = 1; t <= ticks; t++) {
+            int beat = (int) (t / 96);
+            // Session used to publish beat/bar/part records alongside the tick record
+            bus.publish(Commands.TIMING_BEAT, bus, new TimingUpdate(null, (double) beat, 1, 1, t, beat, 0, 0));
+            bus.publish(Commands.TIMING_UPDATE, bus, new TimingUpdate(t % 96, (double) beat, 1, 1, t, beat, 0, 0));
+        }
+    }
+
+    private static void runFrames(TimingBus bus, TimingFrame frame, int ticks) {
+        for (long t = 1; t <= ticks; t++) {
+            int beat = (int) (t / 96);
+            frame.update(t % 96, beat, 1, 1, t, beat, 0, 0);
+            frame.setChanges(t % 96 == 0, false, false);
+            bus.publishFrame(bus, frame);
+        }
+    }
+
+    private static void report(String name, int ticks, Runnable body) {
+        Measurement measured = Measurement.of(body);
+        System.out.println(String.format("%-20s %8.1f bytes/tick %8.1f ns/tick", name,
+                measured.bytesPer(ticks), measured.nanosPer(ticks)));
+    }
+}
@@ -0,0 +1,104 @@
+package com.angrysurfer.core.util.demo;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import com.angrysurfer.core.api.Command;
+import com.angrysurfer.core.api.DispatchLane;
+import com.angrysurfer.core.api.IBusListener;
+import com.angrysurfer.core.api.TimingBus;
+import com.angrysurfer.core.api.TimingFrameListener;
+import com.angrysurfer.core.api.TimingRing;
+import com.angrysurfer.core.sequencer.TimingFrame;
+
+/**
+ * Clock-thread cost per tick with engine listeners plus one UI listener that
+ * stalls now and then (a repaint), with the TimingBus dispatching inline and
+ * in ring-buffer mode. Usage: TimingRingBenchmark [ticks] [stallEvery] [stallMicros]
+ */
+public class TimingRingBenchmark {
+
+    static long sink;
+
+    static class EngineListener implements IBusListener, TimingFrameListener {
+        @Override
+        public void onAction(Command action) {
+        }
+
+        @Override
+        public void onTimingFrame(TimingFrame frame) {
+            sink += frame.getTickCount();
+        }
+    }
+
+    static class StallingUiListener implements IBusListener, TimingFrameListener {
+        private final int stallEvery;
+        private final long stallNanos;
+
+        StallingUiListener(int stallEvery, long stallNanos) {
+            this.stallEvery = stallEvery;
+            this.stallNanos = stallNanos;
+        }
+
+        @Override
+        public void onAction(Command action) {
+        }
+
+        @Override
+        public void onTimingFrame(TimingFrame frame) {
+            if (frame.getTickCount() % stallEvery == 0) {
+                LockSupport.parkNanos(stallNanos);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int stallEvery = args.length > 1 ? Integer.parseInt(args[1]) : 96;
+        long stallMicros = args.length > 2 ? Long.parseLong(args[2]) : 2_000;
+        TimingBus bus = TimingBus.getInstance();
+
+        for (int i = 0; i < 4; i++) {
+            bus.register(new EngineListener(), new String[0], DispatchLane.ENGINE);
+        }
+        bus.register(new StallingUiListener(stallEvery, stallMicros * 1000), new String[0], DispatchLane.UI);
+
+        TimingFrame frame = new TimingFrame();
+        run(bus, frame, ticks / 5);
+        report("inline", run(bus, frame, ticks));
+
+        bus.enableRingBuffer();
+        run(bus, frame, ticks / 5);
+        report("ring buffer", run(bus, frame, ticks));
+        for (TimingRing.ConsumerStatus status : bus.getConsumerStatus()) {
+            System.out.println("  " + status);
+        }
+        bus.disableRingBuffer();
+
+        System.out.println("checksum " + sink);
+    }
+
+    private static long[] run(TimingBus bus, TimingFrame frame, int ticks) {
+        long[] latencies = new long[ticks];
+        for (int t = 1; t <= ticks; t++) {
+            int beat = t / 96;
+            frame.update(t % 96, beat, 1, 1, t, beat, 0, 0);
+            frame.setChanges(t % 96 == 0, false, false);
+            long start = System.nanoTime();
+            bus.publishFrame(bus, frame);
+            latencies[t - 1] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private static void report(String name, long[] latencies) {
+        long total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        Arrays.sort(latencies);
+        System.out.println(String.format("%-12s %10.1f us/tick mean %10.1f us p99 %10.1f us max", name,
+                total / 1000.0 / latencies.length, latencies[(int) (latencies.length * 0.99)] / 1000.0,
+                latencies[latencies.length - 1] / 1000.0));
+    }
+}
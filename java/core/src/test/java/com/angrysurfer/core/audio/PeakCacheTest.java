@@ -0,0 +1,87 @@
+package com.angrysurfer.core.audio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PeakCacheTest {
+
+    private static final int FRAMES = 100_000;
+    private static final long LENGTH = 200_044;
+    private static final long MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void aWrittenPyramidReadsBack() {
+        PeakPyramid peaks = PeakPyramid.build(ramp(), Runnable::run).join();
+        Path cache = directory.resolve("abc.peaks");
+        PeakCache.write(cache, peaks, LENGTH, MODIFIED);
+
+        PeakPyramid read = PeakCache.read(cache, FRAMES, LENGTH, MODIFIED);
+
+        assertNotNull(read);
+        assertEquals(peaks.getLevels(), read.getLevels());
+        for (int level = 0; level < peaks.getLevels(); level++) {
+            assertArrayEquals(peaks.mins(level), read.mins(level));
+            assertArrayEquals(peaks.maxes(level), read.maxes(level));
+            assertArrayEquals(peaks.rmses(level), read.rmses(level));
+        }
+        // Cached for another length of file is not this file's
+        assertNull(PeakCache.read(cache, FRAMES + 1, LENGTH, MODIFIED));
+        // Nor is one cached before the file was edited in place, at the same length
+        assertNull(PeakCache.read(cache, FRAMES, LENGTH, MODIFIED + 1000));
+        assertNull(PeakCache.read(cache, FRAMES, LENGTH + 1, MODIFIED));
+    }
+
+    @Test
+    void concurrentWritesOfOneSampleDoNotTearTheFile() throws Exception {
+        PeakPyramid peaks = PeakPyramid.build(ramp(), Runnable::run).join();
+        Path cache = directory.resolve("abc.peaks");
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread writer = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                PeakCache.write(cache, peaks, LENGTH, MODIFIED);
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        go.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        PeakPyramid read = PeakCache.read(cache, FRAMES, LENGTH, MODIFIED);
+        assertNotNull(read);
+        assertArrayEquals(peaks.maxes(0), read.maxes(0));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(cache), files.toList());
+        }
+    }
+
+    private static PcmSample ramp() {
+        float[] data = new float[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            data[i] = i / (float) FRAMES;
+        }
+        return new PcmSample(data, 1, SampleEngine.DEFAULT_SAMPLE_RATE);
+    }
+}
@@ -0,0 +1,127 @@
+package com.angrysurfer.core.audio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SampleEngineTest {
+
+    private static final int PERIOD = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void aStolenVoiceFadesOutInsteadOfStopping() {
+        SampleEngine engine = new SampleEngine(SampleEngine.DEFAULT_SAMPLE_RATE, 1, PERIOD);
+        float[] out = new float[PERIOD * 2];
+        engine.play(constant(1f), 0.5f, 1.0, 0, 0, true, 0, 1000, 0, 1);
+        engine.render(out, PERIOD);
+        assertEquals(0.5f, out[2 * (PERIOD - 1)], 1e-6);
+
+        engine.play(constant(1f), 0.25f, 1.0, 0, 0, true, 0, 1000, 0, 2);
+        engine.render(out, PERIOD);
+
+        // The old note ramps down under the new one rather than dropping out
+        // A fading voice frees itself on its last frame, so that step is twice the others
+        float step = 2 * 0.5f / SampleVoice.RELEASE_FRAMES + 1e-6f;
+        assertEquals(0.75f, out[0], step);
+        for (int i = 1; i < PERIOD; i++) {
+            assertTrue(Math.abs(out[2 * i] - out[2 * (i - 1)]) <= step, "jump at frame " + i);
+        }
+        assertEquals(0.25f, out[2 * (PERIOD - 1)], 1e-6);
+        assertEquals(1, engine.getStolenCount());
+        assertEquals(1, engine.getActiveVoices());
+    }
+
+    @Test
+    void stealingTakesAReleasingVoiceBeforeTheOldest() {
+        SampleEngine engine = new SampleEngine(SampleEngine.DEFAULT_SAMPLE_RATE, 3, PERIOD);
+        float[] out = new float[PERIOD * 2];
+        long first = engine.play(constant(1f), 0.5f, 1.0, 0, 0, true, 0, 1000, 0, 1);
+        long second = engine.play(constant(1f), 0.5f, 1.0, 0, 0, true, 0, 1000, 0, 2);
+        long third = engine.play(constant(1f), 0.5f, 1.0, 0, 0, true, 0, 1000, 0, 3);
+        engine.stop(second);
+        engine.render(out, 16);
+
+        engine.play(constant(1f), 0.5f, 1.0, 0, 0, true, 0, 1000, 0, 4);
+
+        assertTrue(engine.getPosition(first) >= 0);
+        assertEquals(-1, engine.getPosition(second));
+        assertTrue(engine.getPosition(third) >= 0);
+        assertEquals(3, engine.getActiveVoices());
+    }
+
+    @Test
+    void stealingWithoutAReleasingVoiceTakesTheOldest() {
+        SampleEngine engine = new SampleEngine(SampleEngine.DEFAULT_SAMPLE_RATE, 2, PERIOD);
+        long first = engine.play(constant(1f), 0.5f, 1.0, 0, 0, true, 0, 1000, 0, 1);
+        long second = engine.play(constant(1f), 0.5f, 1.0, 0, 0, true, 0, 1000, 0, 2);
+
+        engine.play(constant(1f), 0.5f, 1.0, 0, 0, true, 0, 1000, 0, 3);
+
+        assertEquals(-1, engine.getPosition(first));
+        assertTrue(engine.getPosition(second) >= 0);
+    }
+
+    @Test
+    void aVoiceThatFailsToReadIsDroppedAndTheOthersPlayOn() throws Exception {
+        File file = directory.resolve("truncated.wav").toFile();
+        int frames = 1 << 16;
+        AudioFormat format = new AudioFormat(SampleEngine.DEFAULT_SAMPLE_RATE, 16, 1, true, false);
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(new byte[frames * 2]), format, frames),
+                AudioFileFormat.Type.WAVE, file);
+        PcmSample mapped = new SampleStore(SampleStore.DEFAULT_STREAM_THRESHOLD).open(file);
+        // Cut the file under its mapping, as an editor saving over it might
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(1024);
+        }
+
+        SampleEngine engine = new SampleEngine(SampleEngine.DEFAULT_SAMPLE_RATE, 2, PERIOD);
+        float[] out = new float[PERIOD * 2];
+        long broken = engine.play(mapped, 1f, 1.0, frames / 2, 0, false, 0, 0, 0, 1);
+        long healthy = engine.play(constant(1f), 0.5f, 1.0, 0, 0, true, 0, 1000, 0, 2);
+        engine.render(out, PERIOD);
+
+        assertEquals(-1, engine.getPosition(broken));
+        assertTrue(engine.getPosition(healthy) >= 0);
+        assertEquals(1, engine.getFailedVoiceCount());
+        assertEquals(0.5f, out[2 * (PERIOD - 1)], 1e-6);
+    }
+
+    @Test
+    void staleAndForeignHandlesAreIgnored() {
+        SampleEngine engine = new SampleEngine(SampleEngine.DEFAULT_SAMPLE_RATE, 2, PERIOD);
+        long handle = engine.play(constant(1f), 0.5f, 1.0, 0, 0, true, 0, 1000, 0, 1);
+
+        // An index past the pool, a negative handle, and the same slot from another generation
+        engine.stop(handle | 0xFFFF);
+        engine.stop(-1);
+        engine.stop(handle + (1 << 16));
+        assertEquals(-1, engine.getPosition(handle | 0xFFFF));
+        assertEquals(-1, engine.getPosition(handle + (1 << 16)));
+
+        assertTrue(engine.getPosition(handle) >= 0);
+        assertEquals(1, engine.getActiveVoices());
+    }
+
+    private static PcmSample constant(float value) {
+        float[] data = new float[2000];
+        Arrays.fill(data, value);
+        return new PcmSample(data, 1, SampleEngine.DEFAULT_SAMPLE_RATE);
+    }
+}
@@ -0,0 +1,97 @@
+package com.angrysurfer.core.audio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SampleStoreTest {
+
+    private static final AudioFormat FORMAT = new AudioFormat(SampleEngine.DEFAULT_SAMPLE_RATE, 16, 1, true, false);
+    // Two segments, so a streamed sample has one left to map
+    private static final int FRAMES = (1 << MappedFrames.SEGMENT_SHIFT) + 1000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void anUnchangedFileIsLoadedOnce() throws Exception {
+        File file = directory.resolve("kick.wav").toFile();
+        write(file, FRAMES, (short) 4096);
+        SampleStore store = new SampleStore(SampleStore.DEFAULT_STREAM_THRESHOLD);
+
+        PcmSample sample = store.open(file);
+
+        assertSame(sample, store.open(file));
+        assertEquals(PcmSample.Storage.MAPPED, sample.getStorage());
+        assertEquals(0.125f, sample.get(FRAMES - 1, 0));
+    }
+
+    @Test
+    void aReplacedStreamedSampleClosesItsFile() throws Exception {
+        File file = directory.resolve("pad.wav").toFile();
+        write(file, FRAMES, (short) 4096);
+        SampleStore store = new SampleStore(0);
+        PcmSample old = store.open(file);
+        assertEquals(PcmSample.Storage.STREAMED, old.getStorage());
+        assertEquals(0.125f, old.get(0, 0));
+
+        // Saved over by another program: a new file moved into place
+        File saved = directory.resolve("pad-saved.wav").toFile();
+        write(saved, FRAMES + 1, (short) 8192);
+        Files.move(saved.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        PcmSample current = store.open(file);
+
+        assertNotSame(old, current);
+        assertEquals(0.25f, current.get(FRAMES, 0));
+        // The old sample keeps what it had mapped; its unread segment can no longer reach the file
+        assertEquals(0.125f, old.get(0, 0));
+        assertEquals(0f, old.get(FRAMES - 1, 0));
+    }
+
+    @Test
+    void theAudioThreadsReadOfAStreamedSampleNeverMaps() throws Exception {
+        File file = directory.resolve("pad.wav").toFile();
+        write(file, FRAMES, (short) 4096);
+        PcmSample sample = new SampleStore(0).open(file);
+        int second = 1 << MappedFrames.SEGMENT_SHIFT;
+
+        // The first segment is mapped up front; the second is not, so it plays silence
+        assertEquals(0.125f, sample.getResident(0, 0));
+        assertEquals(0f, sample.getResident(second, 0));
+        assertEquals(1, sample.getStreamMisses());
+
+        // ...until the prefetch thread has mapped what the miss asked for
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sample.getResident(second, 0) == 0f && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0.125f, sample.getResident(second, 0));
+        assertEquals(0.125f, sample.getResident(FRAMES - 1, 0));
+        sample.close();
+    }
+
+    private static void write(File file, int frames, short value) throws Exception {
+        byte[] bytes = new byte[frames * 2];
+        for (int i = 0; i < bytes.length; i += 2) {
+            bytes[i] = (byte) value;
+            bytes[i + 1] = (byte) (value >> 8);
+        }
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(bytes), FORMAT, frames),
+                AudioFileFormat.Type.WAVE, file);
+    }
+}
@@ -0,0 +1,122 @@
+package com.angrysurfer.core.audio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class SampleVoiceTest {
+
+    private static final int FRAMES = 4096;
+    // A sine period of 64 frames, well below any kernel's cutoff
+    private static final int PERIOD = 64;
+
+    @Test
+    void everyKernelHoldsAConstant() {
+        float[] data = new float[FRAMES];
+        Arrays.fill(data, 0.3f);
+        for (Interpolation kernel : Interpolation.values()) {
+            float[] out = render(voice(data, kernel, 100.25, 0.37), 1000);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(0.3f, out[2 * i], 1e-5, kernel + " frame " + i);
+            }
+        }
+    }
+
+    @Test
+    void everyKernelPassesThroughTheFrames() {
+        float[] data = sine(FRAMES);
+        for (Interpolation kernel : Interpolation.values()) {
+            float[] out = render(voice(data, kernel, 100, 1.0), 1000);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(data[100 + i], out[2 * i], 1e-5, kernel + " frame " + i);
+            }
+        }
+    }
+
+    @Test
+    void linearAndCubicFollowARampExactly() {
+        float[] data = new float[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            data[i] = i / (float) FRAMES;
+        }
+        for (Interpolation kernel : new Interpolation[]{Interpolation.LINEAR, Interpolation.CUBIC}) {
+            float[] out = render(voice(data, kernel, 100, 0.61), 1000);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals((100 + i * 0.61) / FRAMES, out[2 * i], 1e-5, kernel + " frame " + i);
+            }
+        }
+    }
+
+    @Test
+    void everyKernelFollowsASlowSineBetweenFrames() {
+        float[] data = sine(FRAMES);
+        for (Interpolation kernel : Interpolation.values()) {
+            float[] out = render(voice(data, kernel, 100, 0.73), 2000);
+            for (int i = 0; i < 2000; i++) {
+                assertEquals(sineAt(100 + i * 0.73), out[2 * i], 0.005, kernel + " frame " + i);
+            }
+        }
+    }
+
+    @Test
+    void everyKernelIsContinuousAcrossTheLoopPoint() {
+        int loopStart = 1024;
+        int loopEnd = loopStart + 10 * PERIOD;
+        // The loop holds whole sine periods; everything outside it is far off the sine
+        float[] data = new float[FRAMES];
+        Arrays.fill(data, 5f);
+        for (int i = loopStart; i < loopEnd; i++) {
+            data[i] = sineAt(i - loopStart);
+        }
+        double rate = 0.73;
+        for (Interpolation kernel : Interpolation.values()) {
+            // Start clear of the frames before the loop, which the voice hasn't reached by wrapping
+            double position = loopStart + Interpolation.SINC_TAPS;
+            SampleVoice voice = voice(data, kernel, position, rate);
+            voice.looping = true;
+            voice.loopStart = loopStart;
+            voice.loopEnd = loopEnd;
+
+            int frames = (int) (3 * (loopEnd - loopStart) / rate);
+            float[] out = render(voice, frames);
+            for (int i = 0; i < frames; i++) {
+                assertEquals(sineAt(position - loopStart), out[2 * i], 0.005, kernel + " frame " + i);
+                position += rate;
+                if (position >= loopEnd) {
+                    position -= loopEnd - loopStart;
+                }
+            }
+        }
+    }
+
+    private static SampleVoice voice(float[] data, Interpolation kernel, double position, double rate) {
+        SampleVoice voice = new SampleVoice(0);
+        voice.sample = new PcmSample(data, 1, SampleEngine.DEFAULT_SAMPLE_RATE);
+        voice.position = position;
+        voice.increment = rate;
+        voice.end = data.length;
+        voice.interpolation = kernel;
+        voice.gain = 1f;
+        return voice;
+    }
+
+    private static float[] render(SampleVoice voice, int frames) {
+        float[] out = new float[frames * 2];
+        voice.render(out, frames);
+        return out;
+    }
+
+    private static float[] sine(int frames) {
+        float[] data = new float[frames];
+        for (int i = 0; i < frames; i++) {
+            data[i] = sineAt(i);
+        }
+        return data;
+    }
+
+    private static float sineAt(double frame) {
+        return (float) Math.sin(2 * Math.PI * frame / PERIOD);
+    }
+}
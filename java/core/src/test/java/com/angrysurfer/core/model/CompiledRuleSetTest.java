@@ -0,0 +1,137 @@
+package com.angrysurfer.core.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.angrysurfer.core.sequencer.TimingFrame;
+
+class CompiledRuleSetTest {
+
+    private static final int[] CATEGORIES = {Comparison.TICK, Comparison.BEAT, Comparison.BAR,
+            Comparison.TICK_COUNT, Comparison.BEAT_COUNT, Comparison.BAR_COUNT, Comparison.PART_COUNT};
+
+    @Test
+    void emptyRulesMatchEveryFrame() {
+        assertSame(CompiledRuleSet.EMPTY, CompiledRuleSet.compile(null));
+        assertSame(CompiledRuleSet.EMPTY, CompiledRuleSet.compile(List.of()));
+        assertTrue(CompiledRuleSet.EMPTY.matches(frame(3, 2, 1, 100, 4, 1, 0)));
+        assertFalse(CompiledRuleSet.EMPTY.isPeriodic());
+    }
+
+    @Test
+    void rulesAreOredWithinACategoryAndAndedAcross() {
+        CompiledRuleSet rules = CompiledRuleSet.compile(List.of(
+                rule(Comparison.BEAT, Operator.EQUALS, 1),
+                rule(Comparison.BEAT, Operator.EQUALS, 3),
+                rule(Comparison.TICK, Operator.EQUALS, 1)));
+
+        assertTrue(rules.matches(frame(1, 1, 1, 0, 0, 0, 0)));
+        assertTrue(rules.matches(frame(1, 3, 1, 0, 0, 0, 0)));
+        assertFalse(rules.matches(frame(1, 2, 1, 0, 0, 0, 0)));
+        assertFalse(rules.matches(frame(2, 3, 1, 0, 0, 0, 0)));
+        assertEquals(3, rules.getRuleCount());
+        assertTrue(rules.isPeriodic());
+    }
+
+    @Test
+    void positionsOutsideTheMaskAreEvaluatedDirectly() {
+        CompiledRuleSet rules = CompiledRuleSet.compile(List.of(
+                rule(Comparison.TICK, Operator.GREATER_THAN, 600)));
+
+        assertFalse(rules.matchesPosition(CompiledRuleSet.MASK_SIZE - 1, 1, 1));
+        assertFalse(rules.matchesPosition(600, 1, 1));
+        assertTrue(rules.matchesPosition(601, 1, 1));
+    }
+
+    @Test
+    void fractionalBeatsAreEvaluatedDirectly() {
+        CompiledRuleSet rules = CompiledRuleSet.compile(List.of(
+                rule(Comparison.BEAT, Operator.EQUALS, 1.5)));
+
+        assertTrue(rules.matchesPosition(1, 1.5, 1));
+        assertFalse(rules.matchesPosition(1, 1, 1));
+        assertFalse(rules.matchesPosition(1, 2, 1));
+    }
+
+    @Test
+    void integralModuloIsExactOnLargeCounters() {
+        CompiledRuleSet rules = CompiledRuleSet.compile(List.of(
+                rule(Comparison.TICK_COUNT, Operator.MODULO, 3)));
+        long large = 3L << 40;
+
+        assertTrue(rules.matches(frame(1, 1, 1, large, 0, 0, 0)));
+        assertFalse(rules.matches(frame(1, 1, 1, large + 1, 0, 0, 0)));
+        assertTrue(rules.hasCountRules());
+        assertFalse(rules.isPeriodic());
+    }
+
+    @Test
+    void incompleteAndPartRulesAreSkipped() {
+        Rule noValue = rule(Comparison.TICK, Operator.EQUALS, 1);
+        noValue.setValue(null);
+        CompiledRuleSet rules = CompiledRuleSet.compile(List.of(noValue,
+                rule(Comparison.PART, Operator.EQUALS, 2),
+                rule(Comparison.BEAT_DURATION, Operator.EQUALS, 2)));
+
+        assertSame(CompiledRuleSet.EMPTY, rules);
+    }
+
+    @Test
+    void matchesTheRuleLoopOnRandomRules() {
+        Random random = new Random(7);
+        for (int set = 0; set < 200; set++) {
+            List<Rule> rules = new ArrayList<>();
+            for (int i = 0, n = 1 + random.nextInt(6); i < n; i++) {
+                int category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+                int comparison = random.nextInt(5);
+                double value = random.nextInt(4) == 0 ? random.nextInt(8) + 0.5 : random.nextInt(12);
+                rules.add(rule(category, comparison, value));
+            }
+            CompiledRuleSet compiled = CompiledRuleSet.compile(rules);
+            for (int t = 0; t < 2000; t++) {
+                TimingFrame frame = frame(t % 24 + 1, (t / 24) % 4 + 1 + (t % 2) * 0.5, (t / 96) % 4 + 1,
+                        t, t / 24, t / 96, t / 384);
+                assertEquals(ruleLoop(rules, frame), compiled.matches(frame), "rule set " + set + " tick " + t);
+            }
+        }
+    }
+
+    // The rule loop Player.shouldPlay ran before rules were compiled
+    private static boolean ruleLoop(List<Rule> rules, TimingFrame frame) {
+        double[] values = {frame.getTick(), frame.getBeat(), frame.getBar(), frame.getTickCount(),
+                frame.getBeatCount(), frame.getBarCount(), frame.getPartCount()};
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            boolean any = false;
+            boolean matched = false;
+            for (Rule rule : rules) {
+                if (rule.getOperator() == CATEGORIES[c]) {
+                    any = true;
+                    matched |= Operator.evaluate(rule.getComparison(), values[c], rule.getValue());
+                }
+            }
+            if (any && !matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Rule rule(int category, int comparison, double value) {
+        return new Rule(category, comparison, value, 0);
+    }
+
+    private static TimingFrame frame(long tick, double beat, int bar, long tickCount, int beatCount,
+                                     int barCount, int partCount) {
+        TimingFrame frame = new TimingFrame();
+        frame.update(tick, beat, bar, 1, tickCount, beatCount, barCount, partCount);
+        return frame;
+    }
+}
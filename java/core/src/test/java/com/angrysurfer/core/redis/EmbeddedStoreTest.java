@@ -0,0 +1,341 @@
+package com.angrysurfer.core.redis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+
+class EmbeddedStoreTest {
+
+    private EmbeddedStore store;
+    private JedisPool pool;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        connect(EmbeddedStore.inMemory());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.close();
+        store.close();
+    }
+
+    @Test
+    void stringsAndCounters() {
+        try (Jedis jedis = pool.getResource()) {
+            assertEquals("OK", jedis.set("session:1", "{\"id\":1}"));
+            assertEquals("{\"id\":1}", jedis.get("session:1"));
+            assertNull(jedis.get("session:2"));
+            assertEquals(Arrays.asList("{\"id\":1}", null), jedis.mget("session:1", "session:2"));
+
+            assertEquals(1, jedis.incr("seq:player"));
+            assertEquals(11, jedis.incrBy("seq:player", 10));
+            assertEquals("11", jedis.get("seq:player"));
+
+            assertTrue(jedis.exists("session:1"));
+            assertEquals(1, jedis.del("session:1", "session:2"));
+            assertFalse(jedis.exists("session:1"));
+        }
+    }
+
+    @Test
+    void binaryValuesComeBackExactly() {
+        byte[] key = "drumseq:1".getBytes(StandardCharsets.UTF_8);
+        byte[] value = new byte[256];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) i;
+        }
+        try (Jedis jedis = pool.getResource()) {
+            jedis.set(key, value);
+            assertArrayEquals(value, jedis.get(key));
+        }
+    }
+
+    @Test
+    void sets() {
+        try (Jedis jedis = pool.getResource()) {
+            assertEquals(2, jedis.sadd("player:1:rules", "10", "11"));
+            assertEquals(0, jedis.sadd("player:1:rules", "10"));
+            assertEquals(Set.of("10", "11"), jedis.smembers("player:1:rules"));
+            assertTrue(jedis.sismember("player:1:rules", "11"));
+            assertEquals(2, jedis.scard("player:1:rules"));
+
+            assertEquals(2, jedis.srem("player:1:rules", "10", "11", "12"));
+            // An emptied set is gone, as in Redis
+            assertFalse(jedis.exists("player:1:rules"));
+            assertEquals(Set.of(), jedis.smembers("player:1:rules"));
+        }
+    }
+
+    @Test
+    void hashes() {
+        try (Jedis jedis = pool.getResource()) {
+            assertEquals(2, jedis.hset("drum-sequences", Map.of("1", "a", "2", "b")));
+            assertEquals(0, jedis.hset("drum-sequences", "1", "c"));
+            assertEquals("c", jedis.hget("drum-sequences", "1"));
+            assertEquals(Map.of("1", "c", "2", "b"), jedis.hgetAll("drum-sequences"));
+            assertEquals(Set.of("1", "2"), jedis.hkeys("drum-sequences"));
+            assertEquals(2, jedis.hlen("drum-sequences"));
+            assertTrue(jedis.hexists("drum-sequences", "2"));
+
+            assertEquals(2, jedis.hdel("drum-sequences", "1", "2"));
+            assertFalse(jedis.exists("drum-sequences"));
+        }
+    }
+
+    @Test
+    void sortedSets() {
+        try (Jedis jedis = pool.getResource()) {
+            jedis.zadd("index:players", 3, "3");
+            jedis.zadd("index:players", 1, "1");
+            jedis.zadd("index:players", 2, "2");
+            jedis.zadd("index:players", 10, "10");
+
+            assertEquals(List.of("1", "2", "3", "10"), jedis.zrange("index:players", 0, -1));
+            assertEquals(List.of("1", "2"), jedis.zrange("index:players", 0, 1));
+            assertEquals(List.of("3", "10"), jedis.zrangeByScore("index:players", "(2", "+inf"));
+            assertEquals(List.of("2"), jedis.zrangeByScore("index:players", "-inf", "+inf", 1, 1));
+            assertEquals(List.of("3", "2"), jedis.zrevrangeByScore("index:players", "(10", "2"));
+            assertEquals(10.0, jedis.zscore("index:players", "10"));
+            assertEquals(4, jedis.zcard("index:players"));
+
+            // Re-adding moves the member
+            jedis.zadd("index:players", 0, "10");
+            assertEquals("10", jedis.zrange("index:players", 0, 0).get(0));
+            assertEquals(1, jedis.zrem("index:players", "10"));
+            assertEquals(3, jedis.zcard("index:players"));
+        }
+    }
+
+    @Test
+    void scanMatchesInOneCall() {
+        try (Jedis jedis = pool.getResource()) {
+            jedis.set("player:strike:1", "a");
+            jedis.set("player:note:2", "b");
+            jedis.set("session:1", "c");
+
+            ScanResult<String> result = jedis.scan(ScanParams.SCAN_POINTER_START,
+                    new ScanParams().match("player:*").count(100));
+            assertEquals("0", result.getCursor());
+            assertEquals(Set.of("player:strike:1", "player:note:2"), new HashSet<>(result.getResult()));
+        }
+    }
+
+    @Test
+    void multiExecRunsTheQueuedCommandsTogether() {
+        try (Jedis jedis = pool.getResource()) {
+            Transaction transaction = jedis.multi();
+            transaction.set("rule:1", "x");
+            transaction.sadd("player:1:rules", "1");
+            transaction.incr("seq:rule");
+            List<Object> results = transaction.exec();
+
+            assertEquals(List.of("OK", 1L, 1L), results);
+            assertEquals("x", jedis.get("rule:1"));
+
+            transaction = jedis.multi();
+            transaction.set("rule:2", "y");
+            transaction.discard();
+            assertNull(jedis.get("rule:2"));
+        }
+    }
+
+    @Test
+    void unsupportedCommandsFailWithoutTouchingData() {
+        try (Jedis jedis = pool.getResource()) {
+            assertThrows(JedisDataException.class, () -> jedis.lpush("list", "a"));
+            assertThrows(JedisDataException.class, () -> jedis.sendCommand(() -> "SET".getBytes(), "k", "v", "NX"));
+            assertFalse(jedis.exists("k"));
+            assertEquals("PONG", jedis.ping());
+        }
+    }
+
+    @Test
+    void logReplaysOnReopen() throws Exception {
+        reopen();
+        try (Jedis jedis = pool.getResource()) {
+            jedis.set("session:1", "one");
+            jedis.sadd("session:1:players:strike", "1", "2");
+            jedis.srem("session:1:players:strike", "2");
+            jedis.hset("drum-sequences", "1", "a");
+            jedis.zadd("index:sessions", 1, "1");
+            jedis.incrBy("seq:session", 5);
+            jedis.set("rule:9", "gone");
+            jedis.del("rule:9");
+        }
+
+        reopen();
+        try (Jedis jedis = pool.getResource()) {
+            assertEquals("one", jedis.get("session:1"));
+            assertEquals(Set.of("1"), jedis.smembers("session:1:players:strike"));
+            assertEquals("a", jedis.hget("drum-sequences", "1"));
+            assertEquals(List.of("1"), jedis.zrange("index:sessions", 0, -1));
+            assertEquals("5", jedis.get("seq:session"));
+            assertFalse(jedis.exists("rule:9"));
+            assertEquals(5, jedis.dbSize());
+        }
+    }
+
+    @Test
+    void flushSurvivesReopen() throws Exception {
+        reopen();
+        try (Jedis jedis = pool.getResource()) {
+            jedis.set("session:1", "one");
+            jedis.sadd("session:1:players:note", "3");
+            jedis.flushDB();
+            jedis.set("session:2", "two");
+        }
+
+        reopen();
+        try (Jedis jedis = pool.getResource()) {
+            assertFalse(jedis.exists("session:1"));
+            assertFalse(jedis.exists("session:1:players:note"));
+            assertEquals("two", jedis.get("session:2"));
+            assertEquals(1, jedis.dbSize());
+        }
+    }
+
+    @Test
+    void compactionKeepsTheData() throws Exception {
+        reopen();
+        try (Jedis jedis = pool.getResource()) {
+            for (int i = 0; i < 50; i++) {
+                jedis.set("session:1", "v" + i);
+                jedis.zadd("index:sessions", i, "1");
+            }
+            jedis.hset("drum-sequences", "1", "a");
+        }
+        store.compact();
+
+        reopen();
+        try (Jedis jedis = pool.getResource()) {
+            assertEquals("v49", jedis.get("session:1"));
+            assertEquals(49.0, jedis.zscore("index:sessions", "1"));
+            assertEquals("a", jedis.hget("drum-sequences", "1"));
+        }
+    }
+
+    @Test
+    void aDamagedCommandMidLogFailsTheOpenAndLosesNothing() throws Exception {
+        Path log = logWithThreeSessions();
+        byte[] bytes = Files.readAllBytes(log);
+        // The bulk-string marker of the second command's key
+        int damage = indexOf(bytes, "$9\r\nsession:2".getBytes(StandardCharsets.ISO_8859_1));
+        bytes[damage] = '#';
+        Files.write(log, bytes);
+
+        assertThrows(IOException.class, () -> EmbeddedStore.open(directory));
+        assertArrayEquals(bytes, Files.readAllBytes(log));
+
+        // Put right, everything after the damage is still there
+        bytes[damage] = '$';
+        Files.write(log, bytes);
+        connect(EmbeddedStore.open(directory));
+        try (Jedis jedis = pool.getResource()) {
+            assertEquals("one", jedis.get("session:1"));
+            assertEquals("two", jedis.get("session:2"));
+            assertEquals("three", jedis.get("session:3"));
+        }
+    }
+
+    @Test
+    void aDamagedLengthThatRunsOffTheEndIsNotTakenForATornTail() throws Exception {
+        Path log = logWithThreeSessions();
+        byte[] bytes = Files.readAllBytes(log);
+        // The first value's length, 3, becomes 999: past the rest of the log
+        int damage = indexOf(bytes, "$3\r\none".getBytes(StandardCharsets.ISO_8859_1)) + 1;
+        byte[] damaged = new byte[bytes.length + 2];
+        System.arraycopy(bytes, 0, damaged, 0, damage);
+        damaged[damage] = damaged[damage + 1] = damaged[damage + 2] = '9';
+        System.arraycopy(bytes, damage + 1, damaged, damage + 3, bytes.length - damage - 1);
+        Files.write(log, damaged);
+
+        assertThrows(IOException.class, () -> EmbeddedStore.open(directory));
+        assertArrayEquals(damaged, Files.readAllBytes(log));
+    }
+
+    @Test
+    void aCommandCutShortAtTheEndIsDropped() throws Exception {
+        Path log = logWithThreeSessions();
+        byte[] bytes = Files.readAllBytes(log);
+        int torn = indexOf(bytes, "three".getBytes(StandardCharsets.ISO_8859_1)) + 2;
+        Files.write(log, Arrays.copyOf(bytes, torn));
+
+        connect(EmbeddedStore.open(directory));
+        try (Jedis jedis = pool.getResource()) {
+            assertEquals("two", jedis.get("session:2"));
+            assertFalse(jedis.exists("session:3"));
+            // New writes line up after the dropped command
+            jedis.set("session:4", "four");
+        }
+        reopen();
+        try (Jedis jedis = pool.getResource()) {
+            assertEquals("four", jedis.get("session:4"));
+            assertEquals(3, jedis.dbSize());
+        }
+    }
+
+    // Write three sessions to a fresh log and close it
+    private Path logWithThreeSessions() throws Exception {
+        reopen();
+        try (Jedis jedis = pool.getResource()) {
+            jedis.set("session:1", "one");
+            jedis.set("session:2", "two");
+            jedis.set("session:3", "three");
+        }
+        pool.close();
+        store.close();
+        return directory.resolve(EmbeddedStore.LOG_FILE);
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        for (int i = 0; i + part.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + part.length, part, 0, part.length)) {
+                return i;
+            }
+        }
+        throw new AssertionError("not in the log: " + new String(part, StandardCharsets.ISO_8859_1));
+    }
+
+    // Close the current store and open the one kept in the temp directory
+    private void reopen() throws Exception {
+        pool.close();
+        store.close();
+        connect(EmbeddedStore.open(directory));
+    }
+
+    private void connect(EmbeddedStore opened) {
+        store = opened;
+        pool = new JedisPool(new JedisPoolConfig(), store.socketFactory(), DefaultJedisClientConfig.builder().build());
+    }
+}
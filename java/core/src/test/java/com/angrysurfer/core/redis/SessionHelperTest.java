@@ -0,0 +1,169 @@
+package com.angrysurfer.core.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.angrysurfer.core.model.Note;
+import com.angrysurfer.core.model.Player;
+import com.angrysurfer.core.model.Rule;
+import com.angrysurfer.core.model.Session;
+import com.angrysurfer.core.model.Strike;
+import com.angrysurfer.core.util.SessionDeserializer;
+import com.angrysurfer.core.util.demo.StandInRedis;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+class SessionHelperTest {
+
+    private StandInRedis redis;
+    private JedisPool pool;
+    private SessionHelper sessionHelper;
+    private PlayerHelper playerHelper;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redis = new StandInRedis(0);
+        pool = new JedisPool(new JedisPoolConfig(), "127.0.0.1", redis.getPort());
+        sessionHelper = new SessionHelper(pool, createObjectMapper());
+        playerHelper = sessionHelper.getPlayerHelper();
+        // Each test starts from an empty store, so nothing saved before is stored
+        PlayerHelper.forgetAll();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.close();
+        redis.close();
+    }
+
+    @Test
+    void sessionLoadsWithPlayersAndRulesInThreeRoundTrips() {
+        Session session = saveSession(1L, 10, 3);
+
+        redis.resetCounters();
+        Session loaded = sessionHelper.findSessionById(1L);
+
+        assertEquals(3, redis.getRoundTrips());
+        assertNotNull(loaded);
+        assertEquals(rulesByPlayer(session.getPlayers()), rulesByPlayer(loaded.getPlayers()));
+        for (Player player : loaded.getPlayers()) {
+            assertSame(loaded, player.getSession());
+        }
+    }
+
+    @Test
+    void sessionWithoutPlayersLoadsInOneRoundTrip() {
+        saveSession(2L, 0, 0);
+
+        redis.resetCounters();
+        Session loaded = sessionHelper.findSessionById(2L);
+
+        assertEquals(1, redis.getRoundTrips());
+        assertTrue(loaded.getPlayers().isEmpty());
+    }
+
+    @Test
+    void missingSessionIsNull() {
+        assertNull(sessionHelper.findSessionById(99L));
+    }
+
+    @Test
+    void playersLoadByIdsWithTheirRules() {
+        Session session = saveSession(3L, 6, 2);
+        Map<String, Set<String>> idsByType = Map.of(
+                "Strike", Set.of("1", "3", "5", "404"),
+                "Note", Set.of("2"));
+
+        List<Player> players;
+        try (Jedis jedis = pool.getResource()) {
+            redis.resetCounters();
+            players = playerHelper.findPlayersByIds(jedis, idsByType);
+        }
+
+        // One pipeline of MGETs and SMEMBERS, then one MGET of every rule
+        assertEquals(2, redis.getRoundTrips());
+        Set<Player> expected = session.getPlayers().stream()
+                .filter(player -> player.getId() <= 5 && player.getId() != 4)
+                .collect(Collectors.toSet());
+        assertEquals(rulesByPlayer(expected), rulesByPlayer(players));
+        for (Player player : players) {
+            assertEquals(player.getId() % 2 == 1 ? Strike.class : Note.class, player.getClass());
+        }
+    }
+
+    @Test
+    void noIdsMeansNoRoundTrips() {
+        try (Jedis jedis = pool.getResource()) {
+            redis.resetCounters();
+            assertTrue(playerHelper.findPlayersByIds(jedis, Map.of()).isEmpty());
+            assertTrue(playerHelper.findPlayersByIds(jedis, Map.of("Strike", Set.of())).isEmpty());
+        }
+        assertEquals(0, redis.getRoundTrips());
+    }
+
+    // Odd ids are Strikes, even ids Notes
+    private Session saveSession(long id, int playerCount, int rulesPerPlayer) {
+        Session session = new Session();
+        session.setId(id);
+        session.setPlayers(new HashSet<>());
+        for (int i = 1; i <= playerCount; i++) {
+            Player player = i % 2 == 1 ? new Strike() : new Note();
+            player.setId((long) i);
+            player.setName("Player " + i);
+            player.setSession(session);
+            Set<Rule> rules = new HashSet<>();
+            for (int r = 0; r < rulesPerPlayer; r++) {
+                Rule rule = new Rule(r, 0, (double) i, 0);
+                rule.setId(i * 100L + r);
+                rules.add(rule);
+            }
+            player.setRules(rules);
+            playerHelper.savePlayer(player);
+            session.getPlayers().add(player);
+        }
+        sessionHelper.saveSession(session);
+        return session;
+    }
+
+    // Player id to its sorted rule ids, for comparing loads
+    private static Map<Long, Set<Long>> rulesByPlayer(Iterable<Player> players) {
+        Map<Long, Set<Long>> result = new TreeMap<>();
+        for (Player player : players) {
+            result.put(player.getId(), player.getRules().stream().map(Rule::getId)
+                    .collect(Collectors.toCollection(TreeSet::new)));
+        }
+        return result;
+    }
+
+    // Same configuration as RedisService
+    private static ObjectMapper createObjectMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        SimpleModule module = new SimpleModule();
+        module.addDeserializer(Session.class, new SessionDeserializer());
+        mapper.registerModule(module);
+        return mapper;
+    }
+}
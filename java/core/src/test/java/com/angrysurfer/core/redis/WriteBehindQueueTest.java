@@ -0,0 +1,134 @@
+package com.angrysurfer.core.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class WriteBehindQueueTest {
+
+    // Long enough that nothing is written until the test flushes
+    private static final long HOLD_MS = 60_000;
+
+    private final List<String> written = new CopyOnWriteArrayList<>();
+
+    @Test
+    void repeatedSavesOfAKeyBecomeOneWrite() {
+        WriteBehindQueue queue = WriteBehindQueue.start("test-writer", HOLD_MS);
+        queue.enqueue("player:1", () -> written.add("player:1 v1"));
+        queue.enqueue("session:1", () -> written.add("session:1"));
+        queue.enqueue("player:1", () -> written.add("player:1 v2"));
+        queue.enqueue("player:1", () -> written.add("player:1 v3"));
+
+        assertEquals(2, queue.getQueueDepth());
+        // The replaced save keeps its place ahead of later keys
+        assertEquals(List.of("player:1", "session:1"), queue.getPendingKeys());
+        queue.flush();
+
+        assertEquals(List.of("player:1 v3", "session:1"), written);
+        assertEquals(4, queue.getEnqueuedCount());
+        assertEquals(2, queue.getCoalescedCount());
+        assertEquals(2, queue.getWrittenCount());
+        assertEquals(1, queue.getBatchCount());
+        assertEquals(0, queue.getQueueDepth());
+        queue.shutdown(1000);
+    }
+
+    @Test
+    void steadyEditingCannotPostponeAKeyPastTheDelay() throws InterruptedException {
+        WriteBehindQueue queue = WriteBehindQueue.start("test-writer", 20);
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+        int edit = 0;
+        while (System.nanoTime() < end) {
+            String value = "edit " + edit++;
+            queue.enqueue("player:1", () -> written.add(value));
+            Thread.sleep(2);
+        }
+        queue.shutdown(1000);
+
+        // Without the age carried over, every edit would reset the delay and only the last would land
+        assertTrue(written.size() > 2, "writes: " + written.size());
+        assertEquals("edit " + (edit - 1), written.get(written.size() - 1));
+    }
+
+    @Test
+    void cancelDropsAPendingSave() {
+        WriteBehindQueue queue = WriteBehindQueue.start("test-writer", HOLD_MS);
+        queue.enqueue("drumseq:4", () -> written.add("drumseq:4"));
+
+        assertTrue(queue.isPending("drumseq:4"));
+        assertTrue(queue.cancel("drumseq:4"));
+        assertFalse(queue.isPending("drumseq:4"));
+        assertFalse(queue.cancel("drumseq:4"));
+        queue.flush();
+
+        assertTrue(written.isEmpty());
+        queue.shutdown(1000);
+    }
+
+    @Test
+    void cancelWaitsOutASaveBeingWritten() throws InterruptedException {
+        WriteBehindQueue queue = WriteBehindQueue.start("test-writer", 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queue.enqueue("session:2", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.add("session:2");
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        releaser.start();
+        // Already taken by the writer, so nothing to drop, but a delete may only follow the write
+        assertFalse(queue.cancel("session:2"));
+
+        assertEquals(List.of("session:2"), written);
+        releaser.join();
+        queue.shutdown(1000);
+    }
+
+    @Test
+    void aFailedSaveDoesNotStopTheBatch() {
+        WriteBehindQueue queue = WriteBehindQueue.start("test-writer", HOLD_MS);
+        queue.enqueue("player:1", () -> {
+            throw new IllegalStateException("connection lost");
+        });
+        queue.enqueue("player:2", () -> written.add("player:2"));
+        queue.flush();
+
+        assertEquals(List.of("player:2"), written);
+        assertEquals(1, queue.getFailedCount());
+        assertEquals(1, queue.getWrittenCount());
+        queue.shutdown(1000);
+    }
+
+    @Test
+    void shutdownDrainsTheQueueAndLaterSavesRunOnTheCaller() {
+        WriteBehindQueue queue = WriteBehindQueue.start("test-writer", HOLD_MS);
+        queue.enqueue("player:1", () -> written.add("player:1"));
+        queue.shutdown(1000);
+
+        assertEquals(List.of("player:1"), written);
+        queue.enqueue("player:2", () -> written.add(Thread.currentThread().getName()));
+        assertEquals(Thread.currentThread().getName(), written.get(1));
+        assertEquals(0, queue.getQueueDepth());
+    }
+}
@@ -0,0 +1,214 @@
+package com.angrysurfer.core.sequencer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class DrumSequenceDataTest {
+
+    @Test
+    void newStepsHoldTheDefaults() {
+        DrumSequenceData data = new DrumSequenceData();
+
+        assertEquals(SequencerConstants.DEFAULT_VELOCITY, data.getStepVelocity(3, 10));
+        assertEquals(SequencerConstants.DEFAULT_PROBABILITY, data.getStepProbability(3, 10));
+        assertEquals(SequencerConstants.DEFAULT_PAN, data.getStepPan(3, 10));
+        assertEquals(SequencerConstants.DEFAULT_DECAY, data.getStepDecay(3, 10));
+        assertEquals(0, data.getStepNudge(3, 10));
+        assertFalse(data.isStepAccented(3, 10));
+    }
+
+    @Test
+    void eachFieldIsWrittenWithoutDisturbingTheOthers() {
+        DrumSequenceData data = new DrumSequenceData();
+        data.setStepVelocity(2, 5, 101);
+        data.setStepProbability(2, 5, 55);
+        data.setStepPan(2, 5, 12);
+        data.setStepChorus(2, 5, 127);
+        data.setStepReverb(2, 5, 0);
+        data.setStepDecay(2, 5, 9000);
+        data.setStepNudge(2, 5, -17);
+        data.setStepAccent(2, 5, true);
+
+        long word = data.getStepWord(2, 5);
+        assertEquals(101, DrumSequenceData.velocityOf(word));
+        assertEquals(55, DrumSequenceData.probabilityOf(word));
+        assertEquals(12, DrumSequenceData.panOf(word));
+        assertEquals(127, DrumSequenceData.chorusOf(word));
+        assertEquals(0, DrumSequenceData.reverbOf(word));
+        assertEquals(9000, DrumSequenceData.decayOf(word));
+        assertEquals(-17, DrumSequenceData.nudgeOf(word));
+        assertTrue(DrumSequenceData.isAccented(word));
+
+        // Neighbouring steps and drums keep their defaults
+        assertEquals(SequencerConstants.DEFAULT_VELOCITY, data.getStepVelocity(2, 4));
+        assertEquals(SequencerConstants.DEFAULT_VELOCITY, data.getStepVelocity(2, 6));
+        assertEquals(SequencerConstants.DEFAULT_VELOCITY, data.getStepVelocity(3, 5));
+    }
+
+    @Test
+    void valuesAreClampedToTheirFields() {
+        DrumSequenceData data = new DrumSequenceData();
+        data.setStepVelocity(0, 0, 300);
+        data.setStepProbability(0, 0, 150);
+        data.setStepPan(0, 0, -5);
+        data.setStepDecay(0, 0, 1_000_000);
+        data.setStepNudge(0, 0, 100);
+        data.setStepNudge(0, 1, -100);
+
+        assertEquals(127, data.getStepVelocity(0, 0));
+        assertEquals(100, data.getStepProbability(0, 0));
+        assertEquals(0, data.getStepPan(0, 0));
+        assertEquals(DrumSequenceData.MAX_DECAY, data.getStepDecay(0, 0));
+        assertEquals(DrumSequenceData.MAX_NUDGE, data.getStepNudge(0, 0));
+        assertEquals(DrumSequenceData.MIN_NUDGE, data.getStepNudge(0, 1));
+    }
+
+    @Test
+    void changedEffectsAreReportedOnce() {
+        DrumSequenceData data = new DrumSequenceData();
+
+        // Nothing has been sent yet, so every effect counts as changed
+        long step = data.getStepWord(1, 1);
+        long changed = data.takeChangedEffects(1, 1, step);
+        for (long field : new long[]{DrumSequenceData.PAN_FIELD, DrumSequenceData.CHORUS_FIELD,
+                DrumSequenceData.REVERB_FIELD, DrumSequenceData.DECAY_FIELD}) {
+            assertTrue((changed & field) != 0);
+        }
+        assertEquals(0L, changed & ~DrumSequenceData.EFFECT_FIELDS);
+        assertEquals(0L, data.takeChangedEffects(1, 1, step));
+
+        // Velocity is not an effect
+        data.setStepPan(1, 1, 20);
+        data.setStepVelocity(1, 1, 20);
+        step = data.getStepWord(1, 1);
+        changed = data.takeChangedEffects(1, 1, step);
+        assertTrue((changed & DrumSequenceData.PAN_FIELD) != 0);
+        assertEquals(0L, changed & ~DrumSequenceData.PAN_FIELD);
+        assertEquals(0L, data.takeChangedEffects(1, 1, step));
+    }
+
+    @Test
+    void jaggedViewsRoundTrip() {
+        DrumSequenceData data = new DrumSequenceData();
+        data.setStepVelocity(4, 7, 33);
+        data.setStepNudge(4, 7, -3);
+        data.setStepAccent(4, 7, true);
+        data.setStepActive(4, 7, true);
+
+        DrumSequenceData copy = new DrumSequenceData();
+        copy.setStepVelocities(data.getStepVelocities());
+        copy.setStepNudges(data.getStepNudges());
+        copy.setStepAccents(data.getStepAccents());
+        copy.setPatterns(data.getPatterns());
+
+        assertEquals(data.getStepWord(4, 7), copy.getStepWord(4, 7));
+        assertTrue(copy.isStepActive(4, 7));
+        assertArrayEquals(data.getStepVelocities()[4], copy.getStepVelocities()[4]);
+    }
+
+    @Test
+    void shortRowsFromOlderSequencesLoad() {
+        DrumSequenceData data = new DrumSequenceData();
+        data.setStepVelocities(new int[][]{{1, 2, 3}});
+
+        assertEquals(3, data.getStepVelocity(0, 2));
+        assertEquals(SequencerConstants.DEFAULT_VELOCITY, data.getStepVelocity(0, 3));
+        assertEquals(SequencerConstants.DEFAULT_VELOCITY, data.getStepVelocity(1, 0));
+    }
+
+    @Test
+    void nextActiveStepCrossesWords() {
+        DrumSequenceData data = new DrumSequenceData();
+        data.setStepActive(5, 3, true);
+        data.setStepActive(5, 63, true);
+        data.setStepActive(5, 64, true);
+        data.setStepActive(5, 100, true);
+
+        assertEquals(3, data.nextActiveStep(5, 0, 128));
+        assertEquals(63, data.nextActiveStep(5, 4, 128));
+        assertEquals(64, data.nextActiveStep(5, 64, 128));
+        assertEquals(100, data.nextActiveStep(5, 65, 128));
+        assertEquals(-1, data.nextActiveStep(5, 101, 128));
+        // Steps past the length don't count
+        assertEquals(-1, data.nextActiveStep(5, 65, 100));
+        assertEquals(-1, data.nextActiveStep(5, 128, 128));
+        assertEquals(4, data.getActiveStepCount(5));
+    }
+
+    @Test
+    void toggleFlipsOneStep() {
+        DrumSequenceData data = new DrumSequenceData();
+
+        assertTrue(data.toggleStep(0, 70));
+        assertTrue(data.isStepActive(0, 70));
+        assertFalse(data.isStepActive(0, 6));
+        assertFalse(data.toggleStep(0, 70));
+        assertEquals(0, data.getActiveStepCount(0));
+    }
+
+    @Test
+    void clearAndInvertStopAtTheLength() {
+        DrumSequenceData data = new DrumSequenceData();
+        data.setStepActive(1, 2, true);
+        data.setStepActive(1, 90, true);
+
+        data.invertPattern(1, 80);
+        assertFalse(data.isStepActive(1, 2));
+        assertTrue(data.isStepActive(1, 0));
+        assertTrue(data.isStepActive(1, 79));
+        assertFalse(data.isStepActive(1, 80));
+        assertTrue(data.isStepActive(1, 90));
+        assertEquals(80, data.getActiveStepCount(1));
+
+        data.clearPattern(1, 80);
+        assertEquals(1, data.getActiveStepCount(1));
+        assertTrue(data.isStepActive(1, 90));
+    }
+
+    @Test
+    void patternBitsRoundTrip() {
+        DrumSequenceData data = new DrumSequenceData();
+        data.setPatternBits(2, new long[]{0b1011L, 1L << 63});
+
+        assertTrue(data.isStepActive(2, 0));
+        assertFalse(data.isStepActive(2, 2));
+        assertTrue(data.isStepActive(2, 127));
+        assertArrayEquals(new long[]{0b1011L, 1L << 63}, data.getPatternBits(2));
+
+        data.setPatternBits(2, new long[]{1L});
+        assertArrayEquals(new long[]{1L, 0L}, data.getPatternBits(2));
+    }
+
+    @Test
+    void rotationMovesStepsAndTheirParameters() {
+        Random random = new Random(3);
+        for (int length : new int[]{2, 16, 63, 64, 65, 100, 128}) {
+            for (int distance : new int[]{1, -1, 5, length - 1, length + 3, 64}) {
+                DrumSequenceData data = new DrumSequenceData();
+                boolean[] active = new boolean[DrumSequenceData.MAX_STEPS];
+                int[] velocity = new int[DrumSequenceData.MAX_STEPS];
+                for (int step = 0; step < DrumSequenceData.MAX_STEPS; step++) {
+                    active[step] = random.nextBoolean();
+                    velocity[step] = random.nextInt(128);
+                    data.setStepActive(7, step, active[step]);
+                    data.setStepVelocity(7, step, velocity[step]);
+                }
+
+                data.rotatePattern(7, length, distance);
+
+                for (int step = 0; step < DrumSequenceData.MAX_STEPS; step++) {
+                    int from = step < length ? Math.floorMod(step - distance, length) : step;
+                    String where = "length " + length + " distance " + distance + " step " + step;
+                    assertEquals(active[from], data.isStepActive(7, step), where);
+                    assertEquals(velocity[from], data.getStepVelocity(7, step), where);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.angrysurfer.core.sequencer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+class MidiEventSchedulerTest {
+
+    @Test
+    void everyActionRunsOnceWhileThePoolGrowsUnderDispatch() throws InterruptedException {
+        MidiEventScheduler scheduler = MidiEventScheduler.getInstance();
+        int threads = 4;
+        int perThread = 5_000;
+        AtomicIntegerArray runs = new AtomicIntegerArray(threads * perThread);
+        CountDownLatch done = new CountDownLatch(threads * perThread);
+
+        // Far more pending at once than the initial pool, with some due right away
+        List<Thread> schedulers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t * perThread;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    int id = first + i;
+                    scheduler.schedule(() -> {
+                        runs.incrementAndGet(id);
+                        done.countDown();
+                    }, TimeUnit.MICROSECONDS.toNanos(id % 20_000));
+                }
+            });
+            thread.start();
+            schedulers.add(thread);
+        }
+        for (Thread thread : schedulers) {
+            thread.join();
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS), "still pending: " + done.getCount());
+        for (int i = 0; i < runs.length(); i++) {
+            assertEquals(1, runs.get(i), "action " + i);
+        }
+    }
+}
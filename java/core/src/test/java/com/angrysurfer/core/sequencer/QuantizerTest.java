@@ -0,0 +1,160 @@
+package com.angrysurfer.core.sequencer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class QuantizerTest {
+
+    private static final String[] ROOTS = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
+
+    @Test
+    void scalesMatchThePatterns() {
+        for (String root : ROOTS) {
+            for (String name : Scale.getScales()) {
+                assertArrayEquals(patternScale(root, name), Scale.getScale(root, name), root + " " + name);
+            }
+        }
+        // Unknown roots read as C; unknown or missing names fall back to chromatic, as before
+        assertArrayEquals(Scale.getScale("C", Scale.SCALE_MAJOR), Scale.getScale("H", Scale.SCALE_MAJOR));
+        Boolean[] chromatic = new Boolean[12];
+        Arrays.fill(chromatic, Boolean.TRUE);
+        assertArrayEquals(chromatic, Scale.getScale("C", "No Such Scale"));
+        assertArrayEquals(chromatic, Scale.getScale(null, Scale.SCALE_MAJOR));
+    }
+
+    @Test
+    void tablesMatchTheOldWalkAwayFromOctaveEdges() {
+        int compared = 0;
+        for (String root : ROOTS) {
+            for (String name : Scale.getScales()) {
+                Boolean[] scale = Scale.getScale(root, name);
+                Quantizer quantizer = new Quantizer(scale);
+                for (int note = 0; note < 128; note++) {
+                    int quantized = quantizer.quantizeNote(note);
+                    int nearest = nearestDistance(scale, note);
+                    String where = root + " " + name + " note " + note;
+
+                    assertTrue(scale[quantized % 12], where);
+                    assertEquals(nearest, Math.abs(quantized - note), where);
+
+                    // Where the old walk found the nearest in-scale note it must agree. It took the
+                    // lower note on a tie too, except at C where it could not look down.
+                    int old = oldWalk(scale, note);
+                    boolean tie = nearest > 0 && note - nearest >= 0 && scale[(note - nearest) % 12]
+                            && note + nearest < 128 && scale[(note + nearest) % 12];
+                    if (scale[old % 12] && Math.abs(old - note) == nearest && !(tie && old > note)) {
+                        assertEquals(old, quantized, where);
+                        compared++;
+                    }
+                }
+            }
+        }
+        assertTrue(compared > 0);
+    }
+
+    @Test
+    void tiesGoToTheLowerNote() {
+        Quantizer wholeTone = new Quantizer(Scale.getScale("C", Scale.SCALE_WHOLE_TONE));
+
+        assertEquals(60, wholeTone.quantizeNote(61));
+        assertEquals(62, wholeTone.quantizeNote(63));
+        // Across the octave: B is between A# and C
+        assertEquals(70, wholeTone.quantizeNote(71));
+    }
+
+    @Test
+    void octaveEdgesLookAcrossTheBoundary() {
+        // C major pentatonic has no B; B4 is a semitone below C5, where the old walk gave A4
+        Quantizer quantizer = new Quantizer(Scale.getScale("C", Scale.SCALE_MAJOR_PENTATONIC));
+
+        assertEquals(72, quantizer.quantizeNote(71));
+        assertEquals(69, oldWalk(Scale.getScale("C", Scale.SCALE_MAJOR_PENTATONIC), 71));
+
+        // The table stays within MIDI range at the top: G9 is between F#9 and G#9
+        Quantizer wholeTone = new Quantizer(Scale.getScale("C", Scale.SCALE_WHOLE_TONE));
+        assertEquals(126, wholeTone.quantizeNote(127));
+    }
+
+    @Test
+    void notesOutsideMidiRangeKeepTheirOctave() {
+        Quantizer quantizer = new Quantizer(Scale.getScale("D", Scale.SCALE_DORIAN));
+
+        for (int note = -24; note < 0; note++) {
+            int octaves = Math.floorDiv(note, 12) - 5;
+            assertEquals(quantizer.quantizeNote(note - octaves * 12) + octaves * 12, quantizer.quantizeNote(note),
+                    "note " + note);
+        }
+        assertEquals(quantizer.quantizeNote(63) + 72, quantizer.quantizeNote(135));
+    }
+
+    @Test
+    void transposeQuantizesTheShiftedNote() {
+        Quantizer quantizer = new Quantizer(Scale.getScale("E", Scale.SCALE_PHRYGIAN));
+        for (int note = 0; note < 128; note++) {
+            for (int semitones : new int[]{-24, -12, -1, 0, 5, 12}) {
+                assertEquals(quantizer.quantizeNote(note + semitones), quantizer.quantizeNote(note, semitones));
+            }
+        }
+    }
+
+    @Test
+    void tablesAreSharedPerScale() {
+        // The same pitch classes by two names share one table
+        assertSame(Scale.getQuantizeTable("C", Scale.SCALE_MAJOR), Scale.getQuantizeTable("A", Scale.SCALE_NATURAL_MINOR));
+        assertSame(Quantizer.tableFor(Quantizer.maskOf(Scale.getScale("G", Scale.SCALE_MAJOR))),
+                Scale.getQuantizeTable("G", Scale.SCALE_MAJOR));
+
+        // No pitch classes at all leaves notes alone
+        byte[] empty = Quantizer.tableFor(0);
+        for (int note = 0; note < 128; note++) {
+            assertEquals(note, empty[note]);
+        }
+    }
+
+    // Quantizer.quantizeNote before the tables, without its logging
+    private static int oldWalk(Boolean[] scale, int note) {
+        int val = note;
+        while (val > 11)
+            val -= 12;
+
+        if (scale[val]) {
+            return note;
+        }
+
+        int distanceUp = 0;
+        while ((val + distanceUp < 11) && (!scale[val + distanceUp]))
+            distanceUp++;
+
+        int distanceDown = 0;
+        while ((val - distanceDown > 0) && (!scale[val - distanceDown]))
+            distanceDown++;
+
+        return distanceUp > distanceDown ? note + distanceUp : note - distanceDown;
+    }
+
+    // Scale.getScale before the masks were cached
+    private static Boolean[] patternScale(String root, String name) {
+        Boolean[] scale = new Boolean[12];
+        Arrays.fill(scale, Boolean.FALSE);
+        for (int i : Scale.SCALE_PATTERNS.get(name)) {
+            scale[(i + Scale.getRootOffset(root)) % 12] = Boolean.TRUE;
+        }
+        return scale;
+    }
+
+    // Distance to the nearest in-scale note within 0..127
+    private static int nearestDistance(Boolean[] scale, int note) {
+        for (int distance = 0; ; distance++) {
+            if ((note - distance >= 0 && scale[(note - distance) % 12])
+                    || (note + distance < 128 && scale[(note + distance) % 12])) {
+                return distance;
+            }
+        }
+    }
+}
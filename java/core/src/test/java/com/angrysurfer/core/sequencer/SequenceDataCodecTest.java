@@ -0,0 +1,176 @@
+package com.angrysurfer.core.sequencer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SequenceDataCodecTest {
+
+    @Test
+    void drumSequenceRoundTrips() {
+        Random random = new Random(11);
+        for (int run = 0; run < 20; run++) {
+            DrumSequenceData data = randomDrumSequence(random);
+
+            byte[] encoded = SequenceDataCodec.encode(data);
+            DrumSequenceData decoded = SequenceDataCodec.decodeDrum(encoded);
+
+            assertEquals(data.getId(), decoded.getId());
+            assertEquals(data.getName(), decoded.getName());
+            assertEquals(data.getSequencerId(), decoded.getSequencerId());
+            assertEquals(data.getNextPatternId(), decoded.getNextPatternId());
+            assertEquals(data.getSwingPercentage(), decoded.getSwingPercentage());
+            assertEquals(data.isSwingEnabled(), decoded.isSwingEnabled());
+            assertEquals(data.getMasterTempo(), decoded.getMasterTempo());
+            assertArrayEquals(data.getPatternLengths(), decoded.getPatternLengths());
+            assertArrayEquals(data.getDirections(), decoded.getDirections());
+            assertArrayEquals(data.getTimingDivisions(), decoded.getTimingDivisions());
+            assertArrayEquals(data.getLoopingFlags(), decoded.getLoopingFlags());
+            assertArrayEquals(data.getRootNotes(), decoded.getRootNotes());
+            assertArrayEquals(data.getInstrumentIds(), decoded.getInstrumentIds());
+            assertArrayEquals(data.getSoundbankNames(), decoded.getSoundbankNames());
+            assertArrayEquals(data.getPresets(), decoded.getPresets());
+            assertArrayEquals(data.getInstrumentNames(), decoded.getInstrumentNames());
+            assertTrue(Arrays.deepEquals(data.getBarMuteValues(), decoded.getBarMuteValues()));
+            assertTrue(Arrays.deepEquals(data.getBarOffsetValues(), decoded.getBarOffsetValues()));
+            assertArrayEquals(data.activeStepWords(), decoded.activeStepWords());
+            assertArrayEquals(data.stepWords(), decoded.stepWords());
+            assertArrayEquals(encoded, SequenceDataCodec.encode(decoded));
+        }
+    }
+
+    @Test
+    void untouchedDrumStepsCostAlmostNothing() {
+        DrumSequenceData data = new DrumSequenceData();
+        int empty = SequenceDataCodec.encode(data).length;
+        data.setStepAccent(3, 5, true);
+
+        // An accent alone is one bitmap bit and a one-byte word
+        assertEquals(empty + 1, SequenceDataCodec.encode(data).length);
+    }
+
+    @Test
+    void melodicSequenceRoundTrips() {
+        Random random = new Random(5);
+        MelodicSequenceData data = new MelodicSequenceData();
+        data.setId(42L);
+        data.setPlayerId(null);
+        data.setName("Bass line ♯");
+        data.setSwing(61);
+        data.setSwingEnabled(true);
+        data.setPatternLength(12);
+        data.setLooping(false);
+        data.setDirection(Direction.BACKWARD);
+        data.setScale("Dorian");
+        data.setOctaveShift(-2);
+        data.setTimingDivision(TimingDivision.values()[random.nextInt(TimingDivision.values().length)]);
+        data.setSequencerId(3);
+        data.setDeviceName(null);
+        data.setInstrumentId(9L);
+        for (int step = 0; step < MelodicSequenceData.MAX_STEPS; step++) {
+            data.setStepActive(step, random.nextBoolean());
+        }
+        data.setNoteValues(randomValues(random, MelodicSequenceData.MAX_STEPS, 0, 127));
+        data.setVelocityValues(randomValues(random, MelodicSequenceData.MAX_STEPS, 0, 127));
+        data.setNudgeValues(randomValues(random, MelodicSequenceData.MAX_STEPS, -50, 50));
+        data.setTiltValues(randomValues(random, MelodicSequenceData.MAX_BARS, -12, 12));
+
+        byte[] encoded = SequenceDataCodec.encode(data);
+        MelodicSequenceData decoded = SequenceDataCodec.decodeMelodic(encoded);
+
+        assertEquals(data.getId(), decoded.getId());
+        assertNull(decoded.getPlayerId());
+        assertEquals(data.getName(), decoded.getName());
+        assertEquals(data.getSwing(), decoded.getSwing());
+        assertEquals(data.getPatternLength(), decoded.getPatternLength());
+        assertEquals(data.getDirection(), decoded.getDirection());
+        assertEquals(data.getScale(), decoded.getScale());
+        assertEquals(data.getOctaveShift(), decoded.getOctaveShift());
+        assertEquals(data.getTimingDivision(), decoded.getTimingDivision());
+        assertNull(decoded.getDeviceName());
+        assertEquals(data.getActiveSteps(), decoded.getActiveSteps());
+        assertArrayEquals(data.getNoteValues(), decoded.getNoteValues());
+        assertArrayEquals(data.getVelocityValues(), decoded.getVelocityValues());
+        assertArrayEquals(data.getNudgeValues(), decoded.getNudgeValues());
+        assertArrayEquals(data.getTiltValues(), decoded.getTiltValues());
+        assertArrayEquals(encoded, SequenceDataCodec.encode(decoded));
+    }
+
+    @Test
+    void jsonIsNotMistakenForBinary() {
+        assertFalse(SequenceDataCodec.isBinary("{\"id\":1}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(SequenceDataCodec.isBinary(new byte[0]));
+        assertFalse(SequenceDataCodec.isBinary(null));
+        assertTrue(SequenceDataCodec.isBinary(SequenceDataCodec.encode(new DrumSequenceData())));
+    }
+
+    @Test
+    void badInputIsRejected() {
+        byte[] drum = SequenceDataCodec.encode(new DrumSequenceData());
+        byte[] melodic = SequenceDataCodec.encode(new MelodicSequenceData());
+
+        assertThrows(IllegalArgumentException.class, () -> SequenceDataCodec.decodeMelodic(drum));
+        assertThrows(IllegalArgumentException.class, () -> SequenceDataCodec.decodeDrum(melodic));
+        assertThrows(IllegalArgumentException.class,
+                () -> SequenceDataCodec.decodeDrum(Arrays.copyOf(drum, drum.length / 2)));
+
+        byte[] newer = drum.clone();
+        newer[4] = (byte) (SequenceDataCodec.VERSION + 1);
+        assertThrows(IllegalArgumentException.class, () -> SequenceDataCodec.decodeDrum(newer));
+    }
+
+    private static DrumSequenceData randomDrumSequence(Random random) {
+        DrumSequenceData data = new DrumSequenceData();
+        data.setId(random.nextLong(1, 1L << 40));
+        data.setName(random.nextBoolean() ? "Pattern " + random.nextInt(100) : null);
+        data.setSequencerId(random.nextBoolean() ? random.nextInt(8) : null);
+        data.setNextPatternId(random.nextBoolean() ? random.nextLong(1000) : null);
+        data.setSwingPercentage(random.nextInt(100));
+        data.setSwingEnabled(random.nextBoolean());
+        data.setMasterTempo(random.nextInt(60, 200));
+        for (int drum = 0; drum < SequencerConstants.DRUM_PAD_COUNT; drum++) {
+            data.getPatternLengths()[drum] = random.nextInt(1, DrumSequenceData.MAX_STEPS + 1);
+            data.getDirections()[drum] = Direction.values()[random.nextInt(Direction.values().length)];
+            data.getTimingDivisions()[drum] = TimingDivision.values()[random.nextInt(TimingDivision.values().length)];
+            data.getLoopingFlags()[drum] = random.nextBoolean();
+            data.getRootNotes()[drum] = random.nextInt(128);
+            data.getInstrumentIds()[drum] = random.nextBoolean() ? random.nextLong(1000) : null;
+            data.getSoundbankNames()[drum] = random.nextBoolean() ? "Bank é" + drum : null;
+            data.getPresets()[drum] = random.nextBoolean() ? random.nextInt(128) : null;
+            data.getInstrumentNames()[drum] = "Kit " + drum;
+            for (int bar = 0; bar < SequencerConstants.MAX_BAR_COUNT; bar++) {
+                data.getBarMuteValues()[drum][bar] = random.nextInt(4) == 0;
+                data.getBarOffsetValues()[drum][bar] = random.nextInt(-8, 9);
+            }
+            for (int step = 0; step < DrumSequenceData.MAX_STEPS; step++) {
+                data.setStepActive(drum, step, random.nextInt(3) == 0);
+                // Most steps keep their defaults, as in a real pattern
+                if (random.nextInt(4) == 0) {
+                    data.setStepVelocity(drum, step, random.nextInt(128));
+                    data.setStepProbability(drum, step, random.nextInt(101));
+                    data.setStepNudge(drum, step, random.nextInt(DrumSequenceData.MIN_NUDGE, DrumSequenceData.MAX_NUDGE + 1));
+                    data.setStepDecay(drum, step, random.nextInt(DrumSequenceData.MAX_DECAY + 1));
+                    data.setStepAccent(drum, step, random.nextBoolean());
+                }
+            }
+        }
+        return data;
+    }
+
+    private static int[] randomValues(Random random, int length, int min, int max) {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextInt(min, max + 1);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,142 @@
+package com.angrysurfer.core.util.demo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.angrysurfer.core.model.Player;
+import com.angrysurfer.core.model.Rule;
+import com.angrysurfer.core.model.Session;
+import com.angrysurfer.core.model.Strike;
+import com.angrysurfer.core.redis.PlayerHelper;
+import com.angrysurfer.core.redis.WriteBehindQueue;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * Redis traffic while editing rules live: after each edit to one player's
+ * rule, every player in the session is saved (as a session save request does).
+ * Compares PlayerHelper's previous save, which rewrote every rule of every
+ * player (replicated here), with the diffing save, then shows repeated saves
+ * of one player folded by the {@link WriteBehindQueue}, with what each save
+ * cost the calling thread. Runs against {@link StandInRedis}.
+ * Usage: PlayerSaveBenchmark [players] [rulesPerPlayer] [edits] [latencyMicros]
+ */
+public class PlayerSaveBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int playerCount = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int rulesPerPlayer = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int edits = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        long latencyMicros = args.length > 3 ? Long.parseLong(args[3]) : 200;
+
+        try (StandInRedis redis = new StandInRedis(latencyMicros);
+             JedisPool pool = new JedisPool(new JedisPoolConfig(), "127.0.0.1", redis.getPort())) {
+            ObjectMapper mapper = new ObjectMapper();
+            mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+            PlayerHelper helper = new PlayerHelper(pool, mapper);
+
+            Session session = new Session();
+            session.setId(1L);
+            List<Player> players = new ArrayList<>();
+            long ruleId = 1;
+            for (int i = 0; i < playerCount; i++) {
+                Player player = new Strike();
+                player.setId((long) i + 1);
+                player.setName("Player " + i);
+                player.setSession(session);
+                Set<Rule> rules = new HashSet<>();
+                for (int r = 0; r < rulesPerPlayer; r++) {
+                    // Rules are equal by id, so give them one before adding
+                    Rule rule = new Rule(0, 0, (double) r + 1, 0);
+                    rule.setId(ruleId++);
+                    rules.add(rule);
+                }
+                player.setRules(rules);
+                players.add(player);
+            }
+
+            players.forEach(p -> legacySave(pool, mapper, p));
+            run("rewrite all", edits, redis, players, p -> legacySave(pool, mapper, p));
+
+            // The first diffing save has no snapshot yet and writes everything
+            players.forEach(helper::savePlayer);
+            run("diff", edits, redis, players, helper::savePlayer);
+
+            // One player saved on every slider step, 10 steps 5 ms apart
+            WriteBehindQueue queue = WriteBehindQueue.start("Benchmark-Write-Behind", WriteBehindQueue.DEFAULT_MAX_DELAY_MS);
+            Player edited = players.get(0);
+            redis.resetCounters();
+            long callerNanos = 0;
+            for (int step = 0; step < 10; step++) {
+                edited.getRules().iterator().next().setValue(100.0 + step);
+                long start = System.nanoTime();
+                queue.enqueue("player:" + edited.getId(), () -> helper.savePlayer(edited));
+                callerNanos += System.nanoTime() - start;
+                Thread.sleep(5);
+            }
+            queue.shutdown(1000);
+            System.out.println(String.format("%-12s 10 saves of one player -> %d commands, %d round trips, "
+                            + "%.1f us per save on the caller",
+                    "queued", redis.getCommands(), redis.getRoundTrips(), callerNanos / 1e3 / 10));
+            System.out.println("             " + queue);
+        }
+    }
+
+    interface Saver {
+        void save(Player player);
+    }
+
+    private static void run(String name, int edits, StandInRedis redis, List<Player> players, Saver saver) {
+        Random random = new Random(42);
+        redis.resetCounters();
+        long start = System.nanoTime();
+        for (int e = 0; e < edits; e++) {
+            Player player = players.get(random.nextInt(players.size()));
+            Rule rule = player.getRules().iterator().next();
+            rule.setValue(rule.getValue() + 1);
+            players.forEach(saver::save);
+        }
+        double ms = (System.nanoTime() - start) / 1e6 / edits;
+        System.out.println(String.format("%-12s %8.1f commands  %8.1f round trips  %7.2f ms per edit",
+                name, redis.getCommands() / (double) edits, redis.getRoundTrips() / (double) edits, ms));
+    }
+
+    /**
+     * PlayerHelper.savePlayer before diffing: clear the rule set, then SET and
+     * SADD every rule and SET the player, one command at a time
+     */
+    private static void legacySave(JedisPool pool, ObjectMapper mapper, Player player) {
+        try (Jedis jedis = pool.getResource()) {
+            Session session = player.getSession();
+            jedis.sadd(String.format("session:%d:players:%s", session.getId(), player.getPlayerClassName()),
+                    player.getId().toString());
+            String rulesKey = String.format("player:%d:rules", player.getId());
+            jedis.del(rulesKey);
+            for (Rule rule : player.getRules()) {
+                if (rule.getId() == null) {
+                    rule.setId(jedis.incr("seq:rule"));
+                }
+                jedis.set("rule:" + rule.getId(), mapper.writeValueAsString(rule));
+                jedis.sadd(rulesKey, rule.getId().toString());
+            }
+            Set<Rule> rules = player.getRules();
+            player.setSession(null);
+            player.setRules(null);
+            jedis.set(String.format("player:%s:%d", player.getPlayerClassName().toLowerCase(), player.getId()),
+                    mapper.writeValueAsString(player));
+            player.setSession(session);
+            player.setRules(rules);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.angrysurfer.core.util.demo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+import com.angrysurfer.core.sequencer.DrumSequenceData;
+import com.angrysurfer.core.sequencer.MelodicSequenceData;
+import com.angrysurfer.core.sequencer.SequenceDataCodec;
+import com.angrysurfer.core.sequencer.SequencerConstants;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * Bytes per sequence and encode/decode time of the Jackson JSON the sequence
+ * helpers used to store against {@link SequenceDataCodec}, for a drum
+ * sequence with a typical edited pattern and a melodic sequence. Then times a
+ * pattern load (GET plus decode) of each form from {@link StandInRedis}.
+ * Usage: SequenceCodecBenchmark [iterations] [latencyMicros]
+ */
+public class SequenceCodecBenchmark {
+
+    interface Codec {
+        byte[] encode(Object data) throws Exception;
+
+        Object decode(byte[] bytes) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        long latencyMicros = args.length > 1 ? Long.parseLong(args[1]) : 200;
+
+        // Same configuration as RedisService
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+
+        DrumSequenceData drums = drumSequence();
+        MelodicSequenceData melodic = melodicSequence();
+
+        Codec drumJson = json(mapper, DrumSequenceData.class);
+        Codec drumBinary = binary(d -> SequenceDataCodec.encode((DrumSequenceData) d), SequenceDataCodec::decodeDrum);
+        Codec melodicJson = json(mapper, MelodicSequenceData.class);
+        Codec melodicBinary = binary(d -> SequenceDataCodec.encode((MelodicSequenceData) d),
+                SequenceDataCodec::decodeMelodic);
+
+        // Binary must load back the same pattern the JSON does
+        String expected = mapper.writeValueAsString(drums);
+        String actual = mapper.writeValueAsString(drumBinary.decode(drumBinary.encode(drums)));
+        System.out.println("drum round trip matches JSON: " + expected.equals(actual));
+        expected = mapper.writeValueAsString(melodic);
+        actual = mapper.writeValueAsString(melodicBinary.decode(melodicBinary.encode(melodic)));
+        System.out.println("melodic round trip matches JSON: " + expected.equals(actual));
+
+        System.out.println(String.format("%-16s %9s %12s %12s", "", "bytes", "encode us", "decode us"));
+        run("drum json", drumJson, drums, iterations);
+        run("drum binary", drumBinary, drums, iterations);
+        run("melodic json", melodicJson, melodic, iterations);
+        run("melodic binary", melodicBinary, melodic, iterations);
+
+        try (StandInRedis redis = new StandInRedis(latencyMicros);
+             JedisPool pool = new JedisPool(new JedisPoolConfig(), "127.0.0.1", redis.getPort());
+             Jedis jedis = pool.getResource()) {
+            jedis.set("drumseq:json".getBytes(StandardCharsets.UTF_8), drumJson.encode(drums));
+            jedis.set("drumseq:binary".getBytes(StandardCharsets.UTF_8), drumBinary.encode(drums));
+            int loads = Math.max(1, iterations / 10);
+            load("load json", jedis, "drumseq:json", drumJson, loads);
+            load("load binary", jedis, "drumseq:binary", drumBinary, loads);
+        }
+    }
+
+    private static void run(String name, Codec codec, Object data, int iterations) throws Exception {
+        byte[] bytes = codec.encode(data);
+        // Warm up
+        for (int i = 0; i < iterations; i++) {
+            codec.decode(codec.encode(data));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            bytes = codec.encode(data);
+        }
+        double encodeMicros = (System.nanoTime() - start) / 1e3 / iterations;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            codec.decode(bytes);
+        }
+        double decodeMicros = (System.nanoTime() - start) / 1e3 / iterations;
+        System.out.println(String.format("%-16s %9d %12.1f %12.1f", name, bytes.length, encodeMicros, decodeMicros));
+    }
+
+    private static void load(String name, Jedis jedis, String key, Codec codec, int loads) throws Exception {
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < loads; i++) {
+            codec.decode(jedis.get(rawKey));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < loads; i++) {
+            codec.decode(jedis.get(rawKey));
+        }
+        System.out.println(String.format("%-16s %9.1f us per pattern load", name,
+                (System.nanoTime() - start) / 1e3 / loads));
+    }
+
+    private static Codec json(ObjectMapper mapper, Class<?> type) {
+        return new Codec() {
+            public byte[] encode(Object data) throws Exception {
+                return mapper.writeValueAsBytes(data);
+            }
+
+            public Object decode(byte[] bytes) throws Exception {
+                return mapper.readValue(new String(bytes, StandardCharsets.UTF_8), type);
+            }
+        };
+    }
+
+    interface Encoder {
+        byte[] encode(Object data);
+    }
+
+    interface Decoder {
+        Object decode(byte[] bytes);
+    }
+
+    private static Codec binary(Encoder encoder, Decoder decoder) {
+        return new Codec() {
+            public byte[] encode(Object data) {
+                return encoder.encode(data);
+            }
+
+            public Object decode(byte[] bytes) {
+                return decoder.decode(bytes);
+            }
+        };
+    }
+
+    // 16 drums with 16- to 64-step patterns, a third of steps on, some edited parameters
+    private static DrumSequenceData drumSequence() {
+        SplittableRandom random = new SplittableRandom(7);
+        DrumSequenceData data = new DrumSequenceData();
+        data.setId(42L);
+        data.setName("Benchmark groove");
+        data.setSequencerId(0);
+        for (int drum = 0; drum < SequencerConstants.DRUM_PAD_COUNT; drum++) {
+            int length = 16 << random.nextInt(3);
+            data.getPatternLengths()[drum] = length;
+            data.getInstrumentIds()[drum] = 1000L + drum;
+            data.getSoundbankNames()[drum] = "Default";
+            data.getDeviceNames()[drum] = "Gervill";
+            data.getInstrumentNames()[drum] = "Drum " + drum;
+            for (int step = 0; step < length; step++) {
+                if (random.nextInt(3) == 0) {
+                    data.setStepActive(drum, step, true);
+                    data.setStepVelocity(drum, step, 60 + random.nextInt(68));
+                    data.setStepAccent(drum, step, random.nextInt(4) == 0);
+                    if (random.nextInt(4) == 0) {
+                        data.setStepProbability(drum, step, 50 + random.nextInt(50));
+                    }
+                    if (random.nextInt(8) == 0) {
+                        data.setStepNudge(drum, step, random.nextInt(-20, 20));
+                    }
+                }
+            }
+        }
+        return data;
+    }
+
+    private static MelodicSequenceData melodicSequence() {
+        SplittableRandom random = new SplittableRandom(11);
+        MelodicSequenceData data = new MelodicSequenceData();
+        data.setId(7L);
+        data.setSequencerId(1);
+        data.setInstrumentName("Bass");
+        for (int step = 0; step < MelodicSequenceData.MAX_STEPS; step++) {
+            data.setStepActive(step, random.nextBoolean());
+            data.setNoteValue(step, 36 + random.nextInt(24));
+            data.setVelocityValue(step, 70 + random.nextInt(50));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,124 @@
+package com.angrysurfer.core.util.demo;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.angrysurfer.core.model.Note;
+import com.angrysurfer.core.model.Player;
+import com.angrysurfer.core.model.Rule;
+import com.angrysurfer.core.model.Session;
+import com.angrysurfer.core.model.Strike;
+import com.angrysurfer.core.redis.PlayerHelper;
+import com.angrysurfer.core.redis.SessionHelper;
+import com.angrysurfer.core.util.SessionDeserializer;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * Round trips and wall time to load a session with all its players and rules,
+ * reading them one player at a time as SessionHelper.findSessionById did
+ * (replicated here) against the pipelined/MGET batch load it uses now. Runs
+ * against {@link StandInRedis}, which adds a fixed latency per round trip.
+ * Usage: SessionLoadBenchmark [players] [rulesPerPlayer] [latencyMicros] [loads]
+ */
+public class SessionLoadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int playerCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int rulesPerPlayer = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        long latencyMicros = args.length > 2 ? Long.parseLong(args[2]) : 200;
+        int loads = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        try (StandInRedis redis = new StandInRedis(latencyMicros);
+             JedisPool pool = new JedisPool(new JedisPoolConfig(), "127.0.0.1", redis.getPort())) {
+            ObjectMapper mapper = createObjectMapper();
+            SessionHelper sessionHelper = new SessionHelper(pool, mapper);
+            PlayerHelper playerHelper = sessionHelper.getPlayerHelper();
+
+            Session session = new Session();
+            session.setId(1L);
+            session.setPlayers(new HashSet<>());
+            long ruleId = 1;
+            for (int i = 0; i < playerCount; i++) {
+                Player player = i % 2 == 0 ? new Strike() : new Note();
+                player.setId((long) i + 1);
+                player.setName("Player " + i);
+                player.setSession(session);
+                Set<Rule> rules = new HashSet<>();
+                for (int r = 0; r < rulesPerPlayer; r++) {
+                    Rule rule = new Rule(0, 0, (double) r + 1, 0);
+                    rule.setId(ruleId++);
+                    rules.add(rule);
+                }
+                player.setRules(rules);
+                playerHelper.savePlayer(player);
+                session.getPlayers().add(player);
+            }
+            sessionHelper.saveSession(session);
+
+            // Warm up both paths before measuring
+            for (int i = 0; i < 3; i++) {
+                loadPerPlayer(pool, mapper, playerHelper, 1L);
+                sessionHelper.findSessionById(1L);
+            }
+
+            run("per player", loads, redis, () -> loadPerPlayer(pool, mapper, playerHelper, 1L));
+            run("batched", loads, redis, () -> sessionHelper.findSessionById(1L));
+        }
+    }
+
+    interface Loader {
+        Session load() throws Exception;
+    }
+
+    private static void run(String name, int loads, StandInRedis redis, Loader loader) throws Exception {
+        redis.resetCounters();
+        int players = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < loads; i++) {
+            players = loader.load().getPlayers().size();
+        }
+        double ms = (System.nanoTime() - start) / 1e6 / loads;
+        System.out.println(String.format("%-11s %4d players  %6.1f round trips  %7.1f commands  %8.2f ms/load",
+                name, players, redis.getRoundTrips() / (double) loads, redis.getCommands() / (double) loads, ms));
+    }
+
+    /**
+     * The previous findSessionById: GET the session, SMEMBERS per player type,
+     * then a GET, an SMEMBERS and a GET per rule for each player
+     */
+    private static Session loadPerPlayer(JedisPool pool, ObjectMapper mapper, PlayerHelper playerHelper, Long id)
+            throws Exception {
+        try (Jedis jedis = pool.getResource()) {
+            Session session = mapper.readValue(jedis.get("session:" + id), Session.class);
+            session.setPlayers(new HashSet<>());
+            for (String playerType : new String[]{"Strike", "Note"}) {
+                for (String playerId : jedis.smembers("session:" + id + ":players:" + playerType.toLowerCase())) {
+                    Player player = playerHelper.findPlayerById(Long.parseLong(playerId), playerType);
+                    if (player != null) {
+                        player.setSession(session);
+                        session.getPlayers().add(player);
+                    }
+                }
+            }
+            return session;
+        }
+    }
+
+    // Same configuration as RedisService
+    private static ObjectMapper createObjectMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        SimpleModule module = new SimpleModule();
+        module.addDeserializer(Session.class, new SessionDeserializer());
+        mapper.registerModule(module);
+        return mapper;
+    }
+}
@@ -0,0 +1,142 @@
+package com.angrysurfer.core.util.demo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.angrysurfer.core.redis.EmbeddedStore;
+
+/**
+ * In-process stand-in for a Redis server, for the persistence tests and
+ * benchmarks when no real Redis is available. Serves an in-memory
+ * {@link EmbeddedStore} over a loopback socket, so the helpers pay a real
+ * network hop.
+ * <p>
+ * Counts commands and round trips (replies flushed after the client's input is
+ * drained) and adds a fixed latency to every round trip, standing in for the
+ * network hop to a real server.
+ */
+public class StandInRedis implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final EmbeddedStore store = EmbeddedStore.inMemory();
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final long latencyNanos;
+
+    public StandInRedis(long latencyMicros) throws IOException {
+        this.latencyNanos = latencyMicros * 1_000;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "StandInRedis-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public long getCommands() {
+        return commands.get();
+    }
+
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    public void resetCounters() {
+        commands.set(0);
+        roundTrips.set(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread handler = new Thread(() -> serve(socket), "StandInRedis-client");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        EmbeddedStore.Client client = store.newClient();
+        try (socket;
+             InputStream in = new BufferedInputStream(socket.getInputStream());
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+            while (true) {
+                List<String> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                commands.incrementAndGet();
+                client.execute(command, out);
+                if (in.available() == 0) {
+                    if (latencyNanos > 0) {
+                        LockSupport.parkNanos(latencyNanos);
+                    }
+                    // Count before replying, so the client never sees a reply ahead of its count
+                    roundTrips.incrementAndGet();
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+
+    private static List<String> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Expected array, got " + (char) type);
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<String> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected bulk string");
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] bytes = in.readNBytes(length);
+            in.read();
+            in.read();
+            args.add(new String(bytes, StandardCharsets.ISO_8859_1));
+        }
+        return args;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            sb.append((char) b);
+        }
+        in.read();
+        return sb.toString();
+    }
+}
@@ -0,0 +1,178 @@
+package com.angrysurfer.core.util.demo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.angrysurfer.core.config.UserConfig;
+import com.angrysurfer.core.model.Note;
+import com.angrysurfer.core.model.Player;
+import com.angrysurfer.core.model.Rule;
+import com.angrysurfer.core.model.Session;
+import com.angrysurfer.core.model.Strike;
+import com.angrysurfer.core.redis.EmbeddedBackend;
+import com.angrysurfer.core.redis.EmbeddedStore;
+import com.angrysurfer.core.redis.PlayerHelper;
+import com.angrysurfer.core.redis.SessionHelper;
+import com.angrysurfer.core.redis.StorageMigration;
+import com.angrysurfer.core.redis.UserConfigHelper;
+import com.angrysurfer.core.sequencer.DrumSequenceData;
+import com.angrysurfer.core.sequencer.SequenceDataCodec;
+import com.angrysurfer.core.util.SessionDeserializer;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * Runs the storage helpers against the embedded store: saves a session with
+ * its players and rules, a binary drum sequence and a user config, reopens the store
+ * from its log and checks they load back, copies it with
+ * {@link StorageMigration} and checks the copy. Then times session loads and
+ * saves on the embedded store against {@link StandInRedis}, which adds a
+ * fixed latency per round trip as a network hop would.
+ * Usage: StorageBackendBenchmark [players] [rulesPerPlayer] [latencyMicros] [loads]
+ */
+public class StorageBackendBenchmark {
+
+    private static final byte[] DRUM_KEY = "drumseq:1".getBytes();
+
+    interface Operation {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int playerCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int rulesPerPlayer = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        long latencyMicros = args.length > 2 ? Long.parseLong(args[2]) : 200;
+        int loads = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        ObjectMapper mapper = createObjectMapper();
+        Path directory = Files.createTempDirectory("beatgen-store");
+        Session session = session(1L, 0, playerCount, rulesPerPlayer);
+        String expected = describe(session);
+
+        DrumSequenceData drums = new DrumSequenceData();
+        drums.setId(1L);
+        drums.setName("Benchmark groove");
+        byte[] drumBytes = SequenceDataCodec.encode(drums);
+        Integer configId;
+        try (EmbeddedBackend backend = new EmbeddedBackend(directory);
+             JedisPool pool = backend.createPool(new JedisPoolConfig())) {
+            save(new SessionHelper(pool, mapper), session);
+            try (Jedis jedis = pool.getResource()) {
+                jedis.set(DRUM_KEY, drumBytes);
+            }
+            UserConfig config = new UserConfig();
+            config.setName("Benchmark rig");
+            UserConfigHelper configHelper = new UserConfigHelper(pool, mapper);
+            configHelper.saveConfig(config);
+            configId = config.getId();
+        }
+
+        try (EmbeddedBackend backend = new EmbeddedBackend(directory);
+             EmbeddedBackend copy = new EmbeddedBackend(null);
+             JedisPool pool = backend.createPool(new JedisPoolConfig());
+             JedisPool copyPool = copy.createPool(new JedisPoolConfig())) {
+            System.out.println("reopened store matches: " + matches(pool, mapper, expected, drumBytes, configId)
+                    + " (" + backend.getStore().size() + " keys, log "
+                    + Files.size(directory.resolve(EmbeddedStore.LOG_FILE)) + " bytes)");
+            int copied = StorageMigration.copy(pool, copyPool, true);
+            System.out.println("migrated copy matches: " + matches(copyPool, mapper, expected, drumBytes, configId)
+                    + " (" + copied + " keys copied)");
+
+            SessionHelper sessionHelper = new SessionHelper(pool, mapper);
+            run("embedded load", loads, () -> sessionHelper.findSessionById(1L));
+            run("embedded save", loads, () -> sessionHelper.saveSession(session));
+        }
+
+        // PlayerHelper skips saves of players it has already written, so use new ids for the second store
+        Session redisSession = session(2L, playerCount, playerCount, rulesPerPlayer);
+        try (StandInRedis redis = new StandInRedis(latencyMicros);
+             JedisPool pool = new JedisPool(new JedisPoolConfig(), "127.0.0.1", redis.getPort())) {
+            SessionHelper sessionHelper = new SessionHelper(pool, mapper);
+            save(sessionHelper, redisSession);
+            run("redis load", loads, () -> sessionHelper.findSessionById(2L));
+            run("redis save", loads, () -> sessionHelper.saveSession(redisSession));
+        }
+    }
+
+    private static boolean matches(JedisPool pool, ObjectMapper mapper, String expected, byte[] drumBytes,
+                                   Integer configId) {
+        Session loaded = new SessionHelper(pool, mapper).findSessionById(1L);
+        UserConfig config = new UserConfigHelper(pool, mapper).loadConfigFromRedis(configId);
+        byte[] drums;
+        try (Jedis jedis = pool.getResource()) {
+            drums = jedis.get(DRUM_KEY);
+        }
+        return loaded != null && expected.equals(describe(loaded)) && Arrays.equals(drumBytes, drums)
+                && config != null && "Benchmark rig".equals(config.getName());
+    }
+
+    private static void run(String name, int count, Operation operation) throws Exception {
+        // Warm up before measuring
+        for (int i = 0; i < count; i++) {
+            operation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            operation.run();
+        }
+        System.out.println(String.format("%-14s %8.3f ms", name, (System.nanoTime() - start) / 1e6 / count));
+    }
+
+    private static void save(SessionHelper sessionHelper, Session session) {
+        PlayerHelper playerHelper = sessionHelper.getPlayerHelper();
+        session.getPlayers().forEach(playerHelper::savePlayer);
+        sessionHelper.saveSession(session);
+    }
+
+    private static Session session(Long id, int firstPlayer, int playerCount, int rulesPerPlayer) {
+        Session session = new Session();
+        session.setId(id);
+        session.setPlayers(new HashSet<>());
+        long ruleId = (long) firstPlayer * rulesPerPlayer + 1;
+        for (int i = firstPlayer; i < firstPlayer + playerCount; i++) {
+            Player player = i % 2 == 0 ? new Strike() : new Note();
+            player.setId((long) i + 1);
+            player.setName("Player " + i);
+            player.setSession(session);
+            Set<Rule> rules = new HashSet<>();
+            for (int r = 0; r < rulesPerPlayer; r++) {
+                Rule rule = new Rule(0, 0, (double) r + 1, 0);
+                rule.setId(ruleId++);
+                rules.add(rule);
+            }
+            player.setRules(rules);
+            session.getPlayers().add(player);
+        }
+        return session;
+    }
+
+    // Players by id with their rule counts, in id order
+    private static String describe(Session session) {
+        StringBuilder sb = new StringBuilder();
+        session.getPlayers().stream()
+                .sorted((a, b) -> Long.compare(a.getId(), b.getId()))
+                .forEach(p -> sb.append(p.getId()).append(':').append(p.getName()).append(':')
+                        .append(p.getRules().size()).append(' '));
+        return sb.toString();
+    }
+
+    // Same configuration as RedisService
+    private static ObjectMapper createObjectMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        SimpleModule module = new SimpleModule();
+        module.addDeserializer(Session.class, new SessionDeserializer());
+        mapper.registerModule(module);
+        return mapper;
+    }
+}
@@ -6,6 +6,7 @@ import com.angrysurfer.core.api.Command;
 import com.angrysurfer.core.api.CommandBus;
 import com.angrysurfer.core.api.Commands;
 import com.angrysurfer.core.api.IBusListener;
+import com.angrysurfer.core.audio.SampleEngine;
 import com.angrysurfer.core.config.FrameState;
 import com.angrysurfer.core.model.InstrumentWrapper;
 import com.angrysurfer.core.redis.InstrumentHelper;
@@ -154,6 +155,8 @@ public class App implements IBusListener {
             InternalSynthManager.getInstance().initializeSynthesizer();
             SoundbankManager.getInstance().ensureSoundbanksLoaded();
             // InternalSynthManager.getInstance().loadDefaultSoundbank();
+            // Open the sample engine's output line now, not on the first sample note
+            SampleEngine.getInstance();
             splash.completeTask("Loaded internal synthesizer");
 
             // Initialize instrument management
@@ -301,6 +301,7 @@ public class DialogManager implements IBusListener {
                     }
 
                     if (player != null) {
+                        player.invalidateRuleCache();
                         RedisService.getInstance().saveRule(updatedRule);
                         RedisService.getInstance().savePlayer(player);
                         // Get fresh state and re-select player
@@ -2,9 +2,13 @@ package com.angrysurfer.beats.panel.sample;
 
 import com.angrysurfer.core.api.CommandBus;
 import com.angrysurfer.core.api.Commands;
+import com.angrysurfer.core.audio.PcmSample;
+import com.angrysurfer.core.audio.PeakCache;
+import com.angrysurfer.core.audio.SampleEngine;
 import com.angrysurfer.core.model.InstrumentWrapper;
 import com.angrysurfer.core.model.Sample;
 import com.angrysurfer.core.model.Strike;
+import com.angrysurfer.core.service.SamplePlaybackService;
 import com.angrysurfer.core.service.SessionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,7 +16,6 @@ import org.slf4j.LoggerFactory;
 import javax.sound.sampled.*;
 import javax.swing.*;
 import java.awt.*;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.ExecutorService;
@@ -38,8 +41,11 @@ public class SampleViewerPanel extends JPanel implements
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
     private WaveformControlsPanel controlsPanel;
     private SamplePropertiesPanel propertiesPanel;
-    // Audio playback
-    private Clip audioClip;
+    // Audio playback, through the shared sample engine
+    private final SampleEngine engine = SampleEngine.getInstance();
+    private long previewHandle = -1;
+    // Frames of the last file loaded, so peaks of an earlier one are dropped
+    private volatile PcmSample currentFrames;
     private double duration;
     // Playhead update timer
     private Timer playheadTimer;
@@ -113,41 +119,25 @@ public class SampleViewerPanel extends JPanel implements
         fileInfoLabel.setText("Loading: " + file.getName() + "...");
         waveformPanel.resetWaveform();
 
-        // Clear previous audio clip
-        stopAndCloseAudio();
+        // Stop previous preview
+        stopPreview();
 
         // Load audio data in background
         executor.submit(() -> {
             try {
-                // Get audio input stream
-                AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(file);
-                AudioFormat audioFormat = audioInputStream.getFormat();
-                sample.setAudioFormat(audioFormat);
-
-                // Store audio properties in sample
-                sample.setSampleRate((int) audioFormat.getSampleRate());
-                sample.setChannels(audioFormat.getChannels());
-                sample.setSampleSizeInBits(audioFormat.getSampleSizeInBits());
-
-                // Calculate duration and frame count
-                long frameLength = audioInputStream.getFrameLength();
-                int totalFrames = (int) frameLength;
-                duration = frameLength / audioFormat.getFrameRate();
+                // Map the file through the sample store, shared with playback
+                if (!sample.loadAudioFile(file)) {
+                    throw new IOException("Could not load " + file.getName());
+                }
+                duration = sample.getDuration();
 
                 // Initialize selection points to select entire sample by default
+                int totalFrames = sample.getFrameCount();
                 sample.setSampleStart(0);
                 sample.setSampleEnd(totalFrames);
                 sample.setLoopStart(0);
                 sample.setLoopEnd(totalFrames);
 
-                // Read audio data
-                byte[] audioData = readAllBytes(audioInputStream);
-                sample.setAudioData(audioData);
-
-                // Generate waveform data
-                int[] waveformData = generateWaveformData(audioData, audioFormat);
-                sample.setWaveformData(waveformData);
-
                 // Update UI on EDT
                 SwingUtilities.invokeLater(() -> {
                     updateFileInfoLabel();
@@ -163,8 +153,17 @@ public class SampleViewerPanel extends JPanel implements
                     controlsPanel.setCreatePlayerEnabled(true);
                 });
 
-                // Prepare audio clip for playback
-                prepareAudioClip();
+                // Draw the waveform once its peaks are read from the cache or built
+                PcmSample frames = sample.getPcm();
+                currentFrames = frames;
+                PeakCache.load(frames).whenComplete((peaks, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        logger.error("Error building waveform peaks: {}", error.getMessage(), error);
+                    } else if (currentFrames == frames) {
+                        // Still the sample this was started for
+                        waveformPanel.setPeaks(peaks);
+                    }
+                }));
 
             } catch (Exception e) {
                 logger.error("Error loading audio file: {}", e.getMessage(), e);
@@ -192,123 +191,6 @@ public class SampleViewerPanel extends JPanel implements
         );
     }
 
-    /**
-     * Read all bytes from an audio input stream
-     */
-    private byte[] readAllBytes(AudioInputStream stream) throws IOException {
-        // Get estimated size
-        long estimatedSize = stream.getFrameLength() * stream.getFormat().getFrameSize();
-        if (estimatedSize > Integer.MAX_VALUE) {
-            throw new IOException("Audio file too large");
-        }
-
-        // Read all bytes
-        byte[] buffer = new byte[8192];
-        ByteArrayOutputStream out = new ByteArrayOutputStream((int) estimatedSize);
-        int bytesRead;
-        while ((bytesRead = stream.read(buffer)) != -1) {
-            out.write(buffer, 0, bytesRead);
-        }
-        return out.toByteArray();
-    }
-
-    /**
-     * Generate waveform data from audio bytes
-     */
-    private int[] generateWaveformData(byte[] audioData, AudioFormat format) {
-        if (audioData == null) return new int[0];
-
-        int frameSize = format.getFrameSize();
-        int channels = format.getChannels();
-        int sampleSizeInBits = format.getSampleSizeInBits();
-        int numFrames = audioData.length / frameSize;
-
-        // For visualization, we'll use fewer points to improve performance
-        int downsampleFactor = Math.max(1, numFrames / 2000);
-        int waveformSize = numFrames / downsampleFactor;
-        int[] waveformData = new int[waveformSize];
-
-        // Process audio data based on format
-        for (int i = 0; i < waveformSize; i++) {
-            int frameIndex = i * downsampleFactor;
-            int sampleValue = 0;
-
-            // Calculate average value for this segment
-            for (int j = 0; j < downsampleFactor && (frameIndex + j) * frameSize < audioData.length; j++) {
-                int byteIndex = (frameIndex + j) * frameSize;
-
-                // Handle different sample sizes and channels
-                if (sampleSizeInBits == 16) {
-                    // 16-bit audio (convert bytes to short)
-                    for (int ch = 0; ch < channels; ch++) {
-                        int chOffset = ch * (sampleSizeInBits / 8);
-                        short sample = (short) ((audioData[byteIndex + chOffset] & 0xFF) |
-                                ((audioData[byteIndex + chOffset + 1] & 0xFF) << 8));
-                        sampleValue += Math.abs(sample);
-                    }
-                } else if (sampleSizeInBits == 8) {
-                    // 8-bit audio
-                    for (int ch = 0; ch < channels; ch++) {
-                        int chOffset = ch * (sampleSizeInBits / 8);
-                        byte sample = audioData[byteIndex + chOffset];
-                        sampleValue += Math.abs(sample - 128);
-                    }
-                }
-            }
-
-            // Average across channels and samples
-            sampleValue /= (downsampleFactor * channels);
-
-            // Store value (normalized to 0-100 range for display)
-            if (sampleSizeInBits == 16) {
-                waveformData[i] = sampleValue * 100 / 32768;
-            } else {
-                waveformData[i] = sampleValue * 100 / 128;
-            }
-        }
-
-        return waveformData;
-    }
-
-    /**
-     * Prepare audio clip for playback
-     */
-    private void prepareAudioClip() {
-        try {
-            // Create clip for playback
-            DataLine.Info info = new DataLine.Info(Clip.class, sample.getAudioFormat());
-
-            if (!AudioSystem.isLineSupported(info)) {
-                throw new LineUnavailableException("Audio format not supported for playback");
-            }
-
-            // Get and open the clip
-            audioClip = (Clip) AudioSystem.getLine(info);
-
-            // Create new audio input stream from the data
-            AudioInputStream ais = new AudioInputStream(
-                    new java.io.ByteArrayInputStream(sample.getAudioData()),
-                    sample.getAudioFormat(),
-                    sample.getAudioData().length / sample.getAudioFormat().getFrameSize());
-
-            audioClip.open(ais);
-
-            // Add listener to update UI when playback stops
-            audioClip.addLineListener(event -> {
-                if (event.getType() == LineEvent.Type.STOP) {
-                    SwingUtilities.invokeLater(() -> {
-                        stopPlayheadUpdate(); // Stop playhead updates
-                        controlsPanel.setStopEnabled(false);
-                        controlsPanel.setPlayEnabled(true);
-                        controlsPanel.setPlaySelectionEnabled(true);
-                    });
-                }
-            });
-        } catch (Exception e) {
-            logger.error("Error preparing audio clip: {}", e.getMessage(), e);
-        }
-    }
-
     /**
      * Update file info label with audio properties
      */
@@ -319,26 +201,22 @@ public class SampleViewerPanel extends JPanel implements
         }
 
         // Format audio properties
-        String info = String.format("%s (%d Hz, %d-bit, %s)",
+        String info = String.format("%s (%d Hz, %d-bit, %s, %d KB heap)",
                 sample.getAudioFile().getName(),
                 sample.getSampleRate(),
                 sample.getSampleSizeInBits(),
-                sample.getChannels() == 1 ? "Mono" : "Stereo");
+                sample.getChannels() == 1 ? "Mono" : "Stereo",
+                sample.getHeapBytes() / 1024);
 
         fileInfoLabel.setText(info);
     }
 
     /**
-     * Stop playback and close audio resources
+     * Stop the preview voice
      */
-    private void stopAndCloseAudio() {
-        if (audioClip != null) {
-            if (audioClip.isRunning()) {
-                audioClip.stop();
-            }
-            audioClip.close();
-            audioClip = null;
-        }
+    private void stopPreview() {
+        engine.stop(previewHandle);
+        previewHandle = -1;
     }
 
     /**
@@ -353,41 +231,13 @@ public class SampleViewerPanel extends JPanel implements
 
     @Override
     public void onPlayRequested() {
-        if (audioClip == null) return;
-
-        try {
-            // Set clip to current sample start position
-            audioClip.setFramePosition(sample.getSampleStart());
-
-            // Check if loop points are set
-            if (sample.isLoopEnabled() && sample.getLoopStart() < sample.getLoopEnd()
-                    && sample.getLoopStart() >= sample.getSampleStart()
-                    && sample.getLoopEnd() <= sample.getSampleEnd()) {
-                audioClip.setLoopPoints(sample.getLoopStart(), sample.getLoopEnd());
-                audioClip.loop(Clip.LOOP_CONTINUOUSLY);
-            } else {
-                // Play once without looping
-                audioClip.start();
-            }
-
-            // Start playhead updates
-            startPlayheadUpdate();
-
-            // Update UI
-            controlsPanel.setPlayEnabled(false);
-            controlsPanel.setPlaySelectionEnabled(false);
-            controlsPanel.setStopEnabled(true);
-
-        } catch (Exception e) {
-            logger.error("Error playing audio: {}", e.getMessage(), e);
-        }
+        // Play from the sample start to the end of the file
+        startPreview(0);
     }
 
     @Override
     public void onStopRequested() {
-        if (audioClip != null && audioClip.isRunning()) {
-            audioClip.stop();
-        }
+        stopPreview();
 
         // Stop playhead updates
         stopPlayheadUpdate();
@@ -418,84 +268,58 @@ public class SampleViewerPanel extends JPanel implements
 
     @Override
     public void onPlaySelectionRequested() {
-        if (audioClip == null) {
-            logger.error("Audio clip not initialized");
+        // Check if we have a valid selection
+        if (sample.getSampleStart() >= sample.getSampleEnd()) {
+            logger.warn("Invalid selection range: start({}) >= end({})",
+                    sample.getSampleStart(), sample.getSampleEnd());
             return;
         }
 
-        try {
-            // Stop any current playback
-            if (audioClip.isRunning()) {
-                audioClip.stop();
-            }
+        // Debug logging
+        logger.debug("Playing selection from frame {} to {}",
+                sample.getSampleStart(), sample.getSampleEnd());
 
-            // Check if we have a valid selection
-            if (sample.getSampleStart() >= sample.getSampleEnd()) {
-                logger.warn("Invalid selection range: start({}) >= end({})",
-                        sample.getSampleStart(), sample.getSampleEnd());
+        // The engine stops the voice at the selection end
+        startPreview(sample.getSampleEnd());
+    }
+
+    /**
+     * Play the sample from its start marker to {@code endFrame} (0 for the
+     * end of the file), looping if loop points are set within that range
+     */
+    private void startPreview(int endFrame) {
+        try {
+            if (sample.getPcm() == null) {
+                logger.error("No sample loaded");
                 return;
             }
 
-            // Debug logging
-            logger.debug("Playing selection from frame {} to {}",
-                    sample.getSampleStart(), sample.getSampleEnd());
-
-            // Reset any loop settings (important!)
-            audioClip.setLoopPoints(0, -1);
-
-            // Set clip to sample start position
-            audioClip.setFramePosition(sample.getSampleStart());
-
-            // Check if loop points are set within the selection
-            if (sample.isLoopEnabled() &&
-                    sample.getLoopStart() >= sample.getSampleStart() &&
-                    sample.getLoopEnd() <= sample.getSampleEnd() &&
-                    sample.getLoopStart() < sample.getLoopEnd()) {
-
-                // Set loop points relative to clip start
-                audioClip.setLoopPoints(sample.getLoopStart(), sample.getLoopEnd());
-                audioClip.loop(Clip.LOOP_CONTINUOUSLY);
-
-                // Start the playhead update
-                startPlayheadUpdate();
-            } else {
-                // Play once without looping
-                audioClip.start();
-
-                // Start the playhead update
-                startPlayheadUpdate();
+            // Stop any current playback
+            stopPreview();
 
-                // Set up a timer to stop playback when we reach the end of the selection
-                Timer playbackTimer = new Timer(10, e -> {
-                    if (audioClip == null || !audioClip.isRunning()) {
-                        ((Timer) e.getSource()).stop();
-                        return;
-                    }
+            int end = endFrame > 0 ? endFrame : sample.getFrameCount();
+            boolean loop = sample.isLoopEnabled()
+                    && sample.getLoopStart() >= sample.getSampleStart()
+                    && sample.getLoopEnd() <= end
+                    && sample.getLoopStart() < sample.getLoopEnd();
 
-                    int currentFrame = audioClip.getFramePosition();
-                    if (currentFrame >= sample.getSampleEnd()) {
-                        audioClip.stop();
-                        ((Timer) e.getSource()).stop();
-                        stopPlayheadUpdate();
-
-                        // Update UI when selection playback is done
-                        SwingUtilities.invokeLater(() -> {
-                            controlsPanel.setPlayEnabled(true);
-                            controlsPanel.setPlaySelectionEnabled(true);
-                            controlsPanel.setStopEnabled(false);
-                        });
-                    }
-                });
-                playbackTimer.start();
+            previewHandle = engine.play(sample.getPcm(), 1.0f, 1.0, sample.getSampleStart(), end, loop,
+                    sample.getLoopStart(), sample.getLoopEnd(), 0, -1, sample.getInterpolation());
+            if (previewHandle < 0) {
+                logger.error("Sample engine could not play the sample");
+                return;
             }
 
+            // Start playhead updates
+            startPlayheadUpdate();
+
             // Update UI
             controlsPanel.setPlayEnabled(false);
             controlsPanel.setPlaySelectionEnabled(false);
             controlsPanel.setStopEnabled(true);
 
         } catch (Exception e) {
-            logger.error("Error playing audio selection: {}", e.getMessage(), e);
+            logger.error("Error playing audio: {}", e.getMessage(), e);
         }
     }
 
@@ -508,11 +332,15 @@ public class SampleViewerPanel extends JPanel implements
 
         // Create and start a new timer to update playhead
         playheadTimer = new Timer(40, e -> { // 25 fps update rate
-            if (audioClip != null && audioClip.isRunning()) {
-                int position = audioClip.getFramePosition();
+            int position = engine.getPosition(previewHandle);
+            if (position >= 0) {
                 waveformPanel.setCurrentPlayPosition(position);
             } else {
+                // Playback reached the end
                 stopPlayheadUpdate();
+                controlsPanel.setStopEnabled(false);
+                controlsPanel.setPlayEnabled(true);
+                controlsPanel.setPlaySelectionEnabled(true);
             }
         });
         playheadTimer.start();
@@ -532,7 +360,7 @@ public class SampleViewerPanel extends JPanel implements
      * Clean up resources when panel is closed
      */
     public void cleanup() {
-        stopAndCloseAudio();
+        stopPreview();
         stopPlayheadUpdate(); // Stop playhead updates
         executor.shutdown();
     }
@@ -573,7 +401,7 @@ public class SampleViewerPanel extends JPanel implements
             player.setEnabled(true);
 
             // Initialize selection points
-            if (sample.getSampleStart() != 0 || sample.getSampleEnd() != sample.getAudioData().length) {
+            if (sample.getSampleStart() != 0 || sample.getSampleEnd() != sample.getFrameCount()) {
                 // If selection exists, store in player properties
                 player.getProperties().put("sampleStart", sample.getSampleStart());
                 player.getProperties().put("sampleEnd", sample.getSampleEnd());
@@ -619,9 +447,8 @@ public class SampleViewerPanel extends JPanel implements
         instrument.setName("Sample: " + sample.getAudioFile().getName());
         instrument.setInternal(true);
 
-        // Store sample data in the instrument
+        // Store the sample file in the instrument; playback maps it through the sample store
         instrument.getProperties().put("sampleFile", sample.getAudioFile().getAbsolutePath());
-        instrument.getProperties().put("sampleData", sample.getAudioData());
         instrument.getProperties().put("sampleFormat", sample.getAudioFormat());
 
         // Configure instrument with sample metadata
@@ -632,6 +459,9 @@ public class SampleViewerPanel extends JPanel implements
         // Mark as a sample instrument type
         instrument.getProperties().put("type", "sample");
 
+        // Resolve the frames now rather than on the first note
+        SamplePlaybackService.getInstance().prepare(instrument);
+
         return instrument;
     }
 
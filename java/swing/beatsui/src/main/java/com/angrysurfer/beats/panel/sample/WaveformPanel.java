@@ -1,5 +1,7 @@
 package com.angrysurfer.beats.panel.sample;
 
+import com.angrysurfer.core.audio.PcmSample;
+import com.angrysurfer.core.audio.PeakPyramid;
 import com.angrysurfer.core.model.Sample;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +11,7 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
+import java.io.IOException;
 
 public class WaveformPanel extends JPanel {
     private static final long serialVersionUID = 1L;
@@ -24,9 +27,16 @@ public class WaveformPanel extends JPanel {
     private static final Color SELECTION_COLOR = new Color(200, 200, 255, 80); // Light blue, semi-transparent
     private static final Color LOOP_COLOR = new Color(200, 255, 200, 80); // Light green, semi-transparent
     private static final Color PLAYHEAD_COLOR = Color.RED;
+    private static final Color PEAK_COLOR = new Color(30, 144, 255); // Blue
+    private static final Color RMS_COLOR = new Color(0, 90, 180);
+    // Frames read per pixel when zoomed in past the pyramid; plenty for the shape at that zoom
+    private static final int MAX_FRAMES_PER_PIXEL = 16;
     private final int scrollPosition = 0;
     private double zoomFactor = 1.0;
     private Sample sample;
+    // Frames and their peak pyramid; without the pyramid only markers are drawn
+    private PcmSample frames;
+    private PeakPyramid peaks;
     // For marker dragging operations
     private boolean isDragging = false;
     private int currentMarker = MARKER_NONE;
@@ -144,6 +154,21 @@ public class WaveformPanel extends JPanel {
 
     public void setSample(Sample sample) {
         this.sample = sample;
+        try {
+            this.frames = sample != null ? sample.getPcm() : null;
+        } catch (IOException e) {
+            logger.error("Error reading sample frames: {}", e.getMessage());
+            this.frames = null;
+        }
+        repaint();
+    }
+
+    /**
+     * Set the peak pyramid of the current sample's frames, built in the
+     * background after {@link #setSample(Sample)}
+     */
+    public void setPeaks(PeakPyramid peaks) {
+        this.peaks = peaks;
         repaint();
     }
 
@@ -158,6 +183,8 @@ public class WaveformPanel extends JPanel {
 
     public void resetWaveform() {
         this.sample = null;
+        this.frames = null;
+        this.peaks = null;
         this.repaint();
     }
 
@@ -185,7 +212,7 @@ public class WaveformPanel extends JPanel {
         // Enable antialiasing
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        if (sample == null || sample.getWaveformData() == null) {
+        if (sample == null || frames == null) {
             drawEmptyState(g2d);
             return;
         }
@@ -201,7 +228,7 @@ public class WaveformPanel extends JPanel {
         drawLoopRegion(g2d);
 
         // Draw waveform
-        drawWaveform(g2d, sample.getWaveformData(), zoomFactor, scrollPosition);
+        drawWaveform(g2d);
 
         // Draw sample markers
         drawMarker(g2d, sample.getSampleStart(), Color.RED, "S");
@@ -262,49 +289,83 @@ public class WaveformPanel extends JPanel {
     }
 
     /**
-     * Draw waveform with current zoom and scroll settings
+     * Draw waveform with current zoom and scroll settings: min/max and RMS
+     * per pixel, from the pyramid level matching the zoom, or from a few of
+     * the frames when zoomed in past the finest level
      */
-    private void drawWaveform(Graphics2D g2d, int[] waveformData, double zoom, int scroll) {
-        if (waveformData == null || waveformData.length == 0) return;
-
+    private void drawWaveform(Graphics2D g2d) {
         int width = getWidth();
         int height = getHeight();
         int centerY = height / 2;
 
-        // Calculate visible range based on zoom
-        int zoomedLength = (int) (waveformData.length / zoom);
-        int startIdx = Math.min(scroll, waveformData.length - zoomedLength);
-        if (startIdx < 0) startIdx = 0;
-
         // Draw horizontal center line
         g2d.setColor(Color.LIGHT_GRAY);
         g2d.drawLine(0, centerY, width, centerY);
 
-        // Calculate samples per pixel
-        double samplesPerPixel = (double) zoomedLength / width;
+        int totalFrames = getTotalFrames();
+        if (peaks == null || totalFrames == 0 || width == 0) return;
 
-        // Draw waveform
-        g2d.setColor(new Color(30, 144, 255)); // Blue
+        double framesPerPixel = totalFrames / (width * zoomFactor);
+        int level = peaks.levelFor(framesPerPixel);
+        if (level < 0 && frames.getStorage() == PcmSample.Storage.STREAMED) {
+            // Reading a streamed file here would map it on the EDT, and push the segments
+            // the audio thread is playing out of the mapped window
+            level = 0;
+        }
+        // Scale to panel height (leaving 10% margin)
+        double scale = height * 0.45;
 
         for (int x = 0; x < width; x++) {
-            int startSample = startIdx + (int) (x * samplesPerPixel);
-            int endSample = startIdx + (int) ((x + 1) * samplesPerPixel);
-
-            // Find max amplitude in this pixel range
-            int maxAmplitude = 0;
-            for (int i = startSample; i < endSample && i < waveformData.length; i++) {
-                maxAmplitude = Math.max(maxAmplitude, waveformData[i]);
+            long startFrame = (long) ((x + scrollPosition) * framesPerPixel);
+            long endFrame = Math.max(startFrame + 1, (long) ((x + 1 + scrollPosition) * framesPerPixel));
+            if (startFrame >= totalFrames) break;
+            endFrame = Math.min(endFrame, totalFrames);
+
+            float min = Float.MAX_VALUE;
+            float max = -Float.MAX_VALUE;
+            double squares = 0;
+            int count = 0;
+            if (level < 0) {
+                // Fewer frames per pixel than the finest level holds: read them, or evenly spaced ones
+                long step = Math.max(1, (endFrame - startFrame) / MAX_FRAMES_PER_PIXEL);
+                for (long frame = startFrame; frame < endFrame; frame += step) {
+                    for (int ch = 0; ch < frames.getChannels(); ch++) {
+                        float value = frames.get((int) frame, ch);
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                        squares += value * value;
+                        count++;
+                    }
+                }
+            } else {
+                // Between one and FACTOR blocks per pixel at this level
+                long blockSize = peaks.getBlockSize(level);
+                int last = (int) Math.min((endFrame - 1) / blockSize, peaks.getBlocks(level) - 1);
+                for (int block = (int) (startFrame / blockSize); block <= last; block++) {
+                    min = Math.min(min, peaks.getMin(level, block));
+                    max = Math.max(max, peaks.getMax(level, block));
+                    float rms = peaks.getRms(level, block);
+                    squares += rms * rms;
+                    count++;
+                }
             }
+            if (count == 0) continue;
 
-            // Scale to panel height (leaving 10% margin)
-            int barHeight = (int) (maxAmplitude * height * 0.8 / 100);
-            if (barHeight < 1) barHeight = 1;
+            int top = centerY - (int) (max * scale);
+            int bottom = centerY - (int) (min * scale);
+            g2d.setColor(PEAK_COLOR);
+            g2d.drawLine(x, top, x, Math.max(top, bottom));
 
-            // Draw symmetric waveform
-            g2d.drawLine(x, centerY - barHeight / 2, x, centerY + barHeight / 2);
+            int rms = (int) (Math.sqrt(squares / count) * scale);
+            g2d.setColor(RMS_COLOR);
+            g2d.drawLine(x, centerY - rms, x, centerY + rms);
         }
     }
 
+    private int getTotalFrames() {
+        return frames != null ? frames.getFrames() : 0;
+    }
+
     /**
      * Draw marker at a specific frame position
      */
@@ -357,10 +418,10 @@ public class WaveformPanel extends JPanel {
      * Convert frame position to screen X coordinate
      */
     private int frameToScreen(int frame) {
-        if (sample == null || sample.getWaveformData() == null) return 0;
+        if (sample == null || getTotalFrames() == 0) return 0;
 
         int width = getWidth();
-        int totalFrames = sample.getWaveformData().length;
+        int totalFrames = getTotalFrames();
 
         // Calculate frame to screen position based on zoom
         double pixelsPerFrame = width * zoomFactor / totalFrames;
@@ -371,10 +432,10 @@ public class WaveformPanel extends JPanel {
      * Convert screen X coordinate to frame position
      */
     private int screenToFrame(int x) {
-        if (sample == null || sample.getWaveformData() == null) return 0;
+        if (sample == null || getTotalFrames() == 0) return 0;
 
         int width = getWidth();
-        int totalFrames = sample.getWaveformData().length;
+        int totalFrames = getTotalFrames();
 
         // Calculate screen to frame position based on zoom
         double framesPerPixel = totalFrames / (width * zoomFactor);